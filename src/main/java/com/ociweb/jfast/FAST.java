@@ -1,10 +1,13 @@
 package com.ociweb.jfast;
 
+import com.ociweb.jfast.catalog.loader.TemplateCatalogConfig;
+import com.ociweb.jfast.catalog.loader.TemplateRouting;
 import com.ociweb.jfast.generator.DispatchLoader;
 import com.ociweb.jfast.primitive.FASTInput;
 import com.ociweb.jfast.primitive.PrimitiveReader;
 import com.ociweb.jfast.stream.FASTDecoder;
 import com.ociweb.jfast.stream.FASTReaderReactor;
+import com.ociweb.jfast.stream.RingSizing;
 import com.ociweb.pronghorn.ring.RingBuffers;
 
 public class FAST {
@@ -14,25 +17,40 @@ public class FAST {
 	public static FASTReaderReactor inputReactor(FASTInput fastInput, byte[] catBytes, RingBuffers ringBuffers) {
 	    FASTDecoder readerDispatch = DispatchLoader.loadDispatchReader(catBytes, ringBuffers); 
 	    PrimitiveReader reader = new PrimitiveReader(DEFAULT_BUFFER_SIZE, fastInput, readerDispatch.maxPMapCountInBytes);
-	    return new FASTReaderReactor(readerDispatch,reader);
+	    return new FASTReaderReactor(readerDispatch,reader,TemplateCatalogConfig.shared(catBytes));
 	}
 	
 	public static FASTReaderReactor inputReactor(int bufferSize, FASTInput fastInput, byte[] catBytes, RingBuffers ringBuffers) {
 	    FASTDecoder readerDispatch = DispatchLoader.loadDispatchReader(catBytes, ringBuffers); 
 	    PrimitiveReader reader = new PrimitiveReader(bufferSize, fastInput, readerDispatch.maxPMapCountInBytes);
-	    return new FASTReaderReactor(readerDispatch,reader);
+	    return new FASTReaderReactor(readerDispatch,reader,TemplateCatalogConfig.shared(catBytes));
+	}
+	
+	/**
+	 * Decodes into one ring per ring of the routing, use ringBuffers() on the reactor to find each consumers ring.
+	 */
+	public static FASTReaderReactor inputReactor(FASTInput fastInput, byte[] catBytes, TemplateRouting routing) {
+	    return inputReactor(fastInput, catBytes, TemplateCatalogConfig.buildRingBuffers(TemplateCatalogConfig.shared(catBytes), routing));
+	}
+	
+	/**
+	 * Reactor for FASTReaderReactor.pump(reactor, listener), the rings only need to hold a few fragments because
+	 * each one is handed to the listener as soon as it is decoded.
+	 */
+	public static FASTReaderReactor inputReactorPush(FASTInput fastInput, byte[] catBytes) {
+	    return inputReactor(fastInput, catBytes, RingSizing.buildRingBuffers(TemplateCatalogConfig.shared(catBytes), RingSizing.SCRATCH_BURST_FRAGMENTS, null));
 	}
 	
 	public static FASTReaderReactor inputReactorDebug(FASTInput fastInput, byte[] catBytes, RingBuffers ringBuffers) {
 	    FASTDecoder readerDispatch = DispatchLoader.loadDispatchReaderDebug(catBytes, ringBuffers); 
 	    PrimitiveReader reader = new PrimitiveReader(DEFAULT_BUFFER_SIZE, fastInput, readerDispatch.maxPMapCountInBytes);
-	    return new FASTReaderReactor(readerDispatch,reader);
+	    return new FASTReaderReactor(readerDispatch,reader,TemplateCatalogConfig.shared(catBytes));
 	}
 	
 	public static FASTReaderReactor inputReactorDebug(int bufferSize, FASTInput fastInput, byte[] catBytes, RingBuffers ringBuffers) {
 	    FASTDecoder readerDispatch = DispatchLoader.loadDispatchReaderDebug(catBytes, ringBuffers); 
 	    PrimitiveReader reader = new PrimitiveReader(bufferSize, fastInput, readerDispatch.maxPMapCountInBytes);
-	    return new FASTReaderReactor(readerDispatch,reader);
+	    return new FASTReaderReactor(readerDispatch,reader,TemplateCatalogConfig.shared(catBytes));
 	}
 
 }
@@ -45,6 +45,22 @@ public class FieldGenerator implements ItemGenerator {
     	return new FieldGenerator(name, id, presence, type, newOperator1, newOperator2, initial1,initial2);
     }
     
+    public int getOperator1() {
+        return operator1;
+    }
+
+    public int getOperator2() {
+        return operator2;
+    }
+
+    public boolean isOptional() {
+        return presence;
+    }
+
+    public boolean hasInitial() {
+        return null!=initial1;
+    }
+
     public boolean isDecimal() {
     	 return (TypeMask.Decimal==type || TypeMask.DecimalOptional==type );
     }
@@ -0,0 +1,232 @@
+package com.ociweb.jfast.catalog.generator;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ociweb.jfast.FAST;
+import com.ociweb.jfast.catalog.loader.ClientConfig;
+import com.ociweb.jfast.catalog.loader.TemplateCatalogConfig;
+import com.ociweb.jfast.catalog.loader.TemplateLoader;
+import com.ociweb.jfast.error.FASTException;
+import com.ociweb.jfast.generator.DispatchLoader;
+import com.ociweb.jfast.primitive.PrimitiveWriter;
+import com.ociweb.jfast.primitive.adapter.FASTInputByteArray;
+import com.ociweb.jfast.primitive.adapter.FASTOutputTotals;
+import com.ociweb.jfast.stream.FASTDynamicWriter;
+import com.ociweb.jfast.stream.FASTReaderReactor;
+import com.ociweb.jfast.stream.RingSizing;
+import com.ociweb.pronghorn.ring.RingBuffer;
+import com.ociweb.pronghorn.ring.RingBuffers;
+import com.ociweb.pronghorn.ring.RingReader;
+import com.ociweb.pronghorn.ring.token.OperatorMask;
+
+/**
+ * Offline search for the field operators which encode a sample capture in the fewest bytes.
+ *
+ * The sample must have been encoded with the catalog given at construction. It is decoded with that catalog
+ * and every message is encoded again with a candidate catalog where only one field has a different operator.
+ * Operators do not change the layout of the ring buffer so the same decoded fragments can be handed to each candidate.
+ *
+ * Fields are visited in script order and each keeps the operator with the fewest bytes, when two operators produce
+ * the same bytes the one with the faster measured encode is kept. Because the dictionaries tie fields together
+ * more than one pass may find further savings. Constant fields are never changed because their value is not on the wire.
+ *
+ * Candidates are encoded with the interpreter so no classes are generated during the search, the encode
+ * times are only useful for comparing candidates against each other.
+ *
+ * The CatalogGenerator is modified in place, use toString() or appendTo to write out the new template XML.
+ */
+public class OperatorOptimizer {
+
+    private static final Logger log = LoggerFactory.getLogger(OperatorOptimizer.class);
+
+    private static final int[] NUMERIC_OPS = new int[] {
+        OperatorMask.Field_None,
+        OperatorMask.Field_Copy,
+        OperatorMask.Field_Default,
+        OperatorMask.Field_Delta,
+        OperatorMask.Field_Increment
+    };
+
+    private static final int[] TEXT_OPS = new int[] {
+        OperatorMask.Field_None,
+        OperatorMask.Field_Copy,
+        OperatorMask.Field_Default,
+        OperatorMask.Field_Delta,
+        OperatorMask.Field_Tail
+    };
+
+    private final CatalogGenerator catalog;
+    private final ClientConfig clientConfig;
+    private final byte[] sampleCatBytes;
+    private final byte[] sample;
+
+    public long originalBytes = -1;
+    public long optimizedBytes = -1;
+    public long optimizedEncodeNs;
+    public int changedFields;
+
+    /**
+     * @param catalog catalog which was used to encode the sample
+     * @param clientConfig used to build every candidate catalog, must match the one used for the sample
+     * @param sample captured FAST stream
+     */
+    public OperatorOptimizer(CatalogGenerator catalog, ClientConfig clientConfig, byte[] sample) {
+        this.catalog = catalog;
+        this.clientConfig = clientConfig;
+        this.sample = sample;
+        this.sampleCatBytes = catBytes(catalog, clientConfig);
+    }
+
+    /**
+     * Runs the search, stopping early when a pass changes nothing.
+     *
+     * @return the same CatalogGenerator given at construction, now holding the best operators found
+     */
+    public static CatalogGenerator optimize(int passes, OperatorOptimizer optimizer) {
+
+        List<List<ItemGenerator>> owners = new ArrayList<List<ItemGenerator>>();
+        List<Integer> positions = new ArrayList<Integer>();
+        for(TemplateGenerator template: optimizer.catalog.templates) {
+            collectFields(template.items, owners, positions);
+        }
+
+        long[] ns = new long[1];
+        long bestBytes = measure(optimizer.sampleCatBytes, ns, optimizer);
+        long bestNs = ns[0];
+        optimizer.originalBytes = bestBytes;
+        optimizer.changedFields = 0;
+
+        while (--passes>=0) {
+            int changes = 0;
+            int i = 0;
+            while (i<owners.size()) {
+                List<ItemGenerator> items = owners.get(i);
+                int pos = positions.get(i++).intValue();
+                FieldGenerator field = (FieldGenerator)items.get(pos);
+                if (OperatorMask.Field_Constant==field.getOperator1() || OperatorMask.Field_Constant==field.getOperator2()) {
+                    continue;
+                }
+
+                FieldGenerator best = field;
+                int[] ops = field.isText() || field.isByteArray() ? TEXT_OPS : NUMERIC_OPS;
+                int half = field.isDecimal() ? 2 : 1;
+                while (--half>=0) {
+                    FieldGenerator base = best;
+                    int j = ops.length;
+                    while (--j>=0) {
+                        int op = ops[j];
+                        if (OperatorMask.Field_Default==op && !base.isOptional() && !base.hasInitial()) {
+                            continue; //mandatory default requires an initial value
+                        }
+                        FieldGenerator candidate;
+                        if (base.isDecimal()) {
+                            candidate = 1==half ? base.clone(op, base.getOperator2()) : base.clone(base.getOperator1(), op);
+                        } else {
+                            candidate = base.clone(op);
+                        }
+                        if (candidate.getOperator1()==base.getOperator1() && candidate.getOperator2()==base.getOperator2()) {
+                            continue;
+                        }
+
+                        items.set(pos, candidate);
+                        long bytes;
+                        try {
+                            bytes = measure(catBytes(optimizer.catalog, optimizer.clientConfig), ns, optimizer);
+                        } catch (UnsupportedOperationException e) {
+                            log.debug("Skipping unsupported candidate {}: {}", candidate, e.getMessage());
+                            continue; //this operator is not supported for this field
+                        } catch (RuntimeException e) {
+                            log.error("Unable to measure candidate {}", candidate, e);
+                            throw e;
+                        } finally {
+                            items.set(pos, best);
+                        }
+                        if (bytes<bestBytes || (bytes==bestBytes && ns[0]<bestNs)) {
+                            bestBytes = bytes;
+                            bestNs = ns[0];
+                            best = candidate;
+                            items.set(pos, best);
+                        }
+                    }
+                }
+                if (best!=field) {
+                    changes++;
+                }
+            }
+            optimizer.changedFields += changes;
+            if (0==changes) {
+                break;
+            }
+        }
+
+        optimizer.optimizedBytes = bestBytes;
+        optimizer.optimizedEncodeNs = bestNs;
+        return optimizer.catalog;
+    }
+
+    private static void collectFields(List<ItemGenerator> items, List<List<ItemGenerator>> owners, List<Integer> positions) {
+        int i = 0;
+        while (i<items.size()) {
+            ItemGenerator item = items.get(i);
+            if (item instanceof FieldGenerator) {
+                owners.add(items);
+                positions.add(Integer.valueOf(i));
+            } else if (item instanceof GroupGenerator) {
+                collectFields(((GroupGenerator)item).items, owners, positions);
+            } else if (item instanceof SequenceGenerator) {
+                collectFields(((SequenceGenerator)item).items, owners, positions);
+            }
+            i++;
+        }
+    }
+
+    /**
+     * Decodes the sample with the original catalog and encodes every fragment with the candidate.
+     *
+     * @param ns first element is set to the total time spent encoding
+     * @return bytes written by the candidate
+     */
+    static long measure(byte[] candidateCatBytes, long[] ns, OperatorOptimizer optimizer) {
+
+        RingBuffers ringBuffers = RingSizing.buildRingBuffers(TemplateCatalogConfig.shared(optimizer.sampleCatBytes), RingSizing.SCRATCH_BURST_FRAGMENTS, null);
+        FASTReaderReactor reactor = FAST.inputReactorDebug(new FASTInputByteArray(optimizer.sample), optimizer.sampleCatBytes, ringBuffers);
+        RingBuffer ring = RingBuffers.get(ringBuffers, 0);
+
+        FASTOutputTotals output = new FASTOutputTotals();
+        PrimitiveWriter writer = TemplateCatalogConfig.buildPrimitiveWriter(4096, output, false, TemplateCatalogConfig.shared(candidateCatBytes));
+        FASTDynamicWriter dynamicWriter = new FASTDynamicWriter(writer, ring, DispatchLoader.loadDispatchWriterDebug(candidateCatBytes));
+
+        long total = 0;
+        boolean more = true;
+        while (more) {
+            more = FASTReaderReactor.pump(reactor)>=0;
+            while (RingReader.tryReadFragment(ring)) {
+                if (RingReader.getMsgIdx(ring.ringWalker)>=0) {
+                    long start = System.nanoTime();
+                    FASTDynamicWriter.write(dynamicWriter);
+                    total += System.nanoTime()-start;
+                }
+            }
+        }
+        PrimitiveWriter.flush(writer);
+        ns[0] = total;
+        return output.total();
+    }
+
+    public static byte[] catBytes(CatalogGenerator catalog, ClientConfig clientConfig) {
+        try {
+            String xml = catalog.appendTo("", new StringBuilder()).toString();
+            return TemplateLoader.buildCatBytes(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), clientConfig);
+        } catch (IOException e) {
+            throw new FASTException(e);
+        }
+    }
+
+}
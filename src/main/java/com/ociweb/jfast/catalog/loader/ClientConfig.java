@@ -80,6 +80,14 @@ public class ClientConfig {
     public int getBytesGap() {
         return this.bytesGap;
     }
+    
+    public int getPrimaryRingBits() {
+        return this.rbPrimaryRingBits;
+    }
+    
+    public int getTextRingBits() {
+        return this.rbTextRingBits;
+    }
 
     public void setCatalogTemplateId(int id) {
         if (NONE == id) {
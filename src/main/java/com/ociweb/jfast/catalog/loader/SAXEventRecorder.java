@@ -0,0 +1,105 @@
+package com.ociweb.jfast.catalog.loader;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Records the SAX events of one template file so files can be parsed on many threads and then
+ * replayed one after the other into the single TemplateHandler which must see them in a fixed order.
+ */
+final class SAXEventRecorder extends DefaultHandler {
+
+    private static final int START_DOCUMENT = 0;
+    private static final int END_DOCUMENT = 1;
+    private static final int START_ELEMENT = 2;
+    private static final int END_ELEMENT = 3;
+    private static final int CHARACTERS = 4;
+    private static final int IGNORABLE_WHITESPACE = 5;
+    private static final int START_PREFIX = 6;
+    private static final int END_PREFIX = 7;
+
+    private final List<Object[]> events = new ArrayList<Object[]>();
+
+    @Override
+    public void startDocument() throws SAXException {
+        events.add(new Object[] {START_DOCUMENT});
+    }
+
+    @Override
+    public void endDocument() throws SAXException {
+        events.add(new Object[] {END_DOCUMENT});
+    }
+
+    @Override
+    public void startPrefixMapping(String prefix, String uri) throws SAXException {
+        events.add(new Object[] {START_PREFIX, prefix, uri});
+    }
+
+    @Override
+    public void endPrefixMapping(String prefix) throws SAXException {
+        events.add(new Object[] {END_PREFIX, prefix});
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+        //the parser reuses the attributes instance so it must be copied
+        events.add(new Object[] {START_ELEMENT, uri, localName, qName, new AttributesImpl(attributes)});
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) throws SAXException {
+        events.add(new Object[] {END_ELEMENT, uri, localName, qName});
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) throws SAXException {
+        events.add(new Object[] {CHARACTERS, new String(ch, start, length)});
+    }
+
+    @Override
+    public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+        events.add(new Object[] {IGNORABLE_WHITESPACE, new String(ch, start, length)});
+    }
+
+    /**
+     * Sends every recorded event to the target in the order they were parsed.
+     */
+    public static void replay(SAXEventRecorder recorder, DefaultHandler target) throws SAXException {
+        for (Object[] e : recorder.events) {
+            switch (((Integer)e[0]).intValue()) {
+                case START_DOCUMENT:
+                    target.startDocument();
+                    break;
+                case END_DOCUMENT:
+                    target.endDocument();
+                    break;
+                case START_PREFIX:
+                    target.startPrefixMapping((String)e[1], (String)e[2]);
+                    break;
+                case END_PREFIX:
+                    target.endPrefixMapping((String)e[1]);
+                    break;
+                case START_ELEMENT:
+                    target.startElement((String)e[1], (String)e[2], (String)e[3], (Attributes)e[4]);
+                    break;
+                case END_ELEMENT:
+                    target.endElement((String)e[1], (String)e[2], (String)e[3]);
+                    break;
+                case CHARACTERS:
+                    char[] text = ((String)e[1]).toCharArray();
+                    target.characters(text, 0, text.length);
+                    break;
+                case IGNORABLE_WHITESPACE:
+                    char[] space = ((String)e[1]).toCharArray();
+                    target.ignorableWhitespace(space, 0, space.length);
+                    break;
+            }
+        }
+    }
+
+}
@@ -4,15 +4,22 @@
 package com.ociweb.jfast.catalog.loader;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.zip.GZIPInputStream;
 
 import com.ociweb.jfast.error.FASTException;
+import com.ociweb.jfast.primitive.FASTOutput;
 import com.ociweb.jfast.primitive.PrimitiveReader;
 import com.ociweb.jfast.primitive.PrimitiveWriter;
+import com.ociweb.jfast.primitive.adapter.FASTInputByteArray;
+import com.ociweb.jfast.primitive.adapter.FASTInputByteBuffer;
 import com.ociweb.jfast.primitive.adapter.FASTInputStream;
 import com.ociweb.pronghorn.ring.FieldReferenceOffsetManager;
 import com.ociweb.pronghorn.ring.RingBuffer;
@@ -20,8 +27,12 @@ import com.ociweb.pronghorn.ring.RingBufferConfig;
 import com.ociweb.pronghorn.ring.RingBuffers;
 import com.ociweb.pronghorn.ring.loader.DictionaryFactory;
 import com.ociweb.pronghorn.ring.loader.TemplateHandler;
+import com.ociweb.pronghorn.ring.token.OperatorMask;
+import com.ociweb.pronghorn.ring.token.TokenBuilder;
+import com.ociweb.pronghorn.ring.token.TypeMask;
 import com.ociweb.pronghorn.ring.util.hash.LongHashTable;
 import com.ociweb.pronghorn.ring.util.hash.LongHashTableVisitor;
+import com.ociweb.pronghorn.ring.util.hash.MurmurHash;
 
 public class TemplateCatalogConfig {
 
@@ -55,17 +66,47 @@ public class TemplateCatalogConfig {
 
     private final FieldReferenceOffsetManager from;
     
+    /**
+     * Written before the catalog when it is saved without GZIP, the leading 0x00 0x80 can not begin a compressed
+     * catalog or a valid stop bit integer so both formats can be told apart.
+     */
+    public static final byte[] UNCOMPRESSED_MAGIC = new byte[] {0x00, (byte)0x80, 'J', 'F', 'C'};
+    
+    private static final int SHARED_CACHE_SIZE = 8;
+    private static final Map<Long, TemplateCatalogConfig> sharedCache = new LinkedHashMap<Long, TemplateCatalogConfig>(16, .75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, TemplateCatalogConfig> eldest) {
+            return size()>SHARED_CACHE_SIZE;
+        }
+    };
+    private byte[] sourceBytes; //only set on instances held by the shared cache
+    private long[] sortedTemplateIds; //built on first use by templateStart
+    
     public TemplateCatalogConfig(byte[] catBytes) {
-        
-        FASTInputStream inputStream;
+        this(isUncompressed(catBytes) ? new PrimitiveReader(1024, new FASTInputByteArray(catBytes), 0) : gzipReader(catBytes), 
+             isUncompressed(catBytes));
+    }
+    
+    /**
+     * Reads an uncompressed catalog in place, eg. from a MappedByteBuffer, without copying it to the heap first.
+     */
+    public TemplateCatalogConfig(ByteBuffer uncompressed) {
+        this(new PrimitiveReader(1024, new FASTInputByteBuffer(uncompressed), 0), true);
+    }
+    
+    private static PrimitiveReader gzipReader(byte[] catBytes) {
         try {
-            inputStream = new FASTInputStream(new GZIPInputStream(new ByteArrayInputStream(catBytes),catBytes.length));
+            return new PrimitiveReader(1024, new FASTInputStream(new GZIPInputStream(new ByteArrayInputStream(catBytes),catBytes.length)), 0);
         } catch (IOException e) {
             throw new FASTException(e);
         }
+    }
+    
+    private TemplateCatalogConfig(PrimitiveReader reader, boolean skipMagic) {
         
-        
-        PrimitiveReader reader = new PrimitiveReader(1024, inputStream, 0);
+        if (skipMagic) {
+            PrimitiveReader.readByteData(new byte[UNCOMPRESSED_MAGIC.length], 0, UNCOMPRESSED_MAGIC.length, reader);
+        }
 
         //given an index in the script lookup the tokens, fieldIds or fieldNames
         int fullScriptLength = PrimitiveReader.readIntegerUnsigned(reader);
@@ -113,6 +154,103 @@ public class TemplateCatalogConfig {
         
     }
     
+    /**
+     * Script position where the template begins or -1 if this catalog does not contain the template.
+     */
+    public static int templateStart(long templateId, TemplateCatalogConfig catalog) {
+        long[] ids = catalog.sortedTemplateIds;
+        if (null==ids) {
+            ids = sortTemplateIds(catalog);
+        }
+        return Arrays.binarySearch(ids, templateId)<0 ? -1 : LongHashTable.getItem(catalog.templateToStartIdx, templateId);
+    }
+    
+    /**
+     * Script position just after the last token of the template starting at templateStart.
+     */
+    public static int templateLimit(int templateStart, TemplateCatalogConfig catalog) {
+        return catalog.templateScriptEntryLimits[Arrays.binarySearch(catalog.templateScriptEntries, templateStart)];
+    }
+    
+    public static long[] templateIds(TemplateCatalogConfig catalog) {
+        long[] ids = catalog.sortedTemplateIds;
+        return (null==ids ? sortTemplateIds(catalog) : ids).clone();
+    }
+    
+    private static long[] sortTemplateIds(TemplateCatalogConfig catalog) {
+        final long[] ids = new long[catalog.templatesInCatalog];
+        if (null!=catalog.templateToStartIdx) {
+            LongHashTable.visit(catalog.templateToStartIdx, new LongHashTableVisitor() {
+                int i = 0;
+                @Override
+                public void visit(long key, int value) {
+                    if (i<ids.length) {
+                        ids[i++] = key;
+                    }
+                }});
+        }
+        Arrays.sort(ids);
+        catalog.sortedTemplateIds = ids;
+        return ids;
+    }
+    
+    public static boolean isUncompressed(byte[] catBytes) {
+        if (catBytes.length<UNCOMPRESSED_MAGIC.length) {
+            return false;
+        }
+        int i = UNCOMPRESSED_MAGIC.length;
+        while (--i>=0) {
+            if (catBytes[i]!=UNCOMPRESSED_MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Returns a parsed catalog shared by every caller passing the same bytes so it is only parsed once.
+     * The shared instance must be treated as read only.
+     */
+    public static TemplateCatalogConfig shared(byte[] catBytes) {
+        Long key = Long.valueOf((((long)MurmurHash.hash32(catBytes, 0, catBytes.length, 15485863))<<32) | 
+                                (0xFFFFFFFFL & MurmurHash.hash32(catBytes, 0, catBytes.length, 104395301)));
+        synchronized (sharedCache) {
+            TemplateCatalogConfig catalog = sharedCache.get(key);
+            if (null!=catalog && (catalog.sourceBytes==catBytes || Arrays.equals(catalog.sourceBytes, catBytes))) {
+                return catalog;
+            }
+        }
+        TemplateCatalogConfig catalog = new TemplateCatalogConfig(catBytes);
+        catalog.sourceBytes = catBytes;
+        synchronized (sharedCache) {
+            sharedCache.put(key, catalog);
+        }
+        return catalog;
+    }
+    
+    /**
+     * Converts a GZIP catalog as built by TemplateLoader into the uncompressed format which loads faster and can be memory mapped.
+     */
+    public static byte[] uncompressed(byte[] catBytes) {
+        if (isUncompressed(catBytes)) {
+            return catBytes;
+        }
+        try {
+            GZIPInputStream input = new GZIPInputStream(new ByteArrayInputStream(catBytes),catBytes.length);
+            ByteArrayOutputStream output = new ByteArrayOutputStream(catBytes.length*4);
+            output.write(UNCOMPRESSED_MAGIC);
+            byte[] temp = new byte[4096];
+            int len;
+            while ((len = input.read(temp))>=0) {
+                output.write(temp, 0, len);
+            }
+            input.close();
+            return output.toByteArray();
+        } catch (IOException e) {
+            throw new FASTException(e);
+        }
+    }
+    
     @Deprecated //for testing only
     public TemplateCatalogConfig(DictionaryFactory dcr, int nonTemplatePMapSize, int[][] dictionaryMembers,
                                 int[] fullScript, int maxNestedGroupDepth,
@@ -429,6 +567,46 @@ public class TemplateCatalogConfig {
     public static RingBuffers buildRingBuffers(TemplateCatalogConfig catalog, byte primaryBits, byte secondaryBits) {
 		return RingBuffers.buildNoFanRingBuffers(new RingBuffer(new RingBufferConfig(primaryBits, secondaryBits, catalog.ringByteConstants(), catalog.getFROM())));
 	}
+
+    /**
+     * Builds one ring for each ring of the routing, templates land only on the ring they are routed to.
+     * Routed rings are sized to hold their requested count of the largest fragment found in their own templates.
+     */
+    public static RingBuffers buildRingBuffers(final TemplateCatalogConfig catalog, final TemplateRouting routing) {
+        final FieldReferenceOffsetManager from = catalog.getFROM();
+        final int ringCount = TemplateRouting.ringCount(routing);
+        final int[] ringByCursor = new int[catalog.fullScript().length];
+        final int[] maxFragmentSize = new int[ringCount];
+        
+        LongHashTable.visit(catalog.templateToStartIdx, new LongHashTableVisitor() {
+            @Override
+            public void visit(long templateId, int start) {
+                int ring = TemplateRouting.ringFor(templateId, routing);
+                int limit = catalog.templateScriptEntryLimits[Arrays.binarySearch(catalog.templateScriptEntries, start)];
+                int c = start;
+                while (c<limit && c<ringByCursor.length) {
+                    ringByCursor[c] = ring;
+                    if (c<from.fragDataSize.length) {
+                        maxFragmentSize[ring] = Math.max(maxFragmentSize[ring], from.fragDataSize[c] + from.templateOffset + 1);
+                    }
+                    c++;
+                }
+            }});
+        
+        RingBuffer[] rings = new RingBuffer[ringCount];
+        int r = ringCount;
+        while (--r>=0) {
+            rings[r] = new RingBuffer(new RingBufferConfig(TemplateRouting.primaryBits(r, maxFragmentSize[r], routing), 
+                                                           TemplateRouting.byteBits(r, routing), 
+                                                           catalog.ringByteConstants(), from));
+        }
+        RingBuffer[] byCursor = new RingBuffer[ringByCursor.length];
+        int c = byCursor.length;
+        while (--c>=0) {
+            byCursor[c] = rings[ringByCursor[c]];
+        }
+        return new RingBuffers(byCursor);
+    }
     
 	public static FieldReferenceOffsetManager createFieldReferenceOffsetManager(TemplateCatalogConfig config) {
 		
@@ -572,6 +750,57 @@ public class TemplateCatalogConfig {
 	    PrimitiveWriter.flush(writer);
 	}
 
+	/**
+	 * Lower bound of the encoded size of any group which opens a PMap, used to size the PrimitiveWriter bookkeeping.
+	 * Each PMap is at least one byte and every field using the none or delta operator writes at least one byte.
+	 */
+	public static int minPMapGroupBytes(TemplateCatalogConfig catalog) {
+	    int[] script = catalog.fullScript();
+	    if (null==script || 0==script.length) {
+	        return PrimitiveWriter.DEFAULT_MIN_PMAP_GROUP_BYTES;
+	    }
+	    int[] bytesStack = new int[script.length+1]; //negative for groups without a PMap
+	    int depth = 0;
+	    int min = Integer.MAX_VALUE;
+	    int i = 0;
+	    while (i<script.length) {
+	        int token = script[i++];
+	        int type = TokenBuilder.extractType(token);
+	        int oper = TokenBuilder.extractOper(token);
+	        if (TypeMask.Group == type) {
+	            if (0 == (oper & OperatorMask.Group_Bit_Close)) {
+	                //templates always open a PMap holding the template id bit and then write the id
+	                bytesStack[++depth] = 0 != (oper & OperatorMask.Group_Bit_Templ) ? 2 : 
+	                                     (0 != (oper & OperatorMask.Group_Bit_PMap) ? 1 : -1);
+	            } else if (depth>0) {
+	                if (bytesStack[depth]>0) {
+	                    min = Math.min(min, bytesStack[depth]);
+	                }
+	                depth--;
+	            }
+	        } else if (depth>0 && bytesStack[depth]>0 && (0 == (type & 0x10) || TypeMask.GroupLength == type)) {
+	            if (OperatorMask.Field_None == oper || OperatorMask.Field_Delta == oper) {
+	                bytesStack[depth]++;
+	            }
+	        }
+	    }
+	    return Integer.MAX_VALUE==min ? PrimitiveWriter.DEFAULT_MIN_PMAP_GROUP_BYTES : min;
+	}
+
+	/**
+	 * Builds a PrimitiveWriter with its PMap bookkeeping sized for the templates in this catalog.
+	 */
+	public static PrimitiveWriter buildPrimitiveWriter(int bufferSize, FASTOutput output, boolean minimizeLatency, TemplateCatalogConfig catalog) {
+	    return new PrimitiveWriter(bufferSize, output, minimizeLatency, catalog.getMaxGroupDepth(), minPMapGroupBytes(catalog));
+	}
+
+	/**
+	 * Builds the PrimitiveWriter which serializes a catalog, no PMaps are written so the bookkeeping is the smallest possible.
+	 */
+	public static PrimitiveWriter buildCatalogWriter(int bufferSize, FASTOutput output) {
+	    return new PrimitiveWriter(bufferSize, output, false, 0, bufferSize);
+	}
+
 	public static int maxPMapCountInBytes(TemplateCatalogConfig catalog) {
         return 2 + ((
                       catalog.maxTemplatePMapSize()>catalog.maxNonTemplatePMapSize() ?
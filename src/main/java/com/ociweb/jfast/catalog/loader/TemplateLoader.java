@@ -5,11 +5,20 @@ package com.ociweb.jfast.catalog.loader;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileFilter;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.zip.GZIPOutputStream;
 
 import javax.xml.parsers.ParserConfigurationException;
@@ -20,6 +29,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xml.sax.SAXException;
 
+import com.ociweb.jfast.error.FASTException;
 import com.ociweb.jfast.primitive.FASTOutput;
 import com.ociweb.jfast.primitive.PrimitiveWriter;
 import com.ociweb.jfast.primitive.adapter.FASTOutputStream;
@@ -67,8 +77,11 @@ public class TemplateLoader {
 
         ClientConfig clientConfig = new ClientConfig(21,20); //TODO: B, load from file or args?
         
+        boolean compress = !Arrays.asList(args).contains("-uncompressed");
+        int parseThreads = Arrays.asList(args).contains("-parallel") ? Runtime.getRuntime().availableProcessors() : 1;
+        
         try {
-            buildCatalog(new FileOutputStream(catalog), source, clientConfig);
+            buildCatalog(new FileOutputStream(catalog), source, clientConfig, compress, parseThreads);
         } catch (Exception e) {
             e.printStackTrace();
             System.exit(BUILDING_EXCEPTION);
@@ -77,6 +90,24 @@ public class TemplateLoader {
 
     public static void buildCatalog(OutputStream outputStream, String source, ClientConfig clientConfig) throws ParserConfigurationException,
             SAXException, IOException {
+        buildCatalog(outputStream, source, clientConfig, true);
+    }
+    
+    /**
+     * @param compress false to write the uncompressed format which loads faster and can be memory mapped, see TemplateCatalogConfig.UNCOMPRESSED_MAGIC
+     */
+    public static void buildCatalog(OutputStream outputStream, String source, ClientConfig clientConfig, boolean compress) throws ParserConfigurationException,
+            SAXException, IOException {
+        buildCatalog(outputStream, source, clientConfig, compress, 1);
+    }
+    
+    /**
+     * @param compress false to write the uncompressed format which loads faster and can be memory mapped, see TemplateCatalogConfig.UNCOMPRESSED_MAGIC
+     * @param parseThreads when the source is a folder its files are parsed on this many threads. The catalog is
+     *                     identical for any thread count because files are always added in file name order.
+     */
+    public static void buildCatalog(OutputStream outputStream, String source, ClientConfig clientConfig, boolean compress, int parseThreads) throws ParserConfigurationException,
+            SAXException, IOException {
         log.trace("source file:{}",source);               
         InputStream sourceInputStream = TemplateLoader.class.getResourceAsStream(source);     
         
@@ -88,8 +119,8 @@ public class TemplateLoader {
             }        
         }
         
-        GZIPOutputStream gZipOutputStream = new GZIPOutputStream(outputStream);
-		FASTOutput output = new FASTOutputStream(gZipOutputStream);
+        OutputStream targetStream = catalogStream(outputStream, compress);
+		FASTOutput output = new FASTOutputStream(targetStream);
 		TemplateHandler handler = new TemplateHandler();   
 		
 		
@@ -98,16 +129,78 @@ public class TemplateLoader {
 		if (null!= sourceInputStream) {
 		    sp.parse(sourceInputStream, handler);   
 		} else {
-		    for (File f : folder.listFiles()) {
-		        if (f.isFile()) {
+		    File[] files = templateFiles(folder);
+		    if (parseThreads<=1 || files.length<=1) {
+		        for (File f : files) {
 		            sp.parse(f, handler);
 		        }
+		    } else {
+		        parseParallel(files, spfac, handler, parseThreads);
 		    }
 		}
 		
-		PrimitiveWriter writer = new PrimitiveWriter(4096, output, false);
+		PrimitiveWriter writer = TemplateCatalogConfig.buildCatalogWriter(4096, output);
 		TemplateCatalogConfig.writeTemplateCatalog(handler, clientConfig.getBytesGap(), clientConfig.getBytesLength(), writer, clientConfig);
-		gZipOutputStream.close();
+		targetStream.close();
+    }
+    
+    private static File[] templateFiles(File folder) {
+        File[] files = folder.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File f) {
+                return f.isFile();
+            }});
+        //listFiles has no defined order, sort so the catalog bytes and hash do not depend on the file system 
+        Arrays.sort(files);
+        return files;
+    }
+    
+    /**
+     * Each file is parsed on its own thread into a recording then the recordings are replayed into the
+     * handler in file order, so the handler sees exactly the events of a single threaded parse.
+     * 
+     * Neither the factory nor the parsers are thread safe, so one parser per file is built here on the calling thread.
+     */
+    private static void parseParallel(File[] files, SAXParserFactory spfac, TemplateHandler handler, int parseThreads) throws SAXException, IOException, ParserConfigurationException {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parseThreads, files.length));
+        try {
+            List<Future<SAXEventRecorder>> parsed = new ArrayList<Future<SAXEventRecorder>>(files.length);
+            for (final File f : files) {
+                final SAXParser parser = spfac.newSAXParser();
+                parsed.add(executor.submit(new Callable<SAXEventRecorder>() {
+                    @Override
+                    public SAXEventRecorder call() throws Exception {
+                        SAXEventRecorder recorder = new SAXEventRecorder();
+                        parser.parse(f, recorder);
+                        return recorder;
+                    }}));
+            }
+            for (Future<SAXEventRecorder> future : parsed) {
+                SAXEventRecorder.replay(future.get(), handler);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FASTException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SAXException) {
+                throw (SAXException)cause;
+            }
+            if (cause instanceof IOException) {
+                throw (IOException)cause;
+            }
+            throw new FASTException(cause);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    private static OutputStream catalogStream(OutputStream outputStream, boolean compress) throws IOException {
+        if (compress) {
+            return new GZIPOutputStream(outputStream);
+        }
+        outputStream.write(TemplateCatalogConfig.UNCOMPRESSED_MAGIC);
+        return outputStream;
     }
 
 	public static void buildCatalog(OutputStream outputStream,
@@ -123,7 +216,7 @@ public class TemplateLoader {
 
 		sp.parse(inputStream, handler);
 
-		PrimitiveWriter writer = new PrimitiveWriter(4096, output, false);
+		PrimitiveWriter writer = TemplateCatalogConfig.buildCatalogWriter(4096, output);
 		TemplateCatalogConfig.writeTemplateCatalog(handler, clientConfig.getBytesGap(), clientConfig.getBytesLength(), writer, clientConfig);
 		gZipOutputStream.close();
 	}
@@ -138,6 +231,8 @@ public class TemplateLoader {
         System.out.println("Arguments:");
         System.out.println("          -s or -source       full path to xml template or folder of templates.");
         System.out.println("          -c or -catalog      full path to catalog file to write over.");
+        System.out.println("          -uncompressed       write the catalog without GZIP so it loads faster.");
+        System.out.println("          -parallel           parse the files of a templates folder on all cores.");
         System.out.println();
     }
 
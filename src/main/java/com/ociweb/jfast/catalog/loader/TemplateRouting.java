@@ -0,0 +1,126 @@
+package com.ociweb.jfast.catalog.loader;
+
+import java.util.Arrays;
+
+import com.ociweb.jfast.error.FASTException;
+
+/**
+ * Assigns templates to dedicated ring buffers so each consumer only reads its own traffic.
+ *
+ * Ring 0 is the default and receives every template which is not routed elsewhere. Each added ring is
+ * sized for the largest fragment of its own templates, see TemplateCatalogConfig.buildRingBuffers(TemplateCatalogConfig, TemplateRouting).
+ *
+ * Routing must be decided before the decoder is built, it can not change while decoding.
+ */
+public class TemplateRouting {
+
+    private static final int MIN_PRIMARY_BITS = 6;
+    private static final int MAX_PRIMARY_BITS = 30;
+
+    private final byte defaultPrimaryBits;
+    private final byte defaultByteBits;
+
+    private int ringCount = 1;
+    private int[] fragmentCapacity = new int[4];
+    private byte[] byteBits = new byte[4];
+
+    private long[] routedIds = new long[16];
+    private int[] routedRing = new int[16];
+    private int routedCount;
+
+    /**
+     * @param defaultPrimaryBits primary ring size of the default ring which holds all templates not routed elsewhere
+     * @param defaultByteBits byte ring size of the default ring
+     */
+    public TemplateRouting(byte defaultPrimaryBits, byte defaultByteBits) {
+        this.defaultPrimaryBits = defaultPrimaryBits;
+        this.defaultByteBits = defaultByteBits;
+    }
+
+    /**
+     * Adds a ring shared by the given templates.
+     *
+     * @param fragmentCapacity count of the largest fragment of these templates the ring must hold without blocking the decoder
+     * @param byteBits byte ring size for the text and byte array fields of these templates
+     * @param templateIds
+     * @return index of the new ring in TemplateCatalogConfig.buildRingBuffers order
+     */
+    public int addRing(int fragmentCapacity, byte byteBits, long ... templateIds) {
+        if (fragmentCapacity<1) {
+            throw new FASTException("Ring must hold at least one fragment");
+        }
+        int ring = ringCount++;
+        if (ring==this.fragmentCapacity.length) {
+            this.fragmentCapacity = Arrays.copyOf(this.fragmentCapacity, ring*2);
+            this.byteBits = Arrays.copyOf(this.byteBits, ring*2);
+        }
+        this.fragmentCapacity[ring] = fragmentCapacity;
+        this.byteBits[ring] = byteBits;
+
+        int i = 0;
+        while (i<templateIds.length) {
+            route(templateIds[i++], ring);
+        }
+        return ring;
+    }
+
+    /**
+     * Moves one template onto a ring created by addRing, a template can only be on one ring.
+     */
+    public void route(long templateId, int ring) {
+        if (ring<0 || ring>=ringCount) {
+            throw new FASTException("Unknown ring "+ring);
+        }
+        int i = routedCount;
+        while (--i>=0) {
+            if (routedIds[i]==templateId) {
+                routedRing[i] = ring;
+                return;
+            }
+        }
+        if (routedCount==routedIds.length) {
+            routedIds = Arrays.copyOf(routedIds, routedCount*2);
+            routedRing = Arrays.copyOf(routedRing, routedCount*2);
+        }
+        routedIds[routedCount] = templateId;
+        routedRing[routedCount++] = ring;
+    }
+
+    public static int ringCount(TemplateRouting routing) {
+        return routing.ringCount;
+    }
+
+    /**
+     * Ring which receives the template, 0 if it was not routed.
+     */
+    public static int ringFor(long templateId, TemplateRouting routing) {
+        int i = routing.routedCount;
+        while (--i>=0) {
+            if (routing.routedIds[i]==templateId) {
+                return routing.routedRing[i];
+            }
+        }
+        return 0;
+    }
+
+    public static byte byteBits(int ring, TemplateRouting routing) {
+        return 0==ring ? routing.defaultByteBits : routing.byteBits[ring];
+    }
+
+    /**
+     * Smallest primary ring which holds fragmentCapacity fragments of maxFragmentSize ints,
+     * the default ring always uses the size given at construction.
+     */
+    public static byte primaryBits(int ring, int maxFragmentSize, TemplateRouting routing) {
+        if (0==ring) {
+            return routing.defaultPrimaryBits;
+        }
+        long need = ((long)Math.max(1, maxFragmentSize))*routing.fragmentCapacity[ring];
+        int bits = Math.max(MIN_PRIMARY_BITS, 64 - Long.numberOfLeadingZeros(need-1));
+        if (bits>MAX_PRIMARY_BITS) {
+            throw new FASTException("Ring "+ring+" would need "+bits+" bits");
+        }
+        return (byte)bits;
+    }
+
+}
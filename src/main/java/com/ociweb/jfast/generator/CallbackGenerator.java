@@ -0,0 +1,217 @@
+package com.ociweb.jfast.generator;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import com.ociweb.jfast.catalog.loader.TemplateCatalogConfig;
+import com.ociweb.jfast.error.FASTException;
+import com.ociweb.jfast.stream.FASTListener;
+import com.ociweb.jfast.stream.RingCharSequence;
+import com.ociweb.pronghorn.ring.RingBuffer;
+import com.ociweb.pronghorn.ring.token.TokenBuilder;
+import com.ociweb.pronghorn.ring.token.TypeMask;
+
+/**
+ * Writes the source of an abstract FASTListener with one typed callback method for each fragment of the catalog.
+ *
+ * The generated fragment(int, RingBuffer) switches on the fragment start and reads every field at a constant offset
+ * from the fragment, then calls the callback with the values as primitive arguments. Text is passed as a reused
+ * CharSequence view over the byte ring, null when an optional value is absent. Byte arrays are passed as the backing array,
+ * position, length and mask. Decimals are passed as the exponent and the mantissa.
+ *
+ * Combined with FASTReaderReactor.pump(reactor, listener) the fragment is handed to the callback by the decoding thread
+ * as soon as it is decoded so the values are still in cache and no other thread takes part.
+ *
+ * Usage: CallbackGenerator catalogFile packageName className [sourceFolder]
+ */
+public class CallbackGenerator {
+
+    public static <T extends Appendable> T generate(byte[] catBytes, String packageName, String className, T target) throws IOException {
+        FragmentLayout[] fragments = FragmentLayout.build(TemplateCatalogConfig.shared(catBytes));
+
+        if (null!=packageName && packageName.length()>0) {
+            target.append("package ").append(packageName).append(";\n\n");
+        }
+        target.append("import ").append(FASTListener.class.getCanonicalName()).append(";\n");
+        target.append("import ").append(RingCharSequence.class.getCanonicalName()).append(";\n");
+        target.append("import ").append(RingBuffer.class.getCanonicalName()).append(";\n");
+        target.append("\n");
+        target.append("/**\n * Generated by ").append(CallbackGenerator.class.getSimpleName()).append(", do not edit.\n */\n");
+        target.append("public abstract class ").append(className).append(" implements ").append(FASTListener.class.getSimpleName()).append(" {\n\n");
+
+        int f = 0;
+        while (f<fragments.length) {
+            FragmentLayout fragment = fragments[f++];
+            int i = 0;
+            while (i<fragment.fieldCount) {
+                if (isText(TokenBuilder.extractType(fragment.tokens[i]))) {
+                    target.append("    private final RingCharSequence ").append(viewName(fragment, i)).append(" = new RingCharSequence();\n");
+                }
+                i++;
+            }
+        }
+        target.append("\n");
+
+        target.append("    @Override\n");
+        target.append("    public void fragment(int msgIdx, RingBuffer rb) {\n");
+        target.append("        switch (rb.ringWalker.cursor) {\n");
+        f = 0;
+        while (f<fragments.length) {
+            FragmentLayout fragment = fragments[f++];
+            target.append("            case ").append(Integer.toString(fragment.cursor)).append(": ")
+                  .append(readMethodName(fragment)).append("(rb); break;\n");
+        }
+        target.append("        }\n");
+        target.append("    }\n\n");
+
+        target.append("    @Override\n");
+        target.append("    public void fragment() {\n");
+        target.append("    }\n\n");
+
+        f = 0;
+        while (f<fragments.length) {
+            appendReadMethod(fragments[f++], target);
+        }
+
+        target.append("    private static CharSequence text(RingCharSequence view, int fieldPos, boolean utf8, RingBuffer rb) {\n");
+        target.append("        int length = RingBuffer.readRingByteLen(fieldPos, rb.buffer, rb.mask, rb.workingTailPos);\n");
+        target.append("        if (length<0) {\n");
+        target.append("            return null;\n");
+        target.append("        }\n");
+        target.append("        int rawPos = RingBuffer.readValue(fieldPos, rb.buffer, rb.mask, rb.workingTailPos.value);\n");
+        target.append("        byte[] buffer = RingBuffer.byteBackingArray(rawPos, rb);\n");
+        target.append("        int bytePos = RingBuffer.bytePositionGen(rawPos, rb, length);\n");
+        target.append("        return utf8 ? view.setUTF8(buffer, bytePos, rb.byteMask, length) : view.set(buffer, bytePos, rb.byteMask, length);\n");
+        target.append("    }\n\n");
+
+        f = 0;
+        while (f<fragments.length) {
+            appendCallback(fragments[f++], target);
+        }
+
+        target.append("}\n");
+        return target;
+    }
+
+    private static void appendReadMethod(FragmentLayout fragment, Appendable target) throws IOException {
+        target.append("    private void ").append(readMethodName(fragment)).append("(RingBuffer rb) {\n");
+        target.append("        int[] b = rb.buffer;\n");
+        target.append("        int m = rb.mask;\n");
+        target.append("        long p = rb.workingTailPos.value;\n");
+        int i = 0;
+        while (i<fragment.fieldCount) {
+            if (isByteArray(TokenBuilder.extractType(fragment.tokens[i]))) {
+                String pos = Integer.toString(fragment.offsets[i]);
+                target.append("        int rawPos").append(Integer.toString(i)).append(" = RingBuffer.readValue(").append(pos).append(", b, m, p);\n");
+                target.append("        int length").append(Integer.toString(i)).append(" = RingBuffer.readRingByteLen(").append(pos).append(", b, m, rb.workingTailPos);\n");
+            }
+            i++;
+        }
+        target.append("        ").append(callbackName(fragment)).append("(");
+        i = 0;
+        while (i<fragment.fieldCount) {
+            if (i>0) {
+                target.append(",\n            ");
+            }
+            String pos = Integer.toString(fragment.offsets[i]);
+            int type = TokenBuilder.extractType(fragment.tokens[i]);
+            if (isText(type)) {
+                target.append("text(").append(viewName(fragment, i)).append(", ").append(pos).append(", ")
+                      .append(Boolean.toString(isUTF8(type))).append(", rb)");
+            } else if (isByteArray(type)) {
+                String n = Integer.toString(i);
+                target.append("RingBuffer.byteBackingArray(rawPos").append(n).append(", rb), ")
+                      .append("RingBuffer.bytePositionGen(rawPos").append(n).append(", rb, length").append(n).append("), ")
+                      .append("length").append(n).append(", rb.byteMask");
+            } else if (isDecimal(type)) {
+                target.append("RingBuffer.readInt(b, m, p+").append(pos).append("), RingBuffer.readLong(b, m, p+").append(Integer.toString(fragment.offsets[i]+1)).append(")");
+            } else if (isLong(type)) {
+                target.append("RingBuffer.readLong(b, m, p+").append(pos).append(")");
+            } else {
+                target.append("RingBuffer.readInt(b, m, p+").append(pos).append(")");
+            }
+            i++;
+        }
+        target.append(");\n");
+        target.append("    }\n\n");
+    }
+
+    private static void appendCallback(FragmentLayout fragment, Appendable target) throws IOException {
+        target.append("    /**\n     * ").append(fragment.isMessage ? "Template " : "Fragment of template ")
+              .append(Long.toString(fragment.templateId)).append(", script position ").append(Integer.toString(fragment.cursor)).append("\n     */\n");
+        target.append("    protected abstract void ").append(callbackName(fragment)).append("(");
+        int i = 0;
+        while (i<fragment.fieldCount) {
+            if (i>0) {
+                target.append(", ");
+            }
+            String name = fragment.names[i];
+            int type = TokenBuilder.extractType(fragment.tokens[i]);
+            if (isText(type)) {
+                target.append("CharSequence ").append(name);
+            } else if (isByteArray(type)) {
+                target.append("byte[] ").append(name).append(", int ").append(name).append("Position, int ")
+                      .append(name).append("Length, int ").append(name).append("Mask");
+            } else if (isDecimal(type)) {
+                target.append("int ").append(name).append("Exponent, long ").append(name).append("Mantissa");
+            } else if (isLong(type)) {
+                target.append("long ").append(name);
+            } else {
+                target.append("int ").append(name);
+            }
+            i++;
+        }
+        target.append(");\n\n");
+    }
+
+    static String callbackName(FragmentLayout fragment) {
+        return "on"+fragment.name;
+    }
+
+    private static String readMethodName(FragmentLayout fragment) {
+        return "read"+fragment.name;
+    }
+
+    private static String viewName(FragmentLayout fragment, int field) {
+        return FragmentLayout.identifier(fragment.name, "fragment", false)+FragmentLayout.identifier(fragment.names[field], "text", true);
+    }
+
+    static boolean isUTF8(int type) {
+        return TypeMask.TextUTF8==type || TypeMask.TextUTF8Optional==type;
+    }
+
+    static boolean isText(int type) {
+        return TypeMask.TextASCII==type || TypeMask.TextASCIIOptional==type || TypeMask.TextUTF8==type || TypeMask.TextUTF8Optional==type;
+    }
+
+    static boolean isByteArray(int type) {
+        return TypeMask.ByteArray==type || TypeMask.ByteArrayOptional==type;
+    }
+
+    static boolean isDecimal(int type) {
+        return TypeMask.Decimal==type || TypeMask.DecimalOptional==type;
+    }
+
+    static boolean isLong(int type) {
+        return TypeMask.LongUnsigned==type || TypeMask.LongUnsignedOptional==type || TypeMask.LongSigned==type || TypeMask.LongSignedOptional==type;
+    }
+
+    public static void main(String[] args) {
+        if (args.length<3) {
+            System.err.println("Usage: CallbackGenerator catalogFile packageName className [sourceFolder]");
+            return;
+        }
+        try {
+            byte[] catBytes = GeneratorUtils.readCatalog(args[0]);
+            Writer output = GeneratorUtils.sourceWriter(args[1], args[2], args.length>3 ? args[3] : null);
+            try {
+                generate(catBytes, args[1], args[2], output);
+            } finally {
+                output.close();
+            }
+        } catch (IOException e) {
+            throw new FASTException(e);
+        }
+    }
+
+}
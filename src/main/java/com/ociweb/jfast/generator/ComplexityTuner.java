@@ -0,0 +1,123 @@
+package com.ociweb.jfast.generator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ociweb.jfast.catalog.loader.TemplateCatalogConfig;
+import com.ociweb.jfast.error.FASTException;
+import com.ociweb.jfast.primitive.PrimitiveReader;
+import com.ociweb.jfast.primitive.PrimitiveWriter;
+import com.ociweb.jfast.primitive.adapter.FASTInputByteArray;
+import com.ociweb.jfast.primitive.adapter.FASTOutputTotals;
+import com.ociweb.jfast.stream.FASTDecoder;
+import com.ociweb.jfast.stream.FASTDynamicWriter;
+import com.ociweb.jfast.stream.FASTEncoder;
+import com.ociweb.jfast.stream.FASTReaderReactor;
+import com.ociweb.jfast.stream.RingSizing;
+import com.ociweb.pronghorn.ring.RingBuffer;
+import com.ociweb.pronghorn.ring.RingBuffers;
+import com.ociweb.pronghorn.ring.RingReader;
+
+/**
+ * Picks the method complexity budget which runs a catalog fastest on this machine.
+ *
+ * The budget decides how much field logic is packed into each generated method and so how the JIT inlines it,
+ * the best value depends on the templates and the hardware. For each candidate the reader and writer are generated,
+ * compiled and loaded in this VM, then the sample is decoded and encoded again until the timing settles.
+ * The winner is recorded with FASTClassLoader.recordComplexityLimit so every later load of the catalog uses it.
+ *
+ * Only the fragments which change with the budget are compiled again, see FASTClassLoader.
+ */
+public final class ComplexityTuner {
+
+    private static final Logger log = LoggerFactory.getLogger(ComplexityTuner.class);
+
+    public static final int[] DEFAULT_BUDGETS = new int[] {16, 20, 24, 28, 32, 40};
+
+    private ComplexityTuner() {
+    }
+
+    public static int tune(byte[] catBytes, byte[] sample) {
+        return tune(catBytes, sample, DEFAULT_BUDGETS, 10, 20);
+    }
+
+    /**
+     * @param sample FAST stream encoded with this catalog
+     * @param warmup passes over the sample before timing starts for each budget
+     * @param passes timed passes, the fastest is kept for each budget
+     * @return budget which was recorded for the catalog, if a measurement fails the previous budget is recorded again
+     */
+    public static int tune(byte[] catBytes, byte[] sample, int[] budgets, int warmup, int passes) {
+        int previous = FASTClassLoader.complexityLimit(catBytes);
+        int bestBudget = previous;
+        long bestNs = Long.MAX_VALUE;
+        boolean finished = false;
+        try {
+            int i = 0;
+            while (i<budgets.length) {
+                int budget = budgets[i++];
+                FASTClassLoader.recordComplexityLimit(catBytes, budget);
+                long ns;
+                try {
+                    ns = measure(catBytes, sample, warmup, passes);
+                } catch (ReflectiveOperationException e) {
+                    throw new FASTException(e);
+                }
+                log.info("Complexity budget {} fastest pass {}ns", budget, ns);
+                if (ns<bestNs) {
+                    bestNs = ns;
+                    bestBudget = budget;
+                }
+            }
+            finished = true;
+        } finally {
+            FASTClassLoader.recordComplexityLimit(catBytes, finished ? bestBudget : previous);
+        }
+        return bestBudget;
+    }
+
+    /**
+     * Fastest time to decode the sample with the generated reader and encode it again with the generated writer.
+     */
+    static long measure(byte[] catBytes, byte[] sample, int warmup, int passes) throws ReflectiveOperationException {
+        TemplateCatalogConfig catalog = TemplateCatalogConfig.shared(catBytes);
+        RingBuffers ringBuffers = RingSizing.buildRingBuffers(catalog, RingSizing.SCRATCH_BURST_FRAGMENTS, null);
+        FASTDecoder decoder = DispatchLoader.loadGeneratedReaderDispatch(catBytes, FASTClassLoader.READER, ringBuffers);
+        FASTEncoder encoder = DispatchLoader.loadGeneratedWriterDispatch(catBytes, FASTClassLoader.WRITER);
+
+        FASTInputByteArray input = new FASTInputByteArray(sample);
+        PrimitiveReader reader = new PrimitiveReader(4096, input, decoder.maxPMapCountInBytes);
+        FASTReaderReactor reactor = new FASTReaderReactor(decoder, reader);
+        RingBuffer ring = RingBuffers.get(ringBuffers, 0);
+
+        PrimitiveWriter writer = TemplateCatalogConfig.buildPrimitiveWriter(4096, new FASTOutputTotals(), false, catalog);
+        FASTDynamicWriter dynamicWriter = new FASTDynamicWriter(writer, ring, encoder);
+
+        long best = Long.MAX_VALUE;
+        int pass = warmup+passes;
+        while (--pass>=0) {
+            long start = System.nanoTime();
+            boolean more = true;
+            while (more) {
+                more = FASTReaderReactor.pump(reactor)>=0;
+                while (RingReader.tryReadFragment(ring)) {
+                    if (RingReader.getMsgIdx(ring.ringWalker)>=0) {
+                        FASTDynamicWriter.write(dynamicWriter);
+                    }
+                }
+            }
+            PrimitiveWriter.flush(writer);
+            long duration = System.nanoTime()-start;
+            if (pass<passes) {
+                best = Math.min(best, duration);
+            }
+
+            input.reset();
+            PrimitiveReader.reset(reader);
+            FASTDecoder.reset(catalog.dictionaryFactory(), decoder);
+            dynamicWriter.reset(true);
+        }
+        return best;
+    }
+
+}
@@ -44,7 +44,7 @@ public class DispatchLoader {
     }
     
     public static FASTEncoder loadDispatchWriterDebug(byte[] catBytes) {
-		return new FASTWriterInterpreterDispatch(new TemplateCatalogConfig(catBytes));
+		return new FASTWriterInterpreterDispatch(TemplateCatalogConfig.shared(catBytes));
     }
     
     public static <T> T loadGeneratedReaderDispatch(byte[] catBytes, String type, RingBuffers ringBuffers)
@@ -58,7 +58,8 @@ public class DispatchLoader {
             int[] catHash = (int[])generatedClass.getField("hashedCat").get(null);
             int[] expectedHash = GeneratorData.hashCatBytes(catBytes);
             
-            if (!Arrays.equals(catHash, expectedHash)) {
+            if (!Arrays.equals(catHash, expectedHash) || GeneratorUtils.REMOVE_ARRAY!=generatedClass.getField("removeArray").getBoolean(null)
+                || FASTClassLoader.complexityLimit(catBytes)!=generatedClass.getField("complexityLimit").getInt(null)) {
             	log.trace("Catalog mistmatch, attempting source regeneration and recompile.");
                 //the templates catalog this was generated for does not match the current value so force a recompile
                 generatedClass = new FASTClassLoader(catBytes, parentClassLoader, FORCE_COMPILE).loadClass(type);
@@ -69,7 +70,8 @@ public class DispatchLoader {
         } catch (Throwable t) {
         	log.error("Error in creating instance, attempting source regeneration and recompile.", t);
             //can not create instance because the class is no longer compatible with the rest of the code base so force a recompile
-            Class generatedClass = new FASTClassLoader(catBytes, parentClassLoader, FORCE_COMPILE).loadClass(type);
+            //of everything, fragments on disk may have been compiled against the old code base as well
+            Class generatedClass = new FASTClassLoader(catBytes, parentClassLoader, FORCE_COMPILE, false).loadClass(type);
             return (T)generatedClass.getConstructor(catBytes.getClass(), ringBuffers.getClass()).newInstance(catBytes, ringBuffers);
         }
     }
@@ -85,7 +87,8 @@ public class DispatchLoader {
             int[] catHash = (int[])generatedClass.getField("hashedCat").get(null);
             int[] expectedHash = GeneratorData.hashCatBytes(catBytes);
             
-            if (!Arrays.equals(catHash, expectedHash)) {
+            if (!Arrays.equals(catHash, expectedHash) || GeneratorUtils.REMOVE_ARRAY!=generatedClass.getField("removeArray").getBoolean(null)
+                || FASTClassLoader.complexityLimit(catBytes)!=generatedClass.getField("complexityLimit").getInt(null)) {
             	log.trace("Catalog mistmatch, attempting source regeneration and recompile.");
                 //the templates catalog this was generated for does not match the current value so force a recompile
                 generatedClass = new FASTClassLoader(catBytes, parentClassLoader, FORCE_COMPILE).loadClass(type);
@@ -96,7 +99,8 @@ public class DispatchLoader {
         } catch (Throwable t) {
         	log.trace("Error in creating instance, attempting source regeneration and recompile.", t);
             //can not create instance because the class is no longer compatible with the rest of the code base so force a recompile
-            Class generatedClass = new FASTClassLoader(catBytes, parentClassLoader, FORCE_COMPILE).loadClass(type);
+            //of everything, fragments on disk may have been compiled against the old code base as well
+            Class generatedClass = new FASTClassLoader(catBytes, parentClassLoader, FORCE_COMPILE, false).loadClass(type);
             return (T)generatedClass.getConstructor(catBytes.getClass()).newInstance(catBytes);
         }
     }
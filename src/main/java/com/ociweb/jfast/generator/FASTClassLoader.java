@@ -1,13 +1,17 @@
 package com.ociweb.jfast.generator;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import javax.lang.model.SourceVersion;
 import javax.tools.Diagnostic;
@@ -37,7 +41,17 @@ import com.ociweb.pronghorn.ring.util.hash.IntHashTable;
         final byte[] catBytes;// serialized catalog for the desired templates XML
         final boolean forceCompile;
         final boolean exportSource;
+        final boolean reuseFragments;
         public static boolean fullCompiled = false;
+        private static int[] fullCompiledHash; //catalog of the last full compile done by this VM
+        private static int fullCompiledLimit; //and the complexity budget it was generated with
+        static List<String> lastCompiledFragments = new ArrayList<String>(); //fragment classes compiled by the last compile
+        static int lastReusedFragments; //and the number found on disk instead
+
+        //tuned budgets by complexity file name, so each catalog is hashed and read from disk once
+        private static final Map<String,Integer> complexityLimits = new HashMap<String,Integer>();
+        private static byte[] lastLimitCatBytes; //compared by reference, skips the hash for the catalog asked for last
+        private static int lastLimit;
         
         static final File workingFolder = new File(new File(System.getProperty("java.io.tmpdir")),"jFAST");
         static {
@@ -49,11 +63,21 @@ import com.ociweb.pronghorn.ring.util.hash.IntHashTable;
         }
         
         public FASTClassLoader(byte[] catBytes, ClassLoader parent, boolean forceCompile) {
+            this(catBytes, parent, forceCompile, true);
+        }
+        
+        /**
+         * @param reuseFragments when true fragment classes already on disk are not compiled again. Their names
+         *                       are built from the hash of their source and of the library classes they call,
+         *                       so only the fragments of changed templates are compiled.
+         */
+        public FASTClassLoader(byte[] catBytes, ClassLoader parent, boolean forceCompile, boolean reuseFragments) {
             super(parent);
             this.catBytes = catBytes;
             this.exportSource = Boolean.getBoolean("FAST.exportSource");
             this.forceCompile = forceCompile | exportSource | Boolean.getBoolean("FAST.forceCompile");
-            log.trace("Created new FASTClassLoader forceCompile:"+forceCompile+" exportSource:"+exportSource);
+            this.reuseFragments = reuseFragments && !Boolean.getBoolean("FAST.forceCompile");
+            log.trace("Created new FASTClassLoader forceCompile:"+forceCompile+" exportSource:"+exportSource+" reuseFragments:"+this.reuseFragments);
             
         }        
         
@@ -72,7 +96,8 @@ import com.ociweb.pronghorn.ring.util.hash.IntHashTable;
             File classFile = targetFile(simpleClassName, "class");
             
             //CAUTION: only use force compile when you need deep testing it can be very slow.
-            if ((fullCompiled || !forceCompile) && classFile.exists()) {
+            if (((fullCompiled && Arrays.equals(fullCompiledHash, GeneratorData.hashCatBytes(catBytes)) && fullCompiledLimit==complexityLimit(catBytes))
+                 || !forceCompile) && classFile.exists()) {
                 log.trace("Reading class from: {}",classFile);
                 
                 byte[] classData = readClassBytes(classFile);
@@ -87,7 +112,8 @@ import com.ociweb.pronghorn.ring.util.hash.IntHashTable;
                 log.trace("Compile class to: {}",classFile);
                 
                 List<String> optionList = new ArrayList<String>();
-                optionList.addAll(Arrays.asList("-classpath", System.getProperty("java.class.path"),
+                //the working folder is on the class path so reused fragment classes are found by the compiler
+                optionList.addAll(Arrays.asList("-classpath", System.getProperty("java.class.path")+File.pathSeparator+workingFolder,
                                                 "-d", workingFolder.toString(),
                                                 "-target","1.6",
                                                 "-source","1.6"
@@ -96,7 +122,7 @@ import com.ociweb.pronghorn.ring.util.hash.IntHashTable;
                 List<JavaFileObject> toCompile = new ArrayList<JavaFileObject>();
 
                 {//scoped to help GC 
-                	FASTReaderDispatchGenerator readGenerator = new FASTReaderDispatchGenerator(catBytes, toCompile, TemplateCatalogConfig.buildRingBuffers(new TemplateCatalogConfig(catBytes), (byte)8, (byte)18));
+                	FASTReaderDispatchGenerator readGenerator = new FASTReaderDispatchGenerator(catBytes, toCompile, TemplateCatalogConfig.buildRingBuffers(TemplateCatalogConfig.shared(catBytes), (byte)8, (byte)18));
                 	SimpleSourceFileObject sourceReaderFileObject = new SimpleSourceFileObject(FASTClassLoader.SIMPLE_READER_NAME,
                 													   						   readGenerator.generateFullSource(new StringBuilder()));
                 	toCompile.add(sourceReaderFileObject);
@@ -104,12 +130,11 @@ import com.ociweb.pronghorn.ring.util.hash.IntHashTable;
                 }
                 
                 {//scoped to help GC
-                	FASTWriterDispatchGenerator writeGenerator = new FASTWriterDispatchGenerator(catBytes, new TemplateCatalogConfig(catBytes), toCompile);
+                	FASTWriterDispatchGenerator writeGenerator = new FASTWriterDispatchGenerator(catBytes, TemplateCatalogConfig.shared(catBytes), toCompile);
                 	SimpleSourceFileObject sourceWriterFileObject = new SimpleSourceFileObject(FASTClassLoader.SIMPLE_WRITER_NAME,
 									             										       writeGenerator.generateFullSource(new StringBuilder()));
 					toCompile.add(sourceWriterFileObject);
                 }
-                System.err.println("Begin full compile of "+toCompile.size()+" files");
                 
                 if (exportSource) {
                 	for(JavaFileObject jfo:toCompile) {
@@ -120,14 +145,33 @@ import com.ociweb.pronghorn.ring.util.hash.IntHashTable;
                         }	                		
                 	}
                 }
+                
+                int generated = toCompile.size();
+                List<String> compiledFragments = new ArrayList<String>();
+                Iterator<JavaFileObject> iter = toCompile.iterator();
+                while (iter.hasNext()) {
+                    String fileName = iter.next().getName();
+                    if (!SIMPLE_READER_NAME.equals(fileName) && !SIMPLE_WRITER_NAME.equals(fileName)) {
+                        if (reuseFragments && targetFile(fileName, "class").exists()) {
+                            iter.remove();
+                        } else {
+                            compiledFragments.add(fileName);
+                        }
+                    }
+                }
+                lastCompiledFragments = compiledFragments;
+                lastReusedFragments = generated-toCompile.size();
+                System.err.println("Begin compile of "+toCompile.size()+" files, "+(generated-toCompile.size())+" unchanged fragments reused");
                 DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
                 
                 
                 if (compiler.getTask(null, null, diagnostics, optionList, null, toCompile).call()) {
                     byte[] classData = readClassBytes(classFile);
                     Class result =  defineClass(name, classData , 0, classData.length);
+                    fullCompiledHash = GeneratorData.hashCatBytes(catBytes);
+                    fullCompiledLimit = complexityLimit(catBytes);
                     fullCompiled = true; //only set after success
-                    System.err.println("Finished full compile");
+                    System.err.println("Finished compile");
                     return result;
                 } else {
                     reportCompileError(diagnostics.getDiagnostics());      
@@ -180,6 +224,65 @@ import com.ociweb.pronghorn.ring.util.hash.IntHashTable;
 		    }
 		}
 
+		/**
+		 * Method complexity budget to generate this catalog with, as recorded by ComplexityTuner.
+		 * GeneratorUtils.COMPLEXITY_LIMITY_PER_METHOD is used when the catalog has not been tuned.
+		 * The value is cached, a budget recorded by another VM is only seen after this one restarts.
+		 */
+		public static synchronized int complexityLimit(byte[] catBytes) {
+		    if (catBytes==lastLimitCatBytes) {
+		        return lastLimit;
+		    }
+		    File file = complexityFile(catBytes);
+		    Integer limit = complexityLimits.get(file.getName());
+		    if (null==limit) {
+		        limit = Integer.valueOf(readComplexityLimit(file));
+		        complexityLimits.put(file.getName(), limit);
+		    }
+		    lastLimitCatBytes = catBytes;
+		    lastLimit = limit.intValue();
+		    return lastLimit;
+		}
+
+		private static int readComplexityLimit(File file) {
+		    if (file.exists()) {
+		        try {
+		            BufferedReader reader = new BufferedReader(new FileReader(file));
+		            try {
+		                return Integer.parseInt(reader.readLine().trim());
+		            } finally {
+		                reader.close();
+		            }
+		        } catch (Exception e) {
+		            log.warn("Unable to read tuned complexity from {}", file);
+		        }
+		    }
+		    return GeneratorUtils.COMPLEXITY_LIMITY_PER_METHOD;
+		}
+
+		/**
+		 * Records the budget used the next time this catalog is generated. Already loaded dispatch classes
+		 * are not changed, the loader rebuilds them because their recorded budget no longer matches.
+		 */
+		public static synchronized void recordComplexityLimit(byte[] catBytes, int limit) {
+		    File file = complexityFile(catBytes);
+		    try {
+		        FileWriter out = new FileWriter(file);
+		        out.write(Integer.toString(limit));
+		        out.close();
+		    } catch (IOException e) {
+		        throw new FASTException(e);
+		    }
+		    complexityLimits.put(file.getName(), Integer.valueOf(limit));
+		    lastLimitCatBytes = catBytes;
+		    lastLimit = limit;
+		}
+
+		private static File complexityFile(byte[] catBytes) {
+		    int[] hash = GeneratorData.hashCatBytes(catBytes);
+		    return new File(workingFolder, "complexity"+Integer.toHexString(hash[0])+Integer.toHexString(hash[1])+".txt");
+		}
+
 		private static File targetFile(String name, String ext) {
             return new File(workingFolder,GENERATED_PACKAGE.replace('.', File.separatorChar)+File.separatorChar+name+"."+ext);
         }
@@ -190,6 +293,18 @@ import com.ociweb.pronghorn.ring.util.hash.IntHashTable;
             
             targetFile(SIMPLE_WRITER_NAME,"class").delete();
             targetFile(SIMPLE_WRITER_NAME,"java").delete(); 
+            
+            //fragment classes of every catalog generated so far
+            File[] files = targetFile(SIMPLE_READER_NAME,"class").getParentFile().listFiles();
+            if (null!=files) {
+                int i = files.length;
+                while (--i>=0) {
+                    String fileName = files[i].getName();
+                    if (fileName.startsWith(SIMPLE_READER_NAME) || fileName.startsWith(SIMPLE_WRITER_NAME)) {
+                        files[i].delete();
+                    }
+                }
+            }
         }
         
 
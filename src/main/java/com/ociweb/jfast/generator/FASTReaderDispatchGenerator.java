@@ -38,7 +38,7 @@ public class FASTReaderDispatchGenerator extends FASTReaderInterpreterDispatch {
                 
         try {
 	        GeneratorUtils.generateHead(generatorData, target, FASTClassLoader.SIMPLE_READER_NAME, FASTDecoder.class.getSimpleName());
-	        GeneratorUtils.buildGroupMethods(new TemplateCatalogConfig(generatorData.origCatBytes),doneScripts,doneScriptsParas,target, this, generatorData, alsoCompileTarget);       
+	        GeneratorUtils.buildGroupMethods(TemplateCatalogConfig.shared(generatorData.origCatBytes),doneScripts,doneScriptsParas,target, this, generatorData, alsoCompileTarget);       
 	        GeneratorUtils.buildEntryDispatchMethod(prembleBytes,doneScripts,doneScriptsParas,target,ENTRY_METHOD_NAME, PrimitiveReader.class,generatorData);
 	        GeneratorUtils.generateTail(generatorData, target);
         } catch (IOException ioex) {
@@ -437,7 +437,7 @@ public class FASTReaderDispatchGenerator extends FASTReaderInterpreterDispatch {
     }
     
     @Override
-    protected void genReadASCIICopy(int idx, int rbMask, int[] rbB, PrimitiveReader reader, LocalHeap byteHeap, PaddedLong rbPos, RingBuffer rbRingBuffer) {
+    protected void genReadASCIICopy(int idx, int rbMask, int[] rbB, PrimitiveReader reader, LocalHeap byteHeap, PaddedLong rbPos, RingBuffer rbRingBuffer, int[] textRevisions) {
         GeneratorUtils.generator(new Exception().getStackTrace(),generatorData, this, idx);
     }
     
@@ -462,7 +462,7 @@ public class FASTReaderDispatchGenerator extends FASTReaderInterpreterDispatch {
     }
     
     @Override
-    protected void genReadASCIICopyOptional(int idx, int[] rbB, int rbMask, LocalHeap byteHeap, PrimitiveReader reader, PaddedLong rbPos, RingBuffer rbRingBuffer) {
+    protected void genReadASCIICopyOptional(int idx, int[] rbB, int rbMask, LocalHeap byteHeap, PrimitiveReader reader, PaddedLong rbPos, RingBuffer rbRingBuffer, int[] textRevisions) {
         GeneratorUtils.generator(new Exception().getStackTrace(),generatorData, this, idx);
     }
     
@@ -489,7 +489,7 @@ public class FASTReaderDispatchGenerator extends FASTReaderInterpreterDispatch {
     }
     
     @Override
-    protected void genReadBytesCopy(int idx, int optOff, int[] rbB, int rbMask, LocalHeap byteHeap, PrimitiveReader reader, PaddedLong rbPos, RingBuffer rbRingBuffer) {
+    protected void genReadBytesCopy(int idx, int optOff, int[] rbB, int rbMask, LocalHeap byteHeap, PrimitiveReader reader, PaddedLong rbPos, RingBuffer rbRingBuffer, int[] textRevisions) {
         GeneratorUtils.generator(new Exception().getStackTrace(),generatorData,this, idx, optOff);
     }
     
@@ -526,12 +526,12 @@ public class FASTReaderDispatchGenerator extends FASTReaderInterpreterDispatch {
     // dictionary reset
     
     @Override
-    protected void genReadDictionaryBytesReset(int idx, LocalHeap byteHeap) {
+    protected void genReadDictionaryBytesReset(int idx, LocalHeap byteHeap, int[] textRevisions) {
         GeneratorUtils.generator(new Exception().getStackTrace(),generatorData, this, idx);
     }
     
     @Override
-    protected void genReadDictionaryTextReset(int idx, LocalHeap byteHeap) {
+    protected void genReadDictionaryTextReset(int idx, LocalHeap byteHeap, int[] textRevisions) {
         GeneratorUtils.generator(new Exception().getStackTrace(),generatorData, this, idx);
     }
     
@@ -36,7 +36,7 @@ public class FASTWriterDispatchGenerator extends FASTWriterInterpreterDispatch {
         
         try {
 		    GeneratorUtils.generateHead(generatorData, target, FASTClassLoader.SIMPLE_WRITER_NAME, FASTEncoder.class.getSimpleName());
-		    GeneratorUtils.buildGroupMethods(new TemplateCatalogConfig(generatorData.origCatBytes),doneScripts,doneScriptsParas,target, this, generatorData, alsoCompileTarget);        
+		    GeneratorUtils.buildGroupMethods(TemplateCatalogConfig.shared(generatorData.origCatBytes),doneScripts,doneScriptsParas,target, this, generatorData, alsoCompileTarget);        
 		    GeneratorUtils.buildEntryDispatchMethod(preambleData.length,doneScripts,doneScriptsParas,target,ENTRY_METHOD_NAME, PrimitiveWriter.class, generatorData);
 		    GeneratorUtils.generateTail(generatorData, target);
         }  catch (IOException ioex) {
@@ -0,0 +1,281 @@
+package com.ociweb.jfast.generator;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+import com.ociweb.jfast.catalog.loader.TemplateCatalogConfig;
+import com.ociweb.jfast.error.FASTException;
+import com.ociweb.jfast.stream.FASTReaderReactor;
+import com.ociweb.jfast.stream.RingCharSequence;
+import com.ociweb.jfast.stream.RingDecimal;
+import com.ociweb.jfast.stream.RingText;
+import com.ociweb.jfast.stream.SymbolCache;
+import com.ociweb.jfast.stream.SymbolTable;
+import com.ociweb.pronghorn.ring.FieldReferenceOffsetManager;
+import com.ociweb.pronghorn.ring.RingBuffer;
+import com.ociweb.pronghorn.ring.token.OperatorMask;
+import com.ociweb.pronghorn.ring.token.TokenBuilder;
+import com.ociweb.pronghorn.ring.token.TypeMask;
+
+/**
+ * Writes the source of one flyweight class for each fragment of the catalog, replacing the field lookups
+ * done at runtime by consumers of the ring with accessors that read at constant offsets.
+ *
+ *   while (RingReader.tryReadFragment(rb)) {
+ *       if (Quote.isFragment(rb)) {
+ *           quote.wrap(rb);
+ *           long px = quote.bidPxMantissa();
+ *           quote.symbol(builder);
+ *       }
+ *   }
+ *
+ * wrap must be called after each tryReadFragment, the flyweight is only valid until the next one.
+ * Optional numeric fields hold ABSENT32 or ABSENT64 when no value was sent, optional text and byte arrays
+ * have a negative length.
+ *
+ * Usage: FlyweightGenerator catalogFile packageName sourceFolder
+ */
+public class FlyweightGenerator {
+
+    public static <T extends Appendable> T generate(TemplateCatalogConfig catalog, FragmentLayout fragment, String packageName, T target) throws IOException {
+        FieldReferenceOffsetManager from = catalog.getFROM();
+
+        if (null!=packageName && packageName.length()>0) {
+            target.append("package ").append(packageName).append(";\n\n");
+        }
+        target.append("import ").append(FASTReaderReactor.class.getCanonicalName()).append(";\n");
+        target.append("import ").append(RingCharSequence.class.getCanonicalName()).append(";\n");
+        target.append("import ").append(RingDecimal.class.getCanonicalName()).append(";\n");
+        target.append("import ").append(RingText.class.getCanonicalName()).append(";\n");
+        target.append("import ").append(SymbolCache.class.getCanonicalName()).append(";\n");
+        target.append("import ").append(SymbolTable.class.getCanonicalName()).append(";\n");
+        target.append("import ").append(RingBuffer.class.getCanonicalName()).append(";\n");
+        target.append("\n");
+        target.append("/**\n * Generated by ").append(FlyweightGenerator.class.getSimpleName()).append(", do not edit.\n * ")
+              .append(fragment.isMessage ? "Template " : "Fragment of template ").append(Long.toString(fragment.templateId))
+              .append(", script position ").append(Integer.toString(fragment.cursor)).append("\n */\n");
+        target.append("public final class ").append(fragment.name).append(" {\n\n");
+
+        target.append("    public static final int CURSOR = ").append(Integer.toString(fragment.cursor)).append(";\n");
+        target.append("    public static final long TEMPLATE_ID = ").append(Long.toString(fragment.templateId)).append("L;\n");
+        target.append("    public static final int ABSENT32 = ").append(Integer.toString(FieldReferenceOffsetManager.getAbsent32Value(from))).append(";\n");
+        target.append("    public static final long ABSENT64 = ").append(Long.toString(FieldReferenceOffsetManager.getAbsent64Value(from))).append("L;\n");
+        target.append("\n");
+        target.append("    private RingBuffer rb;\n");
+        target.append("    private int[] b;\n");
+        target.append("    private int m;\n");
+        target.append("    private long p;\n");
+        int i = 0;
+        while (i<fragment.fieldCount) {
+            if (CallbackGenerator.isText(TokenBuilder.extractType(fragment.tokens[i]))) {
+                target.append("    private final RingCharSequence ").append(fragment.names[i]).append("View = new RingCharSequence();\n");
+            }
+            i++;
+        }
+        target.append("\n");
+
+        target.append("    public static boolean isFragment(RingBuffer rb) {\n");
+        target.append("        return CURSOR==rb.ringWalker.cursor;\n");
+        target.append("    }\n\n");
+
+        target.append("    public ").append(fragment.name).append(" wrap(RingBuffer rb) {\n");
+        target.append("        this.rb = rb;\n");
+        target.append("        this.b = rb.buffer;\n");
+        target.append("        this.m = rb.mask;\n");
+        target.append("        this.p = rb.workingTailPos.value;\n");
+        target.append("        return this;\n");
+        target.append("    }\n\n");
+
+        i = 0;
+        while (i<fragment.fieldCount) {
+            appendAccessors(catalog, fragment, i++, target);
+        }
+
+        target.append("}\n");
+        return target;
+    }
+
+    private static void appendAccessors(TemplateCatalogConfig catalog, FragmentLayout fragment, int field, Appendable target) throws IOException {
+        String name = fragment.names[field];
+        String pos = Integer.toString(fragment.offsets[field]);
+        String next = Integer.toString(fragment.offsets[field]+1);
+        int type = TokenBuilder.extractType(fragment.tokens[field]);
+
+        if (CallbackGenerator.isText(type) || CallbackGenerator.isByteArray(type)) {
+            target.append("    public int ").append(name).append("Length() {\n");
+            target.append("        return RingBuffer.readValue(").append(next).append(", b, m, p);\n");
+            target.append("    }\n\n");
+
+            if (CallbackGenerator.isByteArray(type)) {
+                target.append("    public int ").append(name).append("(byte[] target, int offset) {\n");
+                target.append("        int rawPos = RingBuffer.readValue(").append(pos).append(", b, m, p);\n");
+                target.append("        int length = RingBuffer.readValue(").append(next).append(", b, m, p);\n");
+                target.append("        byte[] source = RingBuffer.byteBackingArray(rawPos, rb);\n");
+                target.append("        int sourcePos = RingBuffer.bytePositionGen(rawPos, rb, length);\n");
+                target.append("        int i = 0;\n");
+                target.append("        while (i<length) {\n");
+                target.append("            target[offset+i] = source[rb.byteMask & (sourcePos+i)];\n");
+                target.append("            i++;\n");
+                target.append("        }\n");
+                target.append("        return length;\n");
+                target.append("    }\n\n");
+                return;
+            }
+
+            boolean ascii = TypeMask.TextASCII==type || TypeMask.TextASCIIOptional==type;
+            target.append("    public <A extends Appendable> A ").append(name).append("(A target) {\n");
+            target.append("        int rawPos = RingBuffer.readValue(").append(pos).append(", b, m, p);\n");
+            target.append("        int length = RingBuffer.readValue(").append(next).append(", b, m, p);\n");
+            target.append("        return RingText.").append(ascii ? "appendASCII" : "appendUTF8")
+                  .append("(RingBuffer.byteBackingArray(rawPos, rb), RingBuffer.bytePositionGen(rawPos, rb, length), length, rb.byteMask, target);\n");
+            target.append("    }\n\n");
+
+            int oper = TokenBuilder.extractOper(fragment.tokens[field]);
+            if (OperatorMask.Field_Copy==oper || OperatorMask.Field_Default==oper || OperatorMask.Field_Constant==oper) {
+                target.append("    /**\n     * Interned id of the value, -1 when absent or too long for the table. Keep one table per field.\n     */\n");
+                target.append("    public int ").append(name).append("Symbol(SymbolTable table) {\n");
+                target.append("        int rawPos = RingBuffer.readValue(").append(pos).append(", b, m, p);\n");
+                target.append("        int length = RingBuffer.readValue(").append(next).append(", b, m, p);\n");
+                target.append("        if (length<0) {\n");
+                target.append("            return -1;\n");
+                target.append("        }\n");
+                target.append("        return SymbolTable.intern(RingBuffer.byteBackingArray(rawPos, rb), RingBuffer.bytePositionGen(rawPos, rb, length), length, rb.byteMask, table);\n");
+                target.append("    }\n\n");
+            }
+            if (OperatorMask.Field_Constant==oper || (OperatorMask.Field_Copy==oper && isCopyOnly(fragment.tokens[field], catalog))) {
+                String heapIdx = OperatorMask.Field_Constant==oper ? "-1" : Integer.toString(fragment.tokens[field] & TokenBuilder.MAX_INSTANCE);
+                target.append("    /**\n     * Cache for ").append(name).append("Symbol(SymbolCache), one for each field and reactor.\n     */\n");
+                target.append("    public static SymbolCache ").append(name).append("SymbolCache(FASTReaderReactor reactor, SymbolTable table) {\n");
+                target.append("        return new SymbolCache(reactor, ").append(heapIdx).append(", table);\n");
+                target.append("    }\n\n");
+                target.append("    /**\n     * Interned id of the value, only interned again when the decoder replaced the value. Push decode only.\n     */\n");
+                target.append("    public int ").append(name).append("Symbol(SymbolCache cache) {\n");
+                target.append("        int rawPos = RingBuffer.readValue(").append(pos).append(", b, m, p);\n");
+                target.append("        int length = RingBuffer.readValue(").append(next).append(", b, m, p);\n");
+                target.append("        return SymbolCache.symbol(RingBuffer.byteBackingArray(rawPos, rb), RingBuffer.bytePositionGen(rawPos, rb, length), length, rb.byteMask, cache);\n");
+                target.append("    }\n\n");
+            }
+
+            target.append("    /**\n     * View over the ring, only valid until the next call to wrap. Null when the value is absent.\n     */\n");
+            target.append("    public CharSequence ").append(name).append("() {\n");
+            target.append("        int length = RingBuffer.readValue(").append(next).append(", b, m, p);\n");
+            target.append("        if (length<0) {\n");
+            target.append("            return null;\n");
+            target.append("        }\n");
+            target.append("        int rawPos = RingBuffer.readValue(").append(pos).append(", b, m, p);\n");
+            target.append("        return ").append(name).append("View.").append(ascii ? "set" : "setUTF8")
+                  .append("(RingBuffer.byteBackingArray(rawPos, rb), RingBuffer.bytePositionGen(rawPos, rb, length), rb.byteMask, length);\n");
+            target.append("    }\n\n");
+
+            target.append("    /**\n     * Copies the chars into target which must hold ").append(name).append("Length() chars.\n     * @return count of chars, -1 when the value is absent\n     */\n");
+            target.append("    public int ").append(name).append("(char[] target, int offset) {\n");
+            target.append("        int rawPos = RingBuffer.readValue(").append(pos).append(", b, m, p);\n");
+            target.append("        int length = RingBuffer.readValue(").append(next).append(", b, m, p);\n");
+            target.append("        if (length<0) {\n");
+            target.append("            return -1;\n");
+            target.append("        }\n");
+            target.append("        return RingText.decodeUTF8(RingBuffer.byteBackingArray(rawPos, rb), RingBuffer.bytePositionGen(rawPos, rb, length), length, rb.byteMask, target, offset);\n");
+            target.append("    }\n\n");
+        } else if (CallbackGenerator.isDecimal(type)) {
+            target.append("    public int ").append(name).append("Exponent() {\n");
+            target.append("        return RingBuffer.readInt(b, m, p+").append(pos).append(");\n");
+            target.append("    }\n\n");
+            target.append("    public long ").append(name).append("Mantissa() {\n");
+            target.append("        return RingBuffer.readLong(b, m, p+").append(next).append(");\n");
+            target.append("    }\n\n");
+            if (TypeMask.DecimalOptional==type) {
+                target.append("    /**\n     * NaN when the value is absent.\n     */\n");
+                target.append("    public double ").append(name).append("Double() {\n");
+                target.append("        int exponent = RingBuffer.readInt(b, m, p+").append(pos).append(");\n");
+                target.append("        return ABSENT32==exponent ? Double.NaN : RingDecimal.toDouble(exponent, RingBuffer.readLong(b, m, p+").append(next).append("));\n");
+                target.append("    }\n\n");
+                target.append("    /**\n     * ABSENT64 when the value is absent.\n     */\n");
+                target.append("    public long ").append(name).append("Scaled(int exponent) {\n");
+                target.append("        int valueExponent = RingBuffer.readInt(b, m, p+").append(pos).append(");\n");
+                target.append("        return ABSENT32==valueExponent ? ABSENT64 : RingDecimal.toScaled(valueExponent, RingBuffer.readLong(b, m, p+").append(next).append("), exponent);\n");
+                target.append("    }\n\n");
+                target.append("    /**\n     * Appends nothing when the value is absent.\n     */\n");
+                target.append("    public <A extends Appendable> A ").append(name).append("(A target) {\n");
+                target.append("        int exponent = RingBuffer.readInt(b, m, p+").append(pos).append(");\n");
+                target.append("        return ABSENT32==exponent ? target : RingDecimal.appendASCII(exponent, RingBuffer.readLong(b, m, p+").append(next).append("), target);\n");
+                target.append("    }\n\n");
+                return;
+            }
+            target.append("    public double ").append(name).append("Double() {\n");
+            target.append("        return RingDecimal.toDouble(RingBuffer.readInt(b, m, p+").append(pos).append("), RingBuffer.readLong(b, m, p+").append(next).append("));\n");
+            target.append("    }\n\n");
+            target.append("    public long ").append(name).append("Scaled(int exponent) {\n");
+            target.append("        return RingDecimal.toScaled(RingBuffer.readInt(b, m, p+").append(pos).append("), RingBuffer.readLong(b, m, p+").append(next).append("), exponent);\n");
+            target.append("    }\n\n");
+            target.append("    public <A extends Appendable> A ").append(name).append("(A target) {\n");
+            target.append("        return RingDecimal.appendASCII(RingBuffer.readInt(b, m, p+").append(pos).append("), RingBuffer.readLong(b, m, p+").append(next).append("), target);\n");
+            target.append("    }\n\n");
+        } else if (CallbackGenerator.isLong(type)) {
+            target.append("    public long ").append(name).append("() {\n");
+            target.append("        return RingBuffer.readLong(b, m, p+").append(pos).append(");\n");
+            target.append("    }\n\n");
+        } else {
+            target.append("    public int ").append(name).append("() {\n");
+            target.append("        return RingBuffer.readInt(b, m, p+").append(pos).append(");\n");
+            target.append("    }\n\n");
+        }
+    }
+
+    /**
+     * Writes one source file for each fragment into the package folder under sourceFolder.
+     *
+     * @return count of files written
+     */
+    public static int generateAll(byte[] catBytes, String packageName, File sourceFolder) throws IOException {
+        TemplateCatalogConfig catalog = TemplateCatalogConfig.shared(catBytes);
+        FragmentLayout[] fragments = FragmentLayout.build(catalog);
+        File folder = new File(sourceFolder, packageName.replace('.', File.separatorChar));
+        folder.mkdirs();
+        int f = 0;
+        while (f<fragments.length) {
+            FragmentLayout fragment = fragments[f++];
+            Writer output = new FileWriter(new File(folder, fragment.name+".java"));
+            try {
+                generate(catalog, fragment, packageName, output);
+            } finally {
+                output.close();
+            }
+        }
+        return fragments.length;
+    }
+
+    /**
+     * True when every text and byte array field of the catalog using the dictionary slot of token is a copy or a constant,
+     * only then does the decoder revision of the slot change with each new value.
+     */
+    static boolean isCopyOnly(int token, TemplateCatalogConfig catalog) {
+        int idx = token & TokenBuilder.MAX_INSTANCE;
+        int[] script = catalog.fullScript();
+        int i = script.length;
+        while (--i>=0) {
+            int type = TokenBuilder.extractType(script[i]);
+            int oper = TokenBuilder.extractOper(script[i]);
+            if ((CallbackGenerator.isText(type) || CallbackGenerator.isByteArray(type)) && idx==(script[i] & TokenBuilder.MAX_INSTANCE)
+                    && OperatorMask.Field_Copy!=oper && OperatorMask.Field_Constant!=oper) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static void main(String[] args) {
+        if (args.length<3) {
+            System.err.println("Usage: FlyweightGenerator catalogFile packageName sourceFolder");
+            return;
+        }
+        try {
+            byte[] catBytes = GeneratorUtils.readCatalog(args[0]);
+            System.err.println("wrote "+generateAll(catBytes, args[1], new File(args[2]))+" flyweights");
+        } catch (IOException e) {
+            throw new FASTException(e);
+        }
+    }
+
+}
@@ -0,0 +1,241 @@
+package com.ociweb.jfast.generator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.lang.model.SourceVersion;
+
+import com.ociweb.jfast.catalog.loader.TemplateCatalogConfig;
+import com.ociweb.pronghorn.ring.token.OperatorMask;
+import com.ociweb.pronghorn.ring.token.TokenBuilder;
+import com.ociweb.pronghorn.ring.token.TypeMask;
+
+/**
+ * Ring buffer layout of one fragment as written by the decoder and read by the encoder.
+ *
+ * Offsets are relative to the position of the fragment in the ring, the same fieldPos values used by the
+ * generated writer, so generated consumers can read every field with a constant offset.
+ * A message fragment begins with the message index and the preamble, a sequence fragment begins with its first field.
+ */
+public class FragmentLayout {
+
+    //appended to field names by the generators, a field may not be named like another field plus one of these
+    private static final String[] SUFFIXES = {"Length", "Position", "Mask", "Offset", "Exponent", "Mantissa",
+                                              "Double", "Scaled", "Symbol", "SymbolCache", "View"};
+    //members of the generated flyweight and of Object
+    private static final Set<String> RESERVED = new HashSet<String>(Arrays.asList("rb", "b", "m", "p", "wrap", "isFragment",
+                                              "toString", "hashCode", "equals", "getClass", "clone", "finalize", "notify", "notifyAll", "wait"));
+
+    public final int cursor; //script position of the fragment start, the same value found in RingWalker.cursor
+    public final long templateId;
+    public final String name; //java identifier, template name followed by the sequence names
+    public final boolean isMessage;
+
+    public int fieldCount;
+    public int[] tokens = new int[8];
+    public int[] cursors = new int[8];
+    public int[] offsets = new int[8];
+    public String[] names = new String[8]; //java identifiers, unique inside the fragment
+    public int size; //ring slots used by the fragment
+
+    FragmentLayout(int cursor, long templateId, String name, boolean isMessage, int firstOffset) {
+        this.cursor = cursor;
+        this.templateId = templateId;
+        this.name = name;
+        this.isMessage = isMessage;
+        this.size = firstOffset;
+    }
+
+    /**
+     * Fragments of every template in the order the templates appear in the catalog. Fragments without any
+     * fields, such as the end of a message which closes right after a sequence, are not included.
+     */
+    public static FragmentLayout[] build(TemplateCatalogConfig catalog) {
+        int[] script = catalog.fullScript();
+        String[] fieldNames = catalog.fieldNameScript();
+        long[] fieldIds = catalog.fieldIdScript();
+        int messageStart = 1 + catalog.getFROM().templateOffset; //message index then preamble
+
+        List<FragmentLayout> result = new ArrayList<FragmentLayout>();
+        Set<String> used = new HashSet<String>();
+        int t = 0;
+        while (t<catalog.templateScriptEntries.length) {
+            int start = catalog.templateScriptEntries[t];
+            int limit = catalog.templateScriptEntryLimits[t++];
+            long templateId = fieldIds[start];
+
+            List<FragmentLayout> open = new ArrayList<FragmentLayout>();
+            FragmentLayout current = new FragmentLayout(start, templateId,
+                                                         unique(identifier(fieldNames[start], "Template"+templateId, true), used),
+                                                         true, messageStart);
+            int c = start+1;
+            while (c<limit) {
+                int token = script[c];
+                int type = TokenBuilder.extractType(token);
+                if (TypeMask.Group==type) {
+                    int oper = TokenBuilder.extractOper(token);
+                    if (0!=(oper & OperatorMask.Group_Bit_Seq)) {
+                        if (0==(oper & OperatorMask.Group_Bit_Close)) {
+                            String seqName = fieldNames[c];
+                            if ((null==seqName || 0==seqName.length()) && c>0) {
+                                seqName = fieldNames[c-1]; //named by the length field
+                            }
+                            open.add(current);
+                            add(current, result);
+                            current = new FragmentLayout(c, templateId,
+                                                         unique(current.name+identifier(seqName, "Sequence"+c, true), used),
+                                                         false, 0);
+                        } else {
+                            add(current, result);
+                            FragmentLayout parent = open.remove(open.size()-1);
+                            current = new FragmentLayout(c+1, templateId, unique(parent.name+"End", used), false, 0);
+                        }
+                    }
+                } else if (isField(type)) {
+                    addField(current, token, c, identifier(fieldNames[c], "field"+fieldIds[c], false));
+                    if (TypeMask.Decimal==type || TypeMask.DecimalOptional==type) {
+                        c++; //mantissa token follows the exponent
+                    }
+                }
+                c++;
+            }
+            add(current, result);
+        }
+        return result.toArray(new FragmentLayout[result.size()]);
+    }
+
+    private static void add(FragmentLayout layout, List<FragmentLayout> result) {
+        if (layout.fieldCount>0 && !result.contains(layout)) {
+            result.add(layout);
+        }
+    }
+
+    private static void addField(FragmentLayout layout, int token, int cursor, String name) {
+        int i = layout.fieldCount;
+        if (i==layout.tokens.length) {
+            layout.tokens = grow(layout.tokens);
+            layout.cursors = grow(layout.cursors);
+            layout.offsets = grow(layout.offsets);
+            String[] names = new String[i*2];
+            System.arraycopy(layout.names, 0, names, 0, i);
+            layout.names = names;
+        }
+        String unique = name;
+        int n = 2;
+        while (collides(unique, layout)) {
+            unique = name+n++;
+        }
+        layout.tokens[i] = token;
+        layout.cursors[i] = cursor;
+        layout.offsets[i] = layout.size;
+        layout.names[i] = unique;
+        layout.size += ringSize(TokenBuilder.extractType(token));
+        layout.fieldCount = i+1;
+    }
+
+    /**
+     * True if the name, or the name plus a generator suffix, is already taken by a field or its suffixed members.
+     */
+    static boolean collides(String name, FragmentLayout layout) {
+        if (RESERVED.contains(name)) {
+            return true;
+        }
+        int i = layout.fieldCount;
+        while (--i>=0) {
+            String other = layout.names[i];
+            if (name.equals(other)) {
+                return true;
+            }
+            if (name.startsWith(other) && isSuffix(name.substring(other.length()))) {
+                return true;
+            }
+            if (other.startsWith(name) && isSuffix(other.substring(name.length()))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isSuffix(String value) {
+        int i = SUFFIXES.length;
+        while (--i>=0 && !SUFFIXES[i].equals(value)) {
+        }
+        return i>=0;
+    }
+
+    private static int[] grow(int[] values) {
+        int[] result = new int[values.length*2];
+        System.arraycopy(values, 0, result, 0, values.length);
+        return result;
+    }
+
+    /**
+     * @return index of the field with this identifier or -1
+     */
+    public static int indexOf(String name, FragmentLayout layout) {
+        int i = layout.fieldCount;
+        while (--i>=0 && !name.equals(layout.names[i])) {
+        }
+        return i;
+    }
+
+    public static boolean isField(int type) {
+        return type<TypeMask.Group || TypeMask.GroupLength==(type & ~1); //values and sequence lengths, optional is the low bit
+    }
+
+    /**
+     * Slots used in the int ring, text and byte arrays are a position and length into the byte ring.
+     */
+    public static int ringSize(int type) {
+        if (TypeMask.Decimal==type || TypeMask.DecimalOptional==type) {
+            return 3;
+        }
+        return type>=TypeMask.LongUnsigned && type<TypeMask.Group ? 2 : 1; //long, text and byte array
+    }
+
+    /**
+     * Turns a template or field name into a java identifier.
+     *
+     * @param upper true for the first letter in upper case as used in method names, false for a parameter name
+     */
+    public static String identifier(String name, String defaultName, boolean upper) {
+        if (null==name || 0==name.trim().length()) {
+            name = defaultName;
+        }
+        StringBuilder builder = new StringBuilder(name.length());
+        boolean nextUpper = upper;
+        int i = 0;
+        while (i<name.length()) {
+            char c = name.charAt(i++);
+            if (Character.isJavaIdentifierPart(c) && '$'!=c) {
+                if (0==builder.length()) {
+                    c = nextUpper ? Character.toUpperCase(c) : Character.toLowerCase(c);
+                } else if (nextUpper) {
+                    c = Character.toUpperCase(c);
+                }
+                builder.append(c);
+                nextUpper = false;
+            } else {
+                nextUpper = builder.length()>0 || upper; //camel case across spaces and punctuation
+            }
+        }
+        if (0==builder.length() || !Character.isJavaIdentifierStart(builder.charAt(0))) {
+            builder.insert(0, '_');
+        }
+        String result = builder.toString();
+        return SourceVersion.isKeyword(result) ? result+'_' : result;
+    }
+
+    private static String unique(String name, Set<String> used) {
+        String result = name;
+        int n = 2;
+        while (!used.add(result)) {
+            result = name+n++;
+        }
+        return result;
+    }
+
+}
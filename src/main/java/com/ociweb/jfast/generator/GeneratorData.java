@@ -1,5 +1,9 @@
 package com.ociweb.jfast.generator;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -9,11 +13,16 @@ import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import com.ociweb.jfast.catalog.loader.TemplateCatalogConfig;
+import com.ociweb.jfast.error.FASTException;
 import com.ociweb.jfast.primitive.PrimitiveReader;
+import com.ociweb.jfast.primitive.PrimitiveWriter;
+import com.ociweb.jfast.stream.FASTDecoder;
+import com.ociweb.jfast.stream.FASTEncoder;
 import com.ociweb.pronghorn.ring.FieldReferenceOffsetManager;
 import com.ociweb.pronghorn.ring.RingBuffer;
 import com.ociweb.pronghorn.ring.RingBufferConfig;
 import com.ociweb.pronghorn.ring.util.IntWriteOnceOrderedSet;
+import com.ociweb.pronghorn.ring.util.LocalHeap;
 import com.ociweb.pronghorn.ring.util.hash.MurmurHash;
 
 public class GeneratorData {
@@ -33,6 +42,7 @@ public class GeneratorData {
     public int[] hashedCat;
     
     public int runningComplexity;
+    public final int complexityLimit;
     public String lastFieldParaValues;
     public Map<String, AtomicInteger> usages;
     
@@ -40,6 +50,9 @@ public class GeneratorData {
     
     public final StringBuilder dictionaryBuilderInt;
     public final StringBuilder dictionaryBuilderLong;
+    public final StringBuilder dictionaryLoad;
+    public final StringBuilder dictionaryStore;
+    public final Map<Integer, String> fragmentClassNames; //by fragment start cursor, names are derived from the source
     public int readerPmapBit=6;
     public int writerPmapBit0=6;
     public int writerPmapBit1=6;
@@ -50,6 +63,11 @@ public class GeneratorData {
     static final String END_FIELD_METHOD = "};\n";
     //A fragment is the smallest unit that can be passed to the caller. It is never larger than a group but may often be the same size as one.
     static final String FRAGMENT_METHOD_NAME = "fragment";
+    
+    //the generated fragments call into these, a fragment compiled against another build of them must not be reused
+    static final long LIBRARY_FINGERPRINT = libraryFingerprint(FASTReaderDispatchTemplates.class, FASTWriterDispatchTemplates.class, StaticGlue.class,
+                                                               FASTDecoder.class, FASTEncoder.class, PrimitiveReader.class, PrimitiveWriter.class,
+                                                               RingBuffer.class, LocalHeap.class);
 
     public GeneratorData(byte[] catBytes, Class clazz) {
         
@@ -85,15 +103,70 @@ public class GeneratorData {
         this.fieldMethodCount = 0;
         this.dictionaryBuilderInt = new StringBuilder();
         this.dictionaryBuilderLong = new StringBuilder();
+        this.dictionaryLoad = new StringBuilder();
+        this.dictionaryStore = new StringBuilder();
+        this.fragmentClassNames = new HashMap<Integer, String>();
+        this.complexityLimit = FASTClassLoader.complexityLimit(catBytes);
         
-        //NOTE: this does produce some extra garbage that could be avoided if the caller passed in the catalog
-        TemplateCatalogConfig template = new TemplateCatalogConfig(catBytes);
+        TemplateCatalogConfig template = TemplateCatalogConfig.shared(catBytes);
         this.from = template.getFROM();
         //must be zero size to make the mask also zero
         this.mockRB = new RingBuffer(new RingBufferConfig((byte)0, (byte)0, null, this.from));
         this.mockRB.initBuffers();
     }
 
+	/**
+	 * Name of the class holding one generated fragment, built from the hash of its methods so an unchanged
+	 * fragment keeps its name and its class file can be reused when some other part of the catalog changes.
+	 * The fingerprint of the library classes is part of the hash so a new build never reuses old fragments.
+	 */
+	public static String fragmentClassName(String dispatchType, CharSequence fragmentMethods) {
+		return fragmentClassName(dispatchType, fragmentMethods, LIBRARY_FINGERPRINT);
+	}
+
+	static String fragmentClassName(String dispatchType, CharSequence fragmentMethods, long libraryFingerprint) {
+		byte[] source = fragmentMethods.toString().getBytes(StandardCharsets.UTF_8);
+		long hash = (((long)MurmurHash.hash32(source, 0, source.length, 15485863))<<32) |
+				    (0xFFFFFFFFL & MurmurHash.hash32(source, 0, source.length, 104395301));
+		return dispatchType+"F"+Long.toHexString(hash^libraryFingerprint)+Integer.toHexString(source.length);
+	}
+
+	/**
+	 * Hash of the class files, the name is used for any class whose class file can not be read.
+	 */
+	static long libraryFingerprint(Class<?> ... classes) {
+		long fingerprint = 0;
+		int i = classes.length;
+		while (--i>=0) {
+			byte[] bytes = classBytes(classes[i]);
+			fingerprint = 31*fingerprint + ((((long)MurmurHash.hash32(bytes, 0, bytes.length, 217645177))<<32) |
+					                        (0xFFFFFFFFL & MurmurHash.hash32(bytes, 0, bytes.length, 314606869)));
+		}
+		return fingerprint;
+	}
+
+	private static byte[] classBytes(Class<?> clazz) {
+		InputStream input = clazz.getResourceAsStream(clazz.getSimpleName()+".class");
+		if (null==input) {
+			return clazz.getName().getBytes(StandardCharsets.UTF_8);
+		}
+		try {
+			try {
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+				byte[] buffer = new byte[4096];
+				int count;
+				while ((count = input.read(buffer))>=0) {
+					bytes.write(buffer, 0, count);
+				}
+				return bytes.toByteArray();
+			} finally {
+				input.close();
+			}
+		} catch (IOException e) {
+			throw new FASTException(e);
+		}
+	}
+
 	public static int[] hashCatBytes(byte[] catBytes) {
 		int[] seeds = new int[]{15485863, 104395301, 217645177, 314606869, 413158551, 512927377, 613651349, 715225739};
 		
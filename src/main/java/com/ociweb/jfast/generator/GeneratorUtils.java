@@ -1,6 +1,12 @@
 package com.ociweb.jfast.generator;
 
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
@@ -23,12 +29,16 @@ import com.ociweb.pronghorn.ring.util.IntWriteOnceOrderedSet;
 import com.ociweb.pronghorn.ring.util.hash.LongHashTable;
 import com.ociweb.pronghorn.ring.util.hash.LongHashTableVisitor;
 import com.ociweb.jfast.stream.GeneratorDriving;
+import com.ociweb.jfast.stream.TemplateMetrics;
 
 public class GeneratorUtils {
     
-    static final boolean REMOVE_ARRAY = false; //TODO: B, not working for writer. still testing this idea, must decide after writer is finished 
+    //each dictionary slot used by the generated code becomes a field of the generated dispatch so copy, increment
+    //and delta do not pay for the array bounds check. Opt in with -DFAST.dictionaryFields=true until
+    //DictionaryFieldsBenchmark shows a gain over the array based code.
+    static final boolean REMOVE_ARRAY = Boolean.getBoolean("FAST.dictionaryFields");
     static final boolean ADD_COMMENTS = false; //set to true if generated code should have helpful comments
-    static final int COMPLEXITY_LIMITY_PER_METHOD = 24;//30;//28;//10050;//22;//18 25;
+    static final int COMPLEXITY_LIMITY_PER_METHOD = 24; //default when the catalog has not been tuned, see ComplexityTuner
     static final boolean OPTIMIZE_PMAP_READ_WRITE = true; 
     static final boolean COMPILE_TO_SINGLE_CLASS = false;
     
@@ -42,11 +52,14 @@ public class GeneratorUtils {
         target.append("public final class "+name+" extends "+base+" {"); //open class
         target.append("\n");        
         target.append("public static int[] hashedCat = new int[]"+(Arrays.toString(generatorData.hashedCat).replace('[', '{').replace(']', '}'))+";\n"); //static constant
+        target.append("public static boolean removeArray = "+REMOVE_ARRAY+";\n"); //checked by the loader, a class generated the other way must be rebuilt
+        target.append("public static int complexityLimit = "+generatorData.complexityLimit+";\n"); //checked by the loader, rebuilt after tuning
         target.append("\n");
+        String initFields = REMOVE_ARRAY ? "loadDictionaryFields();" : "";
         if (name.contains("Writer")) {
-        	target.append("public "+name+"(byte[] catBytes, "+RingBuffers.class.getSimpleName()+" ringBuffers) {super(new "+TemplateCatalogConfig.class.getSimpleName()+"(catBytes));}");//constructor 	
+        	target.append("public "+name+"(byte[] catBytes, "+RingBuffers.class.getSimpleName()+" ringBuffers) {super("+TemplateCatalogConfig.class.getSimpleName()+".shared(catBytes));"+initFields+"}");//constructor 	
         } else {
-        	target.append("public "+name+"(byte[] catBytes, "+RingBuffers.class.getSimpleName()+" ringBuffers) {super(new "+TemplateCatalogConfig.class.getSimpleName()+"(catBytes),ringBuffers);}");//constructor       	
+        	target.append("public "+name+"(byte[] catBytes, "+RingBuffers.class.getSimpleName()+" ringBuffers) {super("+TemplateCatalogConfig.class.getSimpleName()+".shared(catBytes),ringBuffers);"+initFields+"}");//constructor       	
         }
         
         target.append("\n");
@@ -77,6 +90,18 @@ public class GeneratorUtils {
         target.append(generatorData.dictionaryBuilderInt);
         target.append(generatorData.dictionaryBuilderLong);
         
+        if (REMOVE_ARRAY) {
+            //the arrays are still used by reset and by the interpreter so they are kept in step with the fields
+            target.append("\n");
+            target.append("protected void loadDictionaryFields() {\n");
+            target.append(generatorData.dictionaryLoad);
+            target.append("}\n");
+            target.append("\n");
+            target.append("protected void storeDictionaryFields() {\n");
+            target.append(generatorData.dictionaryStore);
+            target.append("}\n");
+        }
+        
         target.append('}');
     }
 
@@ -156,6 +181,9 @@ public class GeneratorUtils {
         	methodArgsDef = primClass.getSimpleName()+" "+primVarName;
         	methodArgsCall = primVarName;
             builder.append("public final int "+entryMethodName+"("+methodArgsDef+") {\n");
+            builder.append("    if (null!=metrics) {\n");
+            builder.append("        "+TemplateMetrics.class.getCanonicalName()+".begin(activeScriptCursor<0 || activeScriptCursor==msgIdx, absolutePosition("+primVarName+"), metrics);\n");
+            builder.append("    }\n");
             builder.append("    if (activeScriptCursor<0) {\n");
             builder.append("        if (PrimitiveReader.isEOF("+primVarName+")) { \n");
             builder.append("            return -1;//end of file\n");
@@ -170,6 +198,9 @@ public class GeneratorUtils {
             builder.append("fieldPos = 0;\n");
             builder.append("\n");
             builder.append("setActiveScriptCursor(rb.ringWalker.cursor);\n");        
+            builder.append("if (null!=metrics) {\n");
+            builder.append("    "+TemplateMetrics.class.getCanonicalName()+".begin("+RingWalker.class.getCanonicalName()+".isNewMessage(rb.ringWalker), absolutePosition("+primVarName+"), metrics);\n");
+            builder.append("}\n");
 
             builder.append("if ("+RingWalker.class.getCanonicalName()+".isNewMessage(rb.ringWalker)) {\n");                
             
@@ -228,9 +259,15 @@ public class GeneratorUtils {
         
         if (isReader) {
             builder.append("    ").append(RingBuffer.class.getSimpleName()).append(".publishHeadPositions(rb);\n");
-            
+            builder.append("    if (null!=metrics) {\n");
+            builder.append("        "+TemplateMetrics.class.getCanonicalName()+".end(msgIdx, absolutePosition("+primVarName+"), metrics);\n");
+            builder.append("    }\n");
             builder.append("    return 1;//read a fragment\n"); 
-        } 
+        } else {
+            builder.append("if (null!=metrics) {\n");
+            builder.append("    "+TemplateMetrics.class.getCanonicalName()+".end(rb.ringWalker.cursor, absolutePosition("+primVarName+"), metrics);\n");
+            builder.append("}\n");
+        }
         builder.append("}\n");
         
         builder.append(extraMethods);              
@@ -300,7 +337,7 @@ public class GeneratorUtils {
 		if (COMPILE_TO_SINGLE_CLASS) {
 			doneCode[j] = methodCall;			
 		} else {			
-			doneCode[j] = generatorData.dispatchType+cursorPos+"."+methodCall;
+			doneCode[j] = generatorData.fragmentClassNames.get(Integer.valueOf(cursorPos))+"."+methodCall;
 		}		
 		doneValues[j] = cursorPos;
 	}
@@ -406,6 +443,11 @@ public class GeneratorUtils {
         generatorData.caseParaVals.clear();
         generatorData.scriptPos = scriptPos;
         generatorData.templateId = templateId;
+        if (!COMPILE_TO_SINGLE_CLASS) {
+            //method names only need to be unique inside the fragment class, restarting the count keeps
+            //the source of a fragment the same when other templates are added or removed
+            generatorData.fieldMethodCount = 0;
+        }
 
         //for update of the reader
         generatorData.readerPmapBit = 6;
@@ -459,7 +501,8 @@ public class GeneratorUtils {
         String fragmentMethods = getSingleFragmentMethod(doneScriptsParas, generatorData);    
         
         if (!COMPILE_TO_SINGLE_CLASS) {
-        	final String fragmentClassName = generatorData.dispatchType+fragmentStart;
+        	final String fragmentClassName = GeneratorData.fragmentClassName(generatorData.dispatchType, fragmentMethods);
+        	generatorData.fragmentClassNames.put(Integer.valueOf(fragmentStart), fragmentClassName);
             
         	final StringBuilder fragmentClassBody = new StringBuilder();
         	fragmentClassBody.append("package com.ociweb.jfast.generator;\n");
@@ -503,11 +546,11 @@ public class GeneratorUtils {
         
         //Must add argument to ensure dispatch is available inside the method.
         if (generatorData.dispatchType.contains("Writer")) {
-            if (!paraDefs.contains("FASTEncoder dispatch")) {
+            if (!generatorData.caseParaVals.contains("dispatch")) {
                 if (paraDefs.length()>0) {
                     paraDefs = paraDefs+",";
                 }                
-                paraDefs = paraDefs+"FASTEncoder dispatch";
+                paraDefs = paraDefs+(REMOVE_ARRAY ? generatorData.dispatchType : "FASTEncoder")+" dispatch";
             }
         }
         
@@ -691,18 +734,23 @@ public class GeneratorUtils {
                 String longDictionaryReplace = "l"+hexValue;//used as var name;
                 
                 
+                //package visible so the fragment classes can reach them
                 if (template.contains(intDictionaryRef)) {
-                    String varInit = "private int "+intDictionaryReplace+";\n";                                        
+                    String varInit = "int "+intDictionaryReplace+";\n";                                        
                     if (generatorData.dictionaryBuilderInt.indexOf(varInit)<0) {
                         generatorData.dictionaryBuilderInt.append(varInit);
+                        generatorData.dictionaryLoad.append("    ").append(intDictionaryReplace).append(" = rIntDictionary[0x").append(hexValue).append("];\n");
+                        generatorData.dictionaryStore.append("    rIntDictionary[0x").append(hexValue).append("] = ").append(intDictionaryReplace).append(";\n");
                     }
                     template = template.replace(intDictionaryRef, "dispatch."+intDictionaryReplace);                    
                 }
                 
                 if (template.contains(longDictionaryRef)) {
-                    String varInit = "private long "+longDictionaryReplace+";\n";                                        
+                    String varInit = "long "+longDictionaryReplace+";\n";                                        
                     if (generatorData.dictionaryBuilderLong.indexOf(varInit)<0) {
                         generatorData.dictionaryBuilderLong.append(varInit);
+                        generatorData.dictionaryLoad.append("    ").append(longDictionaryReplace).append(" = rLongDictionary[0x").append(hexValue).append("];\n");
+                        generatorData.dictionaryStore.append("    rLongDictionary[0x").append(hexValue).append("] = ").append(longDictionaryReplace).append(";\n");
                     }
                     template = template.replace(longDictionaryRef, "dispatch."+longDictionaryReplace);                    
                 }                
@@ -770,7 +818,7 @@ public class GeneratorUtils {
             assert(validateMethodSize(comment, additionalComplexity));
             
             if (lastMethodContainsParams(curFieldParaValues, generatorData.lastFieldParaValues) &&
-                additionalComplexity+generatorData.runningComplexity<=GeneratorUtils.COMPLEXITY_LIMITY_PER_METHOD && 
+                additionalComplexity+generatorData.runningComplexity<=generatorData.complexityLimit && 
                 generatorData.fieldMethodBuilder.length()>0) {
                 //this field has the same parameters as the  previous and
                 //adding this complexity is under the limit and
@@ -889,6 +937,31 @@ public class GeneratorUtils {
         return template;
     }
 
+    /**
+     * Catalog file written by the catalog loader, for the main methods of the source generators.
+     */
+    public static byte[] readCatalog(String catalogFile) throws IOException {
+        File file = new File(catalogFile);
+        byte[] catBytes = new byte[(int)file.length()];
+        DataInputStream input = new DataInputStream(new FileInputStream(file));
+        try {
+            input.readFully(catBytes);
+        } finally {
+            input.close();
+        }
+        return catBytes;
+    }
 
+    /**
+     * Source file for the generated class under sourceFolder, or System.out when sourceFolder is null.
+     */
+    public static Writer sourceWriter(String packageName, String className, String sourceFolder) throws IOException {
+        if (null==sourceFolder) {
+            return new OutputStreamWriter(System.out);
+        }
+        File folder = new File(sourceFolder, packageName.replace('.', File.separatorChar));
+        folder.mkdirs();
+        return new FileWriter(new File(folder, className+".java"));
+    }
 
 }
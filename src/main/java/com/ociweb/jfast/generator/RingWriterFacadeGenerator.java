@@ -0,0 +1,191 @@
+package com.ociweb.jfast.generator;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import com.ociweb.jfast.catalog.loader.TemplateCatalogConfig;
+import com.ociweb.jfast.error.FASTException;
+import com.ociweb.jfast.primitive.PrimitiveWriter;
+import com.ociweb.jfast.stream.FASTDynamicWriter;
+import com.ociweb.jfast.stream.RingSizing;
+import com.ociweb.jfast.stream.RingText;
+import com.ociweb.pronghorn.ring.FieldReferenceOffsetManager;
+import com.ociweb.pronghorn.ring.RingBuffer;
+import com.ociweb.pronghorn.ring.RingBuffers;
+import com.ociweb.pronghorn.ring.RingReader;
+import com.ociweb.pronghorn.ring.token.TokenBuilder;
+import com.ociweb.pronghorn.ring.token.TypeMask;
+
+/**
+ * Writes the source of a typed RingWriter facade with one encode method for each fragment of the catalog,
+ * for example encodeQuote(int msgSeqNum, CharSequence symbol, int bidPxExponent, long bidPxMantissa).
+ *
+ * Each call stores the arguments at the constant offsets of the fragment in a private ring which holds a few
+ * fragments, then encodes it right away on the calling thread with the generated writer through FASTDynamicWriter.
+ * The facade replaces the field lookups and the hand off to another thread, not the ring, so the operators and the
+ * bytes written are those of FASTDynamicWriter. Messages with sequences are encoded by calling the method of the
+ * message and then the method of the sequence once for each entry.
+ *
+ * Optional numeric fields take ABSENT32 or ABSENT64 when there is no value, optional text and byte arrays take null.
+ * The preamble, when the catalog has one, is taken from the preamble field of the facade.
+ *
+ * Usage: RingWriterFacadeGenerator catalogFile packageName className [sourceFolder]
+ */
+public class RingWriterFacadeGenerator {
+
+    public static <T extends Appendable> T generate(byte[] catBytes, String packageName, String className, T target) throws IOException {
+        TemplateCatalogConfig catalog = TemplateCatalogConfig.shared(catBytes);
+        FieldReferenceOffsetManager from = catalog.getFROM();
+        FragmentLayout[] fragments = FragmentLayout.build(catalog);
+
+        if (null!=packageName && packageName.length()>0) {
+            target.append("package ").append(packageName).append(";\n\n");
+        }
+        target.append("import ").append(TemplateCatalogConfig.class.getCanonicalName()).append(";\n");
+        target.append("import ").append(DispatchLoader.class.getCanonicalName()).append(";\n");
+        target.append("import ").append(PrimitiveWriter.class.getCanonicalName()).append(";\n");
+        target.append("import ").append(FASTDynamicWriter.class.getCanonicalName()).append(";\n");
+        target.append("import ").append(RingSizing.class.getCanonicalName()).append(";\n");
+        target.append("import ").append(RingText.class.getCanonicalName()).append(";\n");
+        target.append("import ").append(RingBuffer.class.getCanonicalName()).append(";\n");
+        target.append("import ").append(RingBuffers.class.getCanonicalName()).append(";\n");
+        target.append("import ").append(RingReader.class.getCanonicalName()).append(";\n");
+        target.append("\n");
+        target.append("/**\n * Generated by ").append(RingWriterFacadeGenerator.class.getSimpleName()).append(", do not edit.\n */\n");
+        target.append("public final class ").append(className).append(" {\n\n");
+
+        target.append("    public static final int ABSENT32 = ").append(Integer.toString(FieldReferenceOffsetManager.getAbsent32Value(from))).append(";\n");
+        target.append("    public static final long ABSENT64 = ").append(Long.toString(FieldReferenceOffsetManager.getAbsent64Value(from))).append("L;\n");
+        target.append("\n");
+        target.append("    private final RingBuffer rb;\n");
+        target.append("    private final FASTDynamicWriter dynamicWriter;\n");
+        target.append("    private byte[] scratch = new byte[64];\n");
+        target.append("    public final int[] preamble = new int[").append(Integer.toString(from.templateOffset)).append("];\n");
+        target.append("\n");
+
+        target.append("    public ").append(className).append("(byte[] catBytes, PrimitiveWriter writer) {\n");
+        target.append("        this.rb = RingBuffers.get(RingSizing.buildRingBuffers(TemplateCatalogConfig.shared(catBytes), RingSizing.SCRATCH_BURST_FRAGMENTS, null), 0);\n");
+        target.append("        this.dynamicWriter = new FASTDynamicWriter(writer, rb, DispatchLoader.loadDispatchWriter(catBytes));\n");
+        target.append("    }\n\n");
+
+        target.append("    public FASTDynamicWriter dynamicWriter() {\n");
+        target.append("        return dynamicWriter;\n");
+        target.append("    }\n\n");
+
+        int f = 0;
+        while (f<fragments.length) {
+            appendEncodeMethod(fragments[f++], target);
+        }
+
+        target.append("    private void encodeReady() {\n");
+        target.append("        RingBuffer.publishWrites(rb);\n");
+        target.append("        while (RingReader.tryReadFragment(rb)) {\n");
+        target.append("            if (RingReader.getMsgIdx(rb)>=0) {\n");
+        target.append("                FASTDynamicWriter.write(dynamicWriter);\n");
+        target.append("            }\n");
+        target.append("        }\n");
+        target.append("    }\n\n");
+
+        target.append("    private void addText(CharSequence value, boolean utf8) {\n");
+        target.append("        if (null==value) {\n");
+        target.append("            RingBuffer.addValue(rb.buffer, rb.mask, rb.workingHeadPos, 0);\n");
+        target.append("            RingBuffer.addValue(rb.buffer, rb.mask, rb.workingHeadPos, -1);\n");
+        target.append("            return;\n");
+        target.append("        }\n");
+        target.append("        int need = utf8 ? 3*value.length() : value.length();\n");
+        target.append("        if (need>scratch.length) {\n");
+        target.append("            scratch = new byte[need*2];\n");
+        target.append("        }\n");
+        target.append("        int length = utf8 ? RingText.copyUTF8(value, scratch) : RingText.copyASCII(value, scratch);\n");
+        target.append("        RingBuffer.addByteArray(scratch, 0, length, rb);\n");
+        target.append("    }\n\n");
+
+        target.append("    private void addBytes(byte[] value, int offset, int length) {\n");
+        target.append("        if (null==value) {\n");
+        target.append("            RingBuffer.addValue(rb.buffer, rb.mask, rb.workingHeadPos, 0);\n");
+        target.append("            RingBuffer.addValue(rb.buffer, rb.mask, rb.workingHeadPos, -1);\n");
+        target.append("            return;\n");
+        target.append("        }\n");
+        target.append("        RingBuffer.addByteArray(value, offset, length, rb);\n");
+        target.append("    }\n\n");
+
+        target.append("}\n");
+        return target;
+    }
+
+    private static void appendEncodeMethod(FragmentLayout fragment, Appendable target) throws IOException {
+        target.append("    /**\n     * ").append(fragment.isMessage ? "Template " : "Fragment of template ")
+              .append(Long.toString(fragment.templateId)).append(", script position ").append(Integer.toString(fragment.cursor)).append("\n     */\n");
+        target.append("    public void encode").append(fragment.name).append("(");
+        int i = 0;
+        while (i<fragment.fieldCount) {
+            if (i>0) {
+                target.append(", ");
+            }
+            String name = fragment.names[i];
+            int type = TokenBuilder.extractType(fragment.tokens[i]);
+            if (CallbackGenerator.isText(type)) {
+                target.append("CharSequence ").append(name);
+            } else if (CallbackGenerator.isByteArray(type)) {
+                target.append("byte[] ").append(name).append(", int ").append(name).append("Offset, int ").append(name).append("Length");
+            } else if (CallbackGenerator.isDecimal(type)) {
+                target.append("int ").append(name).append("Exponent, long ").append(name).append("Mantissa");
+            } else if (CallbackGenerator.isLong(type)) {
+                target.append("long ").append(name);
+            } else {
+                target.append("int ").append(name);
+            }
+            i++;
+        }
+        target.append(") {\n");
+        target.append("        int[] b = rb.buffer;\n");
+        target.append("        int m = rb.mask;\n");
+        if (fragment.isMessage) {
+            target.append("        RingBuffer.addMsgIdx(rb, ").append(Integer.toString(fragment.cursor)).append(");\n");
+            target.append("        int p = 0;\n");
+            target.append("        while (p<preamble.length) {\n");
+            target.append("            RingBuffer.addValue(b, m, rb.workingHeadPos, preamble[p++]);\n");
+            target.append("        }\n");
+        }
+        i = 0;
+        while (i<fragment.fieldCount) {
+            String name = fragment.names[i];
+            int type = TokenBuilder.extractType(fragment.tokens[i]);
+            if (CallbackGenerator.isText(type)) {
+                target.append("        addText(").append(name).append(", ")
+                      .append(Boolean.toString(TypeMask.TextUTF8==type || TypeMask.TextUTF8Optional==type)).append(");\n");
+            } else if (CallbackGenerator.isByteArray(type)) {
+                target.append("        addBytes(").append(name).append(", ").append(name).append("Offset, ").append(name).append("Length);\n");
+            } else if (CallbackGenerator.isDecimal(type)) {
+                target.append("        RingBuffer.addValue(b, m, rb.workingHeadPos, ").append(name).append("Exponent);\n");
+                target.append("        RingBuffer.addLongValue(b, m, rb.workingHeadPos, ").append(name).append("Mantissa);\n");
+            } else if (CallbackGenerator.isLong(type)) {
+                target.append("        RingBuffer.addLongValue(b, m, rb.workingHeadPos, ").append(name).append(");\n");
+            } else {
+                target.append("        RingBuffer.addValue(b, m, rb.workingHeadPos, ").append(name).append(");\n");
+            }
+            i++;
+        }
+        target.append("        encodeReady();\n");
+        target.append("    }\n\n");
+    }
+
+    public static void main(String[] args) {
+        if (args.length<3) {
+            System.err.println("Usage: RingWriterFacadeGenerator catalogFile packageName className [sourceFolder]");
+            return;
+        }
+        try {
+            byte[] catBytes = GeneratorUtils.readCatalog(args[0]);
+            Writer output = GeneratorUtils.sourceWriter(args[1], args[2], args.length>3 ? args[3] : null);
+            try {
+                generate(catBytes, args[1], args[2], output);
+            } finally {
+                output.close();
+            }
+        } catch (IOException e) {
+            throw new FASTException(e);
+        }
+    }
+
+}
@@ -0,0 +1,74 @@
+package com.ociweb.jfast.primitive;
+
+/**
+ * Coalescing window which adapts to the observed message arrival rate.
+ * 
+ * A moving average of the gap between calls which found new bytes pending is kept. When the gap is larger
+ * than maxWindowNs the stream is quiet and each message is flushed as soon as it is encoded. When the gap is
+ * small the stream is bursting and bytes are held for a window of a few expected gaps, bounded by minWindowNs
+ * and maxWindowNs, so many messages are sent together in one large packet. maxBytes always forces a flush.
+ * 
+ * One instance must be used by only one writer.
+ */
+public class AdaptiveFlushPolicy implements FlushPolicy {
+
+    private static final int GAP_SHIFT = 3; //each new gap is weighted 1/8
+    private static final int WINDOW_GAPS = 4; //hold for about this many expected arrivals
+    
+    private final int maxBytes;
+    private final long minWindowNs;
+    private final long maxWindowNs;
+    
+    private long avgGapNs;
+    private long lastArrivalNs = -1;
+    private long firstPendingNs = -1;
+    private int lastPendingBytes;
+    
+    public AdaptiveFlushPolicy(int maxBytes, long minWindowMicros, long maxWindowMicros) {
+        this.maxBytes = maxBytes;
+        this.minWindowNs = minWindowMicros*1000L;
+        this.maxWindowNs = maxWindowMicros*1000L;
+        this.avgGapNs = this.maxWindowNs+1; //assume quiet until traffic is observed
+    }
+    
+    @Override
+    public boolean flushNow(int pendingBytes, boolean messageEnd, boolean inputEmpty, long nowNs) {
+        if (pendingBytes<=0) {
+            firstPendingNs = -1;
+            lastPendingBytes = 0;
+            return false;
+        }
+        if (pendingBytes!=lastPendingBytes) { //new data since the last call, idle polls do not count
+            if (lastArrivalNs>=0) {
+                avgGapNs += ((nowNs-lastArrivalNs)-avgGapNs)>>GAP_SHIFT;
+            }
+            lastArrivalNs = nowNs;
+            if (firstPendingNs<0) {
+                firstPendingNs = nowNs;
+            }
+        }
+        lastPendingBytes = pendingBytes;
+        if (!messageEnd) {
+            return false;
+        }
+        if (pendingBytes>=maxBytes || (inputEmpty && avgGapNs>maxWindowNs) || nowNs-firstPendingNs>=window(this)) {
+            firstPendingNs = -1;
+            lastPendingBytes = 0;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Current coalescing window in nanoseconds.
+     */
+    public static long window(AdaptiveFlushPolicy policy) {
+        long window = policy.avgGapNs*WINDOW_GAPS;
+        return window<policy.minWindowNs ? policy.minWindowNs : (window>policy.maxWindowNs ? policy.maxWindowNs : window);
+    }
+    
+    public static long averageGapNs(AdaptiveFlushPolicy policy) {
+        return policy.avgGapNs;
+    }
+    
+}
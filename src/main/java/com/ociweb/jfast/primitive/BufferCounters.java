@@ -0,0 +1,100 @@
+package com.ociweb.jfast.primitive;
+
+import com.ociweb.jfast.util.LogLinearHistogram;
+
+/**
+ * Cheap always-on counters owned by a single PrimitiveReader or PrimitiveWriter.
+ * 
+ * Fields are only updated by the owning thread on the slow paths (compaction, blocking, flush)
+ * so they add nothing measurable to the normal parse or write of a field.
+ */
+public final class BufferCounters implements BufferMetrics {
+
+    long compactions;
+    long bytesMoved;
+    long blockingWaits;
+    long blockingWaitNanos;
+    
+    long flushes;
+    long earlyFlushes;
+    long openPMapFlushes;
+    final LogLinearHistogram blockSizes = new LogLinearHistogram(1, 2);
+    
+    BufferCounters() {        
+    }
+    
+    static void recordBlock(int size, BufferCounters counters) {
+        LogLinearHistogram.record(0, size, counters.blockSizes);
+    }
+    
+    @Override
+    public long compactions() {
+        return compactions;
+    }
+
+    @Override
+    public long bytesMoved() {
+        return bytesMoved;
+    }
+
+    @Override
+    public long blockingWaits() {
+        return blockingWaits;
+    }
+
+    @Override
+    public long blockingWaitNanos() {
+        return blockingWaitNanos;
+    }
+
+    @Override
+    public long flushes() {
+        return flushes;
+    }
+
+    @Override
+    public long earlyFlushes() {
+        return earlyFlushes;
+    }
+
+    @Override
+    public long openPMapFlushes() {
+        return openPMapFlushes;
+    }
+
+    @Override
+    public long blocks() {
+        return LogLinearHistogram.count(0, blockSizes);
+    }
+
+    @Override
+    public long blockSizeAtPercentile(double percentile) {
+        return LogLinearHistogram.valueAtPercentile(0, percentile, blockSizes);
+    }
+
+    @Override
+    public long maxBlockSize() {
+        return LogLinearHistogram.max(0, blockSizes);
+    }
+
+    @Override
+    public void reset() {
+        compactions = 0;
+        bytesMoved = 0;
+        blockingWaits = 0;
+        blockingWaitNanos = 0;
+        flushes = 0;
+        earlyFlushes = 0;
+        openPMapFlushes = 0;
+        LogLinearHistogram.reset(blockSizes);
+    }
+
+    @Override
+    public String toString() {
+        return "compactions:"+compactions+" bytesMoved:"+bytesMoved+
+               " blockingWaits:"+blockingWaits+" blockingWaitNanos:"+blockingWaitNanos+
+               " flushes:"+flushes+" earlyFlushes:"+earlyFlushes+" openPMapFlushes:"+openPMapFlushes+
+               " blocks:"+blocks()+" medianBlock:"+blockSizeAtPercentile(50)+" maxBlock:"+maxBlockSize();
+    }
+    
+}
@@ -0,0 +1,55 @@
+package com.ociweb.jfast.primitive;
+
+/**
+ * Counters kept by PrimitiveReader and PrimitiveWriter to help size their buffers from real data.
+ * 
+ * Reader values: compactions, bytesMoved, blockingWaits and blockingWaitNanos.
+ * Writer values: flushes, earlyFlushes, openPMapFlushes and the block size distribution.
+ * Values which do not apply to the owner are always zero.
+ */
+public interface BufferMetrics {
+
+    /**
+     * Times the reader had to move unparsed bytes to the front of its buffer to make room.
+     */
+    long compactions();
+    
+    /**
+     * Total bytes copied by those compactions.
+     */
+    long bytesMoved();
+    
+    /**
+     * Times the reader could not continue until the input provided more data.
+     */
+    long blockingWaits();
+    
+    long blockingWaitNanos();
+    
+    /**
+     * All flush requests made by the writer.
+     */
+    long flushes();
+    
+    /**
+     * Flushes forced because the writer buffer had no room for the next value.
+     */
+    long earlyFlushes();
+    
+    /**
+     * Subset of earlyFlushes forced when opening a new PMap.
+     */
+    long openPMapFlushes();
+    
+    /**
+     * Count of blocks handed to the FASTOutput.
+     */
+    long blocks();
+    
+    long blockSizeAtPercentile(double percentile);
+    
+    long maxBlockSize();
+    
+    void reset();
+    
+}
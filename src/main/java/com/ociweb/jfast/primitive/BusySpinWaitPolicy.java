@@ -0,0 +1,12 @@
+package com.ociweb.jfast.primitive;
+
+/**
+ * Never gives up the core, lowest latency when the waiting thread has a core to itself.
+ */
+public class BusySpinWaitPolicy implements WaitPolicy {
+
+    @Override
+    public void idle(int attempt) {
+    }
+    
+}
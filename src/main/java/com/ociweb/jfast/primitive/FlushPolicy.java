@@ -0,0 +1,21 @@
+package com.ociweb.jfast.primitive;
+
+/**
+ * Decides when bytes held by the PrimitiveWriter are sent to the FASTOutput.
+ * 
+ * Consulted by FASTDynamicWriter after each write or batch and from idle loops through flushIfDue.
+ * The PrimitiveWriter still flushes on its own when the buffer is half full so a policy can only
+ * make flushes happen sooner, never later.
+ */
+public interface FlushPolicy {
+
+    /**
+     * @param pendingBytes bytes encoded but not yet flushed
+     * @param messageEnd true if no message is partially encoded
+     * @param inputEmpty true if no more fragments are waiting to be encoded
+     * @param nowNs System.nanoTime() of the caller
+     * @return true if the writer should be flushed now, the policy may assume the flush happens
+     */
+    public boolean flushNow(int pendingBytes, boolean messageEnd, boolean inputEmpty, long nowNs);
+    
+}
@@ -0,0 +1,33 @@
+package com.ociweb.jfast.primitive;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Spins for a number of attempts, then yields, then parks for parkMicros at a time so an idle
+ * stream costs almost no cpu. Wake up latency is bounded by parkMicros plus the timer slack of the OS.
+ */
+public class ParkWaitPolicy implements WaitPolicy {
+
+    private final int spins;
+    private final int yields;
+    private final long parkNs;
+    
+    public ParkWaitPolicy(int spins, int yields, long parkMicros) {
+        this.spins = spins;
+        this.yields = spins+yields;
+        this.parkNs = parkMicros*1000L;
+    }
+    
+    @Override
+    public void idle(int attempt) {
+        if (attempt<spins) {
+            return;
+        }
+        if (attempt<yields) {
+            Thread.yield();
+            return;
+        }
+        LockSupport.parkNanos(parkNs);
+    }
+    
+}
@@ -49,6 +49,8 @@ public final class PrimitiveReader {
     
     public int pmapIdxBitBlock = -1; //idx high in pmap data
     
+    private final BufferCounters counters = new BufferCounters();
+    
     
     private InputBlockagePolicy blockagePolicy = new InputBlockagePolicy(){ //   blockagePolicy
         
@@ -147,6 +149,33 @@ public final class PrimitiveReader {
 
     }
     
+    /**
+     * Grows the pmap stack so a decoder with deeper or larger pmaps can take over this reader, for example after a
+     * catalog swap. May only be called between messages when no pmap is open.
+     * 
+     * @param maxPMapCountInBytes must be large enough to hold deepest possible nesting of pmaps
+     * @param reader
+     */
+    public static final void ensurePMapCapacity(int maxPMapCountInBytes, PrimitiveReader reader) {
+        if (maxPMapCountInBytes <= reader.invPmapStack.length) {
+            return;
+        }
+        if (reader.invPmapStackDepth != reader.invPmapStack.length - 2) {
+            throw new FASTException("PMap stack can only grow between messages");
+        }
+        reader.invPmapStack = new byte[maxPMapCountInBytes];
+        reader.invPmapStackDepth = maxPMapCountInBytes - 2;
+    }
+    
+    /**
+     * Compaction and blocking counters for sizing bufferSizeInBytes.
+     * 
+     * @param reader
+     */
+    public static final BufferMetrics metrics(PrimitiveReader reader) {
+        return reader.counters;
+    }
+    
     /**
      * Returns the total number of bytes that have been taken from the input. 
      * 
@@ -196,7 +225,10 @@ public final class PrimitiveReader {
             if (reader.limit+need > reader.buffer.length) {
             	throw new FASTException("buffer for PrimitiveReader is too small");
             }
+            long waitStart = System.nanoTime();
             int filled = reader.input.blockingFill(reader.limit, need);
+            reader.counters.blockingWaitNanos += (System.nanoTime()-waitStart);
+            reader.counters.blockingWaits++;
             reader.blockagePolicy.resolvedInputBlockage(reader.input);
             reader.totalReader += filled;
             reader.limit += filled;
@@ -250,6 +282,8 @@ public final class PrimitiveReader {
 //                + " bytes";
         
         System.arraycopy(reader.buffer, keepFromPosition, reader.buffer, 0, populated);
+        reader.counters.compactions++;
+        reader.counters.bytesMoved += populated;
         // if possible fill
         int filled = reader.input.fill(populated, reader.buffer.length - populated);
 
@@ -341,6 +375,43 @@ public final class PrimitiveReader {
 
     //NOTE: for consistancy and to help with branch prediction ALWAYS check this against zero unless using brancheless
     
+    public static final long PEEK_NOT_BUFFERED = -2;
+    public static final long PEEK_NO_TEMPLATE_ID = -1;
+    
+    /**
+     * Looks ahead at the template id of the next message without consuming anything.
+     * Must only be called between messages.
+     * 
+     * @param preambleBytes bytes of preamble before the template PMap
+     * @param reader
+     * @return template id, PEEK_NO_TEMPLATE_ID if the message reuses the previous template or PEEK_NOT_BUFFERED if more data must be fetched first
+     */
+    public static long peekTemplateId(int preambleBytes, PrimitiveReader reader) {
+        int p = reader.position + preambleBytes;
+        if (p >= reader.limit) {
+            return PEEK_NOT_BUFFERED;
+        }
+        boolean hasTemplateId = 0 != (0x40 & reader.buffer[p]);
+        //skip the rest of the PMap
+        while (reader.buffer[p++] >= 0) {
+            if (p >= reader.limit) {
+                return PEEK_NOT_BUFFERED;
+            }
+        }
+        if (!hasTemplateId) {
+            return PEEK_NO_TEMPLATE_ID;
+        }
+        long accumulator = 0;
+        while (p < reader.limit) {
+            byte v = reader.buffer[p++];
+            if (v < 0) {
+                return accumulator | (v & 0x7F);
+            }
+            accumulator = (accumulator | v) << 7;
+        }
+        return PEEK_NOT_BUFFERED;
+    }
+    
     /**
      * Read the next PMap bit from the open PMap. The cursor is moved forward so another call will read the next bit.
      * 
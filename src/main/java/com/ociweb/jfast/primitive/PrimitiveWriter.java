@@ -32,7 +32,7 @@ public final class PrimitiveWriter {
     public final int bufferSize;
 
     private final int minimizeLatency;
-    private final long[] safetyStackPosPos;// low 28, location where the last
+    private long[] safetyStackPosPos;// low 28, location where the last
                                            // byte was written to the pmap as
                                            // bits are written
                                            // mid 04, working bit position 1-7
@@ -50,10 +50,9 @@ public final class PrimitiveWriter {
     public int pMapByteAccum = 0;
 
     private long totalWritten;
-    private final int[] flushSkips;// list of all skip nodes produced at the end
-                                   // of pmaps, may grow large with poor
-                                   // templates.
-    private final int flushSkipsSize;
+    private int[] flushSkips;// list of all skip nodes produced at the end
+                             // of pmaps, may grow large with poor
+                             // templates.
     public int flushSkipsIdxLimit; // where we add the new one, end of the list
     private int flushSkipsIdxPos;// next limit to use. as skips are consumed
                                  // this pointer moves forward.
@@ -63,8 +62,27 @@ public final class PrimitiveWriter {
     private int pendingPosition = 0; // new position after the read
 
     private final int mustFlush;
+    private boolean holdFlush; //when true closePMap does not flush for latency, set while encoding a batch
+    
+    private final BufferCounters counters = new BufferCounters();
+    
+    //used when nothing is known about the templates, both structures grow on demand if needed.
+    public static final int DEFAULT_MAX_PMAP_DEPTH = 8;
+    public static final int DEFAULT_MIN_PMAP_GROUP_BYTES = 4;
     
     public PrimitiveWriter(int initBufferSize, FASTOutput output, boolean minimizeLatency) {
+        this(initBufferSize, output, minimizeLatency, DEFAULT_MAX_PMAP_DEPTH, DEFAULT_MIN_PMAP_GROUP_BYTES);
+    }
+    
+    /**
+     * 
+     * @param initBufferSize
+     * @param output
+     * @param minimizeLatency
+     * @param maxPMapDepth deepest nesting of open PMaps, see TemplateCatalogConfig.getMaxGroupDepth
+     * @param minPMapGroupBytes fewest bytes a group with a PMap can encode to, see TemplateCatalogConfig.minPMapGroupBytes
+     */
+    public PrimitiveWriter(int initBufferSize, FASTOutput output, boolean minimizeLatency, int maxPMapDepth, int minPMapGroupBytes) {
 
         this.bufferSize=initBufferSize;
         this.buffer = new byte[bufferSize];
@@ -72,21 +90,17 @@ public final class PrimitiveWriter {
         this.limit = 0;
         this.minimizeLatency = minimizeLatency ? 1 : 0;
         
-        //must have enough room for the maximum number of groups that
-        //will appear within the buffer, because the data is all variable 
-        //length and that defines the smallest group as 1 byte. This stack
-        //must be the same depth as the buffer size.
-        this.safetyStackPosPos = new long[bufferSize]; 
+        //one frame for each open PMap so this only needs to be as deep as the deepest nesting. 
+        this.safetyStackPosPos = new long[Math.max(1, maxPMapDepth)]; 
 
         this.output = output;
         
         //NOTE: for high latency large throughput this must be as big as every group that can fit into initBufferSize
-        //TODO: B, optimize this later by getting the smallest group size from template config and passing it in 
-        this.flushSkipsSize = initBufferSize;//HACK for now assuming average message is no more than 1 bytes
+        //      each PMap adds two entries and no group can be smaller than minPMapGroupBytes.
         this.mustFlush = initBufferSize/2;// - (largestMessageSize*2);
         
         // this may grow very large, to fields per group
-        this.flushSkips = new int[flushSkipsSize];
+        this.flushSkips = new int[2+(2*initBufferSize/Math.max(1, minPMapGroupBytes))];
 
         output.init(new DataTransfer(this));
     }
@@ -142,7 +156,7 @@ public final class PrimitiveWriter {
         int sourceStop = writer.flushSkips[localFlushSkipsIdxPos];
         
         // invariant for the loop
-        int temp = writer.flushSkipsSize - 2;
+        int temp = writer.flushSkips.length - 2;
         final int localLastValid = (writer.flushSkipsIdxLimit < temp) ? writer.flushSkipsIdxLimit : temp;
         final int endOfData = writer.limit;
         final int finalStop = targetOffset + reqLength;
@@ -223,6 +237,7 @@ public final class PrimitiveWriter {
         }
         int nextOffset = writer.nextBlockOffset;
 
+        BufferCounters.recordBlock(writer.nextBlockSize, writer.counters);
         writer.totalWritten += writer.nextBlockSize;
 
         writer.position = writer.pendingPosition;
@@ -242,9 +257,41 @@ public final class PrimitiveWriter {
     }
 
     public static final void flush(PrimitiveWriter writer) { // flush all
+        flushOutput(writer);
+    }
+
+    private static void flushOutput(PrimitiveWriter writer) {
+        writer.counters.flushes++;
         writer.output.flush();
     }
 
+    // called when there is no room for the next value
+    private static void earlyFlush(PrimitiveWriter writer) {
+        writer.counters.earlyFlushes++;
+        flushOutput(writer);
+    }
+
+    /**
+     * While held closePMap will not flush at the end of each group even if minimizeLatency is set,
+     * buffer space is still protected by flushing once limit passes the half way point.
+     * Used to encode a batch of fragments and then flush once.
+     * 
+     * @param hold
+     * @param writer
+     */
+    public static final void holdFlush(boolean hold, PrimitiveWriter writer) {
+        writer.holdFlush = hold;
+    }
+
+    /**
+     * Flush and block size counters for sizing initBufferSize.
+     * 
+     * @param writer
+     */
+    public static final BufferMetrics metrics(PrimitiveWriter writer) {
+        return writer.counters;
+    }
+
     protected static int computeFlushToIndex(PrimitiveWriter writer) {
         if (writer.safetyStackDepth > 0) {
             // only need to check first entry on stack the rest are larger
@@ -260,7 +307,7 @@ public final class PrimitiveWriter {
     // this requires the null adjusted length to be written first.
     public static final void writeByteArrayData(byte[] data, int offset, int length, PrimitiveWriter writer) {
         if (writer.limit > writer.buffer.length - length) {
-            writer.output.flush();
+            earlyFlush(writer);
         }
         System.arraycopy(data, offset, writer.buffer, writer.limit, length);
         writer.limit += length;
@@ -268,7 +315,7 @@ public final class PrimitiveWriter {
     
     public static final void writeByteArrayData(byte[] data, int offset, int length, int mask, PrimitiveWriter writer) {
         if (writer.limit > writer.buffer.length - length) {
-            writer.output.flush();
+            earlyFlush(writer);
             //safe place to do sanity check
             if (writer.limit > writer.buffer.length - length) {            	
             	System.err.println(writer.limit +"  wbl:"+writer.buffer.length+" length:"+length+"   post flush ");
@@ -291,7 +338,7 @@ public final class PrimitiveWriter {
     public static final void writeByteArrayData(ByteBuffer data, PrimitiveWriter writer) {
         final int len = data.remaining();
         if (writer.limit > writer.buffer.length - len) {
-            writer.output.flush();
+            earlyFlush(writer);
         }
 
         data.get(writer.buffer, writer.limit, len);
@@ -302,7 +349,7 @@ public final class PrimitiveWriter {
     public static final void writeByteArrayData(ByteBuffer data, int pos, int lenToSend, PrimitiveWriter writer) {
 
         if (writer.limit > writer.buffer.length - lenToSend) {
-            writer.output.flush();
+            earlyFlush(writer);
         }
 
         int stop = pos + lenToSend;
@@ -314,7 +361,7 @@ public final class PrimitiveWriter {
 
     public static final void writeNull(PrimitiveWriter writer) {
         if (writer.limit >= writer.buffer.length) {
-            writer.output.flush();
+            earlyFlush(writer);
         }
         writer.buffer[writer.limit++] = (byte) 0x80;
     }
@@ -351,30 +398,30 @@ public final class PrimitiveWriter {
             }
 
             if (writer.buffer.length - writer.limit < 1) {
-                writer.output.flush();
+                earlyFlush(writer);
             }
         } else {
             if (absv <= 0x0000000000002000l) {
                 if (writer.buffer.length - writer.limit < 2) {
-                    writer.output.flush();
+                    earlyFlush(writer);
                 }
             } else {
 
                 if (absv <= 0x0000000000100000l) {
                     if (writer.buffer.length - writer.limit < 3) {
-                        writer.output.flush();
+                        earlyFlush(writer);
                     }
                 } else {
 
                     if (absv <= 0x0000000008000000l) {
                         if (writer.buffer.length - writer.limit < 4) {
-                            writer.output.flush();
+                            earlyFlush(writer);
                         }
                     } else {
                         if (absv <= 0x0000000400000000l) {
 
                             if (writer.buffer.length - writer.limit < 5) {
-                                writer.output.flush();
+                                earlyFlush(writer);
                             }
                         } else {
                             writeLongSignedNegSlow(absv, value, writer);
@@ -394,7 +441,7 @@ public final class PrimitiveWriter {
 
     private static void writeLongSignedMostNegative(PrimitiveWriter writer) {
         if (writer.limit > writer.buffer.length - 10) {
-            writer.output.flush();
+            earlyFlush(writer);
         }
         // encode the most negative possible number
         writer.buffer[writer.limit++] = (byte) (0x7F); // 8... .... .... ....
@@ -412,7 +459,7 @@ public final class PrimitiveWriter {
     private static final void writeLongSignedNegSlow(long absv, long value, PrimitiveWriter writer) {
         if (absv <= 0x0000020000000000l) {
             if (writer.buffer.length - writer.limit < 6) {
-                writer.output.flush();
+                earlyFlush(writer);
             }
         } else {
             writeLongSignedNegSlow2(absv, value, writer);
@@ -452,30 +499,30 @@ public final class PrimitiveWriter {
 
         if (value < 0x0000000000000040l) {
             if (writer.buffer.length - writer.limit < 1) {
-                writer.output.flush();
+                earlyFlush(writer);
             }
         } else {
             if (value < 0x0000000000002000l) {
                 if (writer.buffer.length - writer.limit < 2) {
-                    writer.output.flush();
+                    earlyFlush(writer);
                 }
             } else {
 
                 if (value < 0x0000000000100000l) {
                     if (writer.buffer.length - writer.limit < 3) {
-                        writer.output.flush();
+                        earlyFlush(writer);
                     }
                 } else {
 
                     if (value < 0x0000000008000000l) {
                         if (writer.buffer.length - writer.limit < 4) {
-                            writer.output.flush();
+                            earlyFlush(writer);
                         }
                     } else {
                         if (value < 0x0000000400000000l) {
 
                             if (writer.buffer.length - writer.limit < 5) {
-                                writer.output.flush();
+                                earlyFlush(writer);
                             }
                         } else {
                             writeLongSignedPosSlow(value, writer);
@@ -495,26 +542,26 @@ public final class PrimitiveWriter {
     private static final void writeLongSignedPosSlow(long value, PrimitiveWriter writer) {
         if (value < 0x0000020000000000l) {
             if (writer.buffer.length - writer.limit < 6) {
-                writer.output.flush();
+                earlyFlush(writer);
             }
         } else {
             if (value < 0x0001000000000000l) {
                 if (writer.buffer.length - writer.limit < 7) {
-                    writer.output.flush();
+                    earlyFlush(writer);
                 }
             } else {
                 if (value < 0x0080000000000000l) {
                     if (writer.buffer.length - writer.limit < 8) {
-                        writer.output.flush();
+                        earlyFlush(writer);
                     }
                 } else {
                     if (value < 0x4000000000000000l) {
                         if (writer.buffer.length - writer.limit < 9) {
-                            writer.output.flush();
+                            earlyFlush(writer);
                         }
                     } else {
                         if (writer.buffer.length - writer.limit < 10) {
-                            writer.output.flush();
+                            earlyFlush(writer);
                         }
                         writer.buffer[writer.limit++] = (byte) (((value >> 63) & 0x7F));
                     }
@@ -540,30 +587,30 @@ public final class PrimitiveWriter {
         
         if (value < 0x0000000000000080l) {
             if (writer.buffer.length - writer.limit < 1) {
-                writer.output.flush();
+                earlyFlush(writer);
             }
         } else {
             if (value < 0x0000000000004000l) {
                 if (writer.buffer.length - writer.limit < 2) {
-                    writer.output.flush();
+                    earlyFlush(writer);
                 }
             } else {
 
                 if (value < 0x0000000000200000l) {
                     if (writer.buffer.length - writer.limit < 3) {
-                        writer.output.flush();
+                        earlyFlush(writer);
                     }
                 } else {
 
                     if (value < 0x0000000010000000l) {
                         if (writer.buffer.length - writer.limit < 4) {
-                            writer.output.flush();
+                            earlyFlush(writer);
                         }
                     } else {
                         if (value < 0x0000000800000000l) {
 
                             if (writer.buffer.length - writer.limit < 5) {
-                                writer.output.flush();
+                                earlyFlush(writer);
                             }
                         } else {
                             writeLongUnsignedSlow(value, writer);
@@ -583,7 +630,7 @@ public final class PrimitiveWriter {
     private static final void writeLongUnsignedSlow(long value, PrimitiveWriter writer) {
         if (value < 0x0000040000000000l) {
             if (writer.buffer.length - writer.limit < 6) {
-                writer.output.flush();
+                earlyFlush(writer);
             }
         } else {
             writeLongUnsignedSlow2(value, writer);
@@ -602,21 +649,21 @@ public final class PrimitiveWriter {
     private static void writeLongUnsignedSlow2(long value, PrimitiveWriter writer) {
         if (value < 0x0002000000000000l) {
             if (writer.buffer.length - writer.limit < 7) {
-                writer.output.flush();
+                earlyFlush(writer);
             }
         } else {
             if (value < 0x0100000000000000l) {
                 if (writer.buffer.length - writer.limit < 8) {
-                    writer.output.flush();
+                    earlyFlush(writer);
                 }
             } else {
                 if (value < 0x8000000000000000l) {
                     if (writer.buffer.length - writer.limit < 9) {
-                        writer.output.flush();
+                        earlyFlush(writer);
                     }
                 } else {
                     if (writer.buffer.length - writer.limit < 10) {
-                        writer.output.flush();
+                        earlyFlush(writer);
                     }
                     writer.buffer[writer.limit++] = (byte) (((value >> 63) & 0x7F));
                 }
@@ -655,26 +702,26 @@ public final class PrimitiveWriter {
             }
 
             if (writer.buffer.length - writer.limit < 1) {
-                writer.output.flush();
+                earlyFlush(writer);
             }
         } else {
             if (absv <= 0x00002000) {
                 if (writer.buffer.length - writer.limit < 2) {
-                    writer.output.flush();
+                    earlyFlush(writer);
                 }
             } else {
                 if (absv <= 0x00100000) {
                     if (writer.buffer.length - writer.limit < 3) {
-                        writer.output.flush();
+                        earlyFlush(writer);
                     }
                 } else {
                     if (absv <= 0x08000000) {
                         if (writer.buffer.length - writer.limit < 4) {
-                            writer.output.flush();
+                            earlyFlush(writer);
                         }
                     } else {
                         if (writer.buffer.length - writer.limit < 5) {
-                            writer.output.flush();
+                            earlyFlush(writer);
                         }
                         writer.buffer[writer.limit++] = (byte) (((value >> 28) & 0x7F));
                     }
@@ -690,7 +737,7 @@ public final class PrimitiveWriter {
 
     private static void writeIntegerSignedMostNegative(PrimitiveWriter writer) {
         if (writer.limit > writer.buffer.length - 5) {
-            writer.output.flush();
+            earlyFlush(writer);
         }
         // encode the most negative possible number
         // top stop bit remains zero but the next top bit is 1
@@ -706,26 +753,26 @@ public final class PrimitiveWriter {
 
         if (value < 0x00000040) {
             if (writer.buffer.length - writer.limit < 1) {
-                writer.output.flush();
+                earlyFlush(writer);
             }
         } else {
             if (value < 0x00002000) {
                 if (writer.buffer.length - writer.limit < 2) {
-                    writer.output.flush();
+                    earlyFlush(writer);
                 }
             } else {
                 if (value < 0x00100000) {
                     if (writer.buffer.length - writer.limit < 3) {
-                        writer.output.flush();
+                        earlyFlush(writer);
                     }
                 } else {
                     if (value < 0x08000000) {
                         if (writer.buffer.length - writer.limit < 4) {
-                            writer.output.flush();
+                            earlyFlush(writer);
                         }
                     } else {
                         if (writer.buffer.length - writer.limit < 5) {
-                            writer.output.flush();
+                            earlyFlush(writer);
                         }
                         writer.buffer[writer.limit++] = (byte) (((value >> 28) & 0x7F));
                     }
@@ -747,26 +794,26 @@ public final class PrimitiveWriter {
         // "Java limitation must code this case special to reconstruct unsigned on the wire";
         if (value < 0x00000080) {
             if (writer.buffer.length - writer.limit < 1) {
-                writer.output.flush();
+                earlyFlush(writer);
             }
         } else {
             if (value < 0x00004000) {
                 if (writer.buffer.length - writer.limit < 2) {
-                    writer.output.flush();
+                    earlyFlush(writer);
                 }
             } else {
                 if (value < 0x00200000) {
                     if (writer.buffer.length - writer.limit < 3) {
-                        writer.output.flush();
+                        earlyFlush(writer);
                     }
                 } else {
                     if (value < 0x10000000) {
                         if (writer.buffer.length - writer.limit < 4) {
-                            writer.output.flush();
+                            earlyFlush(writer);
                         }
                     } else {
                         if (writer.buffer.length - writer.limit < 5) {
-                            writer.output.flush();
+                            earlyFlush(writer);
                         }
                         writer.buffer[writer.limit++] = (byte) (((value >> 28) & 0x7F));
                     }
@@ -781,7 +828,7 @@ public final class PrimitiveWriter {
 
     private static void writeIntegerUnsignedRollover(int value, PrimitiveWriter writer) {
         if (writer.buffer.length - writer.limit < 5) {
-            writer.output.flush();
+            earlyFlush(writer);
         }
         writer.buffer[writer.limit++] = (byte) (((value >> 28) & 0x7F));
         writer.buffer[writer.limit++] = (byte) (((value >> 21) & 0x7F));
@@ -801,7 +848,8 @@ public final class PrimitiveWriter {
         assert (maxBytes > 0) : "Do not call openPMap if it is not expected to be used.";
 
         if (writer.limit > writer.buffer.length - maxBytes) {
-            writer.output.flush();
+            writer.counters.openPMapFlushes++;
+            earlyFlush(writer);
         }
 
         // save the current partial byte.
@@ -827,6 +875,13 @@ public final class PrimitiveWriter {
         // no need to set.
 
         
+        if (writer.safetyStackDepth >= writer.safetyStackPosPos.length) {
+            writer.safetyStackPosPos = Arrays.copyOf(writer.safetyStackPosPos, writer.safetyStackPosPos.length*2);
+        }
+        if (writer.flushSkipsIdxLimit+2 > writer.flushSkips.length) {
+            writer.flushSkips = Arrays.copyOf(writer.flushSkips, writer.flushSkips.length*2);
+        }
+        
         writer.safetyStackPosPos[writer.safetyStackDepth++] = (((long) writer.flushSkipsIdxLimit) << 32) | writer.limit;
         writer.flushSkips[writer.flushSkipsIdxLimit++] = writer.limit + 1;// default minimum size for present PMap
         writer.flushSkips[writer.flushSkipsIdxLimit++] = (writer.limit += maxBytes);// this will
@@ -895,8 +950,8 @@ public final class PrimitiveWriter {
         //      however for low latency we flush after every fragment and 
         //      for high throughput we wait until the buffer is filled to mustFlush
         
-        if (writer.minimizeLatency != 0 || writer.limit > writer.mustFlush ) { 
-            writer.output.flush();
+        if ((writer.minimizeLatency != 0 && !writer.holdFlush) || writer.limit > writer.mustFlush ) { 
+            flushOutput(writer);
         }
         
     }
@@ -943,7 +998,7 @@ public final class PrimitiveWriter {
             return;
         } else if (writer.limit > writer.buffer.length - length) {
             // if it was not zero and was too long flush
-            writer.output.flush();
+            earlyFlush(writer);
         }
         int c = start+offset;
         while (--length > 0) {
@@ -963,7 +1018,7 @@ public final class PrimitiveWriter {
         } 
         if (writer.limit > writer.buffer.length - length) {
             // if it was not zero and was too long flush
-            writer.output.flush();
+            earlyFlush(writer);
             
             //since flush is rare this is a good opportunity to do sanity checking
             if (writer.limit > writer.buffer.length - length) {            	
@@ -982,7 +1037,7 @@ public final class PrimitiveWriter {
 
     private static void encodeZeroLengthASCII(PrimitiveWriter writer) {
         if (writer.limit > writer.buffer.length - 2) {
-            writer.output.flush();
+            earlyFlush(writer);
         }
         writer.buffer[writer.limit++] = (byte) 0;
         writer.buffer[writer.limit++] = (byte) 0x80;
@@ -998,7 +1053,7 @@ public final class PrimitiveWriter {
         } 
         if (writer.limit > writer.buffer.length - length) {
             // if it was not zero and was too long flush
-            writer.output.flush();
+            earlyFlush(writer);
             //since flush is rare this is a good opportunity to do sanity checking
             if (writer.limit > writer.buffer.length - length) {            	
             	System.err.println(writer.limit +"  and  "+offset+"  mask "+mask+"  wbl:"+writer.buffer.length+" length:"+length+"  "+value.length+ "   post flush ");
@@ -1020,7 +1075,7 @@ public final class PrimitiveWriter {
     public static void ensureSpace(int bytes, PrimitiveWriter writer) {
         
         if (writer.limit > writer.buffer.length - bytes) {
-            writer.output.flush();
+            earlyFlush(writer);
         }
         
     }
@@ -0,0 +1,43 @@
+package com.ociweb.jfast.primitive;
+
+/**
+ * Flushes at the end of a message when nothing else is waiting to be encoded, or once
+ * maxBytes are pending, or once the oldest pending byte is older than maxDelayNs.
+ */
+public class ThresholdFlushPolicy implements FlushPolicy {
+
+    private final int maxBytes;
+    private final long maxDelayNs;
+    private final boolean flushWhenEmpty;
+    
+    private long firstPendingNs = -1;
+    
+    /**
+     * @param maxBytes flush once this many bytes are pending
+     * @param maxDelayMicros flush once bytes have waited this long
+     * @param flushWhenEmpty flush at the end of each message if the input is empty
+     */
+    public ThresholdFlushPolicy(int maxBytes, long maxDelayMicros, boolean flushWhenEmpty) {
+        this.maxBytes = maxBytes;
+        this.maxDelayNs = maxDelayMicros*1000L;
+        this.flushWhenEmpty = flushWhenEmpty;
+    }
+    
+    @Override
+    public boolean flushNow(int pendingBytes, boolean messageEnd, boolean inputEmpty, long nowNs) {
+        if (pendingBytes<=0) {
+            firstPendingNs = -1;
+            return false;
+        }
+        if (firstPendingNs<0) {
+            firstPendingNs = nowNs;
+        }
+        if (messageEnd && 
+            ((inputEmpty && flushWhenEmpty) || pendingBytes>=maxBytes || nowNs-firstPendingNs>=maxDelayNs)) {
+            firstPendingNs = -1;
+            return true;
+        }
+        return false;
+    }
+    
+}
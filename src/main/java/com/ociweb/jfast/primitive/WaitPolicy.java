@@ -0,0 +1,14 @@
+package com.ociweb.jfast.primitive;
+
+/**
+ * Decides how a thread waits for the other side of a shared memory ring, either for data to read
+ * or for room to write.
+ */
+public interface WaitPolicy {
+
+    /**
+     * @param attempt count of calls since the last progress, starts at zero
+     */
+    public void idle(int attempt);
+    
+}
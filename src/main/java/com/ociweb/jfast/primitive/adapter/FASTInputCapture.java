@@ -0,0 +1,49 @@
+package com.ociweb.jfast.primitive.adapter;
+
+import com.ociweb.jfast.primitive.FASTInput;
+
+/**
+ * Passes every byte read from the wrapped FASTInput to a FASTOutputCapture, so the raw inbound stream is kept
+ * while the decoder only pays for one extra copy.
+ */
+public class FASTInputCapture implements FASTInput {
+
+	private final FASTInput input;
+	private final FASTOutputCapture capture;
+	private byte[] targetBuffer;
+
+	public FASTInputCapture(FASTInput input, FASTOutputCapture capture) {
+		this.input = input;
+		this.capture = capture;
+	}
+
+	@Override
+	public void init(byte[] targetBuffer) {
+		this.targetBuffer = targetBuffer;
+		input.init(targetBuffer);
+	}
+
+	@Override
+	public int fill(int offset, int count) {
+		int filled = input.fill(offset, count);
+		if (filled>0) {
+			FASTOutputCapture.append(targetBuffer, offset, filled, capture);
+		}
+		return filled;
+	}
+
+	@Override
+	public boolean isEOF() {
+		return input.isEOF();
+	}
+
+	@Override
+	public int blockingFill(int offset, int count) {
+		int filled = input.blockingFill(offset, count);
+		if (filled>0) {
+			FASTOutputCapture.append(targetBuffer, offset, filled, capture);
+		}
+		return filled;
+	}
+
+}
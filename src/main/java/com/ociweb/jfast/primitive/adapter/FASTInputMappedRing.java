@@ -0,0 +1,74 @@
+package com.ociweb.jfast.primitive.adapter;
+
+import com.ociweb.jfast.primitive.FASTInput;
+import com.ociweb.jfast.primitive.WaitPolicy;
+
+/**
+ * Consumer side of a MappedRing, copies the published bytes into the buffer of the PrimitiveReader and moves the
+ * tail forward so the producer can reuse the space. blockingFill waits with the WaitPolicy.
+ */
+public class FASTInputMappedRing implements FASTInput {
+
+	private final MappedRing ring;
+	private final WaitPolicy waitPolicy;
+	private byte[] targetBuffer;
+	private long tail;
+	private long headCache;
+
+	public FASTInputMappedRing(MappedRing ring, WaitPolicy waitPolicy) {
+		this.ring = ring;
+		this.waitPolicy = waitPolicy;
+		this.tail = MappedRing.tail(ring);
+		this.headCache = tail;
+	}
+
+	@Override
+	public void init(byte[] targetBuffer) {
+		this.targetBuffer = targetBuffer;
+	}
+
+	@Override
+	public int fill(int offset, int count) {
+		if (headCache==tail) {
+			headCache = MappedRing.head(ring);
+		}
+		int filled = 0;
+		while (filled<count && headCache!=tail) {
+			int pos = ring.mask & (int)tail;
+			int length = Math.min(Math.min(count-filled, (int)(headCache-tail)), ring.capacity-pos);
+			ring.data.position(pos);
+			ring.data.get(targetBuffer, offset+filled, length);
+			tail += length;
+			filled += length;
+		}
+		if (filled>0) {
+			MappedRing.publishTail(tail, ring);
+		}
+		return filled;
+	}
+
+	@Override
+	public boolean isEOF() {
+		//eof is published after the last head so check it first
+		return MappedRing.isEOF(ring) && MappedRing.head(ring)==tail;
+	}
+
+	@Override
+	public int blockingFill(int offset, int count) {
+		int filled = fill(offset, count);
+		int attempt = 0;
+		while (filled<count) {
+			if (isEOF()) {
+				return filled;
+			}
+			waitPolicy.idle(attempt++);
+			int more = fill(offset+filled, count-filled);
+			if (more>0) {
+				filled += more;
+				attempt = 0;
+			}
+		}
+		return filled;
+	}
+
+}
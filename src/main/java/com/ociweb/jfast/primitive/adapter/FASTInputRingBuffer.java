@@ -0,0 +1,97 @@
+package com.ociweb.jfast.primitive.adapter;
+
+import com.ociweb.jfast.primitive.FASTInput;
+import com.ociweb.pronghorn.ring.RingBuffer;
+import com.ociweb.pronghorn.ring.RingReader;
+
+/**
+ * Reads the byte blocks published by FASTOutputRingBuffer so an encoder can feed a decoder in the same process
+ * without a Pipe or an intermediate byte array. Each block is copied once, straight from the byte ring into the
+ * buffer of the PrimitiveReader, and the ring space is released as soon as the block has been copied.
+ *
+ * The stream ends at a block with a negative length, see FASTOutputRingBuffer.publishEOF, or at a fragment with a
+ * negative message index.
+ */
+public class FASTInputRingBuffer implements FASTInput {
+
+	private static final int BLOCK_FIELD = 1; //after the message index
+
+	private final RingBuffer ringBuffer;
+	private byte[] targetBuffer;
+
+	private byte[] block;
+	private int blockPos;
+	private int blockRemaining;
+	private boolean eof;
+
+	public FASTInputRingBuffer(RingBuffer ringBuffer) {
+		this.ringBuffer = ringBuffer;
+	}
+
+	@Override
+	public void init(byte[] targetBuffer) {
+		this.targetBuffer = targetBuffer;
+	}
+
+	@Override
+	public int fill(int offset, int count) {
+		int filled = 0;
+		while (filled<count && (blockRemaining>0 || nextBlock(this))) {
+			int length = Math.min(count-filled, blockRemaining);
+			copy(block, blockPos, ringBuffer.byteMask, targetBuffer, offset+filled, length);
+			blockPos += length;
+			blockRemaining -= length;
+			filled += length;
+		}
+		return filled;
+	}
+
+	private static boolean nextBlock(FASTInputRingBuffer input) {
+		if (input.eof) {
+			return false;
+		}
+		RingBuffer rb = input.ringBuffer;
+		if (!RingReader.tryReadFragment(rb)) {
+			return false;
+		}
+		if (RingReader.getMsgIdx(rb)<0) {
+			input.eof = true;
+			return false;
+		}
+		int length = RingBuffer.readRingByteLen(BLOCK_FIELD, rb.buffer, rb.mask, rb.workingTailPos);
+		if (length<0) {
+			input.eof = true;
+			return false;
+		}
+		int rawPos = RingBuffer.readValue(BLOCK_FIELD, rb.buffer, rb.mask, rb.workingTailPos.value);
+		input.block = RingBuffer.byteBackingArray(rawPos, rb);
+		input.blockPos = RingBuffer.bytePositionGen(rawPos, rb, length);
+		input.blockRemaining = length;
+		return true;
+	}
+
+	private static void copy(byte[] source, int sourcePos, int sourceMask, byte[] target, int targetPos, int length) {
+		int start = sourcePos & sourceMask;
+		int firstPart = Math.min(length, 1 + sourceMask - start);
+		System.arraycopy(source, start, target, targetPos, firstPart);
+		if (firstPart<length) { //block wraps around the end of the byte ring
+			System.arraycopy(source, 0, target, targetPos+firstPart, length-firstPart);
+		}
+	}
+
+	@Override
+	public boolean isEOF() {
+		return eof && blockRemaining<=0;
+	}
+
+	@Override
+	public int blockingFill(int offset, int count) {
+		int filled = fill(offset, count);
+		while (filled<count && !eof) {
+			Thread.yield();
+			filled += fill(offset+filled, count-filled);
+		}
+		return filled;
+	}
+
+}
@@ -0,0 +1,309 @@
+package com.ociweb.jfast.primitive.adapter;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+import com.ociweb.jfast.error.FASTException;
+import com.ociweb.jfast.primitive.DataTransfer;
+import com.ociweb.jfast.primitive.FASTOutput;
+import com.ociweb.jfast.primitive.PrimitiveWriter;
+import com.ociweb.jfast.primitive.WaitPolicy;
+
+/**
+ * Captures a stream to disk without blocking the thread which produces it. Bytes are copied into one of two direct
+ * buffers, when it fills the producer swaps the buffers and a background thread writes the full one with a FileChannel.
+ * At each commit interval the writer thread swaps a partly filled buffer itself, so a quiet feed still reaches the disk.
+ * The swap is guarded by a flag taken with a CAS by either side, the producer holds it for the length of one append.
+ * The producing thread only pays the copy unless the disk falls a whole buffer behind, then it waits with the WaitPolicy.
+ *
+ * The writer forces the file to the device at most once per forceIntervalMs, so many buffers share one force
+ * (group commit), zero forces after every write and a negative value leaves it to the OS.
+ * Files are named prefix-000000.fast, prefix-000001.fast, ... and roll once a file reaches rollBytes or is older
+ * than rollMs, rolls happen between buffers. Zero disables either limit. Numbering continues after the highest
+ * file already in the folder so a restarted capture never overwrites an earlier one.
+ *
+ * Use as the FASTOutput of a PrimitiveWriter to capture an encoded stream, or through FASTInputCapture to capture
+ * every byte read by a decoder. close must be called to write the last buffer.
+ */
+public class FASTOutputCapture implements FASTOutput {
+
+	private final ByteBuffer[] buffers;
+	private int active; //only read or changed while holding swapGuard
+	private final AtomicBoolean swapGuard = new AtomicBoolean();
+	private volatile int pending = -1; //index of the buffer waiting for the writer thread
+	private volatile boolean running = true;
+	private volatile Throwable failure;
+
+	private final WaitPolicy waitPolicy;
+	private final Thread writerThread;
+	private DataTransfer dataTransfer;
+
+	private final File folder;
+	private final String prefix;
+	private final long rollBytes;
+	private final long rollNs;
+	private final long forceIntervalNs;
+	private final long commitIntervalNs;
+
+	private FileOutputStream fileStream;
+	private FileChannel channel;
+	private volatile int fileCount;
+	private long fileBytes;
+	private long fileStartNs;
+	private long lastForceNs;
+	private boolean unforced;
+
+	public FASTOutputCapture(File folder, String prefix, int bufferSize, long commitIntervalMs, long forceIntervalMs,
+			                 long rollBytes, long rollMs, WaitPolicy waitPolicy) {
+		this.folder = folder;
+		this.prefix = prefix;
+		this.rollBytes = rollBytes;
+		this.rollNs = rollMs*1000000L;
+		this.forceIntervalNs = forceIntervalMs*1000000L;
+		this.commitIntervalNs = Math.max(1, commitIntervalMs)*1000000L;
+		this.waitPolicy = waitPolicy;
+		this.buffers = new ByteBuffer[] {ByteBuffer.allocateDirect(bufferSize), ByteBuffer.allocateDirect(bufferSize)};
+
+		folder.mkdirs();
+		this.fileCount = nextFileNumber(folder, prefix);
+		openNextFile();
+		this.lastForceNs = System.nanoTime();
+
+		this.writerThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				writeLoop();
+			}
+		}, "fast-capture-"+prefix);
+		this.writerThread.setDaemon(true);
+		this.writerThread.start();
+	}
+
+	@Override
+	public void init(DataTransfer dataTransfer) {
+		this.dataTransfer = dataTransfer;
+	}
+
+	@Override
+	public void flush() {
+		int size = PrimitiveWriter.nextBlockSize(dataTransfer.writer);
+		while (size>0) {
+			append(dataTransfer.writer.buffer, PrimitiveWriter.nextOffset(dataTransfer.writer), size, this);
+			size = PrimitiveWriter.nextBlockSize(dataTransfer.writer);
+		}
+	}
+
+	/**
+	 * Copies the bytes into the active buffer, may only be called from the one producing thread.
+	 */
+	public static void append(byte[] source, int offset, int length, FASTOutputCapture capture) {
+		if (null!=capture.failure) {
+			throw new FASTException(capture.failure);
+		}
+		int attempt = 0;
+		while (!capture.swapGuard.compareAndSet(false, true)) {
+			capture.waitPolicy.idle(attempt++); //the writer thread only holds it for a swap
+		}
+		try {
+			ByteBuffer buffer = capture.buffers[capture.active];
+			while (length>0) {
+				int count = Math.min(length, buffer.remaining());
+				buffer.put(source, offset, count);
+				offset += count;
+				length -= count;
+				if (!buffer.hasRemaining()) {
+					handoff(capture);
+					buffer = capture.buffers[capture.active];
+				}
+			}
+		} finally {
+			capture.swapGuard.set(false);
+		}
+	}
+
+	/**
+	 * Waits for the writer thread to finish the other buffer and swaps, the caller must hold swapGuard.
+	 */
+	private static void handoff(FASTOutputCapture capture) {
+		int attempt = 0;
+		while (-1!=capture.pending) {
+			if (null!=capture.failure) {
+				throw new FASTException(capture.failure);
+			}
+			capture.waitPolicy.idle(attempt++);
+		}
+		swap(capture);
+		LockSupport.unpark(capture.writerThread);
+	}
+
+	private static void swap(FASTOutputCapture capture) {
+		capture.pending = capture.active;
+		capture.active ^= 1;
+		capture.buffers[capture.active].clear();
+	}
+
+	/**
+	 * Called by the writer thread at each commit interval, swaps a partly filled buffer unless the producer is
+	 * inside an append, in which case the buffer is taken at the next interval.
+	 *
+	 * @return true if a buffer is now pending
+	 */
+	private static boolean takeIdleBuffer(FASTOutputCapture capture) {
+		if (!capture.swapGuard.compareAndSet(false, true)) {
+			return false;
+		}
+		try {
+			if (-1==capture.pending && capture.buffers[capture.active].position()>0) {
+				swap(capture);
+				return true;
+			}
+			return false;
+		} finally {
+			capture.swapGuard.set(false);
+		}
+	}
+
+	private void writeLoop() {
+		try {
+			long lastCommitNs = System.nanoTime();
+			while (running || -1!=pending) {
+				int index = pending;
+				if (-1!=index) {
+					write(buffers[index]);
+					pending = -1;
+					lastCommitNs = System.nanoTime();
+				} else {
+					long now = System.nanoTime();
+					if (now-lastCommitNs>=commitIntervalNs) {
+						lastCommitNs = now;
+						if (running && takeIdleBuffer(this)) {
+							continue;
+						}
+					}
+					forceIfDue(now);
+					LockSupport.parkNanos(commitIntervalNs);
+				}
+			}
+		} catch (Throwable t) {
+			failure = t;
+			pending = -1;
+		}
+	}
+
+	private void write(ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		long now = System.nanoTime();
+		if ((rollBytes>0 && fileBytes>=rollBytes) || (rollNs>0 && now-fileStartNs>=rollNs)) {
+			closeFile();
+			openNextFile();
+		}
+		while (buffer.hasRemaining()) {
+			fileBytes += channel.write(buffer);
+		}
+		unforced = true;
+		forceIfDue(now);
+	}
+
+	private void forceIfDue(long now) throws IOException {
+		if (unforced && forceIntervalNs>=0 && now-lastForceNs>=forceIntervalNs) {
+			channel.force(false);
+			lastForceNs = now;
+			unforced = false;
+		}
+	}
+
+	private void openNextFile() {
+		try {
+			String name = Integer.toString(fileCount++);
+			while (name.length()<6) {
+				name = "0"+name;
+			}
+			fileStream = new FileOutputStream(new File(folder, prefix+"-"+name+".fast"));
+			channel = fileStream.getChannel();
+			fileBytes = 0;
+			fileStartNs = System.nanoTime();
+		} catch (IOException e) {
+			throw new FASTException(e);
+		}
+	}
+
+	/**
+	 * One past the highest prefix-NNNNNN.fast already in the folder, 0 when there are none.
+	 */
+	static int nextFileNumber(File folder, String prefix) {
+		int next = 0;
+		String[] names = folder.list();
+		if (null!=names) {
+			String start = prefix+"-";
+			int i = names.length;
+			while (--i>=0) {
+				String name = names[i];
+				if (name.startsWith(start) && name.endsWith(".fast")) {
+					String digits = name.substring(start.length(), name.length()-5);
+					if (digits.length()>0 && isDigits(digits)) {
+						next = Math.max(next, Integer.parseInt(digits)+1);
+					}
+				}
+			}
+		}
+		return next;
+	}
+
+	private static boolean isDigits(String value) {
+		int i = value.length();
+		while (--i>=0 && value.charAt(i)>='0' && value.charAt(i)<='9') {
+		}
+		return i<0 && value.length()<10;
+	}
+
+	private void closeFile() throws IOException {
+		if (unforced && forceIntervalNs>=0) {
+			channel.force(false);
+			unforced = false;
+		}
+		fileStream.close();
+	}
+
+	/**
+	 * Number one past the current file, files written by this capture run from the starting number up to fileCount-1.
+	 */
+	public static int fileCount(FASTOutputCapture capture) {
+		return capture.fileCount;
+	}
+
+	/**
+	 * Hands off the active buffer, waits for the writer thread to finish and closes the current file.
+	 */
+	public static void close(FASTOutputCapture capture) {
+		int attempt = 0;
+		while (!capture.swapGuard.compareAndSet(false, true)) {
+			capture.waitPolicy.idle(attempt++);
+		}
+		try {
+			if (capture.buffers[capture.active].position()>0) {
+				handoff(capture);
+			}
+		} finally {
+			capture.swapGuard.set(false);
+		}
+		capture.running = false;
+		LockSupport.unpark(capture.writerThread);
+		try {
+			capture.writerThread.join();
+			capture.closeFile();
+		} catch (InterruptedException e) {
+			throw new FASTException(e);
+		} catch (IOException e) {
+			throw new FASTException(e);
+		}
+		if (null!=capture.failure) {
+			throw new FASTException(capture.failure);
+		}
+	}
+
+}
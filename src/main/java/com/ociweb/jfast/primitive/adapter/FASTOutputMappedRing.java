@@ -0,0 +1,71 @@
+package com.ociweb.jfast.primitive.adapter;
+
+import com.ociweb.jfast.primitive.DataTransfer;
+import com.ociweb.jfast.primitive.FASTOutput;
+import com.ociweb.jfast.primitive.PrimitiveWriter;
+import com.ociweb.jfast.primitive.WaitPolicy;
+
+/**
+ * Producer side of a MappedRing, each flush copies the pending blocks into the shared file and publishes the new head.
+ * Blocks larger than the free space are copied in parts as the consumer makes room, waiting with the WaitPolicy.
+ */
+public class FASTOutputMappedRing implements FASTOutput {
+
+	private final MappedRing ring;
+	private final WaitPolicy waitPolicy;
+	private DataTransfer dataTransfer;
+	private long head;
+	private long tailCache;
+
+	public FASTOutputMappedRing(MappedRing ring, WaitPolicy waitPolicy) {
+		this.ring = ring;
+		this.waitPolicy = waitPolicy;
+		this.head = MappedRing.head(ring);
+		this.tailCache = MappedRing.tail(ring);
+	}
+
+	@Override
+	public void init(DataTransfer dataTransfer) {
+		this.dataTransfer = dataTransfer;
+	}
+
+	@Override
+	public void flush() {
+		int size = PrimitiveWriter.nextBlockSize(dataTransfer.writer);
+		while (size>0) {
+			write(dataTransfer.writer.buffer, PrimitiveWriter.nextOffset(dataTransfer.writer), size);
+			size = PrimitiveWriter.nextBlockSize(dataTransfer.writer);
+		}
+	}
+
+	private void write(byte[] source, int offset, int length) {
+		int attempt = 0;
+		while (length>0) {
+			int free = ring.capacity - (int)(head-tailCache);
+			if (free<=0) {
+				tailCache = MappedRing.tail(ring);
+				if (ring.capacity==(int)(head-tailCache)) {
+					waitPolicy.idle(attempt++);
+				}
+				continue;
+			}
+			int pos = ring.mask & (int)head;
+			int count = Math.min(Math.min(length, free), ring.capacity-pos);
+			ring.data.position(pos);
+			ring.data.put(source, offset, count);
+			head += count;
+			offset += count;
+			length -= count;
+			MappedRing.publishHead(head, ring);
+			attempt = 0;
+		}
+	}
+
+	/**
+	 * Marks the end of the stream for FASTInputMappedRing, call after the last flush.
+	 */
+	public static void publishEOF(FASTOutputMappedRing output) {
+		MappedRing.publishEOF(output.ring);
+	}
+
+}
@@ -37,4 +37,16 @@ public class FASTOutputRingBuffer implements FASTOutput {
 		}
 		RingBuffer.publishWrites(ringBuffer);		
 	}
+
+	/**
+	 * Marks the end of the stream for FASTInputRingBuffer with a block of negative length, call after the last flush.
+	 */
+	public static void publishEOF(FASTOutputRingBuffer output) {
+		RingBuffer rb = output.ringBuffer;
+		output.tailPosCache = RingBuffer.spinBlockOnTail(output.tailPosCache, headPosition(rb)-output.fill, rb);
+		RingBuffer.addMsgIdx(rb, 0);
+		RingBuffer.addValue(rb.buffer, rb.mask, rb.workingHeadPos, 0);
+		RingBuffer.addValue(rb.buffer, rb.mask, rb.workingHeadPos, -1);
+		RingBuffer.publishWrites(rb);
+	}
 }
\ No newline at end of file
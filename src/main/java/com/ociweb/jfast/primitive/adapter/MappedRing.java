@@ -0,0 +1,136 @@
+package com.ociweb.jfast.primitive.adapter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import com.ociweb.jfast.error.FASTException;
+
+/**
+ * Single producer single consumer byte ring in a memory mapped file, shared by FASTOutputMappedRing in one
+ * process and FASTInputMappedRing in another.
+ *
+ * The file starts with a header holding the head (bytes written), the tail (bytes read) and the end of stream flag,
+ * each on its own pair of cache lines so the two sides do not share a line, followed by the data.
+ * Head and tail only ever grow, the position in the data is the counter masked by the capacity.
+ *
+ * Java 7 has no fences for memory outside the heap, so a volatile write followed by a volatile read of a static field
+ * orders the plain accesses to the mapped bytes around each counter. Each side only writes its own counter.
+ */
+public class MappedRing {
+
+    static final int HEAD = 0;
+    static final int TAIL = 128;
+    static final int EOF = 256;
+    static final int CAPACITY = 384;
+    static final int DATA = 512;
+
+    private static volatile int fence;
+
+    final MappedByteBuffer mapped;
+    final ByteBuffer data;
+    final int capacity;
+    final int mask;
+    private final RandomAccessFile file;
+
+    private MappedRing(RandomAccessFile file, int capacity) throws IOException {
+        this.file = file;
+        this.capacity = capacity;
+        this.mask = capacity-1;
+        this.mapped = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, DATA+capacity);
+        this.mapped.position(DATA);
+        this.data = mapped.slice();
+    }
+
+    /**
+     * Replaces any existing file with an empty ring, called by the producer before the consumer opens it.
+     */
+    public static MappedRing create(File path, int capacityBits) {
+        try {
+            if (path.exists() && !path.delete()) {
+                throw new FASTException("Unable to replace "+path);
+            }
+            int capacity = 1<<capacityBits;
+            RandomAccessFile file = new RandomAccessFile(path, "rw");
+            file.setLength(DATA+capacity);
+            MappedRing ring = new MappedRing(file, capacity);
+            ring.mapped.putInt(CAPACITY, capacity);
+            order();
+            return ring;
+        } catch (IOException e) {
+            throw new FASTException(e);
+        }
+    }
+
+    /**
+     * Opens a ring created by the producer, the capacity is taken from the file.
+     */
+    public static MappedRing open(File path) {
+        try {
+            RandomAccessFile file = new RandomAccessFile(path, "rw");
+            if (file.length()<DATA) {
+                file.close();
+                throw new FASTException("Not a mapped ring file "+path);
+            }
+            file.seek(CAPACITY);
+            int capacity = file.readInt(); //big endian like the mapped buffer
+            if (Integer.bitCount(capacity)!=1 || file.length()<DATA+capacity) {
+                file.close();
+                throw new FASTException("Not a mapped ring file "+path);
+            }
+            return new MappedRing(file, capacity);
+        } catch (IOException e) {
+            throw new FASTException(e);
+        }
+    }
+
+    public static void close(MappedRing ring) {
+        try {
+            ring.file.close();
+        } catch (IOException e) {
+            throw new FASTException(e);
+        }
+    }
+
+    private static int order() {
+        fence = 1;
+        return fence;
+    }
+
+    static long head(MappedRing ring) {
+        long head = ring.mapped.getLong(HEAD);
+        order();
+        return head;
+    }
+
+    static void publishHead(long head, MappedRing ring) {
+        order();
+        ring.mapped.putLong(HEAD, head);
+    }
+
+    static long tail(MappedRing ring) {
+        long tail = ring.mapped.getLong(TAIL);
+        order();
+        return tail;
+    }
+
+    static void publishTail(long tail, MappedRing ring) {
+        order();
+        ring.mapped.putLong(TAIL, tail);
+    }
+
+    static boolean isEOF(MappedRing ring) {
+        boolean eof = 0!=ring.mapped.getInt(EOF);
+        order();
+        return eof;
+    }
+
+    static void publishEOF(MappedRing ring) {
+        order();
+        ring.mapped.putInt(EOF, 1);
+    }
+
+}
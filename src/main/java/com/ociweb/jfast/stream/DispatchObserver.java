@@ -1,5 +1,9 @@
 package com.ociweb.jfast.stream;
 
+/**
+ * String based field observer, only called when assertions are enabled.
+ * For tracing under load use the allocation free TraceRing instead.
+ */
 public interface DispatchObserver {
 
 	void tokenItem(long absPos, int token, int cursor, String value);
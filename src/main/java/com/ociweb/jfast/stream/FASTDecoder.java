@@ -1,9 +1,8 @@
 package com.ociweb.jfast.stream;
 
 import com.ociweb.jfast.catalog.loader.TemplateCatalogConfig;
+import com.ociweb.jfast.error.FASTException;
 import com.ociweb.jfast.primitive.PrimitiveReader;
-import com.ociweb.pronghorn.ring.RingBuffer;
-import com.ociweb.pronghorn.ring.RingBufferConfig;
 import com.ociweb.pronghorn.ring.RingBuffers;
 import com.ociweb.pronghorn.ring.loader.DictionaryFactory;
 import com.ociweb.pronghorn.ring.token.TokenBuilder;
@@ -24,6 +23,7 @@ public abstract class FASTDecoder{
     protected final long[] rLongDictionary; //final array with constant references
     protected final int[] rIntDictionary; //final array with constant references
     protected final LocalHeap byteHeap;
+    protected final int[] textRevisions; //bumped each time copy or a dictionary reset replaces the heap value
     
     public int activeScriptCursor=-1; //needed by generated code to hold state between calls.
     public int msgIdx=-1; //must hold between read (wait for space on queue) and write of templateId
@@ -32,11 +32,14 @@ public abstract class FASTDecoder{
     public int maxPMapCountInBytes;       
     
     public final byte[] preambleData;
+    
+    public TemplateMetrics metrics; //opt-in, null unless set
+    public TraceRing trace; //opt-in, null unless set
    
         
     public FASTDecoder(TemplateCatalogConfig catalog) {
 		this(catalog, 
-             RingBuffers.buildNoFanRingBuffers(new RingBuffer(new RingBufferConfig((byte)15, (byte)7, catalog.ringByteConstants(), catalog.getFROM()))) );
+             RingSizing.defaultRingBuffers(catalog) );
         
     }
     
@@ -57,6 +60,7 @@ public abstract class FASTDecoder{
 			            int maxPMapCountInBytes) {
 
         this.byteHeap = dcr.byteDictionary();
+        this.textRevisions = new int[null==byteHeap ? 0 : LocalHeap.itemCount(byteHeap)];
         
         this.sequenceCountStack = new int[maxNestedGroupDepth];
         this.rIntDictionary = dcr.integerDictionary();
@@ -81,11 +85,16 @@ public abstract class FASTDecoder{
         // clear all previous values to un-set
         dictionaryFactory.reset(decoder.rIntDictionary); 
         dictionaryFactory.reset(decoder.rLongDictionary); 
+        decoder.loadDictionaryFields();
                 
         
         if (null!=decoder.byteHeap) {
             LocalHeap.reset(decoder.byteHeap);
         }
+        int i = decoder.textRevisions.length;
+        while (--i>=0) {
+            decoder.textRevisions[i]++;
+        }
         decoder.sequenceCountStackHead = -1;
         
         RingBuffers.reset(decoder.ringBuffers);        
@@ -95,6 +104,39 @@ public abstract class FASTDecoder{
 
     public abstract int decode(PrimitiveReader reader);
 
+    public void setTemplateMetrics(TemplateMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Field level binary trace, only recorded by the interpreter. The generated dispatch does not
+     * visit each field so it rejects a trace ring, load the interpreter with DispatchLoader.loadDispatchReaderDebug
+     * when tracing is required.
+     */
+    public void setTraceRing(TraceRing trace) {
+        if (null!=trace) {
+            throw new FASTException("Field trace is only recorded by the interpreted reader");
+        }
+        this.trace = null;
+    }
+
+    /**
+     * Absolute position in the stream of the next byte to be parsed.
+     */
+    public static long absolutePosition(PrimitiveReader reader) {
+        return PrimitiveReader.totalRead(reader) - PrimitiveReader.bytesReadyToParse(reader);
+    }
+
+    /**
+     * Generated dispatch may keep dictionary slots in fields instead of the arrays, these copy the array values into
+     * those fields and back again. They must be called around any code which touches the arrays directly.
+     */
+    protected void loadDictionaryFields() {
+    }
+
+    protected void storeDictionaryFields() {
+    }
+
 
        
 
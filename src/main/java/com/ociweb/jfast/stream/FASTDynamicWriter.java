@@ -1,7 +1,9 @@
 package com.ociweb.jfast.stream;
 
+import com.ociweb.jfast.primitive.FlushPolicy;
 import com.ociweb.jfast.primitive.PrimitiveWriter;
 import com.ociweb.pronghorn.ring.RingBuffer;
+import com.ociweb.pronghorn.ring.RingReader;
 import com.ociweb.pronghorn.ring.util.LocalHeap;
 
 public class FASTDynamicWriter {
@@ -10,6 +12,11 @@ public class FASTDynamicWriter {
     private final RingBuffer ringBuffer;
     final PrimitiveWriter writer;
 
+    //batch policy, defaults favor latency by flushing at the end of every batch
+    private int batchByteBudget = Integer.MAX_VALUE;
+    private boolean batchFlush = true;
+    private FlushPolicy flushPolicy;
+
     public FASTDynamicWriter(PrimitiveWriter primitiveWriter, RingBuffer ringBuffer, FASTEncoder writerDispatch) {
 
         this.writerDispatch = writerDispatch;
@@ -21,6 +28,91 @@ public class FASTDynamicWriter {
     // this method must never be called unless RingWalker.tryReadFragment(ringBuffer) has returned true
     public static void write(FASTDynamicWriter dynamicWriter) {
     	dynamicWriter.writerDispatch.encode(dynamicWriter.writer, dynamicWriter.ringBuffer);
+    	if (null!=dynamicWriter.flushPolicy) {
+    	    flushIfDue(dynamicWriter);
+    	}
+    }
+
+    /**
+     * When a policy is set it replaces the flush at the end of each group done for minimizeLatency writers
+     * and the flush at the end of writeBatch. Pass null to restore the behavior chosen when the PrimitiveWriter was built.
+     */
+    public void setFlushPolicy(FlushPolicy policy) {
+        this.flushPolicy = policy;
+        PrimitiveWriter.holdFlush(null!=policy, writer);
+    }
+
+    /**
+     * Asks the flush policy if pending bytes should be sent now. Must also be called from the idle loop
+     * when no fragments are available so time based policies can flush a quiet stream.
+     *
+     * @return true if a flush was done
+     */
+    public static boolean flushIfDue(FASTDynamicWriter dynamicWriter) {
+        final PrimitiveWriter writer = dynamicWriter.writer;
+        if (null!=dynamicWriter.flushPolicy &&
+            dynamicWriter.flushPolicy.flushNow(PrimitiveWriter.bytesReadyToWrite(writer), 0==writer.safetyStackDepth,
+                                               0==RingBuffer.contentRemaining(dynamicWriter.ringBuffer), System.nanoTime())) {
+            PrimitiveWriter.flush(writer);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Sets the policy used by writeBatch(FASTDynamicWriter).
+     *
+     * @param byteBudget stop taking new fragments once this many bytes have been encoded and the message is complete
+     * @param flushAtEnd true for latency, flush once when the batch ends. false for throughput, leave the bytes
+     *                   in the PrimitiveWriter until its buffer is half full or it is flushed by the caller.
+     */
+    public void setBatchPolicy(int byteBudget, boolean flushAtEnd) {
+        this.batchByteBudget = byteBudget;
+        this.batchFlush = flushAtEnd;
+    }
+
+    public static int writeBatch(FASTDynamicWriter dynamicWriter) {
+        return writeBatch(dynamicWriter, dynamicWriter.batchByteBudget, dynamicWriter.batchFlush);
+    }
+
+    /**
+     * Encodes every fragment ready on the ring buffer until the byte budget is used, then flushes once if requested
+     * or as decided by the flush policy if one is set.
+     * No flush is done for each group while the batch is encoded even if the PrimitiveWriter was built to minimize latency.
+     * The budget is only checked between messages so a message is never split across two batches.
+     *
+     * Unlike write this method does its own tryReadFragment so it may be called at any time.
+     *
+     * @return count of fragments encoded
+     */
+    public static int writeBatch(FASTDynamicWriter dynamicWriter, int byteBudget, boolean flushAtEnd) {
+
+        final PrimitiveWriter writer = dynamicWriter.writer;
+        final RingBuffer ring = dynamicWriter.ringBuffer;
+        final long startPos = FASTEncoder.absolutePosition(writer);
+        int fragments = 0;
+
+        PrimitiveWriter.holdFlush(true, writer);
+        try {
+            while (RingReader.tryReadFragment(ring)) {
+                if (RingReader.getMsgIdx(ring.ringWalker)>=0) { //skip if we are waiting for more content.
+                    dynamicWriter.writerDispatch.encode(writer, ring);
+                    fragments++;
+                }
+                if (0==writer.safetyStackDepth && FASTEncoder.absolutePosition(writer)-startPos >= byteBudget) {
+                    break;
+                }
+            }
+        } finally {
+            PrimitiveWriter.holdFlush(null!=dynamicWriter.flushPolicy, writer);
+        }
+
+        if (null!=dynamicWriter.flushPolicy) {
+            flushIfDue(dynamicWriter);
+        } else if (flushAtEnd && fragments>0) {
+            PrimitiveWriter.flush(writer);
+        }
+        return fragments;
     }
 
     public void reset(boolean clearData) {
@@ -30,6 +122,7 @@ public class FASTDynamicWriter {
         if (clearData) {
             writerDispatch.dictionaryFactory.reset(writerDispatch.rIntDictionary);
             writerDispatch.dictionaryFactory.reset(writerDispatch.rLongDictionary);
+            writerDispatch.loadDictionaryFields();
             LocalHeap.reset(writerDispatch.byteHeap);
         }
     }
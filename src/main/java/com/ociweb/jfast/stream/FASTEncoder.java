@@ -1,6 +1,7 @@
 package com.ociweb.jfast.stream;
 
 import com.ociweb.jfast.catalog.loader.TemplateCatalogConfig;
+import com.ociweb.jfast.error.FASTException;
 import com.ociweb.jfast.primitive.PrimitiveWriter;
 import com.ociweb.jfast.primitive.adapter.FASTOutputByteArrayEquals;
 import com.ociweb.pronghorn.ring.RingBuffer;
@@ -32,6 +33,8 @@ public abstract class FASTEncoder {
     protected final int[][] dictionaryMembers;
 
     protected DispatchObserver observer;
+    public TemplateMetrics metrics; //opt-in, null unless set
+    public TraceRing trace; //opt-in, null unless set
     public int activeScriptCursor;
 
     
@@ -98,6 +101,29 @@ public abstract class FASTEncoder {
     }
 
 
+    public void setTemplateMetrics(TemplateMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Field level binary trace, only recorded by the interpreter. The generated dispatch does not
+     * visit each field so it rejects a trace ring, load the interpreter with DispatchLoader.loadDispatchWriterDebug
+     * when tracing is required.
+     */
+    public void setTraceRing(TraceRing trace) {
+        if (null!=trace) {
+            throw new FASTException("Field trace is only recorded by the interpreted writer");
+        }
+        this.trace = null;
+    }
+
+    /**
+     * Absolute position in the stream of the next byte to be written.
+     */
+    public static long absolutePosition(PrimitiveWriter writer) {
+        return PrimitiveWriter.totalWritten(writer) + PrimitiveWriter.bytesReadyToWrite(writer);
+    }
+
     public static boolean notifyFieldPositions(PrimitiveWriter writer, int activeScriptCursor) {
         
         if (null!=writer && writer.output instanceof FASTOutputByteArrayEquals) {
@@ -118,6 +144,16 @@ public abstract class FASTEncoder {
     public int getActiveScriptCursor() {
         return activeScriptCursor;
     }
+
+    /**
+     * Generated dispatch may keep dictionary slots in fields instead of the arrays, these copy the array values into
+     * those fields and back again. They must be called around any code which touches the arrays directly.
+     */
+    protected void loadDictionaryFields() {
+    }
+
+    protected void storeDictionaryFields() {
+    }
     
     
 }
@@ -0,0 +1,230 @@
+package com.ociweb.jfast.stream;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.LockSupport;
+
+import com.ociweb.jfast.error.FASTException;
+import com.ociweb.jfast.primitive.PrimitiveWriter;
+
+/**
+ * Encodes many independent sessions on a fixed pool of worker threads.
+ *
+ * Encoding of a single session can not be split across threads because the dictionary is shared by every field,
+ * so instead each FASTDynamicWriter is assigned to exactly one worker for its whole life. The dictionaries,
+ * PrimitiveWriter buffer and FASTOutput of a session are only ever touched by that worker so they stay in its
+ * cache and no locks are needed. Each session writes to its own FASTOutput, output order within a session is
+ * the order of its ring buffer.
+ *
+ * Workers call writeBatch on each of their sessions in turn. When a full pass finds nothing to encode the
+ * flush policies are given a chance to run and the worker parks for idleParkNs.
+ *
+ * Sessions are handed to the worker through a lock free queue so register may be called from any thread at any time.
+ * A service may be started once, after shutdown its threads are gone and a new service must be built.
+ */
+public final class FASTEncoderService {
+
+    private static final int NEW = 0;
+    private static final int RUNNING = 1;
+    private static final int STOPPED = 2;
+
+    private final Worker[] workers;
+    private final Map<FASTDynamicWriter,Worker> owners = new IdentityHashMap<FASTDynamicWriter,Worker>();
+    private volatile int state = NEW;
+    private final long idleParkNs;
+    private int nextSession;
+
+    public FASTEncoderService(int workerCount, long idleParkNs) {
+        if (workerCount<1) {
+            throw new FASTException("At least one worker is required");
+        }
+        this.idleParkNs = idleParkNs;
+        this.workers = new Worker[workerCount];
+        int i = workerCount;
+        while (--i>=0) {
+            workers[i] = new Worker(i);
+        }
+    }
+
+    /**
+     * Adds a session to the service, the session is bound to worker (sessionId % workerCount).
+     * After this call the FASTDynamicWriter and its PrimitiveWriter must not be used by any other thread.
+     *
+     * @return sessionId
+     */
+    public synchronized int register(FASTDynamicWriter dynamicWriter) {
+        if (STOPPED==state) {
+            throw new FASTException("Service was shut down");
+        }
+        if (owners.containsKey(dynamicWriter)) {
+            throw new FASTException("Session already registered");
+        }
+        int sessionId = nextSession++;
+        Worker worker = workers[sessionId % workers.length];
+        owners.put(dynamicWriter, worker);
+        worker.incoming.add(dynamicWriter);
+        LockSupport.unpark(worker.thread);
+        return sessionId;
+    }
+
+    /**
+     * Removes a session, the owning worker encodes what is left on its ring buffer and flushes before it lets go.
+     *
+     * @return counted down once the session is drained, after that the caller owns the FASTDynamicWriter again
+     */
+    public synchronized CountDownLatch unregister(FASTDynamicWriter dynamicWriter) {
+        Worker worker = owners.remove(dynamicWriter);
+        if (null==worker) {
+            throw new FASTException("Session is not registered");
+        }
+        CountDownLatch drained = new CountDownLatch(1);
+        if (STOPPED==state) {
+            drained.countDown(); //the final pass of the worker already drained it
+        } else {
+            worker.outgoing.add(new Removal(dynamicWriter, drained));
+            LockSupport.unpark(worker.thread);
+        }
+        return drained;
+    }
+
+    public synchronized void start() {
+        if (NEW!=state) {
+            throw new FASTException(RUNNING==state ? "Already started" : "Service was shut down");
+        }
+        state = RUNNING;
+        int i = workers.length;
+        while (--i>=0) {
+            workers[i].thread.start();
+        }
+    }
+
+    public static boolean isRunning(FASTEncoderService service) {
+        return RUNNING==service.state;
+    }
+
+    /**
+     * Stops all workers after they finish encoding and flushing what is already on their ring buffers.
+     * Sessions waiting to be unregistered are drained first.
+     */
+    public synchronized void shutdown() throws InterruptedException {
+        boolean started = NEW!=state;
+        state = STOPPED;
+        if (!started) {
+            return;
+        }
+        int i = workers.length;
+        while (--i>=0) {
+            LockSupport.unpark(workers[i].thread);
+        }
+        i = workers.length;
+        while (--i>=0) {
+            workers[i].thread.join();
+        }
+    }
+
+    public static int workerCount(FASTEncoderService service) {
+        return service.workers.length;
+    }
+
+    /**
+     * Total fragments encoded by one worker, may be read from any thread.
+     */
+    public static long fragments(int worker, FASTEncoderService service) {
+        return service.workers[worker].fragments;
+    }
+
+    private static final class Removal {
+
+        final FASTDynamicWriter dynamicWriter;
+        final CountDownLatch drained;
+
+        Removal(FASTDynamicWriter dynamicWriter, CountDownLatch drained) {
+            this.dynamicWriter = dynamicWriter;
+            this.drained = drained;
+        }
+
+    }
+
+    private final class Worker implements Runnable {
+
+        final Thread thread;
+        final ConcurrentLinkedQueue<FASTDynamicWriter> incoming = new ConcurrentLinkedQueue<FASTDynamicWriter>();
+        final ConcurrentLinkedQueue<Removal> outgoing = new ConcurrentLinkedQueue<Removal>();
+
+        FASTDynamicWriter[] sessions = new FASTDynamicWriter[16];
+        int sessionCount;
+        volatile long fragments;
+
+        Worker(int id) {
+            thread = new Thread(this, "FASTEncoder-"+id);
+            thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            boolean running = true;
+            while (running) {
+                running = RUNNING==state;
+                acceptChanges();
+
+                int total = 0;
+                int i = sessionCount;
+                while (--i>=0) {
+                    total += FASTDynamicWriter.writeBatch(sessions[i]);
+                }
+                fragments += total;
+
+                if (0==total) {
+                    i = sessionCount;
+                    while (--i>=0) {
+                        FASTDynamicWriter.flushIfDue(sessions[i]);
+                    }
+                    if (running) {
+                        LockSupport.parkNanos(idleParkNs);
+                    }
+                }
+            }
+            //final pass so nothing is left behind in the writers
+            int i = sessionCount;
+            while (--i>=0) {
+                drain(sessions[i]);
+            }
+        }
+
+        /**
+         * Encodes what is left on the ring buffer and flushes unconditionally, bytes held back by a flush policy
+         * or by an earlier batch that did not flush are sent as well.
+         */
+        private void drain(FASTDynamicWriter dw) {
+            fragments += FASTDynamicWriter.writeBatch(dw, Integer.MAX_VALUE, true);
+            PrimitiveWriter.flush(dw.writer);
+        }
+
+        private void acceptChanges() {
+            FASTDynamicWriter dw;
+            while (null!=(dw = incoming.poll())) {
+                if (sessionCount==sessions.length) {
+                    sessions = Arrays.copyOf(sessions, sessionCount*2);
+                }
+                sessions[sessionCount++] = dw;
+            }
+            Removal removal;
+            while (null!=(removal = outgoing.poll())) {
+                int i = sessionCount;
+                while (--i>=0) {
+                    if (sessions[i]==removal.dynamicWriter) {
+                        drain(removal.dynamicWriter);
+                        sessions[i] = sessions[--sessionCount];
+                        sessions[sessionCount] = null;
+                    }
+                }
+                removal.drained.countDown();
+            }
+        }
+
+    }
+
+}
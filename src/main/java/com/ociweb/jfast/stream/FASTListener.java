@@ -2,9 +2,22 @@ package com.ociweb.jfast.stream;
 
 import com.ociweb.pronghorn.ring.RingBuffer;
 
+/**
+ * Receives each decoded fragment from FASTReaderReactor.pump(reactor, listener).
+ */
 public interface FASTListener {
 
-    void fragment(int templateId, RingBuffer buffer);
+    /**
+     * A fragment has been decoded into buffer, its fields are read from buffer.workingTailPos.
+     *
+     * @param msgIdx script position of the message the fragment belongs to, see RingReader.getMsgIdx, not the template id
+     */
+    void fragment(int msgIdx, RingBuffer buffer);
+
+    /**
+     * Called right after fragment(int, RingBuffer) for the same fragment, which can still be read from the ring passed
+     * there. Listeners which only note the ring in the first call do their work here, others leave it empty.
+     */
     void fragment();
-    
+
 }
@@ -37,7 +37,7 @@ public class FASTReaderInterpreterDispatch extends FASTReaderDispatchTemplates i
 
         
     public FASTReaderInterpreterDispatch(byte[] catBytes, RingBuffers ringBuffers) {
-        this(new TemplateCatalogConfig(catBytes), ringBuffers);
+        this(TemplateCatalogConfig.shared(catBytes), ringBuffers);
     }    
     
     public FASTReaderInterpreterDispatch(TemplateCatalogConfig catalog, RingBuffers ringBuffers) {
@@ -62,6 +62,14 @@ public class FASTReaderInterpreterDispatch extends FASTReaderDispatchTemplates i
         
     }
 
+    /**
+     * Records every field visited by this interpreter, null to stop.
+     */
+    @Override
+    public void setTraceRing(TraceRing trace) {
+        this.trace = trace;
+    }
+
     public void callBeginMessage(PrimitiveReader reader) {
         beginMessage(reader);
     }
@@ -113,6 +121,10 @@ public class FASTReaderInterpreterDispatch extends FASTReaderDispatchTemplates i
     // -1 end of file, 0 no data, 1 loaded
     public int decode(PrimitiveReader reader) {
 
+        if (null!=metrics) {
+            TemplateMetrics.begin(activeScriptCursor<0 || activeScriptCursor==msgIdx, absolutePosition(reader), metrics);
+        }
+        
     	final RingBuffer rbRingBuffer;
         if (activeScriptCursor<0) {
             if (PrimitiveReader.isEOF(reader)) { 
@@ -139,9 +151,19 @@ public class FASTReaderInterpreterDispatch extends FASTReaderDispatchTemplates i
         
         assert(rbRingBuffer.workingHeadPos.value>=RingBuffer.headPosition(rbRingBuffer));
         
+        final TraceRing traceRing = trace;
+        long traceAbsPos = 0;
+        long traceHeadPos = 0;
+        int traceCursor = 0;
+        
         int token;
         do {
             token = fullScript[activeScriptCursor];
+            if (null!=traceRing) {
+                traceCursor = activeScriptCursor;
+                traceAbsPos = absolutePosition(reader);
+                traceHeadPos = rbRingBuffer.workingHeadPos.value;
+            }
   
         //    System.err.println("reading:"+TokenBuilder.tokenToString(token)+" from "+(null==reader ? "N/A" : String.valueOf(reader.position)));
     
@@ -216,6 +238,9 @@ public class FASTReaderInterpreterDispatch extends FASTReaderDispatchTemplates i
                                 //Close group
                                 int idx = TokenBuilder.MAX_INSTANCE & token;
                                 closeGroup(token,idx, reader);                               
+                                if (null!=traceRing) {
+                                    TraceRing.recordFromRing(traceAbsPos, token, traceCursor, rbRingBuffer.buffer, traceHeadPos, rbRingBuffer.mask, traceRing);
+                                }
                                 break;
                             }                            
                             
@@ -244,6 +269,9 @@ public class FASTReaderInterpreterDispatch extends FASTReaderDispatchTemplates i
                         int jumpToTarget = activeScriptCursor + (TokenBuilder.MAX_INSTANCE & fullScript[1+activeScriptCursor]) + 1;
                         //code generator will always return the next step in the script in order to build out all the needed fragments.
                         readLength(token,jumpToTarget, readFromIdx, reader); 
+                        if (null!=traceRing) {
+                            TraceRing.recordFromRing(traceAbsPos, token, traceCursor, rbRingBuffer.buffer, traceHeadPos, rbRingBuffer.mask, traceRing);
+                        }
                         break;
                     }
                 } else {
@@ -262,6 +290,9 @@ public class FASTReaderInterpreterDispatch extends FASTReaderDispatchTemplates i
                 }
             }
             
+            if (null!=traceRing) {
+                TraceRing.recordFromRing(traceAbsPos, token, traceCursor, rbRingBuffer.buffer, traceHeadPos, rbRingBuffer.mask, traceRing);
+            }
             ++activeScriptCursor;           
             
         } while (true);
@@ -283,6 +314,9 @@ public class FASTReaderInterpreterDispatch extends FASTReaderDispatchTemplates i
         }
         assert(rbRingBuffer.byteWorkingHeadPos.value == rbRingBuffer.bytesHeadPos.get());
         
+        if (null!=metrics) {
+            TemplateMetrics.end(msgIdx, absolutePosition(reader), metrics);
+        }
         return 1;//read one fragment 
     }
 
@@ -704,7 +738,7 @@ public class FASTReaderInterpreterDispatch extends FASTReaderDispatchTemplates i
 	                if (0 == (idx & 4)) {
 	                    // text
 	                    while (m < limit && (idx = members[m++]) >= 0) {
-	                        genReadDictionaryTextReset(idx, byteHeap);
+	                        genReadDictionaryTextReset(idx, byteHeap, textRevisions);
 	                    }
 	                } else {
 	                    if (0 == (idx & 2)) {
@@ -713,7 +747,7 @@ public class FASTReaderInterpreterDispatch extends FASTReaderDispatchTemplates i
 	                    } else {
 	                        // bytes
 	                        while (m < limit && (idx = members[m++]) >= 0) {
-	                            genReadDictionaryBytesReset(idx, byteHeap);
+	                            genReadDictionaryBytesReset(idx, byteHeap, textRevisions);
 	                        }
 	                    }
 	                }
@@ -1374,7 +1408,7 @@ public class FASTReaderInterpreterDispatch extends FASTReaderDispatchTemplates i
             if (0 == (token & (2 << TokenBuilder.SHIFT_OPER))) {// compiler does
                                                                 // all the work.
                 // copy
-                genReadBytesCopy(idx, 0, rbRingBuffer.buffer, rbRingBuffer.mask, byteHeap, reader, rbRingBuffer.workingHeadPos, rbRingBuffer);
+                genReadBytesCopy(idx, 0, rbRingBuffer.buffer, rbRingBuffer.mask, byteHeap, reader, rbRingBuffer.workingHeadPos, rbRingBuffer, textRevisions);
                 //TODO: T, need unit tests to cover null vs zero length optional copy byte arrays, this case may not be 100% covered
             } else {
                 // default
@@ -1427,7 +1461,7 @@ public class FASTReaderInterpreterDispatch extends FASTReaderDispatchTemplates i
                                                                 // all the work.
                 // copy
                 int idx = token & MAX_BYTE_INSTANCE_MASK;
-                genReadBytesCopy(idx, 1, rbRingBuffer.buffer, rbRingBuffer.mask, byteHeap, reader, rbRingBuffer.workingHeadPos, rbRingBuffer);
+                genReadBytesCopy(idx, 1, rbRingBuffer.buffer, rbRingBuffer.mask, byteHeap, reader, rbRingBuffer.workingHeadPos, rbRingBuffer, textRevisions);
             } else {
                 // default
                 int constValue =    token & MAX_BYTE_INSTANCE_MASK;
@@ -1513,7 +1547,7 @@ public class FASTReaderInterpreterDispatch extends FASTReaderDispatchTemplates i
             if (0 == (token & (2 << TokenBuilder.SHIFT_OPER))) {// compiler does
                                                                 // all the work.
                 // copy
-                genReadBytesCopy(idx,1, rbRingBuffer.buffer, rbRingBuffer.mask, byteHeap, reader, rbRingBuffer.workingHeadPos, rbRingBuffer);
+                genReadBytesCopy(idx,1, rbRingBuffer.buffer, rbRingBuffer.mask, byteHeap, reader, rbRingBuffer.workingHeadPos, rbRingBuffer, textRevisions);
             } else {
                 // default
                 int initId = LocalHeap.INIT_VALUE_MASK | idx;
@@ -1577,7 +1611,7 @@ public class FASTReaderInterpreterDispatch extends FASTReaderDispatchTemplates i
             if (0 == (token & (2 << TokenBuilder.SHIFT_OPER))) {// compiler does
                                                                 // all the work.
                 // copy
-                genReadASCIICopy(idx, rbRingBuffer.mask, rbRingBuffer.buffer, reader, byteHeap, rbRingBuffer.workingHeadPos, rbRingBuffer); //always dynamic
+                genReadASCIICopy(idx, rbRingBuffer.mask, rbRingBuffer.buffer, reader, byteHeap, rbRingBuffer.workingHeadPos, rbRingBuffer, textRevisions); //always dynamic
             } else {
                 // default
                 int initId = LocalHeap.INIT_VALUE_MASK|idx;
@@ -1622,7 +1656,7 @@ public class FASTReaderInterpreterDispatch extends FASTReaderDispatchTemplates i
             if (0 == (token & (2 << TokenBuilder.SHIFT_OPER))) {// compiler does
                                                                 // all the work.
                 // copy
-                genReadBytesCopy(idx,0, rbRingBuffer.buffer, rbRingBuffer.mask, byteHeap, reader, rbRingBuffer.workingHeadPos, rbRingBuffer);
+                genReadBytesCopy(idx,0, rbRingBuffer.buffer, rbRingBuffer.mask, byteHeap, reader, rbRingBuffer.workingHeadPos, rbRingBuffer, textRevisions);
                 
             } else {
                 // default
@@ -1659,7 +1693,7 @@ public class FASTReaderInterpreterDispatch extends FASTReaderDispatchTemplates i
                 }
             } else {
                 if (0 == (token & (2 << TokenBuilder.SHIFT_OPER))) {
-                    genReadASCIICopyOptional(idx, rbRingBuffer.buffer, rbRingBuffer.mask, byteHeap, reader, rbRingBuffer.workingHeadPos, rbRingBuffer);
+                    genReadASCIICopyOptional(idx, rbRingBuffer.buffer, rbRingBuffer.mask, byteHeap, reader, rbRingBuffer.workingHeadPos, rbRingBuffer, textRevisions);
                 } else {
                     // for ASCII we don't need special behavior for optional
                     int initId = LocalHeap.INIT_VALUE_MASK|idx;
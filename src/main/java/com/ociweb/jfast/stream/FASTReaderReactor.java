@@ -3,15 +3,23 @@
 //Send support requests to http://www.ociweb.com/contact
 package com.ociweb.jfast.stream;
 
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import com.ociweb.jfast.catalog.loader.TemplateCatalogConfig;
+import com.ociweb.jfast.generator.DispatchLoader;
 import com.ociweb.jfast.primitive.FASTInput;
 import com.ociweb.jfast.primitive.InputBlockagePolicy;
 import com.ociweb.jfast.primitive.PrimitiveReader;
 import com.ociweb.pronghorn.ring.RingBuffer;
 import com.ociweb.pronghorn.ring.RingBuffers;
-
+import com.ociweb.pronghorn.ring.RingReader;
+import com.ociweb.pronghorn.ring.token.TokenBuilder;
+import com.ociweb.pronghorn.ring.token.TypeMask;
+import com.ociweb.pronghorn.ring.util.LocalHeap;
 
 // TODO: B, Check support for group that may be optional
 
@@ -54,16 +62,35 @@ public final class FASTReaderReactor {
      * @return
      */
     
-    private final FASTDecoder decoder; 
+    private volatile FASTDecoder decoder; //only replaced by the decoding thread at a message boundary, read by ringBuffers()
     public final PrimitiveReader reader;//the reader is non-blocking but awkward to use directly.
     
+    //hot swap of the catalog, staged by a background thread and applied by the decoding thread
+    private TemplateCatalogConfig catalog;
+    private volatile TemplateCatalogConfig pendingCatalog;
+    private volatile FASTDecoder pendingDecoder;
+    private volatile boolean swapRequested;
+    private volatile int catalogVersion;
+
+    //rings drained by the push style pump, looked up again after a catalog swap
+    private RingBuffer[] pushRings;
+    private int pushRingsVersion;
+
     //TODO: B, single execution service must be used for all and passed in, it also needs extra paused threads for release later.
     //TODO: B, reactor will add its runnable to to the single service and remove upon dispose.
     
     public FASTReaderReactor(FASTDecoder decoder, PrimitiveReader reader) {
+        this(decoder, reader, null);
+    }
+    
+    /**
+     * @param catalog the catalog used to build the decoder, required for an unknown template id to trigger a hot swap
+     *                and for dictionaries to carry over to the next catalog
+     */
+    public FASTReaderReactor(FASTDecoder decoder, PrimitiveReader reader, TemplateCatalogConfig catalog) {
         this.decoder=decoder;
         this.reader=reader;
-        
+        this.catalog=catalog;
     }
     
     //TODO: B, support zero copy mapping by (reader adds gaps to rb, writer can skip inputs from rb) add to config
@@ -104,8 +131,7 @@ public final class FASTReaderReactor {
     private Runnable buildRunnable(final ThreadPoolExecutor executorService, final AtomicBoolean isAlive) {
         final Runnable run = new Runnable() {
 
-            final FASTDecoder decoder2 = FASTReaderReactor.this.decoder;
-            final PrimitiveReader reader2 = FASTReaderReactor.this.reader;
+            final FASTReaderReactor reactor = FASTReaderReactor.this;
 
             @Override
             public void run() {
@@ -115,7 +141,7 @@ public final class FASTReaderReactor {
                     int c = 0x1FFFFF;
                     while (--c>=0)  { 
                         
-                        if ((f=decoder2.decode(reader2))<=0) { //break on eof or no room to read
+                        if ((f=pump(reactor))<=0) { //break on eof or no room to read
                            
                             break;
                         }  
@@ -135,12 +161,215 @@ public final class FASTReaderReactor {
 
     public static int pump(FASTReaderReactor reactor) {
     	//System.err.println("  _______________________  FAST Decode (write to ring buffer )");
-            return reactor.decoder.decode(reactor.reader);
+            FASTDecoder decoder = reactor.decoder;
+            if (null!=reactor.pendingDecoder && decoder.activeScriptCursor<0) {
+                if (!swapIfReady(reactor)) {
+                    return 0; //next template id is not buffered yet, try again later
+                }
+                decoder = reactor.decoder;
+            }
+            return decoder.decode(reactor.reader);
     }
-    
+
+    /**
+     * Push style decode for a single thread which both decodes and acts on the data. Decodes the next fragment and hands
+     * it to the listener right away on this thread, the ring is only a scratch area which is released again before
+     * the next fragment is decoded so it can be tiny and stays in cache. No other thread may read these rings.
+     *
+     * For each fragment the listener is called with fragment(msgIdx, ring) and then fragment(), both before the next
+     * fragment is read, see CallbackGenerator for typed callbacks.
+     *
+     * @return same as pump(reactor)
+     */
+    public static int pump(FASTReaderReactor reactor, FASTListener listener) {
+            int result = pump(reactor);
+            if (result>0) {
+                RingBuffer[] rings = reactor.pushRings;
+                if (null==rings || reactor.pushRingsVersion!=reactor.catalogVersion) {
+                    rings = reactor.pushRings = RingBuffers.buffers(reactor.decoder.ringBuffers);
+                    reactor.pushRingsVersion = reactor.catalogVersion;
+                }
+                int r = rings.length;
+                while (--r>=0) {
+                    RingBuffer ring = rings[r];
+                    while (RingReader.tryReadFragment(ring)) {
+                        int msgIdx = RingReader.getMsgIdx(ring.ringWalker);
+                        if (msgIdx>=0) {
+                            listener.fragment(msgIdx, ring);
+                            listener.fragment();
+                        }
+                    }
+                }
+            }
+            return result;
+    }
+
     public RingBuffer[] ringBuffers() {
     	return RingBuffers.buffers(decoder.ringBuffers);
     }
     
+    /**
+     * Loads the decoder for a new catalog on the executor. Once ready it replaces the running decoder at the next
+     * message boundary where either requestSwap has been called or the next template id is only found in the new catalog.
+     * 
+     * The new decoder writes to the given ring buffers, consumers should finish the old rings and then move to the new ones
+     * when catalogVersion changes.
+     */
+    public static FutureTask<FASTDecoder> prepareCatalog(final byte[] catBytes, final RingBuffers ringBuffers, Executor executor, final FASTReaderReactor reactor) {
+        FutureTask<FASTDecoder> task = new FutureTask<FASTDecoder>(new Callable<FASTDecoder>() {
+            @Override
+            public FASTDecoder call() throws Exception {
+                FASTDecoder next = DispatchLoader.loadDispatchReader(catBytes, ringBuffers);
+                reactor.pendingCatalog = TemplateCatalogConfig.shared(catBytes);
+                reactor.pendingDecoder = next; //must be last, the decoding thread checks this one
+                return next;
+            }});
+        executor.execute(task);
+        return task;
+    }
+    
+    /**
+     * Swap to the prepared catalog at the next message boundary even if no unknown template is seen.
+     */
+    public static void requestSwap(FASTReaderReactor reactor) {
+        reactor.swapRequested = true;
+    }
+    
+    /**
+     * Incremented each time the catalog is replaced.
+     */
+    public static int catalogVersion(FASTReaderReactor reactor) {
+        return reactor.catalogVersion;
+    }
+
+    /**
+     * Revision of each text and byte array dictionary value of the running decoder, see SymbolCache.
+     */
+    static int[] textRevisions(FASTReaderReactor reactor) {
+        return reactor.decoder.textRevisions;
+    }
+    
+    //called only between messages, returns false if we can not tell yet because the next template id has not arrived
+    private static boolean swapIfReady(FASTReaderReactor reactor) {
+        if (!reactor.swapRequested) {
+            if (null==reactor.catalog) {
+                return true;
+            }
+            int preambleBytes = reactor.decoder.preambleData.length;
+            long templateId = PrimitiveReader.peekTemplateId(preambleBytes, reactor.reader);
+            if (PrimitiveReader.PEEK_NOT_BUFFERED == templateId) {
+                PrimitiveReader.fetch(reactor.reader);
+                templateId = PrimitiveReader.peekTemplateId(preambleBytes, reactor.reader);
+                if (PrimitiveReader.PEEK_NOT_BUFFERED == templateId) {
+                    return PrimitiveReader.isEOF(reactor.reader);
+                }
+            }
+            if (templateId<0 || TemplateCatalogConfig.templateStart(templateId, reactor.catalog)>=0 
+                             || TemplateCatalogConfig.templateStart(templateId, reactor.pendingCatalog)<0) {
+                return true; //keep the current catalog
+            }
+        }
+        FASTDecoder next = reactor.pendingDecoder;
+        if (null!=reactor.catalog) {
+            carryDictionaries(reactor.catalog, reactor.decoder, reactor.pendingCatalog, next);
+        }
+        //the reader was sized for the pmaps of the first catalog, the new one may nest deeper or need more bits
+        PrimitiveReader.ensurePMapCapacity(next.maxPMapCountInBytes, reactor.reader);
+        reactor.decoder = next;
+        reactor.catalog = reactor.pendingCatalog;
+        reactor.pendingDecoder = null;
+        reactor.pendingCatalog = null;
+        reactor.swapRequested = false;
+        reactor.catalogVersion++;
+        return true;
+    }
+    
+    /**
+     * Copies the integer, long, text and byte array dictionary values of every template which is the same in both catalogs
+     * so the new decoder continues with the same state. Templates which changed start over from their initial values.
+     */
+    static void carryDictionaries(TemplateCatalogConfig oldCatalog, FASTDecoder oldDecoder, TemplateCatalogConfig newCatalog, FASTDecoder newDecoder) {
+        int[] oldScript = oldCatalog.fullScript();
+        int[] newScript = newCatalog.fullScript();
+        long[] oldIds = oldCatalog.fieldIdScript();
+        long[] newIds = newCatalog.fieldIdScript();
+        
+        oldDecoder.storeDictionaryFields();
+        long[] templateIds = TemplateCatalogConfig.templateIds(oldCatalog);
+        int t = templateIds.length;
+        while (--t>=0) {
+            int newStart = TemplateCatalogConfig.templateStart(templateIds[t], newCatalog);
+            if (newStart<0) {
+                continue;
+            }
+            int oldStart = TemplateCatalogConfig.templateStart(templateIds[t], oldCatalog);
+            int length = TemplateCatalogConfig.templateLimit(oldStart, oldCatalog)-oldStart;
+            if (length != TemplateCatalogConfig.templateLimit(newStart, newCatalog)-newStart) {
+                continue;
+            }
+            //same shape means same types, operators and field ids, the dictionary slots may still be different
+            int i = length;
+            while (--i>=0 && sameField(oldScript[oldStart+i], newScript[newStart+i]) && oldIds[oldStart+i]==newIds[newStart+i]) {
+            }
+            if (i>=0) {
+                continue;
+            }
+            i = length;
+            while (--i>=0) {
+                int oldToken = oldScript[oldStart+i];
+                int newToken = newScript[newStart+i];
+                int type = TokenBuilder.extractType(oldToken);
+                int oldIdx = oldToken & TokenBuilder.MAX_INSTANCE;
+                int newIdx = newToken & TokenBuilder.MAX_INSTANCE;
+                if (isIntDictionary(type)) {
+                    if (oldIdx<oldDecoder.rIntDictionary.length && newIdx<newDecoder.rIntDictionary.length) {
+                        newDecoder.rIntDictionary[newIdx] = oldDecoder.rIntDictionary[oldIdx];
+                    }
+                } else if (isLongDictionary(type)) {
+                    if (oldIdx<oldDecoder.rLongDictionary.length && newIdx<newDecoder.rLongDictionary.length) {
+                        newDecoder.rLongDictionary[newIdx] = oldDecoder.rLongDictionary[oldIdx];
+                    }
+                } else if (isHeapDictionary(type)) {
+                    if (null!=oldDecoder.byteHeap && null!=newDecoder.byteHeap
+                        && oldIdx<LocalHeap.itemCount(oldDecoder.byteHeap) && newIdx<LocalHeap.itemCount(newDecoder.byteHeap)) {
+                        carryHeapValue(oldDecoder.byteHeap, oldIdx, newDecoder.byteHeap, newIdx);
+                    }
+                }
+            }
+        }
+        newDecoder.loadDictionaryFields();
+    }
+    
+    private static void carryHeapValue(LocalHeap oldHeap, int oldIdx, LocalHeap newHeap, int newIdx) {
+        if (LocalHeap.isNull(oldIdx, oldHeap)) {
+            LocalHeap.setNull(newIdx, newHeap);
+            return;
+        }
+        int length = LocalHeap.valueLength(oldIdx, oldHeap);
+        byte[] value = new byte[length];
+        LocalHeap.copyToRingBuffer(oldIdx, value, 0, 0xFFFFFFFF, oldHeap);
+        LocalHeap.set(newIdx, value, 0, length, 0xFFFFFFFF, newHeap);
+    }
+    
+    private static boolean sameField(int oldToken, int newToken) {
+        return TokenBuilder.extractType(oldToken)==TokenBuilder.extractType(newToken) 
+            && TokenBuilder.extractOper(oldToken)==TokenBuilder.extractOper(newToken);
+    }
+    
+    private static boolean isIntDictionary(int type) {
+        return type==TypeMask.IntegerUnsigned || type==TypeMask.IntegerUnsignedOptional || type==TypeMask.IntegerSigned 
+            || type==TypeMask.IntegerSignedOptional || type==TypeMask.Decimal || type==TypeMask.DecimalOptional;
+    }
+    
+    private static boolean isLongDictionary(int type) {
+        return type==TypeMask.LongUnsigned || type==TypeMask.LongUnsignedOptional || type==TypeMask.LongSigned 
+            || type==TypeMask.LongSignedOptional;
+    }
+    
+    private static boolean isHeapDictionary(int type) {
+        return type==TypeMask.TextASCII || type==TypeMask.TextASCIIOptional || type==TypeMask.TextUTF8 
+            || type==TypeMask.TextUTF8Optional || type==TypeMask.ByteArray || type==TypeMask.ByteArrayOptional;
+    }
+    
 
 }
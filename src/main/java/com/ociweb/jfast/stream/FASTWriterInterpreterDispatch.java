@@ -26,7 +26,7 @@ public class FASTWriterInterpreterDispatch extends FASTWriterDispatchTemplates i
     protected final String[] fieldNameScript;
     
     public FASTWriterInterpreterDispatch(byte[] catBytes) {
-        this(new TemplateCatalogConfig(catBytes));
+        this(TemplateCatalogConfig.shared(catBytes));
     }    
   
 
@@ -35,6 +35,14 @@ public class FASTWriterInterpreterDispatch extends FASTWriterDispatchTemplates i
         this.fieldIdScript = catalog.fieldIdScript();
         this.fieldNameScript = catalog.fieldNameScript();
     }
+
+    /**
+     * Records every field visited by this interpreter, null to stop.
+     */
+    @Override
+    public void setTraceRing(TraceRing trace) {
+        this.trace = trace;
+    }
     
 
     public void acceptLongSignedOptional(int token, long valueOfNull, int rbPos, RingBuffer rbRingBuffer, PrimitiveWriter writer) {
@@ -685,6 +693,9 @@ public class FASTWriterInterpreterDispatch extends FASTWriterDispatchTemplates i
         int token = fullScript[activeScriptCursor];
        
         assert (gatherWriteData(writer, token, activeScriptCursor, fieldPos, rbRingBuffer));
+        if (null!=trace) {
+            traceWriteData(writer, token, activeScriptCursor, fieldPos, rbRingBuffer);
+        }
                    
      //System.err.println("FASTWriterInterpreterDispatch: "+TokenBuilder.tokenToString(token)+" fieldPos "+fieldPos);
               
@@ -1259,6 +1270,28 @@ public class FASTWriterInterpreterDispatch extends FASTWriterDispatchTemplates i
         return true;
     }
     
+    private void traceWriteData(PrimitiveWriter writer, int token, int cursor, int fieldPos, RingBuffer queue) {
+        
+        long value = 0;
+        long aux = 0;
+        int type = TokenBuilder.extractType(token);
+        if (type == TypeMask.GroupLength || type == TypeMask.IntegerSigned
+                || type == TypeMask.IntegerSignedOptional || type == TypeMask.IntegerUnsigned
+                || type == TypeMask.IntegerUnsignedOptional) {
+            value = RingReader.readInt(queue, fieldPos);
+        } else if (type == TypeMask.LongSigned || type == TypeMask.LongSignedOptional
+                || type == TypeMask.LongUnsigned || type == TypeMask.LongUnsignedOptional) {
+            value = RingReader.readLong(queue, fieldPos);
+        } else if (type == TypeMask.Decimal || type == TypeMask.DecimalOptional) {
+            aux = RingReader.readInt(queue, fieldPos);
+            value = RingReader.readLong(queue, fieldPos + 1);
+        } else if (type == TypeMask.TextASCII || type == TypeMask.TextASCIIOptional || type == TypeMask.TextUTF8
+                || type == TypeMask.TextUTF8Optional || type == TypeMask.ByteArray || type == TypeMask.ByteArrayOptional) {
+            value = RingReader.readDataLength(queue, fieldPos);
+        }
+        TraceRing.record(absolutePosition(writer), token, cursor, value, aux, trace);
+    }
+    
     private void openMessage(int token, int pmapSize, int fieldPos,  PrimitiveWriter writer, RingBuffer rb) {
         assert (token < 0);
         assert (0 == (token & (OperatorMask.Group_Bit_Close << TokenBuilder.SHIFT_OPER)));
@@ -1334,6 +1367,10 @@ public class FASTWriterInterpreterDispatch extends FASTWriterDispatchTemplates i
             fieldPos = 0;//needed for fragments in interpreter but is not called when generating
         }
         
+        if (null!=metrics) {
+            TemplateMetrics.begin(RingReader.isNewMessage(rbRingBuffer.ringWalker), absolutePosition(writer), metrics);
+        }
+        
         //start new message with preamble if needed        
         if (rbRingBuffer.mask!=0 && RingReader.isNewMessage(rbRingBuffer.ringWalker)) {     //TODO: D, optimize, checks that this is not the code generation    
             callBeginMessage(writer, rbRingBuffer);
@@ -1360,7 +1397,9 @@ public class FASTWriterInterpreterDispatch extends FASTWriterDispatchTemplates i
             
         }
         
-        
+        if (null!=metrics) {
+            TemplateMetrics.end(rbRingBuffer.ringWalker.cursor, absolutePosition(writer), metrics);
+        }
     }
 
     @Override
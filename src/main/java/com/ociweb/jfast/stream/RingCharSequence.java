@@ -1,33 +1,92 @@
 package com.ociweb.jfast.stream;
 
+/**
+ * Reusable CharSequence view over text in the byte ring, no copy is made for ASCII.
+ * 
+ * Text set with setUTF8 is checked for non ASCII bytes on first use, only then is it decoded into
+ * a char array kept by the view and reused for later values, so steady state reads do not allocate.
+ */
 public class RingCharSequence implements CharSequence {
 
+	private static final int RAW = 0;
+	private static final int PENDING = 1;
+	private static final int DECODED = 2;
+	
 	int length;
 	byte[] charBuffer;
 	int pos;
 	int mask;
 	
+	int byteLength;
+	int state;
+	char[] chars = new char[0];
+	
 	public CharSequence set(byte[] buffer, int pos, int mask, int length) {
 		
 	    if (null==buffer) {
 	        throw new NullPointerException();
 	    }
 		this.length = length;
+		this.byteLength = length;
 		this.charBuffer = buffer;
 		this.pos = pos;
 		this.mask = mask;
+		this.state = RAW;
 		
 		return this;
 	}
 	
+	public CharSequence setUTF8(byte[] buffer, int pos, int mask, int length) {
+		set(buffer, pos, mask, length);
+		state = PENDING;
+		return this;
+	}
+	
+	private void decode() {
+		if (RingText.isASCII(charBuffer, pos, byteLength, mask)) {
+			state = RAW;
+			return;
+		}
+		if (chars.length<byteLength) { //never more chars than bytes
+			chars = new char[byteLength*2];
+		}
+		length = RingText.decodeUTF8(charBuffer, pos, byteLength, mask, chars, 0);
+		state = DECODED;
+	}
+	
 	@Override
 	public int length() {
+		if (PENDING==state) {
+			decode();
+		}
 		return length;
 	}
 
 	@Override
 	public char charAt(int at) {
-		return (char)charBuffer[(pos+at)&mask];
+		if (PENDING==state) {
+			decode();
+		}
+		return DECODED==state ? chars[at] : (char)charBuffer[(pos+at)&mask];
+	}
+	
+	/**
+	 * Bulk copy into the caller's array, target must hold length() chars from offset.
+	 * @return count of chars copied
+	 */
+	public int getChars(char[] target, int offset) {
+		if (PENDING==state) {
+			decode();
+		}
+		if (DECODED==state) {
+			System.arraycopy(chars, 0, target, offset, length);
+		} else {
+			int i = length;
+			while (--i>=0) {
+				target[offset+i] = (char)charBuffer[(pos+i)&mask];
+			}
+		}
+		return length;
 	}
 
 	@Override
@@ -36,6 +95,8 @@ public class RingCharSequence implements CharSequence {
 	}
 
 	public String toString() {
-	    return new String(charBuffer,pos,length);
+		char[] result = new char[length()];
+		getChars(result, 0);
+	    return new String(result);
 	}
 }
@@ -0,0 +1,216 @@
+package com.ociweb.jfast.stream;
+
+import java.io.IOException;
+
+import com.ociweb.jfast.error.FASTException;
+import com.ociweb.pronghorn.ring.RingBuffer;
+
+/**
+ * Conversions for FAST decimals held as exponent and mantissa, replaces mantissa*Math.pow(10,exponent).
+ *
+ * Conversion to double is correctly rounded: while the mantissa fits in 53 bits and the power of ten is exact
+ * in a double (up to 10^22) a single multiply or divide gives the nearest double, other values take the slower
+ * parse of the decimal text. Conversion from double picks the mantissa at the requested exponent, or the shortest
+ * exponent which converts back to the same double.
+ *
+ * FAST exponents are limited to -63..63, any other exponent, such as the ABSENT32 value of an absent optional
+ * decimal, is rejected with a FASTException.
+ */
+public class RingDecimal {
+
+    private static final double[] DOUBLE_POW10 = new double[23];
+    private static final long[] LONG_POW10 = new long[19];
+    private static final long HALF_POW19 = 5000000000000000000L;
+    private static final long EXACT_MANTISSA = 1L<<53;
+    public static final int MAX_EXPONENT = 63;
+
+    static {
+        double d = 1d;
+        int i = 0;
+        while (i<DOUBLE_POW10.length) {
+            DOUBLE_POW10[i++] = d;
+            d *= 10d;
+        }
+        long v = 1;
+        i = 0;
+        while (i<LONG_POW10.length) {
+            LONG_POW10[i++] = v;
+            v *= 10;
+        }
+    }
+
+    public static double toDouble(int exponent, long mantissa) {
+        checkExponent(exponent);
+        if (mantissa<EXACT_MANTISSA && mantissa>-EXACT_MANTISSA) {
+            if (exponent>=0) {
+                if (exponent<DOUBLE_POW10.length) {
+                    return mantissa*DOUBLE_POW10[exponent];
+                }
+            } else if (exponent>-DOUBLE_POW10.length) {
+                return mantissa/DOUBLE_POW10[-exponent];
+            }
+        }
+        return Double.parseDouble(appendASCII(exponent, mantissa, new StringBuilder()).toString());
+    }
+
+    /**
+     * Mantissa of value at the given exponent, rounded half away from zero.
+     */
+    public static long mantissa(double value, int exponent) {
+        if (exponent<=-DOUBLE_POW10.length || exponent>=DOUBLE_POW10.length) {
+            throw new FASTException("Exponent out of range: "+exponent);
+        }
+        double scaled = exponent<=0 ? value*DOUBLE_POW10[-exponent] : value/DOUBLE_POW10[exponent];
+        if (scaled>=Long.MAX_VALUE || scaled<=Long.MIN_VALUE || scaled!=scaled) {
+            throw new FASTException("Value "+value+" does not fit a mantissa at exponent "+exponent);
+        }
+        return scaled<0 ? -Math.round(-scaled) : Math.round(scaled);
+    }
+
+    /**
+     * Largest exponent, no smaller than minExponent, whose mantissa converts back to the same double.
+     * Returns minExponent when no shorter form exists.
+     */
+    public static int exponent(double value, int minExponent) {
+        if (minExponent<=-DOUBLE_POW10.length) {
+            minExponent = 1-DOUBLE_POW10.length;
+        }
+        int exponent = 0;
+        while (exponent>minExponent) {
+            double scaled = value*DOUBLE_POW10[-exponent];
+            if (scaled<EXACT_MANTISSA && scaled>-EXACT_MANTISSA && toDouble(exponent, mantissa(value, exponent))==value) {
+                return exponent;
+            }
+            exponent--;
+        }
+        return minExponent;
+    }
+
+    /**
+     * Mantissa at targetExponent, for example prices held as long ticks. Rounds half away from zero when digits are dropped.
+     */
+    public static long toScaled(int exponent, long mantissa, int targetExponent) {
+        checkExponent(exponent);
+        if (targetExponent==exponent) {
+            return mantissa;
+        }
+        if (targetExponent<exponent) {
+            long shift = (long)exponent-targetExponent;
+            if (shift>=LONG_POW10.length) {
+                if (0==mantissa) {
+                    return 0;
+                }
+                throw new FASTException("Overflow scaling "+mantissa+"e"+exponent+" to exponent "+targetExponent);
+            }
+            long pow = LONG_POW10[(int)shift];
+            if (mantissa>Long.MAX_VALUE/pow || mantissa<Long.MIN_VALUE/pow) {
+                throw new FASTException("Overflow scaling "+mantissa+"e"+exponent+" to exponent "+targetExponent);
+            }
+            return mantissa*pow;
+        }
+        long shift = (long)targetExponent-exponent;
+        if (shift>=LONG_POW10.length) {
+            //10^19 does not fit in a long but every mantissa is below it, so only a half or more rounds away from zero
+            if (shift==LONG_POW10.length) {
+                if (mantissa>=HALF_POW19) {
+                    return 1;
+                }
+                if (mantissa<=-HALF_POW19) {
+                    return -1;
+                }
+            }
+            return 0;
+        }
+        long pow = LONG_POW10[(int)shift];
+        long quotient = mantissa/pow;
+        long remainder = mantissa%pow;
+        if (remainder>=0 ? remainder>=pow-remainder : -remainder>=pow+remainder) {
+            quotient += remainder>=0 ? 1 : -1;
+        }
+        return quotient;
+    }
+
+    /**
+     * Plain decimal text such as -12.345 or 1200, no exponent notation and no allocation.
+     */
+    public static <A extends Appendable> A appendASCII(int exponent, long mantissa, A target) {
+        checkExponent(exponent);
+        try {
+            long neg = mantissa; //negative magnitude so Long.MIN_VALUE needs no special case
+            if (mantissa<0) {
+                target.append('-');
+            } else {
+                neg = -mantissa;
+            }
+            int digits = 1;
+            while (digits<LONG_POW10.length && neg<=-LONG_POW10[digits]) {
+                digits++;
+            }
+            if (exponent>=0) {
+                appendDigits(neg, 0, digits, digits, target);
+                if (0!=mantissa) {
+                    int z = exponent;
+                    while (--z>=0) {
+                        target.append('0');
+                    }
+                }
+                return target;
+            }
+            int point = digits+exponent;
+            if (point<=0) {
+                target.append('0').append('.');
+                int z = -point;
+                while (--z>=0) {
+                    target.append('0');
+                }
+                appendDigits(neg, 0, digits, digits, target);
+            } else {
+                appendDigits(neg, 0, point, digits, target);
+                target.append('.');
+                appendDigits(neg, point, digits, digits, target);
+            }
+            return target;
+        } catch (IOException e) {
+            throw new FASTException(e);
+        }
+    }
+
+    private static void checkExponent(int exponent) {
+        if (exponent>MAX_EXPONENT || exponent<-MAX_EXPONENT) {
+            throw new FASTException("Exponent out of range: "+exponent);
+        }
+    }
+
+    private static void appendDigits(long neg, int from, int to, int digits, Appendable target) throws IOException {
+        while (from<to) {
+            target.append((char)('0'-(neg/LONG_POW10[digits-1-from++])%10));
+        }
+    }
+
+    /**
+     * Reads the decimal at offset of the fragment returned by the last RingReader.tryReadFragment.
+     */
+    public static double readDouble(int offset, RingBuffer rb) {
+        long p = rb.workingTailPos.value+offset;
+        return toDouble(RingBuffer.readInt(rb.buffer, rb.mask, p), RingBuffer.readLong(rb.buffer, rb.mask, p+1));
+    }
+
+    public static long readScaled(int offset, int targetExponent, RingBuffer rb) {
+        long p = rb.workingTailPos.value+offset;
+        return toScaled(RingBuffer.readInt(rb.buffer, rb.mask, p), RingBuffer.readLong(rb.buffer, rb.mask, p+1), targetExponent);
+    }
+
+    /**
+     * Writes the next decimal field of the fragment being built for FASTDynamicWriter.
+     */
+    public static void addDouble(double value, int exponent, RingBuffer rb) {
+        RingBuffer.addValue(rb.buffer, rb.mask, rb.workingHeadPos, exponent);
+        RingBuffer.addLongValue(rb.buffer, rb.mask, rb.workingHeadPos, mantissa(value, exponent));
+    }
+
+    public static void addScaled(long scaled, int exponent, RingBuffer rb) {
+        RingBuffer.addValue(rb.buffer, rb.mask, rb.workingHeadPos, exponent);
+        RingBuffer.addLongValue(rb.buffer, rb.mask, rb.workingHeadPos, scaled);
+    }
+
+}
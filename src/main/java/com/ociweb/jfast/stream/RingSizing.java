@@ -0,0 +1,228 @@
+package com.ociweb.jfast.stream;
+
+import java.util.Arrays;
+
+import com.ociweb.jfast.catalog.loader.TemplateCatalogConfig;
+import com.ociweb.jfast.error.FASTException;
+import com.ociweb.pronghorn.ring.FieldReferenceOffsetManager;
+import com.ociweb.pronghorn.ring.RingBuffer;
+import com.ociweb.pronghorn.ring.RingBufferConfig;
+import com.ociweb.pronghorn.ring.RingBuffers;
+import com.ociweb.pronghorn.ring.token.TokenBuilder;
+import com.ociweb.pronghorn.ring.token.TypeMask;
+import com.ociweb.pronghorn.ring.util.hash.LongHashTable;
+import com.ociweb.pronghorn.ring.util.hash.LongHashTableVisitor;
+
+/**
+ * Picks ring buffer sizes for a catalog so the decoder can write a burst of fragments without
+ * waiting on the consumer.
+ *
+ * Without a profile every fragment is assumed to be the largest one in the catalog and to carry the largest possible
+ * text, using ClientConfig.getBytesLength for each text field, so both rings hold the whole burst of such fragments.
+ * With a profile, as recorded by TemplateMetrics on a decoder, the primary ring uses the observed mix of templates
+ * and the byte ring holds the burst using the observed bytes per fragment.
+ *
+ * The ring bits in ClientConfig are used as the smallest sizes which may be chosen.
+ *
+ * Decoders built without ring buffers keep the fixed rings they have always used unless -DFAST.ringSizing=true,
+ * see defaultRingBuffers.
+ */
+public final class RingSizing {
+
+    public static final int DEFAULT_BURST_FRAGMENTS = 1024;
+    /**
+     * Burst for scratch rings which are released again after every fragment, as used by push decoding, the
+     * sample runs of the tuners and the ring of a writer facade.
+     */
+    public static final int SCRATCH_BURST_FRAGMENTS = 4;
+
+    static final boolean SIZE_DEFAULT_RINGS = Boolean.getBoolean("FAST.ringSizing");
+    private static final byte FIXED_PRIMARY_BITS = 15;
+    private static final byte FIXED_BYTE_BITS = 7;
+
+    private static final int MAX_BITS = 30;
+
+    private final int[] maxFragmentSize; //ints on the primary ring, by template
+    private final long[] maxTextBytes; //bytes on the byte ring for the worst case fragment, by template
+    private final long[] templateIds;
+    private final int minPrimaryBits;
+    private final int minByteBits;
+
+    public RingSizing(final TemplateCatalogConfig catalog) {
+        final FieldReferenceOffsetManager from = catalog.getFROM();
+        final int[] script = catalog.fullScript();
+        final int bytesLength = catalog.clientConfig().getBytesLength();
+        final boolean hasTemplates = null!=catalog.getTemplateStartIdx() && null!=catalog.templateScriptEntries;
+        int count = hasTemplates ? catalog.templatesCount() : 1;
+
+        this.maxFragmentSize = new int[count];
+        this.maxTextBytes = new long[count];
+        this.templateIds = new long[count];
+        this.minPrimaryBits = catalog.clientConfig().getPrimaryRingBits();
+        this.minByteBits = catalog.clientConfig().getTextRingBits();
+
+        if (hasTemplates) {
+            LongHashTable.visit(catalog.getTemplateStartIdx(), new LongHashTableVisitor() {
+                int t = 0;
+                @Override
+                public void visit(long templateId, int start) {
+                    if (t<templateIds.length) {
+                        templateIds[t] = templateId;
+                        measure(t++, start, catalog.templateScriptEntryLimits[Arrays.binarySearch(catalog.templateScriptEntries, start)],
+                                from, script, bytesLength);
+                    }
+                }});
+        } else {
+            //test catalogs without template entries are measured as one template covering the full script
+            templateIds[0] = -1;
+            measure(0, 0, null==script ? 0 : script.length, from, script, bytesLength);
+        }
+    }
+
+    private void measure(int t, int start, int limit, FieldReferenceOffsetManager from, int[] script, int bytesLength) {
+        int textFields = 0;
+        int c = start;
+        while (c<limit) {
+            if (null!=from.fragDataSize && c<from.fragDataSize.length) {
+                maxFragmentSize[t] = Math.max(maxFragmentSize[t], from.fragDataSize[c] + from.templateOffset + 1);
+            }
+            if (null!=script && c<script.length && isText(TokenBuilder.extractType(script[c]))) {
+                textFields++;
+            }
+            c++;
+        }
+        maxTextBytes[t] = ((long)textFields)*bytesLength;
+    }
+
+    private static boolean isText(int type) {
+        return type == TypeMask.TextASCII || type == TypeMask.TextASCIIOptional || type == TypeMask.TextUTF8 || type == TypeMask.TextUTF8Optional
+            || type == TypeMask.ByteArray || type == TypeMask.ByteArrayOptional;
+    }
+
+    /**
+     * Primary ring bits needed to hold burstFragments fragments.
+     *
+     * @param profile optional, null if no traffic has been recorded
+     */
+    public static byte primaryBits(int burstFragments, TemplateMetrics profile, RingSizing sizing) {
+        int largest = max(sizing.maxFragmentSize);
+        long need;
+        if (null==profile || 0==totalFragments(profile)) {
+            need = ((long)largest)*burstFragments;
+        } else {
+            //weighted by how often each template is seen, every fragment is assumed to be the largest of its template
+            long weighted = 0;
+            long fragments = 0;
+            int slot = TemplateMetrics.templateCount(profile);
+            while (--slot>=0) {
+                int t = indexOf(TemplateMetrics.templateId(slot, profile), sizing);
+                if (t>=0) {
+                    long f = TemplateMetrics.fragmentCount(slot, profile);
+                    weighted += f*sizing.maxFragmentSize[t];
+                    fragments += f;
+                }
+            }
+            need = Math.max(2L*largest, fragments>0 ? ((weighted+fragments-1)/fragments)*burstFragments : ((long)largest)*burstFragments);
+        }
+        return bits(need, sizing.minPrimaryBits);
+    }
+
+    /**
+     * Byte ring bits needed to hold the text of burstFragments fragments, never smaller than the largest single fragment.
+     *
+     * @param profile optional, null if no traffic has been recorded
+     */
+    public static byte byteBits(int burstFragments, TemplateMetrics profile, RingSizing sizing) {
+        long need = max(sizing.maxTextBytes);
+        if (null==profile || 0==totalFragments(profile)) {
+            need *= burstFragments;
+        } else {
+            //encoded bytes per fragment bounds the text of that fragment for all but delta and copy of long strings
+            long perFragment = 0;
+            int slot = TemplateMetrics.templateCount(profile);
+            while (--slot>=0) {
+                long f = TemplateMetrics.fragmentCount(slot, profile);
+                if (f>0) {
+                    perFragment = Math.max(perFragment, (TemplateMetrics.bytes(slot, profile)+f-1)/f);
+                }
+            }
+            need = Math.max(need, perFragment*burstFragments);
+        }
+        return bits(need, sizing.minByteBits);
+    }
+
+    public static RingBufferConfig ringBufferConfig(TemplateCatalogConfig catalog, int burstFragments, TemplateMetrics profile) {
+        RingSizing sizing = new RingSizing(catalog);
+        return new RingBufferConfig(primaryBits(burstFragments, profile, sizing), byteBits(burstFragments, profile, sizing),
+                                    catalog.ringByteConstants(), catalog.getFROM());
+    }
+
+    public static RingBuffers buildRingBuffers(TemplateCatalogConfig catalog, int burstFragments, TemplateMetrics profile) {
+        return RingBuffers.buildNoFanRingBuffers(new RingBuffer(ringBufferConfig(catalog, burstFragments, profile)));
+    }
+
+    /**
+     * Sized for DEFAULT_BURST_FRAGMENTS with no profile.
+     */
+    public static RingBuffers buildRingBuffers(TemplateCatalogConfig catalog) {
+        return buildRingBuffers(catalog, DEFAULT_BURST_FRAGMENTS, null);
+    }
+
+    /**
+     * Used by decoders built without ring buffers, the fixed 15 bit primary and 7 bit byte ring unless
+     * -DFAST.ringSizing=true, then the same as buildRingBuffers(catalog).
+     */
+    public static RingBuffers defaultRingBuffers(TemplateCatalogConfig catalog) {
+        if (SIZE_DEFAULT_RINGS) {
+            return buildRingBuffers(catalog);
+        }
+        return RingBuffers.buildNoFanRingBuffers(new RingBuffer(new RingBufferConfig(FIXED_PRIMARY_BITS, FIXED_BYTE_BITS,
+                                                                                     catalog.ringByteConstants(), catalog.getFROM())));
+    }
+
+    private static int indexOf(long templateId, RingSizing sizing) {
+        int i = sizing.templateIds.length;
+        while (--i>=0) {
+            if (sizing.templateIds[i]==templateId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static long totalFragments(TemplateMetrics profile) {
+        long total = 0;
+        int slot = TemplateMetrics.templateCount(profile);
+        while (--slot>=0) {
+            total += TemplateMetrics.fragmentCount(slot, profile);
+        }
+        return total;
+    }
+
+    private static int max(int[] values) {
+        int result = 1;
+        int i = values.length;
+        while (--i>=0) {
+            result = Math.max(result, values[i]);
+        }
+        return result;
+    }
+
+    private static long max(long[] values) {
+        long result = 1;
+        int i = values.length;
+        while (--i>=0) {
+            result = Math.max(result, values[i]);
+        }
+        return result;
+    }
+
+    private static byte bits(long need, int minBits) {
+        int bits = Math.max(minBits, 64 - Long.numberOfLeadingZeros(Math.max(1, need-1)));
+        if (bits>MAX_BITS) {
+            throw new FASTException("Ring would need "+bits+" bits, reduce the burst or the max text length in ClientConfig");
+        }
+        return (byte)bits;
+    }
+
+}
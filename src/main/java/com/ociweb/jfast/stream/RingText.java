@@ -0,0 +1,169 @@
+package com.ociweb.jfast.stream;
+
+import java.io.IOException;
+
+import com.ociweb.jfast.error.FASTException;
+
+/**
+ * Copies text out of the byte ring without building a String. Positions are masked so text which wraps
+ * around the end of the ring is read correctly.
+ */
+public class RingText {
+
+    /**
+     * True when no byte has the high bit set, such text decodes the same as ASCII or UTF-8.
+     */
+    public static boolean isASCII(byte[] buffer, int pos, int length, int mask) {
+        int bits = 0;
+        int i = length;
+        while (--i>=0) {
+            bits |= buffer[mask & (pos+i)];
+        }
+        return bits>=0;
+    }
+
+    /**
+     * Decodes UTF-8 from the ring into the caller's array, the leading ASCII run is copied without decoding.
+     *
+     * @param target must hold length chars from targetOffset
+     * @return count of chars written
+     */
+    public static int decodeUTF8(byte[] buffer, int pos, int length, int mask, char[] target, int targetOffset) {
+        int i = 0;
+        int t = targetOffset;
+        int b;
+        while (i<length && (b=buffer[mask & (pos+i)])>=0) {
+            target[t++] = (char)b;
+            i++;
+        }
+        while (i<length) {
+            b = buffer[mask & (pos+i++)];
+            if (b>=0) {
+                target[t++] = (char)b;
+                continue;
+            }
+            int codePoint;
+            int more;
+            if ((b & 0xE0) == 0xC0) {
+                codePoint = b & 0x1F;
+                more = 1;
+            } else if ((b & 0xF0) == 0xE0) {
+                codePoint = b & 0x0F;
+                more = 2;
+            } else if ((b & 0xF8) == 0xF0) {
+                codePoint = b & 0x07;
+                more = 3;
+            } else {
+                target[t++] = '\uFFFD'; //continuation byte without a lead byte
+                continue;
+            }
+            while (--more>=0 && i<length) {
+                codePoint = (codePoint<<6) | (buffer[mask & (pos+i++)] & 0x3F);
+            }
+            if (codePoint<0x10000) {
+                target[t++] = (char)codePoint;
+            } else {
+                target[t++] = Character.highSurrogate(codePoint);
+                target[t++] = Character.lowSurrogate(codePoint);
+            }
+        }
+        return t-targetOffset;
+    }
+
+    public static <A extends Appendable> A appendASCII(byte[] buffer, int pos, int length, int mask, A target) {
+        try {
+            int i = 0;
+            while (i<length) {
+                target.append((char)buffer[mask & (pos+i++)]);
+            }
+            return target;
+        } catch (IOException e) {
+            throw new FASTException(e);
+        }
+    }
+
+    /**
+     * @param target must hold value.length() bytes
+     * @return count of bytes written
+     */
+    public static int copyASCII(CharSequence value, byte[] target) {
+        int length = value.length();
+        int i = 0;
+        while (i<length) {
+            target[i] = (byte)value.charAt(i);
+            i++;
+        }
+        return length;
+    }
+
+    /**
+     * @param target must hold 3*value.length() bytes
+     * @return count of bytes written
+     */
+    public static int copyUTF8(CharSequence value, byte[] target) {
+        int length = value.length();
+        int pos = 0;
+        int i = 0;
+        while (i<length) {
+            int c = value.charAt(i++);
+            if (c<0x80) {
+                target[pos++] = (byte)c;
+            } else if (c<0x800) {
+                target[pos++] = (byte)(0xC0 | (c>>6));
+                target[pos++] = (byte)(0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate((char)c) && i<length && Character.isLowSurrogate(value.charAt(i))) {
+                int codePoint = Character.toCodePoint((char)c, value.charAt(i++));
+                target[pos++] = (byte)(0xF0 | (codePoint>>18));
+                target[pos++] = (byte)(0x80 | ((codePoint>>12) & 0x3F));
+                target[pos++] = (byte)(0x80 | ((codePoint>>6) & 0x3F));
+                target[pos++] = (byte)(0x80 | (codePoint & 0x3F));
+            } else {
+                target[pos++] = (byte)(0xE0 | (c>>12));
+                target[pos++] = (byte)(0x80 | ((c>>6) & 0x3F));
+                target[pos++] = (byte)(0x80 | (c & 0x3F));
+            }
+        }
+        return pos;
+    }
+
+    public static <A extends Appendable> A appendUTF8(byte[] buffer, int pos, int length, int mask, A target) {
+        try {
+            int i = 0;
+            while (i<length) {
+                int b = buffer[mask & (pos+i++)];
+                if (b>=0) {
+                    target.append((char)b);
+                    continue;
+                }
+                int codePoint;
+                int more;
+                if ((b & 0xE0) == 0xC0) {
+                    codePoint = b & 0x1F;
+                    more = 1;
+                } else if ((b & 0xF0) == 0xE0) {
+                    codePoint = b & 0x0F;
+                    more = 2;
+                } else if ((b & 0xF8) == 0xF0) {
+                    codePoint = b & 0x07;
+                    more = 3;
+                } else {
+                    target.append('\uFFFD'); //continuation byte without a lead byte
+                    continue;
+                }
+                while (--more>=0 && i<length) {
+                    codePoint = (codePoint<<6) | (buffer[mask & (pos+i++)] & 0x3F);
+                }
+                if (codePoint<0x10000) {
+                    target.append((char)codePoint);
+                } else {
+                    target.append(Character.highSurrogate(codePoint));
+                    target.append(Character.lowSurrogate(codePoint));
+                }
+            }
+            return target;
+        } catch (IOException e) {
+            throw new FASTException(e);
+        }
+    }
+
+}
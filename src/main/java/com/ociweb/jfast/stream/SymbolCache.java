@@ -0,0 +1,56 @@
+package com.ociweb.jfast.stream;
+
+/**
+ * Symbol id of one copy or constant text field, kept next to the dictionary value in the decoder so the value is only
+ * interned again when the decoder replaced it. The decoder bumps a revision of the dictionary slot each time copy reads
+ * a new value or the dictionary is reset, while the revision is unchanged the previous id is returned without hashing
+ * or comparing the bytes.
+ *
+ * Only valid for fragments handed out by FASTReaderReactor.pump(reactor, listener), where each fragment is consumed
+ * before the next one is decoded. A consumer reading a ring which the decoder has run ahead of must use SymbolTable.intern.
+ */
+public class SymbolCache {
+
+    public final SymbolTable table;
+    private final FASTReaderReactor reactor;
+    private final int heapIdx; //dictionary slot of the field, negative for a constant
+
+    private int[] revisions;
+    private int revision;
+    private int id = -1;
+    private int generation;
+
+    /**
+     * @param heapIdx dictionary slot of the field, token & TokenBuilder.MAX_INSTANCE, or -1 for a constant field
+     */
+    public SymbolCache(FASTReaderReactor reactor, int heapIdx, SymbolTable table) {
+        this.reactor = reactor;
+        this.heapIdx = heapIdx;
+        this.table = table;
+    }
+
+    /**
+     * @return id of the value, -1 when absent or too long for the table
+     */
+    public static int symbol(byte[] buffer, int pos, int length, int mask, SymbolCache cache) {
+        if (length<0) {
+            return -1;
+        }
+        int[] revisions = FASTReaderReactor.textRevisions(cache.reactor);
+        int revision = cache.heapIdx<0 ? 0 : revisions[cache.heapIdx];
+        if (cache.id>=0 && revision==cache.revision && revisions==cache.revisions
+                        && SymbolTable.generation(cache.id, cache.table)==cache.generation) {
+            SymbolTable.touch(cache.id, cache.table);
+            return cache.id;
+        }
+        int id = SymbolTable.intern(buffer, pos, length, mask, cache.table);
+        cache.revisions = revisions;
+        cache.revision = revision;
+        cache.id = id;
+        if (id>=0) {
+            cache.generation = SymbolTable.generation(id, cache.table);
+        }
+        return id;
+    }
+
+}
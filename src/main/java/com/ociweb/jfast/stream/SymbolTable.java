@@ -0,0 +1,178 @@
+package com.ociweb.jfast.stream;
+
+import java.io.IOException;
+
+import com.ociweb.jfast.error.FASTException;
+
+/**
+ * Bounded interning table for one text field, assigns small int ids to the distinct values read from the ring.
+ * Values are hashed and compared in place, no String is built.
+ *
+ * Once all ids are in use the least recently seen value is evicted (clock) and its id is given to the new value.
+ * Each reuse of an id bumps its generation, so consumers which key their own tables on ids can detect a stale entry
+ * by keeping the generation next to the id. Values longer than maxLength are not interned and return -1.
+ */
+public class SymbolTable {
+
+    public final int capacity;
+    public final int maxLength;
+
+    private final byte[] bytes;
+    private final int[] lengths;
+    private final int[] hashes;
+    private final int[] generations;
+    private final boolean[] referenced;
+
+    private final int[] slots; //id+1, zero for an empty slot
+    private final int slotMask;
+
+    private int count;
+    private int hand;
+    public long evictions;
+
+    public SymbolTable(int capacityBits, int maxLength) {
+        this.capacity = 1<<capacityBits;
+        this.maxLength = maxLength;
+        this.bytes = new byte[capacity*maxLength];
+        this.lengths = new int[capacity];
+        this.hashes = new int[capacity];
+        this.generations = new int[capacity];
+        this.referenced = new boolean[capacity];
+        this.slots = new int[capacity<<1];
+        this.slotMask = slots.length-1;
+    }
+
+    /**
+     * @return id of the value, -1 when the value is absent (negative length) or longer than maxLength
+     */
+    public static int intern(byte[] buffer, int pos, int length, int mask, SymbolTable table) {
+        if (length<0 || length>table.maxLength) {
+            return -1;
+        }
+        int hash = hash(buffer, pos, length, mask);
+        int slot = hash & table.slotMask;
+        int entry;
+        while ((entry=table.slots[slot])!=0) {
+            int id = entry-1;
+            if (table.hashes[id]==hash && isEqual(id, buffer, pos, length, mask, table)) {
+                table.referenced[id] = true;
+                return id;
+            }
+            slot = (slot+1) & table.slotMask;
+        }
+
+        int id;
+        if (table.count<table.capacity) {
+            id = table.count++;
+        } else {
+            id = evict(table);
+            slot = hash & table.slotMask; //removal may have shifted the probe sequence
+            while (table.slots[slot]!=0) {
+                slot = (slot+1) & table.slotMask;
+            }
+        }
+        int base = id*table.maxLength;
+        int i = length;
+        while (--i>=0) {
+            table.bytes[base+i] = buffer[mask & (pos+i)];
+        }
+        table.lengths[id] = length;
+        table.hashes[id] = hash;
+        table.referenced[id] = true;
+        table.slots[slot] = id+1;
+        return id;
+    }
+
+    private static int evict(SymbolTable table) {
+        while (table.referenced[table.hand]) {
+            table.referenced[table.hand] = false;
+            table.hand = (table.hand+1) & (table.capacity-1);
+        }
+        int id = table.hand;
+        table.hand = (table.hand+1) & (table.capacity-1);
+        remove(id, table);
+        table.generations[id]++;
+        table.evictions++;
+        return id;
+    }
+
+    private static void remove(int id, SymbolTable table) {
+        int mask = table.slotMask;
+        int slot = table.hashes[id] & mask;
+        while (table.slots[slot]!=id+1) {
+            slot = (slot+1) & mask;
+        }
+        //backward shift so the probe sequences of the remaining values stay unbroken
+        int next = (slot+1) & mask;
+        int entry;
+        while ((entry=table.slots[next])!=0) {
+            int home = table.hashes[entry-1] & mask;
+            if (((next-home) & mask) >= ((next-slot) & mask)) {
+                table.slots[slot] = entry;
+                slot = next;
+            }
+            next = (next+1) & mask;
+        }
+        table.slots[slot] = 0;
+    }
+
+    private static boolean isEqual(int id, byte[] buffer, int pos, int length, int mask, SymbolTable table) {
+        if (table.lengths[id]!=length) {
+            return false;
+        }
+        int base = id*table.maxLength;
+        int i = length;
+        while (--i>=0) {
+            if (table.bytes[base+i]!=buffer[mask & (pos+i)]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hash(byte[] buffer, int pos, int length, int mask) {
+        int h = length;
+        int i = 0;
+        while (i<length) {
+            h = 31*h + buffer[mask & (pos+i++)];
+        }
+        return h ^ (h>>>16);
+    }
+
+    /**
+     * Marks the id as recently seen, for callers which found it without interning.
+     */
+    public static void touch(int id, SymbolTable table) {
+        table.referenced[id] = true;
+    }
+
+    public static int generation(int id, SymbolTable table) {
+        return table.generations[id];
+    }
+
+    public static int length(int id, SymbolTable table) {
+        return table.lengths[id];
+    }
+
+    public static int size(SymbolTable table) {
+        return table.count;
+    }
+
+    public static <A extends Appendable> A appendASCII(int id, SymbolTable table, A target) {
+        try {
+            int base = id*table.maxLength;
+            int limit = base+table.lengths[id];
+            while (base<limit) {
+                target.append((char)table.bytes[base++]);
+            }
+            return target;
+        } catch (IOException e) {
+            throw new FASTException(e);
+        }
+    }
+
+    public static <A extends Appendable> A appendUTF8(int id, SymbolTable table, A target) {
+        return RingText.appendUTF8(table.bytes, id*table.maxLength, table.lengths[id], -1, target);
+    }
+
+}
@@ -0,0 +1,243 @@
+package com.ociweb.jfast.stream;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import javax.management.ObjectName;
+
+import com.ociweb.jfast.catalog.loader.TemplateCatalogConfig;
+import com.ociweb.jfast.error.FASTException;
+import com.ociweb.jfast.util.LogLinearHistogram;
+import com.ociweb.pronghorn.ring.util.hash.LongHashTable;
+import com.ociweb.pronghorn.ring.util.hash.LongHashTableVisitor;
+
+/**
+ * Per template message counts, bytes and fragment latency for one FASTDecoder or FASTEncoder.
+ *
+ * Instrumentation is opt-in, nothing is recorded unless an instance is set on the dispatcher with
+ * setTemplateMetrics. Both the interpreter and the generated dispatchers call begin/end around each
+ * fragment so the numbers are comparable between the two.
+ *
+ * All memory is allocated up front, recording never allocates. Only the dispatch thread may record,
+ * other threads should use snapshot or the JMX view to read the values.
+ *
+ */
+public final class TemplateMetrics implements TemplateMetricsMXBean {
+
+    public static final int DEFAULT_SUB_BUCKET_BITS = 3;
+
+    private final int[] slotByCursor;
+    private final long[] templateIds;
+
+    private final long[] messageCount;
+    private final long[] fragmentCount;
+    private final long[] byteCount;
+    private final LogLinearHistogram latency;
+
+    //state held between begin and end of a single fragment
+    private boolean newMessage;
+    private int activeSlot = -1;
+    private long startNs;
+    private long startPos;
+
+    public TemplateMetrics(TemplateCatalogConfig catalog) {
+        this(catalog, DEFAULT_SUB_BUCKET_BITS);
+    }
+
+    public TemplateMetrics(TemplateCatalogConfig catalog, int subBucketBits) {
+        this(catalog.fullScript().length, catalog.getTemplateStartIdx(), catalog.templatesCount(), subBucketBits);
+    }
+
+    private TemplateMetrics(int scriptLength, LongHashTable templateStartIdx, int templateCount, int subBucketBits) {
+        this.slotByCursor = new int[scriptLength];
+        Arrays.fill(slotByCursor, -1);
+        this.templateIds = new long[templateCount];
+
+        if (null!=templateStartIdx) {
+            final int[] slots = slotByCursor;
+            final long[] ids = templateIds;
+            LongHashTable.visit(templateStartIdx, new LongHashTableVisitor() {
+                int slot = 0;
+                @Override
+                public void visit(long key, int value) {
+                    if (slot<ids.length && value>=0 && value<slots.length) {
+                        ids[slot] = key;
+                        slots[value] = slot++;
+                    }
+                }});
+        }
+
+        this.messageCount = new long[templateCount];
+        this.fragmentCount = new long[templateCount];
+        this.byteCount = new long[templateCount];
+        this.latency = new LogLinearHistogram(templateCount, subBucketBits);
+    }
+
+    /**
+     * Creates an empty instance of the same shape, useful as a snapshot target.
+     */
+    public static TemplateMetrics newSnapshotTarget(TemplateMetrics metrics) {
+        TemplateMetrics target = new TemplateMetrics(metrics.slotByCursor.length, null, metrics.templateIds.length,
+                                                     LogLinearHistogram.subBucketBits(metrics.latency));
+        System.arraycopy(metrics.slotByCursor, 0, target.slotByCursor, 0, metrics.slotByCursor.length);
+        System.arraycopy(metrics.templateIds, 0, target.templateIds, 0, metrics.templateIds.length);
+        return target;
+    }
+
+    /**
+     * Called by the dispatcher before a fragment is processed.
+     *
+     * @param isNewMessage true if this fragment starts a new message
+     * @param absPos absolute stream position in bytes
+     * @param metrics
+     */
+    public static void begin(boolean isNewMessage, long absPos, TemplateMetrics metrics) {
+        metrics.newMessage = isNewMessage;
+        metrics.startPos = absPos;
+        metrics.startNs = System.nanoTime();
+    }
+
+    /**
+     * Called by the dispatcher after a fragment has been fully processed.
+     *
+     * @param msgCursor script position of the template which owns this fragment
+     * @param absPos absolute stream position in bytes
+     * @param metrics
+     */
+    public static void end(int msgCursor, long absPos, TemplateMetrics metrics) {
+        long duration = System.nanoTime() - metrics.startNs;
+        if (metrics.newMessage) {
+            metrics.activeSlot = (msgCursor>=0 && msgCursor<metrics.slotByCursor.length) ? metrics.slotByCursor[msgCursor] : -1;
+        }
+        int slot = metrics.activeSlot;
+        if (slot>=0) {
+            if (metrics.newMessage) {
+                metrics.messageCount[slot]++;
+            }
+            metrics.fragmentCount[slot]++;
+            metrics.byteCount[slot] += (absPos - metrics.startPos);
+            LogLinearHistogram.record(slot, duration, metrics.latency);
+        }
+    }
+
+    /**
+     * Pull API, copies the current values into a target created by newSnapshotTarget without allocation.
+     */
+    public static void snapshot(TemplateMetrics source, TemplateMetrics target) {
+        System.arraycopy(source.messageCount, 0, target.messageCount, 0, source.messageCount.length);
+        System.arraycopy(source.fragmentCount, 0, target.fragmentCount, 0, source.fragmentCount.length);
+        System.arraycopy(source.byteCount, 0, target.byteCount, 0, source.byteCount.length);
+        LogLinearHistogram.copy(source.latency, target.latency);
+    }
+
+    public static int templateCount(TemplateMetrics metrics) {
+        return metrics.templateIds.length;
+    }
+
+    public static long templateId(int slot, TemplateMetrics metrics) {
+        return metrics.templateIds[slot];
+    }
+
+    public static long messageCount(int slot, TemplateMetrics metrics) {
+        return metrics.messageCount[slot];
+    }
+
+    public static long fragmentCount(int slot, TemplateMetrics metrics) {
+        return metrics.fragmentCount[slot];
+    }
+
+    public static long bytes(int slot, TemplateMetrics metrics) {
+        return metrics.byteCount[slot];
+    }
+
+    public static long latencyNsAtPercentile(int slot, double percentile, TemplateMetrics metrics) {
+        return LogLinearHistogram.valueAtPercentile(slot, percentile, metrics.latency);
+    }
+
+    public static LogLinearHistogram latencyHistogram(TemplateMetrics metrics) {
+        return metrics.latency;
+    }
+
+    /**
+     * Registers this instance with the platform MBean server under com.ociweb.jfast:type=TemplateMetrics,name=[name]
+     */
+    public static ObjectName register(String name, TemplateMetrics metrics) {
+        try {
+            ObjectName objectName = new ObjectName("com.ociweb.jfast:type=TemplateMetrics,name="+ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, objectName);
+            return objectName;
+        } catch (Exception e) {
+            throw new FASTException(e);
+        }
+    }
+
+    public static void unregister(ObjectName objectName) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (Exception e) {
+            throw new FASTException(e);
+        }
+    }
+
+    ///////////////////////
+    //JMX view, these methods allocate and are not for use on the dispatch thread
+    ///////////////////////
+
+    @Override
+    public long[] getTemplateIds() {
+        return templateIds.clone();
+    }
+
+    @Override
+    public long[] getMessageCounts() {
+        return messageCount.clone();
+    }
+
+    @Override
+    public long[] getFragmentCounts() {
+        return fragmentCount.clone();
+    }
+
+    @Override
+    public long[] getBytes() {
+        return byteCount.clone();
+    }
+
+    @Override
+    public long[] getMedianLatencyNs() {
+        return percentiles(50d);
+    }
+
+    @Override
+    public long[] getP99LatencyNs() {
+        return percentiles(99d);
+    }
+
+    @Override
+    public long[] getMaxLatencyNs() {
+        long[] result = new long[templateIds.length];
+        int i = result.length;
+        while (--i>=0) {
+            result[i] = LogLinearHistogram.max(i, latency);
+        }
+        return result;
+    }
+
+    private long[] percentiles(double pct) {
+        long[] result = new long[templateIds.length];
+        int i = result.length;
+        while (--i>=0) {
+            result[i] = LogLinearHistogram.valueAtPercentile(i, pct, latency);
+        }
+        return result;
+    }
+
+    @Override
+    public void reset() {
+        Arrays.fill(messageCount, 0);
+        Arrays.fill(fragmentCount, 0);
+        Arrays.fill(byteCount, 0);
+        LogLinearHistogram.reset(latency);
+    }
+
+}
@@ -0,0 +1,24 @@
+package com.ociweb.jfast.stream;
+
+/**
+ * JMX view of {@link TemplateMetrics}. All arrays are in the same order as {@link #getTemplateIds()}.
+ */
+public interface TemplateMetricsMXBean {
+
+    long[] getTemplateIds();
+
+    long[] getMessageCounts();
+
+    long[] getFragmentCounts();
+
+    long[] getBytes();
+
+    long[] getMedianLatencyNs();
+
+    long[] getP99LatencyNs();
+
+    long[] getMaxLatencyNs();
+
+    void reset();
+
+}
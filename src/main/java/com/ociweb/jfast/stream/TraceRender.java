@@ -0,0 +1,80 @@
+package com.ociweb.jfast.stream;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.ociweb.jfast.catalog.loader.TemplateCatalogConfig;
+import com.ociweb.jfast.error.FASTException;
+import com.ociweb.pronghorn.ring.token.TokenBuilder;
+
+/**
+ * Offline tool which turns the binary records saved by TraceRing.write into readable text.
+ *
+ * Usage: TraceRender traceFile [catalogFile]
+ *
+ * When the catalog is provided the field names are included in the output.
+ */
+public class TraceRender {
+
+    public static void render(InputStream traceInput, final String[] fieldNames, final Appendable target) throws IOException {
+
+        TraceRing.read(new DataInputStream(new BufferedInputStream(traceInput)), new TraceRing.TraceVisitor() {
+
+            @Override
+            public void visit(long absPos, int token, int cursor, long value, long aux) {
+                try {
+                    target.append(Long.toString(absPos)).append(' ')
+                          .append(Integer.toString(cursor)).append(' ')
+                          .append(TokenBuilder.tokenToString(token));
+                    if (null!=fieldNames && cursor>=0 && cursor<fieldNames.length && null!=fieldNames[cursor]) {
+                        target.append(' ').append(fieldNames[cursor]);
+                    }
+                    target.append(" <").append(Long.toString(value));
+                    if (0!=aux) {
+                        target.append(" aux:").append(Long.toString(aux));
+                    }
+                    target.append(">\n");
+                } catch (IOException e) {
+                    throw new FASTException(e);
+                }
+            }});
+
+    }
+
+    public static void main(String[] args) {
+        if (args.length<1) {
+            System.err.println("Usage: TraceRender traceFile [catalogFile]");
+            return;
+        }
+        try {
+            String[] fieldNames = null;
+            if (args.length>1) {
+                fieldNames = new TemplateCatalogConfig(readFile(new File(args[1]))).fieldNameScript();
+            }
+            FileInputStream input = new FileInputStream(args[0]);
+            try {
+                render(input, fieldNames, System.out);
+            } finally {
+                input.close();
+            }
+        } catch (IOException e) {
+            throw new FASTException(e);
+        }
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        byte[] data = new byte[(int)file.length()];
+        DataInputStream input = new DataInputStream(new FileInputStream(file));
+        try {
+            input.readFully(data);
+        } finally {
+            input.close();
+        }
+        return data;
+    }
+
+}
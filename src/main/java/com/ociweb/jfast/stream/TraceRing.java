@@ -0,0 +1,133 @@
+package com.ociweb.jfast.stream;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import com.ociweb.jfast.error.FASTException;
+import com.ociweb.pronghorn.ring.RingBuffer;
+import com.ociweb.pronghorn.ring.token.TokenBuilder;
+import com.ociweb.pronghorn.ring.token.TypeMask;
+
+/**
+ * Preallocated ring of binary trace records written by the interpreter dispatchers.
+ *
+ * Each record is (absolute position, token, cursor, value, aux) where value is the raw field value
+ * from the ring buffer and aux holds the second half of two part values. For decimals value is the
+ * mantissa and aux the exponent, for text and byte arrays value is the length and aux the meta/position.
+ *
+ * Once full the oldest records are overwritten so tracing can be left on indefinitely like a flight recorder.
+ * Recording never allocates. Use write to save the records and TraceRender to turn them into text offline.
+ *
+ * Only the dispatch thread may record and write should be called from that same thread or after it has stopped.
+ *
+ */
+public final class TraceRing {
+
+    public static final int FILE_MAGIC = 0x46545243; //FTRC
+
+    private static final int LONGS_PER_RECORD = 4;
+
+    private final long[] records;
+    private final int mask;
+    private long head;
+
+    /**
+     * @param bits ring holds 2^bits records
+     */
+    public TraceRing(int bits) {
+        if (bits<1 || bits>24) {
+            throw new FASTException("TraceRing bits must be between 1 and 24");
+        }
+        this.mask = (1<<bits)-1;
+        this.records = new long[LONGS_PER_RECORD<<bits];
+    }
+
+    public static void record(long absPos, int token, int cursor, long value, long aux, TraceRing ring) {
+        int base = LONGS_PER_RECORD*(int)(ring.mask & ring.head++);
+        long[] r = ring.records;
+        r[base]   = absPos;
+        r[base+1] = (((long)token)<<32) | (0xFFFFFFFFL & cursor);
+        r[base+2] = value;
+        r[base+3] = aux;
+    }
+
+    /**
+     * Records a field which was just written into the ring buffer by the decoder starting at position pos.
+     */
+    public static void recordFromRing(long absPos, int token, int cursor, int[] buffer, long pos, int rbMask, TraceRing ring) {
+        long value = 0;
+        long aux = 0;
+        int type = TokenBuilder.extractType(token);
+        if (type == TypeMask.GroupLength || type == TypeMask.IntegerSigned
+                || type == TypeMask.IntegerSignedOptional || type == TypeMask.IntegerUnsigned
+                || type == TypeMask.IntegerUnsignedOptional) {
+            value = RingBuffer.peek(buffer, pos, rbMask);
+        } else if (type == TypeMask.LongSigned || type == TypeMask.LongSignedOptional
+                || type == TypeMask.LongUnsigned || type == TypeMask.LongUnsignedOptional) {
+            value = RingBuffer.peekLong(buffer, pos, rbMask);
+        } else if (type == TypeMask.Decimal || type == TypeMask.DecimalOptional) {
+            aux = RingBuffer.peek(buffer, pos, rbMask);
+            value = RingBuffer.peekLong(buffer, pos+1, rbMask);
+        } else if (type == TypeMask.TextASCII || type == TypeMask.TextASCIIOptional || type == TypeMask.TextUTF8
+                || type == TypeMask.TextUTF8Optional || type == TypeMask.ByteArray || type == TypeMask.ByteArrayOptional) {
+            aux = RingBuffer.peek(buffer, pos, rbMask);
+            value = RingBuffer.peek(buffer, pos+1, rbMask);
+        }
+        record(absPos, token, cursor, value, aux, ring);
+    }
+
+    /**
+     * Total number of records ever written, including those which have been overwritten.
+     */
+    public static long recordCount(TraceRing ring) {
+        return ring.head;
+    }
+
+    public static void reset(TraceRing ring) {
+        ring.head = 0;
+    }
+
+    /**
+     * Writes the retained records oldest first.
+     */
+    public static void write(TraceRing ring, DataOutputStream out) throws IOException {
+        long head = ring.head;
+        long tail = Math.max(0, head-(ring.mask+1));
+        out.writeInt(FILE_MAGIC);
+        out.writeInt((int)(head-tail));
+        while (tail<head) {
+            int base = LONGS_PER_RECORD*(int)(ring.mask & tail++);
+            int i = 0;
+            while (i<LONGS_PER_RECORD) {
+                out.writeLong(ring.records[base+i++]);
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Visits each record of a stream created by write, used by TraceRender.
+     */
+    public static int read(DataInputStream in, TraceVisitor visitor) throws IOException {
+        if (FILE_MAGIC != in.readInt()) {
+            throw new FASTException("Not a trace file");
+        }
+        int count = in.readInt();
+        int i = 0;
+        while (i<count) {
+            long absPos = in.readLong();
+            long tokenCursor = in.readLong();
+            long value = in.readLong();
+            long aux = in.readLong();
+            visitor.visit(absPos, (int)(tokenCursor>>>32), (int)tokenCursor, value, aux);
+            i++;
+        }
+        return count;
+    }
+
+    public interface TraceVisitor {
+        void visit(long absPos, int token, int cursor, long value, long aux);
+    }
+
+}
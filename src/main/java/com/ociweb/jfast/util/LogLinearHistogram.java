@@ -0,0 +1,151 @@
+package com.ociweb.jfast.util;
+
+import java.util.Arrays;
+
+import com.ociweb.jfast.error.FASTException;
+
+/**
+ * Fixed size log-linear histograms for positive long values such as nanosecond latencies.
+ *
+ * Each power of two is split into 2^subBucketBits linear sub buckets so the relative error
+ * of any recorded value is bounded by 1/2^subBucketBits. Values below 2^subBucketBits are
+ * recorded exactly.
+ *
+ * Many histograms share one flat array so a single instance can hold one histogram per template.
+ * All the memory is allocated once in the constructor, recording never allocates.
+ *
+ * Like the other classes in this project all the methods are static and take the instance as the last argument.
+ */
+public final class LogLinearHistogram {
+
+    final int subBucketBits;
+    final int bucketCount;
+    final int histogramCount;
+
+    final long[] buckets;
+    final long[] totals;
+    final long[] maximums;
+
+    public LogLinearHistogram(int histogramCount, int subBucketBits) {
+        if (subBucketBits<0 || subBucketBits>16) {
+            throw new FASTException("subBucketBits must be between 0 and 16");
+        }
+        this.subBucketBits = subBucketBits;
+        this.bucketCount = bucketCount(subBucketBits);
+        this.histogramCount = histogramCount;
+        this.buckets = new long[histogramCount*bucketCount];
+        this.totals = new long[histogramCount];
+        this.maximums = new long[histogramCount];
+    }
+
+    /**
+     * Number of buckets required to cover every non negative long value.
+     */
+    public static int bucketCount(int subBucketBits) {
+        return (64-subBucketBits)<<subBucketBits;
+    }
+
+    public static int bucketIndex(long value, int subBucketBits) {
+        if (value < (1L<<subBucketBits)) {
+            return value<0 ? 0 : (int)value;
+        }
+        int shift = (63 - Long.numberOfLeadingZeros(value)) - subBucketBits;
+        return ((shift+1)<<subBucketBits) + (int)((value>>>shift) & ((1L<<subBucketBits)-1));
+    }
+
+    /**
+     * Smallest value which will be recorded in the given bucket.
+     */
+    public static long bucketLowValue(int bucketIdx, int subBucketBits) {
+        int shift = (bucketIdx>>subBucketBits)-1;
+        if (shift<0) {
+            return bucketIdx;
+        }
+        return ((1L<<subBucketBits) + (bucketIdx & ((1<<subBucketBits)-1))) << shift;
+    }
+
+    /**
+     * Largest value which will be recorded in the given bucket.
+     */
+    public static long bucketHighValue(int bucketIdx, int subBucketBits) {
+        int shift = (bucketIdx>>subBucketBits)-1;
+        if (shift<0) {
+            return bucketIdx;
+        }
+        return bucketLowValue(bucketIdx, subBucketBits) + ((1L<<shift)-1);
+    }
+
+    public static void record(int histogram, long value, LogLinearHistogram hist) {
+        hist.buckets[histogram*hist.bucketCount + bucketIndex(value, hist.subBucketBits)]++;
+        hist.totals[histogram]++;
+        if (value > hist.maximums[histogram]) {
+            hist.maximums[histogram] = value;
+        }
+    }
+
+    public static long count(int histogram, LogLinearHistogram hist) {
+        return hist.totals[histogram];
+    }
+
+    public static long max(int histogram, LogLinearHistogram hist) {
+        return hist.maximums[histogram];
+    }
+
+    public static long bucket(int histogram, int bucketIdx, LogLinearHistogram hist) {
+        return hist.buckets[histogram*hist.bucketCount + bucketIdx];
+    }
+
+    /**
+     * Returns the upper bound of the bucket holding the requested percentile, this value is never
+     * smaller than the true value at that percentile. Zero is returned when nothing was recorded.
+     *
+     * @param histogram
+     * @param percentile from 0 to 100
+     * @param hist
+     */
+    public static long valueAtPercentile(int histogram, double percentile, LogLinearHistogram hist) {
+        long total = hist.totals[histogram];
+        if (0==total) {
+            return 0;
+        }
+        long target = Math.max(1, (long)Math.ceil((Math.min(100d, percentile)/100d)*total));
+        int base = histogram*hist.bucketCount;
+        long sum = 0;
+        int i = 0;
+        while (i<hist.bucketCount) {
+            sum += hist.buckets[base+i];
+            if (sum>=target) {
+                return Math.min(hist.maximums[histogram], bucketHighValue(i, hist.subBucketBits));
+            }
+            i++;
+        }
+        return hist.maximums[histogram];
+    }
+
+    public static void reset(LogLinearHistogram hist) {
+        Arrays.fill(hist.buckets, 0);
+        Arrays.fill(hist.totals, 0);
+        Arrays.fill(hist.maximums, 0);
+    }
+
+    /**
+     * Copy all the recorded values into a target of the same shape, used to take snapshots without allocation.
+     */
+    public static void copy(LogLinearHistogram source, LogLinearHistogram target) {
+        if (source.subBucketBits!=target.subBucketBits || source.histogramCount!=target.histogramCount) {
+            throw new FASTException("Histograms must have the same shape to be copied");
+        }
+        System.arraycopy(source.buckets, 0, target.buckets, 0, source.buckets.length);
+        System.arraycopy(source.totals, 0, target.totals, 0, source.totals.length);
+        System.arraycopy(source.maximums, 0, target.maximums, 0, source.maximums.length);
+    }
+
+    public static int histogramCount(LogLinearHistogram hist) {
+        return hist.histogramCount;
+    }
+
+    public static int subBucketBits(LogLinearHistogram hist) {
+        return hist.subBucketBits;
+    }
+
+}
@@ -4,9 +4,9 @@ import com.ociweb.jfast.catalog.loader.TemplateCatalogConfig;
 import com.ociweb.jfast.error.FASTException;
 import com.ociweb.jfast.primitive.PrimitiveReader;
 import com.ociweb.jfast.stream.FASTDecoder;
+import com.ociweb.jfast.stream.RingSizing;
 import com.ociweb.pronghorn.ring.RingBuffer;
 import com.ociweb.pronghorn.ring.RingBuffer.PaddedLong;
-import com.ociweb.pronghorn.ring.RingBufferConfig;
 import com.ociweb.pronghorn.ring.RingBuffers;
 import com.ociweb.pronghorn.ring.util.LocalHeap;
 import com.ociweb.pronghorn.ring.util.hash.LongHashTable;
@@ -37,7 +37,7 @@ public abstract class FASTReaderDispatchTemplates extends FASTDecoder {
     */
     public FASTReaderDispatchTemplates(TemplateCatalogConfig catalog) {
 		super(catalog, 
-        	  RingBuffers.buildNoFanRingBuffers(new RingBuffer(new RingBufferConfig((byte)15, (byte)7, catalog.ringByteConstants(), catalog.getFROM()))));
+        	  RingSizing.defaultRingBuffers(catalog));
     }
     
     public FASTReaderDispatchTemplates(TemplateCatalogConfig catalog, RingBuffers ringBuffers) {
@@ -45,7 +45,7 @@ public abstract class FASTReaderDispatchTemplates extends FASTDecoder {
     }
     
     public FASTReaderDispatchTemplates(byte[] catBytes, RingBuffers ringBuffers) {
-        this(new TemplateCatalogConfig(catBytes), ringBuffers);
+        this(TemplateCatalogConfig.shared(catBytes), ringBuffers);
     }
     
 
@@ -1524,7 +1524,7 @@ public abstract class FASTReaderDispatchTemplates extends FASTDecoder {
                 rLongDictionary[target] = 0;// set to absent
                 RingBuffer.addLongValue(rbB,rbMask,rbPos, constAbsent);
             } else {
-                StaticGlue.readLongSignedDeltaOptional(target, source, rLongDictionary, rbB, rbMask, rbPos, value);
+                RingBuffer.addLongValue(rbB,rbMask,rbPos, rLongDictionary[target] = (rLongDictionary[source] + (value > 0 ? value - 1 : value)));
             }
         }
     }
@@ -1568,12 +1568,22 @@ public abstract class FASTReaderDispatchTemplates extends FASTDecoder {
     	}
     }
 
-    protected void genReadASCIICopy(int target, int rbMask, int[] rbB, PrimitiveReader reader, LocalHeap byteHeap, PaddedLong rbPos, RingBuffer rbRingBuffer) {
-            LocalHeap.addLocalHeapValue(target,((0 == PrimitiveReader.readPMapBit(reader)) ? LocalHeap.valueLength(target,byteHeap) : StaticGlue.readASCIIToHeap(target, reader, byteHeap)),byteHeap,rbRingBuffer);
+    protected void genReadASCIICopy(int target, int rbMask, int[] rbB, PrimitiveReader reader, LocalHeap byteHeap, PaddedLong rbPos, RingBuffer rbRingBuffer, int[] textRevisions) {
+        if (0 == PrimitiveReader.readPMapBit(reader)) {
+            LocalHeap.addLocalHeapValue(target,LocalHeap.valueLength(target,byteHeap),byteHeap,rbRingBuffer);
+        } else {
+            textRevisions[target]++;
+            LocalHeap.addLocalHeapValue(target,StaticGlue.readASCIIToHeap(target, reader, byteHeap),byteHeap,rbRingBuffer);
+        }
     }
     
-    protected void genReadASCIICopyOptional(int target, int[] rbB, int rbMask, LocalHeap byteHeap, PrimitiveReader reader, PaddedLong rbPos, RingBuffer rbRingBuffer) {
-            LocalHeap.addLocalHeapValue(target,((0 == PrimitiveReader.readPMapBit(reader)) ? LocalHeap.valueLength(target,byteHeap) : StaticGlue.readASCIIToHeap(target, reader, byteHeap)),byteHeap,rbRingBuffer);
+    protected void genReadASCIICopyOptional(int target, int[] rbB, int rbMask, LocalHeap byteHeap, PrimitiveReader reader, PaddedLong rbPos, RingBuffer rbRingBuffer, int[] textRevisions) {
+        if (0 == PrimitiveReader.readPMapBit(reader)) {
+            LocalHeap.addLocalHeapValue(target,LocalHeap.valueLength(target,byteHeap),byteHeap,rbRingBuffer);
+        } else {
+            textRevisions[target]++;
+            LocalHeap.addLocalHeapValue(target,StaticGlue.readASCIIToHeap(target, reader, byteHeap),byteHeap,rbRingBuffer);
+        }
     }
     
     protected void genReadASCIINone(int target, int[] rbB, int rbMask, PrimitiveReader reader, LocalHeap byteHeap, PaddedLong rbPos, RingBuffer rbRingBuffer) {
@@ -1662,9 +1672,10 @@ public abstract class FASTReaderDispatchTemplates extends FASTDecoder {
         }
     }
 
-    protected void genReadBytesCopy(int target, int optOff, int[] rbB, int rbMask, LocalHeap byteHeap, PrimitiveReader reader, PaddedLong rbPos, RingBuffer rbRingBuffer) {
+    protected void genReadBytesCopy(int target, int optOff, int[] rbB, int rbMask, LocalHeap byteHeap, PrimitiveReader reader, PaddedLong rbPos, RingBuffer rbRingBuffer, int[] textRevisions) {
         {
             if (PrimitiveReader.readPMapBit(reader) != 0) {
+                textRevisions[target]++;
                 int length = PrimitiveReader.readIntegerUnsigned(reader) - optOff;                
                 PrimitiveReader.readByteData(LocalHeap.rawAccess(byteHeap), LocalHeap.allocate(target, length, byteHeap), length, reader);
             }
@@ -1768,12 +1779,14 @@ public abstract class FASTReaderDispatchTemplates extends FASTDecoder {
 
     // dictionary reset
 
-    protected void genReadDictionaryBytesReset(int target, LocalHeap byteHeap) {
+    protected void genReadDictionaryBytesReset(int target, LocalHeap byteHeap, int[] textRevisions) {
         LocalHeap.setNull(target, byteHeap);
+        textRevisions[target]++;
     }
 
-    protected void genReadDictionaryTextReset(int target, LocalHeap byteHeap) {
+    protected void genReadDictionaryTextReset(int target, LocalHeap byteHeap, int[] textRevisions) {
         LocalHeap.reset(target, byteHeap);
+        textRevisions[target]++;
     }
 
     protected void genReadDictionaryLongReset(int target, long resetConst, long[] rLongDictionary) {
@@ -0,0 +1,123 @@
+package com.ociweb.jfast.benchmark;
+
+import java.math.BigDecimal;
+
+import com.google.caliper.Benchmark;
+import com.ociweb.jfast.stream.RingDecimal;
+
+/**
+ * Compares RingDecimal against BigDecimal for the conversions consumers and producers of decimal fields need,
+ * prices with 2 to 6 digits after the point.
+ */
+public class DecimalConversionBenchmark extends Benchmark {
+
+    static final int VALUES = 1024;
+
+    final int[] exponents = new int[VALUES];
+    final long[] mantissas = new long[VALUES];
+    final double[] doubles = new double[VALUES];
+    final StringBuilder builder = new StringBuilder(32);
+
+    @Override
+    protected void setUp() throws Exception {
+        int i = VALUES;
+        while (--i>=0) {
+            exponents[i] = -2-(i%5);
+            mantissas[i] = 1000000L+(i*7919L);
+            doubles[i] = new BigDecimal(mantissas[i]).scaleByPowerOfTen(exponents[i]).doubleValue();
+        }
+    }
+
+    public long timeToDoubleTable(int reps) {
+        double result = 0;
+        while (--reps>=0) {
+            int i = VALUES;
+            while (--i>=0) {
+                result += RingDecimal.toDouble(exponents[i], mantissas[i]);
+            }
+        }
+        return (long)result;
+    }
+
+    public long timeToDoubleBigDecimal(int reps) {
+        double result = 0;
+        while (--reps>=0) {
+            int i = VALUES;
+            while (--i>=0) {
+                result += BigDecimal.valueOf(mantissas[i], -exponents[i]).doubleValue();
+            }
+        }
+        return (long)result;
+    }
+
+    public long timeToScaledTable(int reps) {
+        long result = 0;
+        while (--reps>=0) {
+            int i = VALUES;
+            while (--i>=0) {
+                result += RingDecimal.toScaled(exponents[i], mantissas[i], -4);
+            }
+        }
+        return result;
+    }
+
+    public long timeToScaledBigDecimal(int reps) {
+        long result = 0;
+        while (--reps>=0) {
+            int i = VALUES;
+            while (--i>=0) {
+                result += BigDecimal.valueOf(mantissas[i], -exponents[i]).setScale(4, BigDecimal.ROUND_HALF_UP).unscaledValue().longValue();
+            }
+        }
+        return result;
+    }
+
+    public long timeFromDoubleTable(int reps) {
+        long result = 0;
+        while (--reps>=0) {
+            int i = VALUES;
+            while (--i>=0) {
+                int exponent = RingDecimal.exponent(doubles[i], -8);
+                result += RingDecimal.mantissa(doubles[i], exponent)+exponent;
+            }
+        }
+        return result;
+    }
+
+    public long timeFromDoubleBigDecimal(int reps) {
+        long result = 0;
+        while (--reps>=0) {
+            int i = VALUES;
+            while (--i>=0) {
+                BigDecimal value = BigDecimal.valueOf(doubles[i]).stripTrailingZeros();
+                result += value.unscaledValue().longValue()-value.scale();
+            }
+        }
+        return result;
+    }
+
+    public long timeAppendTable(int reps) {
+        long result = 0;
+        while (--reps>=0) {
+            int i = VALUES;
+            while (--i>=0) {
+                builder.setLength(0);
+                result += RingDecimal.appendASCII(exponents[i], mantissas[i], builder).length();
+            }
+        }
+        return result;
+    }
+
+    public long timeAppendBigDecimal(int reps) {
+        long result = 0;
+        while (--reps>=0) {
+            int i = VALUES;
+            while (--i>=0) {
+                builder.setLength(0);
+                result += builder.append(BigDecimal.valueOf(mantissas[i], -exponents[i]).toPlainString()).length();
+            }
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,143 @@
+package com.ociweb.jfast.benchmark;
+
+import java.util.Arrays;
+
+import com.google.caliper.Benchmark;
+import com.google.caliper.Param;
+import com.ociweb.jfast.catalog.generator.CatalogGenerator;
+import com.ociweb.jfast.catalog.generator.OperatorOptimizer;
+import com.ociweb.jfast.catalog.generator.TemplateGenerator;
+import com.ociweb.jfast.catalog.loader.ClientConfig;
+import com.ociweb.jfast.catalog.loader.TemplateCatalogConfig;
+import com.ociweb.jfast.generator.DispatchLoader;
+import com.ociweb.jfast.generator.FASTClassLoader;
+import com.ociweb.jfast.primitive.PrimitiveReader;
+import com.ociweb.jfast.primitive.PrimitiveWriter;
+import com.ociweb.jfast.primitive.adapter.FASTInputByteArray;
+import com.ociweb.jfast.primitive.adapter.FASTOutputByteArray;
+import com.ociweb.jfast.stream.FASTDecoder;
+import com.ociweb.jfast.stream.FASTDynamicWriter;
+import com.ociweb.jfast.stream.FASTEncoder;
+import com.ociweb.jfast.stream.FASTReaderReactor;
+import com.ociweb.jfast.stream.RingSizing;
+import com.ociweb.pronghorn.ring.RingBuffer;
+import com.ociweb.pronghorn.ring.RingBuffers;
+import com.ociweb.pronghorn.ring.RingReader;
+import com.ociweb.pronghorn.ring.token.OperatorMask;
+import com.ociweb.pronghorn.ring.token.TypeMask;
+
+/**
+ * Compares generated code which keeps the dictionary in arrays against generated code which
+ * keeps each dictionary slot in a field of the dispatch, see GeneratorUtils.REMOVE_ARRAY.
+ *
+ * Caliper runs each trial in its own VM so the FAST.dictionaryFields property is set in setUp
+ * before the generator is loaded, the loader rebuilds the classes when they were generated the other way.
+ */
+public class DictionaryFieldsBenchmark extends Benchmark {
+
+    static final int FIELDS = 10;
+    static final int MESSAGES = 1000;
+
+    @Param({"false","true"})
+    boolean dictionaryFields;
+
+    @Param({"copy","increment","delta"})
+    String operator;
+
+    byte[] catBytes;
+    RingBuffer encodeRing;
+    FASTDynamicWriter dynamicWriter;
+    PrimitiveWriter writer;
+    FASTOutputByteArray output;
+    byte[] encoded;
+
+    FASTInputByteArray fastInput;
+    PrimitiveReader reader;
+    FASTDecoder decoder;
+    FASTReaderReactor reactor;
+    TemplateCatalogConfig catalog;
+
+    @Override
+    protected void setUp() throws Exception {
+        System.setProperty("FAST.dictionaryFields", Boolean.toString(dictionaryFields));
+        FASTClassLoader.deleteFiles();
+
+        int op = "copy".equals(operator) ? OperatorMask.Field_Copy :
+                 "increment".equals(operator) ? OperatorMask.Field_Increment : OperatorMask.Field_Delta;
+
+        CatalogGenerator cg = new CatalogGenerator();
+        TemplateGenerator template = cg.addTemplate("dictionaryHeavy", 2, false, null);
+        int f = 0;
+        while (f<FIELDS) {
+            template.addField("int"+f, 1000+f, false, TypeMask.IntegerUnsigned, op, "1");
+            template.addField("long"+f, 2000+f, false, TypeMask.LongSigned, op, "1");
+            f++;
+        }
+        catBytes = OperatorOptimizer.catBytes(cg, new ClientConfig(21,19));
+        catalog = new TemplateCatalogConfig(catBytes);
+
+        //encoder
+        encodeRing = RingBuffers.get(RingSizing.buildRingBuffers(catalog), 0);
+        output = new FASTOutputByteArray(new byte[1<<22]);
+        writer = new PrimitiveWriter(4096, output, false);
+        FASTEncoder encoder = DispatchLoader.loadDispatchWriter(catBytes);
+        dynamicWriter = new FASTDynamicWriter(writer, encodeRing, encoder);
+        encodeAll(0);
+        PrimitiveWriter.flush(writer);
+        encoded = Arrays.copyOf(output.buffer, (int)PrimitiveWriter.totalWritten(writer));
+
+        //decoder
+        RingBuffers ringBuffers = RingSizing.buildRingBuffers(catalog);
+        decoder = DispatchLoader.loadDispatchReader(catBytes, ringBuffers);
+        fastInput = new FASTInputByteArray(encoded);
+        reader = new PrimitiveReader(4096, fastInput, decoder.maxPMapCountInBytes);
+        reactor = new FASTReaderReactor(decoder, reader);
+    }
+
+    private int encodeAll(int base) {
+        //values move by one so copy repeats, increment hits and delta is a single byte
+        int i = 0;
+        while (i<MESSAGES) {
+            RingBuffer.addMsgIdx(encodeRing, 0);
+            int j = FIELDS;
+            while (--j>=0) {
+                RingBuffer.addValue(encodeRing.buffer, encodeRing.mask, encodeRing.workingHeadPos, "copy".equals(operator) ? base : base+i);
+                RingBuffer.addLongValue(encodeRing.buffer, encodeRing.mask, encodeRing.workingHeadPos, "copy".equals(operator) ? base : base+i);
+            }
+            RingBuffer.publishWrites(encodeRing);
+            if (RingReader.tryReadFragment(encodeRing)) {
+                FASTDynamicWriter.write(dynamicWriter);
+            }
+            i++;
+        }
+        return i;
+    }
+
+    public int timeEncode(int reps) {
+        int result = 0;
+        while (--reps>=0) {
+            output.reset();
+            PrimitiveWriter.reset(writer);
+            dynamicWriter.reset(true);
+            result += encodeAll(reps);
+            PrimitiveWriter.flush(writer);
+        }
+        return result;
+    }
+
+    public int timeDecode(int reps) {
+        int result = 0;
+        RingBuffer ring = RingBuffers.get(decoder.ringBuffers, 0);
+        while (--reps>=0) {
+            while (FASTReaderReactor.pump(reactor)>=0) {
+                result += RingBuffer.contentRemaining(ring);
+                RingBuffer.dump(ring);
+            }
+            fastInput.reset();
+            PrimitiveReader.reset(reader);
+            FASTDecoder.reset(catalog.dictionaryFactory(), decoder);
+        }
+        return result;
+    }
+
+}
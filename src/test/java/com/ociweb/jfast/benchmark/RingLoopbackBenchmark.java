@@ -0,0 +1,109 @@
+package com.ociweb.jfast.benchmark;
+
+import com.google.caliper.Benchmark;
+import com.ociweb.jfast.FAST;
+import com.ociweb.jfast.catalog.generator.CatalogGenerator;
+import com.ociweb.jfast.catalog.generator.OperatorOptimizer;
+import com.ociweb.jfast.catalog.generator.TemplateGenerator;
+import com.ociweb.jfast.catalog.loader.ClientConfig;
+import com.ociweb.jfast.catalog.loader.TemplateCatalogConfig;
+import com.ociweb.jfast.generator.DispatchLoader;
+import com.ociweb.jfast.primitive.PrimitiveWriter;
+import com.ociweb.jfast.primitive.adapter.FASTInputRingBuffer;
+import com.ociweb.jfast.primitive.adapter.FASTOutputRingBuffer;
+import com.ociweb.jfast.stream.FASTDynamicWriter;
+import com.ociweb.jfast.stream.FASTReaderReactor;
+import com.ociweb.jfast.stream.RingSizing;
+import com.ociweb.pronghorn.ring.FieldReferenceOffsetManager;
+import com.ociweb.pronghorn.ring.RingBuffer;
+import com.ociweb.pronghorn.ring.RingBufferConfig;
+import com.ociweb.pronghorn.ring.RingBuffers;
+import com.ociweb.pronghorn.ring.RingReader;
+import com.ociweb.pronghorn.ring.token.OperatorMask;
+import com.ociweb.pronghorn.ring.token.TypeMask;
+
+/**
+ * Encode to decode throughput with the encoded bytes handed from one thread to the other through
+ * FASTOutputRingBuffer and FASTInputRingBuffer.
+ */
+public class RingLoopbackBenchmark extends Benchmark {
+
+    static final int FIELDS = 10;
+    static final int MESSAGES = 1000;
+
+    RingBuffer encodeRing;
+    FASTDynamicWriter dynamicWriter;
+    PrimitiveWriter writer;
+    FASTReaderReactor reactor;
+    RingBuffer decodeRing;
+
+    @Override
+    protected void setUp() throws Exception {
+        CatalogGenerator cg = new CatalogGenerator();
+        TemplateGenerator template = cg.addTemplate("loopback", 2, false, null);
+        int f = 0;
+        while (f<FIELDS) {
+            template.addField("int"+f, 1000+f, false, TypeMask.IntegerUnsigned, OperatorMask.Field_Delta, null);
+            template.addField("long"+f, 2000+f, false, TypeMask.LongSigned, OperatorMask.Field_Delta, null);
+            f++;
+        }
+        byte[] catBytes = OperatorOptimizer.catBytes(cg, new ClientConfig(21,19));
+        TemplateCatalogConfig catalog = new TemplateCatalogConfig(catBytes);
+
+        RingBuffer blocks = new RingBuffer(new RingBufferConfig((byte)10, (byte)20, null, FieldReferenceOffsetManager.RAW_BYTES));
+
+        encodeRing = RingBuffers.get(RingSizing.buildRingBuffers(catalog), 0);
+        writer = new PrimitiveWriter(4096, new FASTOutputRingBuffer(blocks), false);
+        dynamicWriter = new FASTDynamicWriter(writer, encodeRing, DispatchLoader.loadDispatchWriter(catBytes));
+
+        reactor = FAST.inputReactor(new FASTInputRingBuffer(blocks), catBytes, RingSizing.buildRingBuffers(catalog));
+        decodeRing = reactor.ringBuffers()[0];
+    }
+
+    private void encodeAll(int base) {
+        int i = 0;
+        while (i<MESSAGES) {
+            RingBuffer.addMsgIdx(encodeRing, 0);
+            int j = FIELDS;
+            while (--j>=0) {
+                RingBuffer.addValue(encodeRing.buffer, encodeRing.mask, encodeRing.workingHeadPos, base+i);
+                RingBuffer.addLongValue(encodeRing.buffer, encodeRing.mask, encodeRing.workingHeadPos, base+i);
+            }
+            RingBuffer.publishWrites(encodeRing);
+            if (RingReader.tryReadFragment(encodeRing)) {
+                FASTDynamicWriter.write(dynamicWriter);
+            }
+            i++;
+        }
+        PrimitiveWriter.flush(writer);
+    }
+
+    public long timeLoopback(final int reps) throws InterruptedException {
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                int r = reps;
+                while (--r>=0) {
+                    encodeAll(r);
+                }
+            }
+        }, "loopback-encoder");
+        producer.start();
+
+        long messages = (long)reps*MESSAGES;
+        long result = 0;
+        long count = 0;
+        while (count<messages) {
+            FASTReaderReactor.pump(reactor);
+            while (RingReader.tryReadFragment(decodeRing)) {
+                if (RingReader.isNewMessage(decodeRing.ringWalker)) {
+                    count++;
+                    result += RingBuffer.readInt(decodeRing.buffer, decodeRing.mask, decodeRing.workingTailPos.value+1);
+                }
+            }
+        }
+        producer.join();
+        return result;
+    }
+
+}
@@ -14,6 +14,8 @@ public class RunCaliper {
 	//run(HomogeniousRecordWriteReadIntegerBenchmark.class); 
     //run(HomogeniousRecordWriteReadLongBenchmark.class); 
     //run(HomogeniousRecordWriteReadTextBenchmark.class);
+    //run(DictionaryFieldsBenchmark.class);
+    //run(RingLoopbackBenchmark.class);
 	run(Complex30000Benchmark.class);
     
 	}
@@ -0,0 +1,57 @@
+package com.ociweb.jfast.catalog;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.ociweb.jfast.catalog.generator.CatalogGenerator;
+import com.ociweb.jfast.catalog.generator.OperatorOptimizer;
+import com.ociweb.jfast.catalog.generator.TemplateGenerator;
+import com.ociweb.jfast.catalog.loader.ClientConfig;
+import com.ociweb.jfast.generator.TestEncoder;
+import com.ociweb.pronghorn.ring.token.OperatorMask;
+import com.ociweb.pronghorn.ring.token.TypeMask;
+
+public class OperatorOptimizerTest {
+
+    private static final int MESSAGES = 200;
+
+    @Test
+    public void operatorsFollowTheData() {
+
+        CatalogGenerator cg = new CatalogGenerator();
+        TemplateGenerator template = cg.addTemplate("optimize", 2, false, null);
+        template.addField("sequenceNumber", 1000, false, TypeMask.IntegerUnsigned, OperatorMask.Field_None, "10");
+        template.addField("venue", 1001, false, TypeMask.IntegerUnsigned, OperatorMask.Field_None, "10");
+
+        ClientConfig clientConfig = new ClientConfig(21,19);
+        byte[] sample = encodeSample(OperatorOptimizer.catBytes(cg, clientConfig));
+
+        OperatorOptimizer optimizer = new OperatorOptimizer(cg, clientConfig, sample);
+        OperatorOptimizer.optimize(2, optimizer);
+
+        assertEquals(sample.length, optimizer.originalBytes);
+        assertTrue(optimizer.optimizedBytes < optimizer.originalBytes);
+        assertEquals(2, optimizer.changedFields);
+
+        String xml = cg.toString();
+        assertTrue(xml, xml.contains("<increment"));
+        assertTrue(xml, xml.contains("<copy"));
+
+    }
+
+    private byte[] encodeSample(byte[] catBytes) {
+        TestEncoder encoder = new TestEncoder(catBytes);
+        int i = 0;
+        while (i<MESSAGES) {
+            TestEncoder.beginMessage(2, encoder);
+            TestEncoder.addInt(100000+i, encoder); //always one more
+            TestEncoder.addInt(70000, encoder); //never changes
+            TestEncoder.publish(encoder);
+            i++;
+        }
+        return TestEncoder.encoded(encoder);
+    }
+
+}
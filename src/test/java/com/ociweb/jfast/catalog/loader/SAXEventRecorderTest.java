@@ -0,0 +1,65 @@
+package com.ociweb.jfast.catalog.loader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import javax.xml.parsers.SAXParserFactory;
+
+import org.junit.Test;
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.DefaultHandler;
+
+public class SAXEventRecorderTest {
+
+    @Test
+    public void replayMatchesDirectParse() throws Exception {
+        SAXParserFactory spfac = SAXParserFactory.newInstance();
+
+        EventLog direct = new EventLog();
+        spfac.newSAXParser().parse(SAXEventRecorderTest.class.getResourceAsStream("/template/smallExample.xml"), direct);
+
+        SAXEventRecorder recorder = new SAXEventRecorder();
+        spfac.newSAXParser().parse(SAXEventRecorderTest.class.getResourceAsStream("/template/smallExample.xml"), recorder);
+        EventLog replayed = new EventLog();
+        SAXEventRecorder.replay(recorder, replayed);
+
+        assertTrue(direct.log.length()>0);
+        assertEquals(direct.log.toString(), replayed.log.toString());
+    }
+
+    private static class EventLog extends DefaultHandler {
+        final StringBuilder log = new StringBuilder();
+
+        @Override
+        public void startDocument() {
+            log.append("<doc>");
+        }
+
+        @Override
+        public void endDocument() {
+            log.append("</doc>");
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            log.append('<').append(qName);
+            int i = 0;
+            while (i<attributes.getLength()) {
+                log.append(' ').append(attributes.getQName(i)).append('=').append(attributes.getValue(i));
+                i++;
+            }
+            log.append('>');
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            log.append("</").append(qName).append('>');
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            log.append(ch, start, length);
+        }
+    }
+
+}
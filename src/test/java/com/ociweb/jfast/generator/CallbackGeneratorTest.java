@@ -0,0 +1,116 @@
+package com.ociweb.jfast.generator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+import com.ociweb.jfast.FAST;
+import com.ociweb.jfast.catalog.generator.CatalogGenerator;
+import com.ociweb.jfast.catalog.generator.TemplateGenerator;
+import com.ociweb.jfast.catalog.loader.TemplateCatalogConfig;
+import com.ociweb.jfast.primitive.adapter.FASTInputByteArray;
+import com.ociweb.jfast.stream.FASTListener;
+import com.ociweb.jfast.stream.FASTReaderReactor;
+import com.ociweb.pronghorn.ring.RingBuffer;
+import com.ociweb.pronghorn.ring.token.OperatorMask;
+import com.ociweb.pronghorn.ring.token.TypeMask;
+
+public class CallbackGeneratorTest {
+
+    private static final int MESSAGES = 100;
+
+    @Test
+    public void sourceHasTypedCallbacks() throws IOException {
+        String source = CallbackGenerator.generate(GeneratorFixture.CAT_BYTES, GeneratorFixture.PACKAGE, "QuoteCallbacks", new StringBuilder()).toString();
+
+        assertTrue(source, source.contains("public abstract class QuoteCallbacks implements FASTListener"));
+        assertTrue(source, source.contains("protected abstract void onQuote(int msgSeqNum, CharSequence symbol, int bidPxExponent, long bidPxMantissa, CharSequence venue, int noEntries);"));
+        assertTrue(source, source.contains("protected abstract void onQuoteEntries(long entrySize, CharSequence entryType);"));
+    }
+
+    @Test
+    public void compiledCallbacksReceiveEveryFragment() throws Exception {
+        String source = CallbackGenerator.generate(GeneratorFixture.CAT_BYTES, GeneratorFixture.PACKAGE, "QuoteCallbacks", new StringBuilder()).toString();
+        String recorder = "package "+GeneratorFixture.PACKAGE+";\n"
+                        + "import java.util.ArrayList;\n"
+                        + "import java.util.List;\n"
+                        + "import "+GeneratorFixture.class.getCanonicalName()+";\n"
+                        + "public class RecordingCallbacks extends QuoteCallbacks {\n"
+                        + "    public final List<String> fragments = new ArrayList<String>();\n"
+                        + "    protected void onQuote(int msgSeqNum, CharSequence symbol, int bidPxExponent, long bidPxMantissa, CharSequence venue, int noEntries) {\n"
+                        + "        fragments.add(GeneratorFixture.quote(msgSeqNum, symbol, bidPxExponent, bidPxMantissa, venue, noEntries));\n"
+                        + "    }\n"
+                        + "    protected void onQuoteEntries(long entrySize, CharSequence entryType) {\n"
+                        + "        fragments.add(GeneratorFixture.entry(entrySize, entryType));\n"
+                        + "    }\n"
+                        + "}\n";
+        ClassLoader loader = GeneratorFixture.compile(new SimpleSourceFileObject("QuoteCallbacks", source),
+                                                      new SimpleSourceFileObject("RecordingCallbacks", recorder));
+        Class<?> recorderClass = loader.loadClass(GeneratorFixture.PACKAGE+".RecordingCallbacks");
+        FASTListener listener = (FASTListener)recorderClass.newInstance();
+
+        FASTReaderReactor reactor = FAST.inputReactorPush(new FASTInputByteArray(GeneratorFixture.encodeWithDynamicWriter()), GeneratorFixture.CAT_BYTES);
+        while (FASTReaderReactor.pump(reactor, listener)>=0) {
+        }
+
+        assertEquals(GeneratorFixture.expected(), recorderClass.getField("fragments").get(listener));
+    }
+
+    @Test
+    public void pushDeliversFieldsAtLayoutOffsets() {
+        CatalogGenerator cg = new CatalogGenerator();
+        TemplateGenerator template = cg.addTemplate("Trade", 2, false, null);
+        template.addField("Seq", 1000, false, TypeMask.IntegerUnsigned, OperatorMask.Field_Increment, "1");
+        template.addField("Volume", 1001, false, TypeMask.LongUnsigned, OperatorMask.Field_Copy, null);
+        template.addField("Px", 1002, false, TypeMask.Decimal, OperatorMask.Field_Delta, null);
+        final byte[] catBytes = TestEncoder.catBytes(cg);
+
+        final FragmentLayout[] layout = FragmentLayout.build(TemplateCatalogConfig.shared(catBytes));
+        assertEquals(1, layout.length);
+        final FragmentLayout trade = layout[0];
+        assertEquals(3, trade.fieldCount);
+
+        byte[] encoded = encode(catBytes);
+
+        final int[] count = new int[1];
+        FASTListener listener = new FASTListener() {
+            @Override
+            public void fragment(int msgIdx, RingBuffer rb) {
+                assertEquals(trade.cursor, rb.ringWalker.cursor);
+                long p = rb.workingTailPos.value;
+                int i = count[0]++;
+                assertEquals(i, RingBuffer.readInt(rb.buffer, rb.mask, p+trade.offsets[0]));
+                assertEquals(1000L*i, RingBuffer.readLong(rb.buffer, rb.mask, p+trade.offsets[1]));
+                assertEquals(-2, RingBuffer.readInt(rb.buffer, rb.mask, p+trade.offsets[2]));
+                assertEquals(10000L+i, RingBuffer.readLong(rb.buffer, rb.mask, p+trade.offsets[2]+1));
+            }
+
+            @Override
+            public void fragment() {
+            }
+        };
+
+        FASTReaderReactor reactor = FAST.inputReactorPush(new FASTInputByteArray(encoded), catBytes);
+        while (FASTReaderReactor.pump(reactor, listener)>=0) {
+        }
+        assertEquals(MESSAGES, count[0]);
+    }
+
+    private byte[] encode(byte[] catBytes) {
+        TestEncoder encoder = new TestEncoder(catBytes);
+        int i = 0;
+        while (i<MESSAGES) {
+            TestEncoder.beginMessage(2, encoder);
+            TestEncoder.addInt(i, encoder);
+            TestEncoder.addLong(1000L*i, encoder);
+            TestEncoder.addDecimal(-2, 10000L+i, encoder);
+            TestEncoder.publish(encoder);
+            i++;
+        }
+        return TestEncoder.encoded(encoder);
+    }
+
+}
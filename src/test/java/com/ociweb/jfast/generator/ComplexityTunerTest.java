@@ -0,0 +1,62 @@
+package com.ociweb.jfast.generator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.ociweb.jfast.catalog.generator.CatalogGenerator;
+import com.ociweb.jfast.catalog.generator.TemplateGenerator;
+import com.ociweb.jfast.catalog.loader.TemplateCatalogConfig;
+import com.ociweb.jfast.stream.FASTDecoder;
+import com.ociweb.jfast.stream.RingSizing;
+import com.ociweb.pronghorn.ring.token.OperatorMask;
+import com.ociweb.pronghorn.ring.token.TypeMask;
+
+public class ComplexityTunerTest {
+
+    private static final int MESSAGES = 200;
+
+    @Test
+    public void recordsTheFasterBudgetAndRebuilds() throws ReflectiveOperationException {
+        CatalogGenerator cg = new CatalogGenerator();
+        TemplateGenerator template = cg.addTemplate("tuned", 2, false, null);
+        template.addField("sequenceNumber", 1000, false, TypeMask.IntegerUnsigned, OperatorMask.Field_Increment, "1");
+        template.addField("price", 1001, false, TypeMask.LongSigned, OperatorMask.Field_Delta, "0");
+        template.addField("venue", 1002, false, TypeMask.IntegerUnsigned, OperatorMask.Field_Copy, "7");
+        byte[] catBytes = TestEncoder.catBytes(cg);
+        byte[] sample = encodeSample(catBytes);
+
+        int[] budgets = new int[] {16, 40};
+        int budget = ComplexityTuner.tune(catBytes, sample, budgets, 1, 2);
+        assertTrue(16==budget || 40==budget);
+        assertEquals(budget, FASTClassLoader.complexityLimit(catBytes));
+
+        //the generated class now in use was built with the winning budget
+        FASTDecoder decoder = DispatchLoader.loadGeneratedReaderDispatch(catBytes, FASTClassLoader.READER,
+                                          RingSizing.buildRingBuffers(TemplateCatalogConfig.shared(catBytes)));
+        assertEquals(budget, decoder.getClass().getField("complexityLimit").getInt(null));
+
+        //recording the other budget forces the next load to rebuild
+        int other = 16==budget ? 40 : 16;
+        FASTClassLoader.recordComplexityLimit(catBytes, other);
+        decoder = DispatchLoader.loadGeneratedReaderDispatch(catBytes, FASTClassLoader.READER,
+                                          RingSizing.buildRingBuffers(TemplateCatalogConfig.shared(catBytes)));
+        assertEquals(other, decoder.getClass().getField("complexityLimit").getInt(null));
+    }
+
+    private byte[] encodeSample(byte[] catBytes) {
+        TestEncoder encoder = new TestEncoder(catBytes);
+        int i = 0;
+        while (i<MESSAGES) {
+            TestEncoder.beginMessage(2, encoder);
+            TestEncoder.addInt(1+i, encoder);
+            TestEncoder.addLong(10000L+(i%13), encoder);
+            TestEncoder.addInt(7, encoder);
+            TestEncoder.publish(encoder);
+            i++;
+        }
+        return TestEncoder.encoded(encoder);
+    }
+
+}
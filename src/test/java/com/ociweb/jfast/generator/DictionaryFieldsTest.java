@@ -0,0 +1,151 @@
+package com.ociweb.jfast.generator;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.ociweb.jfast.catalog.generator.CatalogGenerator;
+import com.ociweb.jfast.catalog.generator.TemplateGenerator;
+import com.ociweb.jfast.catalog.loader.TemplateCatalogConfig;
+import com.ociweb.jfast.primitive.PrimitiveReader;
+import com.ociweb.jfast.primitive.adapter.FASTInputByteArray;
+import com.ociweb.jfast.stream.FASTDecoder;
+import com.ociweb.jfast.stream.FASTEncoder;
+import com.ociweb.jfast.stream.FASTReaderReactor;
+import com.ociweb.jfast.stream.RingSizing;
+import com.ociweb.pronghorn.ring.FieldReferenceOffsetManager;
+import com.ociweb.pronghorn.ring.RingBuffer;
+import com.ociweb.pronghorn.ring.RingBuffers;
+import com.ociweb.pronghorn.ring.RingReader;
+import com.ociweb.pronghorn.ring.token.OperatorMask;
+import com.ociweb.pronghorn.ring.token.TypeMask;
+
+/**
+ * Round trips copy, increment and delta fields through the generated writer and reader. Runs in the default test
+ * execution with the dictionary arrays and again in the dictionary-fields execution of the pom, which sets
+ * -DFAST.dictionaryFields=true so each dictionary slot is a field of the generated dispatch.
+ */
+public class DictionaryFieldsTest {
+
+    private static final int TICK = 2;
+    private static final int MESSAGES = 40;
+    private static final String[] FIELDS = new String[] {"Seq", "Qty", "Bias", "Lot", "Volume", "Px", "Trades"};
+    private static final byte[] CAT_BYTES = catalog();
+
+    @Test
+    public void generatedDispatchRoundTrips() throws ReflectiveOperationException {
+        assertEquals(Boolean.getBoolean("FAST.dictionaryFields"), GeneratorUtils.REMOVE_ARRAY);
+
+        FASTEncoder writerDispatch = DispatchLoader.loadGeneratedWriterDispatch(CAT_BYTES, FASTClassLoader.WRITER);
+        assertEquals(GeneratorUtils.REMOVE_ARRAY, writerDispatch.getClass().getField("removeArray").getBoolean(null));
+        byte[] encoded = encode(new TestEncoder(CAT_BYTES, writerDispatch));
+        assertArrayEquals(encode(new TestEncoder(CAT_BYTES)), encoded);
+
+        TemplateCatalogConfig catalog = TemplateCatalogConfig.shared(CAT_BYTES);
+        RingBuffers ringBuffers = RingSizing.buildRingBuffers(catalog, 16, null);
+        FASTDecoder readerDispatch = DispatchLoader.loadGeneratedReaderDispatch(CAT_BYTES, FASTClassLoader.READER, ringBuffers);
+        assertEquals(GeneratorUtils.REMOVE_ARRAY, readerDispatch.getClass().getField("removeArray").getBoolean(null));
+        assertEquals(expected(), decode(catalog, readerDispatch, RingBuffers.get(ringBuffers, 0), encoded));
+    }
+
+    private static byte[] catalog() {
+        CatalogGenerator cg = new CatalogGenerator();
+        TemplateGenerator tick = cg.addTemplate("Tick", TICK, false, null);
+        tick.addField("Seq", 100, false, TypeMask.IntegerUnsigned, OperatorMask.Field_Increment, "1");
+        tick.addField("Qty", 101, false, TypeMask.IntegerUnsigned, OperatorMask.Field_Copy, null);
+        tick.addField("Bias", 102, false, TypeMask.IntegerSigned, OperatorMask.Field_Delta, "0");
+        tick.addField("Lot", 103, true, TypeMask.IntegerUnsigned, OperatorMask.Field_Copy, null);
+        tick.addField("Volume", 104, false, TypeMask.LongUnsigned, OperatorMask.Field_Copy, null);
+        tick.addField("Px", 105, false, TypeMask.LongSigned, OperatorMask.Field_Delta, "0");
+        tick.addField("Trades", 106, true, TypeMask.LongUnsigned, OperatorMask.Field_Increment, null);
+        tick.addField("Bid", 107, false, TypeMask.Decimal, OperatorMask.Field_Copy, OperatorMask.Field_Delta, null, null);
+        return TestEncoder.catBytes(cg);
+    }
+
+    private static long[] values(int i) {
+        return new long[] {1+i, 10*(i/3), (i%5)-2, 1+i/4, 1000L*(i/2), 5000L-7*i, 1+i};
+    }
+
+    private static long bidMantissa(int i) {
+        return 10000L+3*(i/2);
+    }
+
+    private static List<String> expected() {
+        List<String> expected = new ArrayList<String>();
+        int i = 0;
+        while (i<MESSAGES) {
+            StringBuilder tick = new StringBuilder();
+            long[] values = values(i);
+            int f = 0;
+            while (f<values.length) {
+                tick.append(values[f++]).append(' ');
+            }
+            expected.add(tick.append(-2).append(' ').append(bidMantissa(i)).toString());
+            i++;
+        }
+        return expected;
+    }
+
+    private static byte[] encode(TestEncoder encoder) {
+        int i = 0;
+        while (i<MESSAGES) {
+            long[] values = values(i);
+            TestEncoder.beginMessage(TICK, encoder);
+            int f = 0;
+            while (f<values.length) {
+                if (f<4) {
+                    TestEncoder.addInt((int)values[f], encoder);
+                } else {
+                    TestEncoder.addLong(values[f], encoder);
+                }
+                f++;
+            }
+            TestEncoder.addDecimal(-2, bidMantissa(i), encoder);
+            TestEncoder.publish(encoder);
+            i++;
+        }
+        return TestEncoder.encoded(encoder);
+    }
+
+    private static List<String> decode(TemplateCatalogConfig catalog, FASTDecoder decoder, RingBuffer ring, byte[] encoded) {
+        FASTReaderReactor reactor = new FASTReaderReactor(decoder, new PrimitiveReader(4096, new FASTInputByteArray(encoded), decoder.maxPMapCountInBytes));
+
+        FieldReferenceOffsetManager from = catalog.getFROM();
+        int msgIdx = TemplateCatalogConfig.templateStart(TICK, catalog);
+        int[] locators = new int[FIELDS.length];
+        int f = FIELDS.length;
+        while (--f>=0) {
+            locators[f] = FieldReferenceOffsetManager.lookupFieldLocator(FIELDS[f], msgIdx, from);
+        }
+        int bid = FieldReferenceOffsetManager.lookupFieldLocator("Bid", msgIdx, from);
+
+        List<String> decoded = new ArrayList<String>();
+        boolean more = true;
+        while (more) {
+            more = FASTReaderReactor.pump(reactor)>=0;
+            while (RingReader.tryReadFragment(ring)) {
+                if (RingReader.getMsgIdx(ring.ringWalker)>=0) {
+                    StringBuilder tick = new StringBuilder();
+                    f = 0;
+                    while (f<locators.length) {
+                        if (f<4) {
+                            tick.append(RingReader.readInt(ring, locators[f]));
+                        } else {
+                            tick.append(RingReader.readLong(ring, locators[f]));
+                        }
+                        tick.append(' ');
+                        f++;
+                    }
+                    tick.append(RingReader.readDecimalExponent(ring, bid)).append(' ').append(RingReader.readDecimalMantissa(ring, bid));
+                    decoded.add(tick.toString());
+                }
+            }
+        }
+        return decoded;
+    }
+
+}
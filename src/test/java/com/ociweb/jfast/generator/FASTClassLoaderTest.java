@@ -0,0 +1,124 @@
+package com.ociweb.jfast.generator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.ociweb.jfast.catalog.generator.CatalogGenerator;
+import com.ociweb.jfast.catalog.generator.TemplateGenerator;
+import com.ociweb.jfast.catalog.loader.TemplateCatalogConfig;
+import com.ociweb.jfast.primitive.PrimitiveReader;
+import com.ociweb.jfast.primitive.adapter.FASTInputByteArray;
+import com.ociweb.jfast.stream.FASTDecoder;
+import com.ociweb.jfast.stream.FASTReaderReactor;
+import com.ociweb.jfast.stream.RingSizing;
+import com.ociweb.pronghorn.ring.FieldReferenceOffsetManager;
+import com.ociweb.pronghorn.ring.RingBuffer;
+import com.ociweb.pronghorn.ring.RingBuffers;
+import com.ociweb.pronghorn.ring.RingReader;
+import com.ociweb.pronghorn.ring.token.OperatorMask;
+import com.ociweb.pronghorn.ring.token.TypeMask;
+
+public class FASTClassLoaderTest {
+
+    private static final int TRADE = 2;
+    private static final int MESSAGES = 50;
+
+    @Test
+    public void onlyTheChangedTemplateIsCompiled() throws ReflectiveOperationException {
+        byte[] catBytesA = catalog(OperatorMask.Field_Copy);
+        byte[] catBytesB = catalog(OperatorMask.Field_Delta); //only the status template changes
+        byte[] encoded = encode(catBytesA);
+
+        FASTClassLoader.deleteFiles();
+        List<String> expected = decode(catBytesA, encoded);
+        List<String> compiledA = FASTClassLoader.lastCompiledFragments;
+        assertTrue(compiledA.size()>=4); //a reader and a writer fragment for each template
+        assertEquals(0, FASTClassLoader.lastReusedFragments);
+
+        List<String> decoded = decode(catBytesB, encoded);
+        List<String> compiledB = FASTClassLoader.lastCompiledFragments;
+        assertTrue(containsPrefix(compiledB, FASTClassLoader.SIMPLE_READER_NAME));
+        assertTrue(containsPrefix(compiledB, FASTClassLoader.SIMPLE_WRITER_NAME));
+        int i = compiledB.size();
+        while (--i>=0) {
+            assertFalse(compiledB.get(i), compiledA.contains(compiledB.get(i)));
+        }
+        //everything else, all the fragments of the trade template, came from disk
+        assertEquals(compiledA.size()-compiledB.size(), FASTClassLoader.lastReusedFragments);
+
+        assertEquals(MESSAGES, expected.size());
+        assertEquals(expected, decoded);
+    }
+
+    private static byte[] catalog(int statusOperator) {
+        CatalogGenerator cg = new CatalogGenerator();
+        TemplateGenerator trade = cg.addTemplate("Trade", TRADE, false, null);
+        trade.addField("Seq", 100, false, TypeMask.IntegerUnsigned, OperatorMask.Field_Increment, "1");
+        trade.addField("Volume", 101, false, TypeMask.LongUnsigned, OperatorMask.Field_Copy, null);
+        trade.addField("Px", 102, false, TypeMask.LongSigned, OperatorMask.Field_Delta, "0");
+        TemplateGenerator status = cg.addTemplate("Status", 3, false, null);
+        status.addField("Code", 200, false, TypeMask.IntegerUnsigned, statusOperator, null);
+        return TestEncoder.catBytes(cg);
+    }
+
+    private static boolean containsPrefix(List<String> names, String prefix) {
+        int i = names.size();
+        while (--i>=0) {
+            if (names.get(i).startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static byte[] encode(byte[] catBytes) {
+        TestEncoder encoder = new TestEncoder(catBytes);
+        int i = 0;
+        while (i<MESSAGES) {
+            TestEncoder.beginMessage(TRADE, encoder);
+            TestEncoder.addInt(1+i, encoder);
+            TestEncoder.addLong(100L*(i/4), encoder);
+            TestEncoder.addLong(5000L-3*i, encoder);
+            TestEncoder.publish(encoder);
+            i++;
+        }
+        return TestEncoder.encoded(encoder);
+    }
+
+    /**
+     * Decodes with the generated reader, which compiles the catalog unless it is already on disk.
+     */
+    private static List<String> decode(byte[] catBytes, byte[] encoded) throws ReflectiveOperationException {
+        TemplateCatalogConfig catalog = TemplateCatalogConfig.shared(catBytes);
+        RingBuffers ringBuffers = RingSizing.buildRingBuffers(catalog, 16, null);
+        FASTDecoder decoder = DispatchLoader.loadGeneratedReaderDispatch(catBytes, FASTClassLoader.READER, ringBuffers);
+        FASTReaderReactor reactor = new FASTReaderReactor(decoder, new PrimitiveReader(4096, new FASTInputByteArray(encoded), decoder.maxPMapCountInBytes));
+        RingBuffer ring = RingBuffers.get(ringBuffers, 0);
+
+        FieldReferenceOffsetManager from = catalog.getFROM();
+        int msgIdx = TemplateCatalogConfig.templateStart(TRADE, catalog);
+        int seq = FieldReferenceOffsetManager.lookupFieldLocator("Seq", msgIdx, from);
+        int volume = FieldReferenceOffsetManager.lookupFieldLocator("Volume", msgIdx, from);
+        int px = FieldReferenceOffsetManager.lookupFieldLocator("Px", msgIdx, from);
+
+        List<String> decoded = new ArrayList<String>();
+        boolean more = true;
+        while (more) {
+            more = FASTReaderReactor.pump(reactor)>=0;
+            while (RingReader.tryReadFragment(ring)) {
+                if (RingReader.getMsgIdx(ring.ringWalker)>=0) {
+                    assertEquals(msgIdx, RingReader.getMsgIdx(ring.ringWalker));
+                    decoded.add(RingReader.readInt(ring, seq)+" "+RingReader.readLong(ring, volume)+" "+RingReader.readLong(ring, px));
+                }
+            }
+        }
+        return decoded;
+    }
+
+}
@@ -0,0 +1,165 @@
+package com.ociweb.jfast.generator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+
+import org.junit.Test;
+
+import com.ociweb.jfast.FAST;
+import com.ociweb.jfast.catalog.generator.CatalogGenerator;
+import com.ociweb.jfast.catalog.generator.TemplateGenerator;
+import com.ociweb.jfast.catalog.loader.TemplateCatalogConfig;
+import com.ociweb.jfast.primitive.adapter.FASTInputByteArray;
+import com.ociweb.jfast.stream.FASTListener;
+import com.ociweb.jfast.stream.FASTReaderReactor;
+import com.ociweb.jfast.stream.RingSizing;
+import com.ociweb.pronghorn.ring.FieldReferenceOffsetManager;
+import com.ociweb.pronghorn.ring.RingBuffer;
+import com.ociweb.pronghorn.ring.RingBuffers;
+import com.ociweb.pronghorn.ring.RingReader;
+import com.ociweb.pronghorn.ring.token.OperatorMask;
+import com.ociweb.pronghorn.ring.token.TokenBuilder;
+import com.ociweb.pronghorn.ring.token.TypeMask;
+
+public class FlyweightGeneratorTest {
+
+    @Test
+    public void accessorsUseConstantOffsets() throws IOException {
+        TemplateCatalogConfig catalog = TemplateCatalogConfig.shared(GeneratorFixture.CAT_BYTES);
+        FragmentLayout[] layout = FragmentLayout.build(catalog);
+        assertEquals(2, layout.length);
+        FragmentLayout quote = layout[0];
+        assertEquals("Quote", quote.name);
+        assertEquals("QuoteEntries", layout[1].name);
+
+        //int, then text position and length, then exponent and mantissa, then text
+        int first = quote.offsets[0];
+        assertEquals(first+1, quote.offsets[1]);
+        assertEquals(first+3, quote.offsets[2]);
+        assertEquals(first+6, quote.offsets[3]);
+        assertEquals(first+8, quote.offsets[4]);
+        assertEquals(first+9, quote.size);
+
+        String source = FlyweightGenerator.generate(catalog, quote, GeneratorFixture.PACKAGE, new StringBuilder()).toString();
+        assertTrue(source, source.contains("public final class Quote {"));
+        assertTrue(source, source.contains("public int msgSeqNum() {\n        return RingBuffer.readInt(b, m, p+"+first+");"));
+        assertTrue(source, source.contains("public <A extends Appendable> A symbol(A target) {"));
+        assertTrue(source, source.contains("public CharSequence symbol() {"));
+        assertTrue(source, source.contains("public int symbolSymbol(SymbolTable table) {"));
+        assertTrue(source, source.contains("public int symbolSymbol(SymbolCache cache) {"));
+        assertTrue(source, source.contains("return new SymbolCache(reactor, "+(quote.tokens[1] & TokenBuilder.MAX_INSTANCE)+", table);"));
+        assertTrue(source, source.contains("public long bidPxMantissa() {\n        return RingBuffer.readLong(b, m, p+"+(first+4)+");"));
+        assertTrue(source, source.contains("RingText.appendUTF8("));
+        assertTrue(source, source.contains("return venueView.setUTF8("));
+        assertTrue(source, source.contains("public int venue(char[] target, int offset) {"));
+        assertTrue(source, source.contains("public double bidPxDouble() {"));
+        assertTrue(source, source.contains("public long bidPxScaled(int exponent) {"));
+    }
+
+    @Test
+    public void compiledFlyweightsReadEveryFragment() throws Exception {
+        TemplateCatalogConfig catalog = TemplateCatalogConfig.shared(GeneratorFixture.CAT_BYTES);
+        FragmentLayout[] layout = FragmentLayout.build(catalog);
+        SimpleSourceFileObject[] sources = new SimpleSourceFileObject[layout.length+1];
+        int i = layout.length;
+        while (--i>=0) {
+            sources[i] = new SimpleSourceFileObject(layout[i].name, FlyweightGenerator.generate(catalog, layout[i], GeneratorFixture.PACKAGE, new StringBuilder()));
+        }
+        String recorder = "package "+GeneratorFixture.PACKAGE+";\n"
+                        + "import java.util.ArrayList;\n"
+                        + "import java.util.List;\n"
+                        + "import "+FASTListener.class.getCanonicalName()+";\n"
+                        + "import "+GeneratorFixture.class.getCanonicalName()+";\n"
+                        + "import "+RingBuffer.class.getCanonicalName()+";\n"
+                        + "public class FlyweightRecorder implements FASTListener {\n"
+                        + "    public final List<String> fragments = new ArrayList<String>();\n"
+                        + "    private final Quote quote = new Quote();\n"
+                        + "    private final QuoteEntries entries = new QuoteEntries();\n"
+                        + "    public void fragment(int msgIdx, RingBuffer rb) {\n"
+                        + "        if (Quote.isFragment(rb)) {\n"
+                        + "            Quote q = quote.wrap(rb);\n"
+                        + "            fragments.add(GeneratorFixture.quote(q.msgSeqNum(), q.symbol(), q.bidPxExponent(), q.bidPxMantissa(), q.venue(), q.noEntries()));\n"
+                        + "        } else if (QuoteEntries.isFragment(rb)) {\n"
+                        + "            QuoteEntries e = entries.wrap(rb);\n"
+                        + "            fragments.add(GeneratorFixture.entry(e.entrySize(), e.entryType()));\n"
+                        + "        }\n"
+                        + "    }\n"
+                        + "    public void fragment() {\n"
+                        + "    }\n"
+                        + "}\n";
+        sources[layout.length] = new SimpleSourceFileObject("FlyweightRecorder", recorder);
+        ClassLoader loader = GeneratorFixture.compile(sources);
+        Class<?> recorderClass = loader.loadClass(GeneratorFixture.PACKAGE+".FlyweightRecorder");
+        FASTListener listener = (FASTListener)recorderClass.newInstance();
+
+        FASTReaderReactor reactor = FAST.inputReactorPush(new FASTInputByteArray(GeneratorFixture.encodeWithDynamicWriter()), GeneratorFixture.CAT_BYTES);
+        while (FASTReaderReactor.pump(reactor, listener)>=0) {
+        }
+
+        assertEquals(GeneratorFixture.expected(), recorderClass.getField("fragments").get(listener));
+    }
+
+    @Test
+    public void absentOptionalDecimalIsNotConverted() throws Exception {
+        CatalogGenerator cg = new CatalogGenerator();
+        TemplateGenerator template = cg.addTemplate("Mark", 2, false, null);
+        template.addField("Px", 1000, true, TypeMask.Decimal, OperatorMask.Field_None, null);
+        TemplateCatalogConfig catalog = TemplateCatalogConfig.shared(TestEncoder.catBytes(cg));
+        FragmentLayout mark = FragmentLayout.build(catalog)[0];
+
+        ClassLoader loader = GeneratorFixture.compile(new SimpleSourceFileObject(mark.name,
+                                                      FlyweightGenerator.generate(catalog, mark, GeneratorFixture.PACKAGE, new StringBuilder())));
+        Class<?> flyweightClass = loader.loadClass(GeneratorFixture.PACKAGE+"."+mark.name);
+        Object flyweight = flyweightClass.newInstance();
+        Method wrap = flyweightClass.getMethod("wrap", RingBuffer.class);
+        Method pxDouble = flyweightClass.getMethod("pxDouble");
+        Method pxScaled = flyweightClass.getMethod("pxScaled", int.class);
+        Method px = flyweightClass.getMethod("px", Appendable.class);
+
+        FieldReferenceOffsetManager from = catalog.getFROM();
+        RingBuffer ring = RingBuffers.get(RingSizing.buildRingBuffers(catalog, 4, null), 0);
+        RingBuffer.addMsgIdx(ring, mark.cursor);
+        RingBuffer.addValue(ring.buffer, ring.mask, ring.workingHeadPos, FieldReferenceOffsetManager.getAbsent32Value(from));
+        RingBuffer.addLongValue(ring.buffer, ring.mask, ring.workingHeadPos, FieldReferenceOffsetManager.getAbsent64Value(from));
+        RingBuffer.publishWrites(ring);
+        RingBuffer.addMsgIdx(ring, mark.cursor);
+        RingBuffer.addValue(ring.buffer, ring.mask, ring.workingHeadPos, -2);
+        RingBuffer.addLongValue(ring.buffer, ring.mask, ring.workingHeadPos, 12345L);
+        RingBuffer.publishWrites(ring);
+
+        assertTrue(RingReader.tryReadFragment(ring));
+        wrap.invoke(flyweight, ring);
+        assertTrue(Double.isNaN((Double)pxDouble.invoke(flyweight)));
+        assertEquals(FieldReferenceOffsetManager.getAbsent64Value(from), pxScaled.invoke(flyweight, -4));
+        assertEquals("", px.invoke(flyweight, new StringBuilder()).toString());
+
+        assertTrue(RingReader.tryReadFragment(ring));
+        wrap.invoke(flyweight, ring);
+        assertEquals(123.45d, (Double)pxDouble.invoke(flyweight), 0d);
+        assertEquals(1234500L, pxScaled.invoke(flyweight, -4));
+        assertEquals("123.45", px.invoke(flyweight, new StringBuilder()).toString());
+    }
+
+    @Test
+    public void suffixedAccessorNamesDoNotCollide() {
+        CatalogGenerator cg = new CatalogGenerator();
+        TemplateGenerator template = cg.addTemplate("Order", 2, false, null);
+        template.addField("Price", 1000, false, TypeMask.Decimal, OperatorMask.Field_None, null);
+        template.addField("Price Mantissa", 1001, false, TypeMask.LongSigned, OperatorMask.Field_None, null);
+        template.addField("Name", 1002, false, TypeMask.TextASCII, OperatorMask.Field_None, null);
+        template.addField("Name Length", 1003, false, TypeMask.IntegerUnsigned, OperatorMask.Field_None, null);
+        template.addField("Hash Code", 1004, false, TypeMask.IntegerUnsigned, OperatorMask.Field_None, null);
+
+        TemplateCatalogConfig catalog = TemplateCatalogConfig.shared(TestEncoder.catBytes(cg));
+        FragmentLayout order = FragmentLayout.build(catalog)[0];
+        assertEquals("price", order.names[0]);
+        assertEquals("priceMantissa2", order.names[1]);
+        assertEquals("name", order.names[2]);
+        assertEquals("nameLength2", order.names[3]);
+        assertEquals("hashCode2", order.names[4]);
+    }
+
+}
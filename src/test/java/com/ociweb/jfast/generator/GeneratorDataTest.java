@@ -0,0 +1,47 @@
+package com.ociweb.jfast.generator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.ociweb.jfast.primitive.PrimitiveReader;
+import com.ociweb.jfast.primitive.PrimitiveWriter;
+import com.ociweb.jfast.stream.FASTDecoder;
+import com.ociweb.jfast.stream.FASTEncoder;
+import com.ociweb.pronghorn.ring.RingBuffer;
+import com.ociweb.pronghorn.ring.util.LocalHeap;
+
+public class GeneratorDataTest {
+
+    @Test
+    public void fragmentClassNameFollowsSource() {
+        String methods = "public static void fragment12(FASTReaderGeneratedDispatch dispatch) {\n    m0002_001(dispatch);\n}\n";
+
+        String name = GeneratorData.fragmentClassName(FASTClassLoader.SIMPLE_READER_NAME, methods);
+        assertTrue(name, name.startsWith(FASTClassLoader.SIMPLE_READER_NAME));
+
+        //same source regardless of where it came from gives the same class so the compiled file can be reused
+        assertEquals(name, GeneratorData.fragmentClassName(FASTClassLoader.SIMPLE_READER_NAME, new StringBuilder(methods)));
+
+        assertFalse(name.equals(GeneratorData.fragmentClassName(FASTClassLoader.SIMPLE_READER_NAME, methods.replace("fragment12", "fragment13"))));
+        assertFalse(name.equals(GeneratorData.fragmentClassName(FASTClassLoader.SIMPLE_WRITER_NAME, methods)));
+    }
+
+    @Test
+    public void fragmentClassNameFollowsLibrary() {
+        String methods = "public static void fragment12(FASTReaderGeneratedDispatch dispatch) {\n    m0002_001(dispatch);\n}\n";
+
+        assertEquals(GeneratorData.fragmentClassName(FASTClassLoader.SIMPLE_READER_NAME, methods),
+                     GeneratorData.fragmentClassName(FASTClassLoader.SIMPLE_READER_NAME, methods, GeneratorData.LIBRARY_FINGERPRINT));
+        //same source compiled against another build of the library must not be reused
+        assertFalse(GeneratorData.fragmentClassName(FASTClassLoader.SIMPLE_READER_NAME, methods).equals(
+                    GeneratorData.fragmentClassName(FASTClassLoader.SIMPLE_READER_NAME, methods, GeneratorData.LIBRARY_FINGERPRINT+1)));
+
+        assertEquals(GeneratorData.LIBRARY_FINGERPRINT, GeneratorData.libraryFingerprint(FASTReaderDispatchTemplates.class, FASTWriterDispatchTemplates.class,
+                     StaticGlue.class, FASTDecoder.class, FASTEncoder.class, PrimitiveReader.class, PrimitiveWriter.class, RingBuffer.class, LocalHeap.class));
+        assertFalse(GeneratorData.libraryFingerprint(StaticGlue.class)==GeneratorData.libraryFingerprint(GeneratorUtils.class));
+    }
+
+}
@@ -0,0 +1,195 @@
+package com.ociweb.jfast.generator;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.ToolProvider;
+
+import com.ociweb.jfast.FAST;
+import com.ociweb.jfast.catalog.generator.CatalogGenerator;
+import com.ociweb.jfast.catalog.generator.SequenceGenerator;
+import com.ociweb.jfast.catalog.generator.TemplateGenerator;
+import com.ociweb.jfast.catalog.loader.TemplateCatalogConfig;
+import com.ociweb.jfast.primitive.adapter.FASTInputByteArray;
+import com.ociweb.jfast.stream.FASTDynamicWriter;
+import com.ociweb.jfast.stream.FASTListener;
+import com.ociweb.jfast.stream.FASTReaderReactor;
+import com.ociweb.jfast.stream.RingCharSequence;
+import com.ociweb.pronghorn.ring.RingBuffer;
+import com.ociweb.pronghorn.ring.token.OperatorMask;
+import com.ociweb.pronghorn.ring.token.TypeMask;
+
+/**
+ * Catalog and stream shared by the tests of the ring writer facade, callback and flyweight generators. Quotes carry ASCII and
+ * UTF-8 text, a decimal and a sequence of entries, each fragment is described by the same string whichever
+ * generated class produced or consumed it.
+ */
+public class GeneratorFixture {
+
+    public static final String PACKAGE = "com.example";
+    public static final int QUOTE = 2;
+    public static final int MESSAGES = 30;
+
+    public static final byte[] CAT_BYTES = catalog();
+
+    private static byte[] catalog() {
+        CatalogGenerator cg = new CatalogGenerator();
+        TemplateGenerator template = cg.addTemplate("Quote", QUOTE, false, null);
+        template.addField("MsgSeqNum", 1000, false, TypeMask.IntegerUnsigned, OperatorMask.Field_Increment, "1");
+        template.addField("Symbol", 1001, false, TypeMask.TextASCII, OperatorMask.Field_Copy, null);
+        template.addField("BidPx", 1002, false, TypeMask.Decimal, OperatorMask.Field_Delta, null);
+        template.addField("Venue", 1003, false, TypeMask.TextUTF8, OperatorMask.Field_Copy, null);
+        SequenceGenerator entries = template.addSequence("Entries", 1004, "NoEntries", 1005, OperatorMask.Field_None);
+        entries.addField("EntrySize", 1006, false, TypeMask.LongUnsigned, OperatorMask.Field_Delta, null);
+        entries.addField("EntryType", 1007, false, TypeMask.TextASCII, OperatorMask.Field_Copy, null);
+        return TestEncoder.catBytes(cg);
+    }
+
+    public static int seq(int i) {
+        return 1+i;
+    }
+
+    public static String symbol(int i) {
+        return i<MESSAGES/2 ? "IBM" : "MSFT";
+    }
+
+    public static long bidMantissa(int i) {
+        return 10000L+3*i;
+    }
+
+    public static String venue(int i) {
+        return 0==(i&4) ? "Zürich" : "東京";
+    }
+
+    public static int entries(int i) {
+        return i%3;
+    }
+
+    public static long entrySize(int i, int e) {
+        return 100L*i+e;
+    }
+
+    public static String entryType(int e) {
+        return 0==(e&1) ? "B" : "S";
+    }
+
+    public static String quote(int msgSeqNum, CharSequence symbol, int bidPxExponent, long bidPxMantissa, CharSequence venue, int noEntries) {
+        return "Quote "+msgSeqNum+" "+symbol+" "+bidPxExponent+" "+bidPxMantissa+" "+venue+" "+noEntries;
+    }
+
+    public static String entry(long entrySize, CharSequence entryType) {
+        return "Entry "+entrySize+" "+entryType;
+    }
+
+    /**
+     * One string for each fragment of the stream.
+     */
+    public static List<String> expected() {
+        List<String> expected = new ArrayList<String>();
+        int i = 0;
+        while (i<MESSAGES) {
+            expected.add(quote(seq(i), symbol(i), -2, bidMantissa(i), venue(i), entries(i)));
+            int e = 0;
+            while (e<entries(i)) {
+                expected.add(entry(entrySize(i, e), entryType(e)));
+                e++;
+            }
+            i++;
+        }
+        return expected;
+    }
+
+    /**
+     * The stream encoded by filling a ring and writing it with FASTDynamicWriter and the interpreted writer.
+     */
+    public static byte[] encodeWithDynamicWriter() {
+        TestEncoder encoder = new TestEncoder(CAT_BYTES);
+        int i = 0;
+        while (i<MESSAGES) {
+            TestEncoder.beginMessage(QUOTE, encoder);
+            TestEncoder.addInt(seq(i), encoder);
+            TestEncoder.addText(symbol(i), encoder);
+            TestEncoder.addDecimal(-2, bidMantissa(i), encoder);
+            TestEncoder.addText(venue(i), encoder);
+            TestEncoder.addInt(entries(i), encoder);
+            TestEncoder.publish(encoder);
+            int e = 0;
+            while (e<entries(i)) {
+                TestEncoder.addLong(entrySize(i, e), encoder);
+                TestEncoder.addText(entryType(e), encoder);
+                TestEncoder.publish(encoder);
+                e++;
+            }
+            i++;
+        }
+        return TestEncoder.encoded(encoder);
+    }
+
+    /**
+     * Decodes with a push reactor and reads each fragment at its layout offsets, one string for each fragment.
+     */
+    public static List<String> decode(byte[] encoded) {
+        final FragmentLayout[] layout = FragmentLayout.build(TemplateCatalogConfig.shared(CAT_BYTES));
+        final List<String> decoded = new ArrayList<String>();
+        FASTListener listener = new FASTListener() {
+            @Override
+            public void fragment(int msgIdx, RingBuffer rb) {
+                long p = rb.workingTailPos.value;
+                if (layout[0].cursor==rb.ringWalker.cursor) {
+                    int[] o = layout[0].offsets;
+                    decoded.add(quote(RingBuffer.readInt(rb.buffer, rb.mask, p+o[0]), text(o[1], rb),
+                                      RingBuffer.readInt(rb.buffer, rb.mask, p+o[2]), RingBuffer.readLong(rb.buffer, rb.mask, p+o[2]+1),
+                                      text(o[3], rb), RingBuffer.readInt(rb.buffer, rb.mask, p+o[4])));
+                } else {
+                    int[] o = layout[1].offsets;
+                    decoded.add(entry(RingBuffer.readLong(rb.buffer, rb.mask, p+o[0]), text(o[1], rb)));
+                }
+            }
+
+            @Override
+            public void fragment() {
+            }
+        };
+        FASTReaderReactor reactor = FAST.inputReactorPush(new FASTInputByteArray(encoded), CAT_BYTES);
+        while (FASTReaderReactor.pump(reactor, listener)>=0) {
+        }
+        return decoded;
+    }
+
+    private static String text(int offset, RingBuffer rb) {
+        int length = RingBuffer.readRingByteLen(offset, rb.buffer, rb.mask, rb.workingTailPos);
+        int rawPos = RingBuffer.readValue(offset, rb.buffer, rb.mask, rb.workingTailPos.value);
+        return new RingCharSequence().setUTF8(RingBuffer.byteBackingArray(rawPos, rb), RingBuffer.bytePositionGen(rawPos, rb, length),
+                                              rb.byteMask, length).toString();
+    }
+
+    /**
+     * Compiles the generated sources with javax.tools against the test class path.
+     *
+     * @return loader for the compiled classes
+     */
+    public static ClassLoader compile(SimpleSourceFileObject ... sources) throws IOException {
+        File folder = File.createTempFile("generated", "test");
+        folder.delete();
+        folder.mkdirs();
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+        List<String> options = Arrays.asList("-classpath", System.getProperty("java.class.path"), "-d", folder.getPath());
+        boolean compiled = compiler.getTask(null, null, diagnostics, options, null, Arrays.asList(sources)).call();
+        assertTrue(diagnostics.getDiagnostics().toString(), compiled);
+
+        return new URLClassLoader(new URL[] {folder.toURI().toURL()}, GeneratorFixture.class.getClassLoader());
+    }
+
+}
@@ -0,0 +1,75 @@
+package com.ociweb.jfast.generator;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.ociweb.jfast.primitive.PrimitiveWriter;
+import com.ociweb.jfast.primitive.adapter.FASTOutputByteArray;
+import com.ociweb.jfast.stream.RingText;
+
+public class RingWriterFacadeGeneratorTest {
+
+    @Test
+    public void sourceHasTypedEncodeMethods() throws IOException {
+        String source = RingWriterFacadeGenerator.generate(GeneratorFixture.CAT_BYTES, GeneratorFixture.PACKAGE, "QuoteWriter", new StringBuilder()).toString();
+
+        assertTrue(source, source.contains("public final class QuoteWriter {"));
+        assertTrue(source, source.contains("public void encodeQuote(int msgSeqNum, CharSequence symbol, int bidPxExponent, long bidPxMantissa, CharSequence venue, int noEntries) {"));
+        assertTrue(source, source.contains("public void encodeQuoteEntries(long entrySize, CharSequence entryType) {"));
+        assertTrue(source, source.contains("addText(symbol, false);"));
+        assertTrue(source, source.contains("addText(venue, true);"));
+    }
+
+    @Test
+    public void compiledFacadeMatchesTheInterpreterAndDecodes() throws Exception {
+        String source = RingWriterFacadeGenerator.generate(GeneratorFixture.CAT_BYTES, GeneratorFixture.PACKAGE, "QuoteWriter", new StringBuilder()).toString();
+        ClassLoader loader = GeneratorFixture.compile(new SimpleSourceFileObject("QuoteWriter", source));
+        Class<?> facadeClass = loader.loadClass(GeneratorFixture.PACKAGE+".QuoteWriter");
+
+        byte[] buffer = new byte[1<<16];
+        PrimitiveWriter writer = new PrimitiveWriter(4096, new FASTOutputByteArray(buffer), false);
+        Object facade = facadeClass.getConstructor(byte[].class, PrimitiveWriter.class).newInstance(GeneratorFixture.CAT_BYTES, writer);
+        Method encodeQuote = facadeClass.getMethod("encodeQuote", int.class, CharSequence.class, int.class, long.class, CharSequence.class, int.class);
+        Method encodeEntries = facadeClass.getMethod("encodeQuoteEntries", long.class, CharSequence.class);
+
+        int i = 0;
+        while (i<GeneratorFixture.MESSAGES) {
+            encodeQuote.invoke(facade, GeneratorFixture.seq(i), GeneratorFixture.symbol(i), -2, GeneratorFixture.bidMantissa(i),
+                               GeneratorFixture.venue(i), GeneratorFixture.entries(i));
+            int e = 0;
+            while (e<GeneratorFixture.entries(i)) {
+                encodeEntries.invoke(facade, GeneratorFixture.entrySize(i, e), GeneratorFixture.entryType(e));
+                e++;
+            }
+            i++;
+        }
+        PrimitiveWriter.flush(writer);
+
+        byte[] encoded = Arrays.copyOf(buffer, (int)PrimitiveWriter.totalWritten(writer));
+
+        //the facade runs the generated writer, the fixture stream was written by the interpreter
+        assertArrayEquals(GeneratorFixture.encodeWithDynamicWriter(), encoded);
+        assertEquals(GeneratorFixture.expected(), GeneratorFixture.decode(encoded));
+    }
+
+    @Test
+    public void copyUTF8MatchesStringEncoding() throws IOException {
+        String value = "a\u00E9\u20AC\uD83D\uDE00z";
+        byte[] target = new byte[3*value.length()];
+        int length = RingText.copyUTF8(value, target);
+        byte[] expected = value.getBytes("UTF-8");
+        assertEquals(expected.length, length);
+        int i = length;
+        while (--i>=0) {
+            assertEquals(expected[i], target[i]);
+        }
+    }
+
+}
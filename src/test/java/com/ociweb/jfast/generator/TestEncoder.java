@@ -0,0 +1,102 @@
+package com.ociweb.jfast.generator;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import com.ociweb.jfast.catalog.generator.CatalogGenerator;
+import com.ociweb.jfast.catalog.generator.OperatorOptimizer;
+import com.ociweb.jfast.catalog.loader.ClientConfig;
+import com.ociweb.jfast.catalog.loader.TemplateCatalogConfig;
+import com.ociweb.jfast.primitive.PrimitiveWriter;
+import com.ociweb.jfast.primitive.adapter.FASTOutputByteArray;
+import com.ociweb.jfast.stream.FASTDynamicWriter;
+import com.ociweb.jfast.stream.FASTEncoder;
+import com.ociweb.jfast.stream.RingSizing;
+import com.ociweb.pronghorn.ring.RingBuffer;
+import com.ociweb.pronghorn.ring.RingBuffers;
+import com.ociweb.pronghorn.ring.RingReader;
+
+/**
+ * Encodes test streams by filling a ring and writing each published fragment with FASTDynamicWriter, by default
+ * with the interpreted writer.
+ *
+ *   TestEncoder encoder = new TestEncoder(catBytes);
+ *   TestEncoder.beginMessage(templateId, encoder);
+ *   TestEncoder.addInt(42, encoder);
+ *   TestEncoder.publish(encoder);
+ *   byte[] encoded = TestEncoder.encoded(encoder);
+ */
+public class TestEncoder {
+
+    private static final int BURST_FRAGMENTS = 16;
+
+    public final TemplateCatalogConfig catalog;
+    public final RingBuffer ring;
+    private final byte[] buffer = new byte[1<<16];
+    private final PrimitiveWriter writer;
+    private final FASTDynamicWriter dynamicWriter;
+
+    public TestEncoder(byte[] catBytes) {
+        this(catBytes, DispatchLoader.loadDispatchWriterDebug(catBytes));
+    }
+
+    public TestEncoder(byte[] catBytes, FASTEncoder writerDispatch) {
+        this.catalog = TemplateCatalogConfig.shared(catBytes);
+        this.ring = RingBuffers.get(RingSizing.buildRingBuffers(catalog, BURST_FRAGMENTS, null), 0);
+        this.writer = new PrimitiveWriter(4096, new FASTOutputByteArray(buffer), false);
+        this.dynamicWriter = new FASTDynamicWriter(writer, ring, writerDispatch);
+    }
+
+    /**
+     * Catalog of the generated templates with the client config used by all the tests.
+     */
+    public static byte[] catBytes(CatalogGenerator cg) {
+        return OperatorOptimizer.catBytes(cg, new ClientConfig(21,19));
+    }
+
+    public static void beginMessage(long templateId, TestEncoder encoder) {
+        RingBuffer.addMsgIdx(encoder.ring, TemplateCatalogConfig.templateStart(templateId, encoder.catalog));
+    }
+
+    public static void addInt(int value, TestEncoder encoder) {
+        RingBuffer.addValue(encoder.ring.buffer, encoder.ring.mask, encoder.ring.workingHeadPos, value);
+    }
+
+    public static void addLong(long value, TestEncoder encoder) {
+        RingBuffer.addLongValue(encoder.ring.buffer, encoder.ring.mask, encoder.ring.workingHeadPos, value);
+    }
+
+    public static void addDecimal(int exponent, long mantissa, TestEncoder encoder) {
+        addInt(exponent, encoder);
+        addLong(mantissa, encoder);
+    }
+
+    /**
+     * ASCII and UTF-8 text fields, ASCII values are the same bytes either way.
+     */
+    public static void addText(String value, TestEncoder encoder) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        RingBuffer.addByteArray(bytes, 0, bytes.length, encoder.ring);
+    }
+
+    /**
+     * Publishes the fragment and writes it, along with anything else waiting on the ring.
+     */
+    public static void publish(TestEncoder encoder) {
+        RingBuffer.publishWrites(encoder.ring);
+        while (RingReader.tryReadFragment(encoder.ring)) {
+            if (RingReader.getMsgIdx(encoder.ring.ringWalker)>=0) {
+                FASTDynamicWriter.write(encoder.dynamicWriter);
+            }
+        }
+    }
+
+    /**
+     * Flushes the writer and returns every byte written so far.
+     */
+    public static byte[] encoded(TestEncoder encoder) {
+        PrimitiveWriter.flush(encoder.writer);
+        return Arrays.copyOf(encoder.buffer, (int)PrimitiveWriter.totalWritten(encoder.writer));
+    }
+
+}
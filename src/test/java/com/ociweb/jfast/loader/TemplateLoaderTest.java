@@ -2,6 +2,7 @@ package com.ociweb.jfast.loader;
 
 import static com.ociweb.pronghorn.ring.FieldReferenceOffsetManager.lookupFieldLocator;
 import static com.ociweb.pronghorn.ring.FieldReferenceOffsetManager.lookupTemplateLocator;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -11,11 +12,14 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileWriter;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.net.URL;
+import java.nio.ByteBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
+import java.util.Arrays;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -26,12 +30,16 @@ import java.util.concurrent.atomic.AtomicLong;
 import org.junit.Test;
 
 import com.ociweb.jfast.FAST;
+import com.ociweb.jfast.catalog.generator.CatalogGenerator;
+import com.ociweb.jfast.catalog.generator.TemplateGenerator;
 import com.ociweb.jfast.catalog.loader.ClientConfig;
 import com.ociweb.jfast.catalog.loader.TemplateCatalogConfig;
 import com.ociweb.jfast.catalog.loader.TemplateLoader;
+import com.ociweb.jfast.catalog.loader.TemplateRouting;
 import com.ociweb.jfast.error.FASTException;
 import com.ociweb.jfast.generator.DispatchLoader;
 import com.ociweb.jfast.generator.FASTClassLoader;
+import com.ociweb.jfast.generator.GeneratorData;
 import com.ociweb.jfast.primitive.FASTInput;
 import com.ociweb.jfast.primitive.PrimitiveReader;
 import com.ociweb.jfast.primitive.PrimitiveWriter;
@@ -55,6 +63,7 @@ import com.ociweb.pronghorn.ring.token.TokenBuilder;
 import com.ociweb.pronghorn.ring.token.TypeMask;
 import com.ociweb.pronghorn.ring.util.Histogram;
 import com.ociweb.pronghorn.ring.util.LocalHeap;
+import com.ociweb.pronghorn.ring.util.hash.LongHashTable;
 
 
 public class TemplateLoaderTest {
@@ -110,6 +119,103 @@ public class TemplateLoaderTest {
 
 //TODO: B, double check that template script generated by the SAX parser uses script positions vs tempalte ids? Which is right?
 
+    @Test
+    public void uncompressedCatalog() {
+
+        byte[] gzipBytes = buildRawCatalogData(new ClientConfig());
+        byte[] rawBytes = TemplateCatalogConfig.uncompressed(gzipBytes);
+
+        assertTrue(TemplateCatalogConfig.isUncompressed(rawBytes));
+        assertTrue(!TemplateCatalogConfig.isUncompressed(gzipBytes));
+
+        TemplateCatalogConfig expected = new TemplateCatalogConfig(gzipBytes);
+        TemplateCatalogConfig raw = new TemplateCatalogConfig(rawBytes);
+        TemplateCatalogConfig mapped = new TemplateCatalogConfig(ByteBuffer.wrap(rawBytes));
+
+        assertTrue(Arrays.equals(expected.fullScript(), raw.fullScript()));
+        assertTrue(Arrays.equals(expected.fieldNameScript(), raw.fieldNameScript()));
+        assertTrue(Arrays.equals(expected.fieldIdScript(), mapped.fieldIdScript()));
+        assertTrue(Arrays.equals(expected.fieldNameScript(), mapped.fieldNameScript()));
+        assertEquals(expected.templatesCount(), mapped.templatesCount());
+
+        //parsed only once for the same bytes
+        assertTrue(TemplateCatalogConfig.shared(rawBytes) == TemplateCatalogConfig.shared(rawBytes.clone()));
+    }
+
+    @Test
+    public void parallelFolderParseBuildsTheSameCatalog() throws Exception {
+        File folder = File.createTempFile("templates", "test");
+        folder.delete();
+        folder.mkdirs();
+
+        //one file per template, each with a different mix of types and operators so slots depend on the order
+        int[] types = new int[] {TypeMask.IntegerUnsigned, TypeMask.TextASCII, TypeMask.LongSigned, TypeMask.Decimal, TypeMask.ByteArray};
+        int[] operators = new int[] {OperatorMask.Field_Copy, OperatorMask.Field_Delta, OperatorMask.Field_Default, OperatorMask.Field_Increment};
+        int files = 12;
+        int f = files;
+        while (--f>=0) {
+            CatalogGenerator cg = new CatalogGenerator();
+            TemplateGenerator template = cg.addTemplate("Template"+f, 100+f, false, null);
+            int fields = 1+(f%4);
+            int i = 0;
+            while (i<fields) {
+                int type = types[(f+i)%types.length];
+                int operator = TypeMask.IntegerUnsigned==type || TypeMask.LongSigned==type ? operators[(f*3+i)%operators.length]
+                                                                                          : OperatorMask.Field_Copy;
+                template.addField("Field"+i, 1000*f+i, false, type, operator, OperatorMask.Field_Default==operator ? "1" : null);
+                i++;
+            }
+            FileWriter writer = new FileWriter(new File(folder, "templates"+f+".xml"));
+            cg.appendTo("", writer);
+            writer.close();
+        }
+
+        ByteArrayOutputStream sequential = new ByteArrayOutputStream();
+        TemplateLoader.buildCatalog(sequential, folder.getPath(), new ClientConfig(), false, 1);
+        ByteArrayOutputStream parallel = new ByteArrayOutputStream();
+        TemplateLoader.buildCatalog(parallel, folder.getPath(), new ClientConfig(), false, 4);
+
+        f = files;
+        while (--f>=0) {
+            new File(folder, "templates"+f+".xml").delete();
+        }
+        folder.delete();
+
+        assertEquals(files, new TemplateCatalogConfig(sequential.toByteArray()).templatesCount());
+        assertArrayEquals(sequential.toByteArray(), parallel.toByteArray());
+        assertArrayEquals(GeneratorData.hashCatBytes(sequential.toByteArray()), GeneratorData.hashCatBytes(parallel.toByteArray()));
+    }
+
+    @Test
+    public void buildRoutedRingBuffers() {
+
+        TemplateCatalogConfig catalog = new TemplateCatalogConfig(buildRawCatalogData(new ClientConfig()));
+
+        TemplateRouting routing = new TemplateRouting((byte)10, (byte)10);
+        int quoteRing = routing.addRing(4, (byte)8, 2);
+
+        RingBuffers ringBuffers = TemplateCatalogConfig.buildRingBuffers(catalog, routing);
+        RingBuffer marketData = RingBuffers.get(ringBuffers, (int)LongHashTable.getItem(catalog.getTemplateStartIdx(), 1));
+        RingBuffer quote = RingBuffers.get(ringBuffers, (int)LongHashTable.getItem(catalog.getTemplateStartIdx(), 2));
+
+        assertEquals(1, quoteRing);
+        assertTrue(marketData != quote);
+        assertEquals(1<<10, marketData.maxSize);
+        assertTrue(quote.maxSize < marketData.maxSize);
+
+        //every template which was not routed, MarketData and Done, shares the default ring
+        int notRouted = 0;
+        int t = catalog.templateScriptEntries.length;
+        while (--t>=0) {
+            int start = catalog.templateScriptEntries[t];
+            if (2 != catalog.fieldIdScript()[start]) {
+                assertEquals(marketData, RingBuffers.get(ringBuffers, start));
+                notRouted++;
+            }
+        }
+        assertEquals(2, notRouted);
+    }
+
     @Test
     public void testDecodeComplex30000() {
 
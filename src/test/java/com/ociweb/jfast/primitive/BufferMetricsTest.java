@@ -0,0 +1,54 @@
+package com.ociweb.jfast.primitive;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.ociweb.jfast.primitive.adapter.FASTInputByteArray;
+import com.ociweb.jfast.primitive.adapter.FASTOutputByteArray;
+
+public class BufferMetricsTest {
+
+    @Test
+    public void writerFlushCountersTest() {
+        int bufferSize = 64;
+        FASTOutputByteArray output = new FASTOutputByteArray(new byte[4096]);
+        PrimitiveWriter writer = new PrimitiveWriter(bufferSize, output, false);
+
+        int i = 1000;
+        while (--i>=0) {
+            PrimitiveWriter.writeIntegerUnsigned(1000, writer); //2 bytes each
+        }
+        PrimitiveWriter.flush(writer);
+
+        BufferMetrics metrics = PrimitiveWriter.metrics(writer);
+        assertEquals(2000, output.position());
+        assertTrue(metrics.earlyFlushes()>0);
+        assertTrue(metrics.flushes()>metrics.earlyFlushes());
+        assertTrue(metrics.blocks()>0);
+        assertTrue(metrics.maxBlockSize()<=bufferSize);
+        assertEquals(0, metrics.compactions());
+
+        metrics.reset();
+        assertEquals(0, metrics.blocks());
+    }
+
+    @Test
+    public void readerCompactionCountersTest() {
+        byte[] source = new byte[100];
+        PrimitiveReader reader = new PrimitiveReader(16, new FASTInputByteArray(source), 0);
+
+        byte[] target = new byte[10];
+        int i = 8;
+        while (--i>=0) {
+            PrimitiveReader.readByteData(target, 0, target.length, reader);
+        }
+
+        BufferMetrics metrics = PrimitiveReader.metrics(reader);
+        assertTrue(metrics.compactions()>0);
+        assertEquals(6*metrics.compactions(), metrics.bytesMoved());
+        assertEquals(0, metrics.flushes());
+    }
+
+}
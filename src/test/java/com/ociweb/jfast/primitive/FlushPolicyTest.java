@@ -0,0 +1,65 @@
+package com.ociweb.jfast.primitive;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class FlushPolicyTest {
+
+    @Test
+    public void thresholdPolicyTest() {
+        ThresholdFlushPolicy policy = new ThresholdFlushPolicy(100, 50, true);
+        long now = 1000000;
+        
+        assertFalse(policy.flushNow(0, true, true, now));
+        //never flush inside a message
+        assertFalse(policy.flushNow(200, false, true, now));
+        assertTrue(policy.flushNow(200, true, false, now));
+        
+        //more is coming so wait for the delay
+        assertFalse(policy.flushNow(10, true, false, now));
+        assertFalse(policy.flushNow(20, true, false, now+49000));
+        assertTrue(policy.flushNow(30, true, false, now+50000));
+        
+        //quiet, flush right away
+        assertTrue(policy.flushNow(10, true, true, now+60000));
+    }
+    
+    @Test
+    public void adaptivePolicyQuietTest() {
+        AdaptiveFlushPolicy policy = new AdaptiveFlushPolicy(1400, 5, 100);
+        long now = 1000000;
+        int i = 0;
+        while (i<20) {
+            //one message every millisecond, each is sent as soon as it is encoded
+            assertTrue(policy.flushNow(30, true, true, now + (i*1000000L)));
+            i++;
+        }
+    }
+    
+    @Test
+    public void adaptivePolicyBurstTest() {
+        AdaptiveFlushPolicy policy = new AdaptiveFlushPolicy(1400, 5, 100);
+        long now = 1000000;
+        int pending = 0;
+        int flushes = 0;
+        int i = 0;
+        while (i<1000) {
+            //one message every microsecond
+            pending += 30;
+            if (policy.flushNow(pending, true, true, now + (i*1000L))) {
+                pending = 0;
+                flushes++;
+            }
+            i++;
+        }
+        assertTrue(AdaptiveFlushPolicy.averageGapNs(policy)<2000);
+        //messages are coalesced once the burst is detected
+        assertTrue(flushes<1000/4);
+        
+        //the burst ends, the window closes on an idle poll
+        assertTrue(pending==0 || policy.flushNow(pending, true, true, now + (1000*1000L) + 100000));
+    }
+    
+}
@@ -62,6 +62,41 @@ public class PrimitivePMAPTest {
 
     }
 
+    @Test
+    public void testWriterGrowsBookkeeping() {
+        
+        //start with the smallest possible bookkeeping so it must grow, output must match the default writer
+        byte[] expected = writeNestedGroups(new ByteArrayOutputStream(), 4096, PrimitiveWriter.DEFAULT_MAX_PMAP_DEPTH, PrimitiveWriter.DEFAULT_MIN_PMAP_GROUP_BYTES);
+        byte[] actual = writeNestedGroups(new ByteArrayOutputStream(), 4096, 1, 4096);
+        
+        assertEquals(expected.length, actual.length);
+        int i = expected.length;
+        while (--i>=0) {
+            assertEquals(expected[i], actual[i]);
+        }
+    }
+
+    private byte[] writeNestedGroups(ByteArrayOutputStream baost, int bufferSize, int maxPMapDepth, int minPMapGroupBytes) {
+        PrimitiveWriter writer = new PrimitiveWriter(bufferSize, new FASTOutputStream(baost), false, maxPMapDepth, minPMapGroupBytes);
+        int depth = 6;
+        int groups = 60; //stays below the half buffer flush point
+        while (--groups>=0) {
+            int d = depth;
+            while (--d>=0) {
+                PrimitiveWriter.openPMap(3, writer);
+                PrimitiveWriter.writePMapBit((byte) (d&1), writer);
+                PrimitiveWriter.writeIntegerUnsigned(groups, writer);
+            }
+            d = depth;
+            while (--d>=0) {
+                PrimitiveWriter.writePMapBit((byte) 1, writer);
+                PrimitiveWriter.closePMap(writer);
+            }
+        }
+        PrimitiveWriter.flush(writer);
+        return baost.toByteArray();
+    }
+
     @Test
     public void testWriterNested2() {
 
@@ -287,6 +322,25 @@ public class PrimitivePMAPTest {
 
     }
     
+    @Test
+    public void testPeekTemplateId() {
+        
+        //two bytes of preamble, a two byte PMap with the template id bit set and template id 300
+        byte[] testData = new byte[] {1, 2, (byte)0x40, (byte)0x80, 0x02, (byte)0xAC };
+        PrimitiveReader reader = new PrimitiveReader(testData);
+        
+        assertEquals(300, PrimitiveReader.peekTemplateId(2, reader));
+        assertEquals(300, PrimitiveReader.peekTemplateId(2, reader));
+        assertEquals(0, reader.position);
+        
+        reader = new PrimitiveReader(new byte[] {(byte)0xA0, (byte)0x81});
+        assertEquals(PrimitiveReader.PEEK_NO_TEMPLATE_ID, PrimitiveReader.peekTemplateId(0, reader));
+        
+        reader = new PrimitiveReader(new byte[] {(byte)0xC0, 0x02});
+        assertEquals(PrimitiveReader.PEEK_NOT_BUFFERED, PrimitiveReader.peekTemplateId(0, reader));
+        
+    }
+    
     @Test
     public void testReaderSingleOneByte() {
 
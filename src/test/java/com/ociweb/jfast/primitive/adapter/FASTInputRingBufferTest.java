@@ -0,0 +1,87 @@
+package com.ociweb.jfast.primitive.adapter;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import com.ociweb.jfast.FAST;
+import com.ociweb.jfast.catalog.generator.CatalogGenerator;
+import com.ociweb.jfast.catalog.generator.TemplateGenerator;
+import com.ociweb.jfast.catalog.loader.TemplateCatalogConfig;
+import com.ociweb.jfast.generator.DispatchLoader;
+import com.ociweb.jfast.generator.TestEncoder;
+import com.ociweb.jfast.primitive.PrimitiveWriter;
+import com.ociweb.jfast.stream.FASTDynamicWriter;
+import com.ociweb.jfast.stream.FASTListener;
+import com.ociweb.jfast.stream.FASTReaderReactor;
+import com.ociweb.jfast.stream.RingSizing;
+import com.ociweb.pronghorn.ring.FieldReferenceOffsetManager;
+import com.ociweb.pronghorn.ring.RingBuffer;
+import com.ociweb.pronghorn.ring.RingBufferConfig;
+import com.ociweb.pronghorn.ring.RingBuffers;
+import com.ociweb.pronghorn.ring.RingReader;
+import com.ociweb.pronghorn.ring.token.OperatorMask;
+import com.ociweb.pronghorn.ring.token.TypeMask;
+
+public class FASTInputRingBufferTest {
+
+    private static final int MESSAGES = 500;
+
+    @Test
+    public void decodesWhatTheEncoderPublished() {
+        CatalogGenerator cg = new CatalogGenerator();
+        TemplateGenerator template = cg.addTemplate("Trade", 2, false, null);
+        template.addField("Seq", 1000, false, TypeMask.IntegerUnsigned, OperatorMask.Field_Increment, "1");
+        template.addField("Volume", 1001, false, TypeMask.LongUnsigned, OperatorMask.Field_Delta, null);
+        byte[] catBytes = TestEncoder.catBytes(cg);
+
+        //small byte ring so blocks wrap around its end
+        RingBuffer blocks = new RingBuffer(new RingBufferConfig((byte)10, (byte)12, null, FieldReferenceOffsetManager.RAW_BYTES));
+        FASTOutputRingBuffer output = new FASTOutputRingBuffer(blocks);
+        PrimitiveWriter writer = new PrimitiveWriter(256, output, false);
+
+        RingBuffer ring = RingBuffers.get(RingSizing.buildRingBuffers(new TemplateCatalogConfig(catBytes)), 0);
+        FASTDynamicWriter dynamicWriter = new FASTDynamicWriter(writer, ring, DispatchLoader.loadDispatchWriter(catBytes));
+
+        final int[] count = new int[1];
+        FASTListener listener = new FASTListener() {
+            @Override
+            public void fragment(int msgIdx, RingBuffer rb) {
+                long p = rb.workingTailPos.value;
+                int i = count[0]++;
+                assertEquals(i, RingBuffer.readInt(rb.buffer, rb.mask, p+1));
+                assertEquals(7L*i, RingBuffer.readLong(rb.buffer, rb.mask, p+2));
+            }
+
+            @Override
+            public void fragment() {
+            }
+        };
+        FASTReaderReactor reactor = FAST.inputReactorPush(new FASTInputRingBuffer(blocks), catBytes);
+
+        int i = 0;
+        while (i<MESSAGES) {
+            RingBuffer.addMsgIdx(ring, 0);
+            RingBuffer.addValue(ring.buffer, ring.mask, ring.workingHeadPos, i);
+            RingBuffer.addLongValue(ring.buffer, ring.mask, ring.workingHeadPos, 7L*i);
+            RingBuffer.publishWrites(ring);
+            if (RingReader.tryReadFragment(ring)) {
+                FASTDynamicWriter.write(dynamicWriter);
+            }
+            i++;
+            if (0==(i&31)) {
+                //hand over a batch and decode it on this same thread
+                PrimitiveWriter.flush(writer);
+                while (count[0]<i) {
+                    FASTReaderReactor.pump(reactor, listener);
+                }
+            }
+        }
+        PrimitiveWriter.flush(writer);
+        FASTOutputRingBuffer.publishEOF(output);
+        while (FASTReaderReactor.pump(reactor, listener)>=0) {
+        }
+        assertEquals(MESSAGES, count[0]);
+    }
+
+}
@@ -0,0 +1,61 @@
+package com.ociweb.jfast.primitive.adapter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import com.ociweb.jfast.primitive.BusySpinWaitPolicy;
+import com.ociweb.jfast.primitive.ParkWaitPolicy;
+import com.ociweb.jfast.primitive.PrimitiveReader;
+import com.ociweb.jfast.primitive.PrimitiveWriter;
+
+public class FASTMappedRingTest {
+
+    private static final int VALUES = 100000;
+
+    @Test
+    public void valuesCrossTheSharedFileInOrder() throws IOException, InterruptedException {
+        File file = File.createTempFile("mappedRing", "test");
+        file.deleteOnExit();
+
+        //ring much smaller than the stream so the producer must wait on the consumer
+        final MappedRing producerRing = MappedRing.create(file, 10);
+        MappedRing consumerRing = MappedRing.open(file);
+
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                FASTOutputMappedRing output = new FASTOutputMappedRing(producerRing, new ParkWaitPolicy(100, 10, 50));
+                PrimitiveWriter writer = new PrimitiveWriter(4096, output, false);
+                int i = 0;
+                while (i<VALUES) {
+                    PrimitiveWriter.writeLongUnsigned(31L*i, writer);
+                    if (0==(++i%100)) {
+                        PrimitiveWriter.flush(writer);
+                    }
+                }
+                PrimitiveWriter.flush(writer);
+                FASTOutputMappedRing.publishEOF(output);
+            }
+        }, "mapped-ring-producer");
+        producer.start();
+
+        FASTInputMappedRing input = new FASTInputMappedRing(consumerRing, new BusySpinWaitPolicy());
+        PrimitiveReader reader = new PrimitiveReader(4096, input, 32);
+        int i = 0;
+        while (i<VALUES) {
+            assertEquals(31L*i, PrimitiveReader.readLongUnsigned(reader));
+            i++;
+        }
+        producer.join();
+        assertTrue(input.isEOF());
+
+        MappedRing.close(producerRing);
+        MappedRing.close(consumerRing);
+    }
+
+}
@@ -0,0 +1,124 @@
+package com.ociweb.jfast.primitive.adapter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.ociweb.jfast.primitive.ParkWaitPolicy;
+import com.ociweb.jfast.primitive.PrimitiveReader;
+import com.ociweb.jfast.primitive.PrimitiveWriter;
+
+public class FASTOutputCaptureTest {
+
+    private static final int VALUES = 100000;
+
+    @Test
+    public void rolledFilesHoldTheWholeStream() throws IOException {
+        File folder = File.createTempFile("capture", "test");
+        folder.delete();
+
+        FASTOutputCapture capture = new FASTOutputCapture(folder, "feed", 4096, 5, 20, 50000, 0, new ParkWaitPolicy(10, 10, 10));
+        PrimitiveWriter writer = new PrimitiveWriter(4096, capture, false);
+        int i = 0;
+        while (i<VALUES) {
+            PrimitiveWriter.writeLongUnsigned(31L*i, writer);
+            if (0==(++i%50)) {
+                PrimitiveWriter.flush(writer);
+            }
+        }
+        PrimitiveWriter.flush(writer);
+        FASTOutputCapture.close(capture);
+
+        File[] files = folder.listFiles();
+        Arrays.sort(files);
+        assertEquals(FASTOutputCapture.fileCount(capture), files.length);
+        assertTrue(files.length>1);
+
+        ByteArrayOutputStream all = new ByteArrayOutputStream();
+        int f = 0;
+        while (f<files.length) {
+            File file = files[f++];
+            byte[] bytes = new byte[(int)file.length()];
+            DataInputStream input = new DataInputStream(new FileInputStream(file));
+            try {
+                input.readFully(bytes);
+            } finally {
+                input.close();
+            }
+            all.write(bytes);
+            file.delete();
+        }
+        folder.delete();
+
+        PrimitiveReader reader = new PrimitiveReader(all.toByteArray());
+        i = 0;
+        while (i<VALUES) {
+            assertEquals(31L*i, PrimitiveReader.readLongUnsigned(reader));
+            i++;
+        }
+    }
+
+    @Test
+    public void quietFeedReachesTheDisk() throws IOException, InterruptedException {
+        File folder = tempFolder();
+        FASTOutputCapture capture = new FASTOutputCapture(folder, "quiet", 4096, 5, 0, 0, 0, new ParkWaitPolicy(10, 10, 10));
+        byte[] bytes = new byte[] {1, 2, 3};
+        FASTOutputCapture.append(bytes, 0, bytes.length, capture);
+
+        //nothing more is sent, the writer thread must take the partly filled buffer on its own
+        File file = new File(folder, "quiet-000000.fast");
+        long limit = System.currentTimeMillis()+5000;
+        while (file.length()<bytes.length && System.currentTimeMillis()<limit) {
+            Thread.sleep(5);
+        }
+        assertEquals(bytes.length, file.length());
+
+        FASTOutputCapture.close(capture);
+        assertEquals(bytes.length, file.length());
+        file.delete();
+        folder.delete();
+    }
+
+    @Test
+    public void restartContinuesTheNumbering() throws IOException {
+        File folder = tempFolder();
+        byte[] first = new byte[] {1, 2, 3};
+        byte[] second = new byte[] {4, 5};
+
+        FASTOutputCapture capture = new FASTOutputCapture(folder, "feed", 4096, 5, 0, 0, 0, new ParkWaitPolicy(10, 10, 10));
+        FASTOutputCapture.append(first, 0, first.length, capture);
+        FASTOutputCapture.close(capture);
+        assertEquals(1, FASTOutputCapture.fileCount(capture));
+
+        capture = new FASTOutputCapture(folder, "feed", 4096, 5, 0, 0, 0, new ParkWaitPolicy(10, 10, 10));
+        FASTOutputCapture.append(second, 0, second.length, capture);
+        FASTOutputCapture.close(capture);
+        assertEquals(2, FASTOutputCapture.fileCount(capture));
+
+        File[] files = folder.listFiles();
+        Arrays.sort(files);
+        assertEquals(2, files.length);
+        assertEquals("feed-000000.fast", files[0].getName());
+        assertEquals(first.length, files[0].length());
+        assertEquals("feed-000001.fast", files[1].getName());
+        assertEquals(second.length, files[1].length());
+        files[0].delete();
+        files[1].delete();
+        folder.delete();
+    }
+
+    private static File tempFolder() throws IOException {
+        File folder = File.createTempFile("capture", "test");
+        folder.delete();
+        return folder;
+    }
+
+}
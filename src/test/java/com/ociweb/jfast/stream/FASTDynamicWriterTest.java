@@ -0,0 +1,166 @@
+package com.ociweb.jfast.stream;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import com.ociweb.jfast.catalog.generator.CatalogGenerator;
+import com.ociweb.jfast.catalog.generator.SequenceGenerator;
+import com.ociweb.jfast.catalog.generator.TemplateGenerator;
+import com.ociweb.jfast.catalog.loader.TemplateCatalogConfig;
+import com.ociweb.jfast.generator.DispatchLoader;
+import com.ociweb.jfast.generator.TestEncoder;
+import com.ociweb.jfast.primitive.DataTransfer;
+import com.ociweb.jfast.primitive.FASTOutput;
+import com.ociweb.jfast.primitive.PrimitiveWriter;
+import com.ociweb.pronghorn.ring.RingBuffer;
+import com.ociweb.pronghorn.ring.RingBuffers;
+import com.ociweb.pronghorn.ring.RingReader;
+import com.ociweb.pronghorn.ring.token.OperatorMask;
+import com.ociweb.pronghorn.ring.token.TypeMask;
+
+public class FASTDynamicWriterTest {
+
+    private static final int MESSAGES = 10;
+    private static final int LEGS = 3;
+
+    private final byte[] catBytes = catalog();
+
+    @Test
+    public void queuedFragmentsShareOneFlush() {
+        CountingOutput output = new CountingOutput();
+        RingBuffer ring = ring();
+        FASTDynamicWriter dynamicWriter = dynamicWriter(ring, output);
+        publish(0, MESSAGES, ring);
+
+        //each group would be flushed on its own by this minimize latency writer outside of a batch
+        int fragments = FASTDynamicWriter.writeBatch(dynamicWriter, Integer.MAX_VALUE, true);
+        assertEquals(1, output.flushes);
+        assertEquals(messageEnds()[MESSAGES], output.bytes);
+        assertEquals(0, FASTDynamicWriter.writeBatch(dynamicWriter, Integer.MAX_VALUE, true));
+        assertEquals(1, output.flushes);
+        assertEquals(fragments, countFragments());
+    }
+
+    @Test
+    public void budgetStopsAtMessageBoundary() {
+        long[] ends = messageEnds();
+        CountingOutput output = new CountingOutput();
+        RingBuffer ring = ring();
+        FASTDynamicWriter dynamicWriter = dynamicWriter(ring, output);
+        publish(0, MESSAGES, ring);
+
+        //the first fragment alone uses the budget but the rest of its message must follow in the same batch
+        FASTDynamicWriter.writeBatch(dynamicWriter, 1, true);
+        assertEquals(ends[1], output.bytes);
+        assertEquals(1, output.flushes);
+
+        //one byte short of the second message, so the batch still ends after all of it
+        FASTDynamicWriter.writeBatch(dynamicWriter, (int)(ends[2]-ends[1]-1), true);
+        assertEquals(ends[2], output.bytes);
+
+        int flushes = output.flushes;
+        FASTDynamicWriter.writeBatch(dynamicWriter, (int)(ends[4]-ends[2]), true);
+        assertEquals(ends[4], output.bytes);
+        assertEquals(flushes+1, output.flushes);
+
+        FASTDynamicWriter.writeBatch(dynamicWriter, Integer.MAX_VALUE, false);
+        assertEquals(ends[4], output.bytes); //left in the writer for throughput
+        PrimitiveWriter.flush(dynamicWriter.writer);
+        assertEquals(ends[MESSAGES], output.bytes);
+    }
+
+    private static byte[] catalog() {
+        CatalogGenerator cg = new CatalogGenerator();
+        TemplateGenerator template = cg.addTemplate("Batch", 2, false, null);
+        template.addField("Seq", 1000, false, TypeMask.IntegerUnsigned, OperatorMask.Field_Increment, "1");
+        SequenceGenerator legs = template.addSequence("Legs", 1001, "NoLegs", 1002, OperatorMask.Field_None);
+        legs.addField("Qty", 1003, false, TypeMask.LongUnsigned, OperatorMask.Field_Delta, null);
+        return TestEncoder.catBytes(cg);
+    }
+
+    private RingBuffer ring() {
+        return RingBuffers.get(RingSizing.buildRingBuffers(new TemplateCatalogConfig(catBytes)), 0);
+    }
+
+    private FASTDynamicWriter dynamicWriter(RingBuffer ring, FASTOutput output) {
+        return new FASTDynamicWriter(new PrimitiveWriter(4096, output, true), ring, DispatchLoader.loadDispatchWriterDebug(catBytes));
+    }
+
+    private static void publish(int from, int limit, RingBuffer ring) {
+        int i = from;
+        while (i<limit) {
+            RingBuffer.addMsgIdx(ring, 0);
+            RingBuffer.addValue(ring.buffer, ring.mask, ring.workingHeadPos, 1+i);
+            RingBuffer.addValue(ring.buffer, ring.mask, ring.workingHeadPos, LEGS);
+            RingBuffer.publishWrites(ring);
+            int leg = 0;
+            while (leg<LEGS) {
+                RingBuffer.addLongValue(ring.buffer, ring.mask, ring.workingHeadPos, 100L*i+leg++);
+                RingBuffer.publishWrites(ring);
+            }
+            i++;
+        }
+    }
+
+    /**
+     * Bytes written at the end of each message when encoded one message at a time, ends[0] is 0.
+     */
+    private long[] messageEnds() {
+        CountingOutput output = new CountingOutput();
+        RingBuffer ring = ring();
+        FASTDynamicWriter dynamicWriter = dynamicWriter(ring, output);
+        long[] ends = new long[MESSAGES+1];
+        int i = 0;
+        while (i<MESSAGES) {
+            publish(i, i+1, ring);
+            while (RingReader.tryReadFragment(ring)) {
+                if (RingReader.getMsgIdx(ring.ringWalker)>=0) {
+                    FASTDynamicWriter.write(dynamicWriter);
+                }
+            }
+            PrimitiveWriter.flush(dynamicWriter.writer);
+            ends[++i] = output.bytes;
+        }
+        return ends;
+    }
+
+    private int countFragments() {
+        RingBuffer ring = ring();
+        publish(0, MESSAGES, ring);
+        int count = 0;
+        while (RingReader.tryReadFragment(ring)) {
+            if (RingReader.getMsgIdx(ring.ringWalker)>=0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static class CountingOutput implements FASTOutput {
+
+        private DataTransfer dataTransfer;
+        int flushes;
+        long bytes;
+
+        @Override
+        public void init(DataTransfer dataTransfer) {
+            this.dataTransfer = dataTransfer;
+        }
+
+        @Override
+        public void flush() {
+            int size = PrimitiveWriter.nextBlockSize(dataTransfer.writer);
+            if (size>0) {
+                flushes++;
+            }
+            while (size>0) {
+                bytes += size;
+                PrimitiveWriter.nextOffset(dataTransfer.writer);
+                size = PrimitiveWriter.nextBlockSize(dataTransfer.writer);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,195 @@
+package com.ociweb.jfast.stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.ociweb.jfast.catalog.generator.CatalogGenerator;
+import com.ociweb.jfast.catalog.generator.TemplateGenerator;
+import com.ociweb.jfast.catalog.loader.TemplateCatalogConfig;
+import com.ociweb.jfast.error.FASTException;
+import com.ociweb.jfast.generator.DispatchLoader;
+import com.ociweb.jfast.generator.TestEncoder;
+import com.ociweb.jfast.primitive.FlushPolicy;
+import com.ociweb.jfast.primitive.PrimitiveWriter;
+import com.ociweb.jfast.primitive.adapter.FASTOutputByteArray;
+import com.ociweb.pronghorn.ring.RingBuffer;
+import com.ociweb.pronghorn.ring.RingBuffers;
+import com.ociweb.pronghorn.ring.RingReader;
+import com.ociweb.pronghorn.ring.token.OperatorMask;
+import com.ociweb.pronghorn.ring.token.TypeMask;
+
+public class FASTEncoderServiceTest {
+
+    private static final int SESSIONS = 6;
+    private static final int MESSAGES = 40;
+
+    private final byte[] catBytes = catalog();
+
+    @Test
+    public void sessionsEncodeOnTheirWorkers() throws InterruptedException {
+        FASTEncoderService service = new FASTEncoderService(3, 100000);
+        Session[] sessions = new Session[SESSIONS];
+        int s = SESSIONS;
+        while (--s>=0) {
+            sessions[s] = new Session(catBytes);
+            assertEquals(SESSIONS-1-s, service.register(sessions[s].dynamicWriter));
+            publish(sessions[s], s, 0, MESSAGES/2); //held on the ring until the service starts
+        }
+
+        service.start();
+        assertTrue(FASTEncoderService.isRunning(service));
+        s = SESSIONS;
+        while (--s>=0) {
+            publish(sessions[s], s, MESSAGES/2, MESSAGES);
+        }
+
+        //half leave before shutdown, each must be fully written once drained
+        s = SESSIONS;
+        while ((s-=2)>=0) {
+            CountDownLatch drained = service.unregister(sessions[s].dynamicWriter);
+            assertTrue(drained.await(10, TimeUnit.SECONDS));
+            assertArrayEquals(expected(s), sessions[s].written());
+        }
+
+        service.shutdown();
+        assertFalse(FASTEncoderService.isRunning(service));
+        s = SESSIONS;
+        while (--s>=0) {
+            assertArrayEquals(expected(s), sessions[s].written());
+        }
+
+        long fragments = 0;
+        int w = FASTEncoderService.workerCount(service);
+        while (--w>=0) {
+            fragments += FASTEncoderService.fragments(w, service);
+        }
+        assertEquals(SESSIONS*MESSAGES, fragments);
+
+        //sessions still registered at shutdown were drained by the final pass
+        assertEquals(0, service.unregister(sessions[1].dynamicWriter).getCount());
+    }
+
+    @Test
+    public void heldBytesAreFlushedWhenTheSessionLeaves() throws InterruptedException {
+        FASTEncoderService service = new FASTEncoderService(2, 100000);
+        Session held = new Session(catBytes);
+        held.dynamicWriter.setFlushPolicy(new FlushPolicy() {
+            @Override
+            public boolean flushNow(int pendingBytes, boolean messageEnd, boolean inputEmpty, long nowNs) {
+                return false;
+            }
+        });
+        Session throughput = new Session(catBytes);
+        throughput.dynamicWriter.setBatchPolicy(Integer.MAX_VALUE, false);
+        Session stopped = new Session(catBytes);
+        stopped.dynamicWriter.setBatchPolicy(Integer.MAX_VALUE, false);
+
+        service.register(held.dynamicWriter);
+        service.register(throughput.dynamicWriter);
+        service.register(stopped.dynamicWriter);
+        service.start();
+        publish(held, 0, 0, MESSAGES);
+        publish(throughput, 1, 0, MESSAGES);
+        publish(stopped, 2, 0, MESSAGES);
+
+        //neither session would ever flush these bytes on its own
+        assertTrue(service.unregister(held.dynamicWriter).await(10, TimeUnit.SECONDS));
+        assertArrayEquals(expected(0), held.written());
+        assertTrue(service.unregister(throughput.dynamicWriter).await(10, TimeUnit.SECONDS));
+        assertArrayEquals(expected(1), throughput.written());
+
+        service.shutdown();
+        assertArrayEquals(expected(2), stopped.written());
+    }
+
+    @Test
+    public void serviceIsStartedOnce() throws InterruptedException {
+        FASTEncoderService service = new FASTEncoderService(2, 100000);
+        service.start();
+        try {
+            service.start();
+            fail("second start");
+        } catch (FASTException e) {
+            //expected
+        }
+        service.shutdown();
+        try {
+            service.start();
+            fail("start after shutdown");
+        } catch (FASTException e) {
+            //expected
+        }
+        try {
+            service.register(new Session(catBytes).dynamicWriter);
+            fail("register after shutdown");
+        } catch (FASTException e) {
+            //expected
+        }
+    }
+
+    @Test(expected = FASTException.class)
+    public void unknownSessionIsRejected() {
+        new FASTEncoderService(1, 100000).unregister(new Session(catBytes).dynamicWriter);
+    }
+
+    private static byte[] catalog() {
+        CatalogGenerator cg = new CatalogGenerator();
+        TemplateGenerator template = cg.addTemplate("service", 2, false, null);
+        template.addField("sequenceNumber", 1000, false, TypeMask.IntegerUnsigned, OperatorMask.Field_Increment, "1");
+        template.addField("price", 1001, false, TypeMask.LongSigned, OperatorMask.Field_Delta, "0");
+        return TestEncoder.catBytes(cg);
+    }
+
+    private static void publish(Session session, int id, int from, int limit) {
+        RingBuffer ring = session.ring;
+        int i = from;
+        while (i<limit) {
+            RingBuffer.addMsgIdx(ring, 0);
+            RingBuffer.addValue(ring.buffer, ring.mask, ring.workingHeadPos, 1+i);
+            RingBuffer.addLongValue(ring.buffer, ring.mask, ring.workingHeadPos, 1000L*id+7*i);
+            RingBuffer.publishWrites(ring);
+            i++;
+        }
+    }
+
+    /**
+     * Same messages encoded on this thread.
+     */
+    private byte[] expected(int id) {
+        Session session = new Session(catBytes);
+        publish(session, id, 0, MESSAGES);
+        while (RingReader.tryReadFragment(session.ring)) {
+            FASTDynamicWriter.write(session.dynamicWriter);
+        }
+        PrimitiveWriter.flush(session.writer);
+        return session.written();
+    }
+
+    private static class Session {
+
+        final byte[] buffer = new byte[1<<14];
+        final PrimitiveWriter writer = new PrimitiveWriter(4096, new FASTOutputByteArray(buffer), false);
+        final RingBuffer ring;
+        final FASTDynamicWriter dynamicWriter;
+
+        Session(byte[] catBytes) {
+            ring = RingBuffers.get(RingSizing.buildRingBuffers(new TemplateCatalogConfig(catBytes)), 0);
+            dynamicWriter = new FASTDynamicWriter(writer, ring, DispatchLoader.loadDispatchWriterDebug(catBytes));
+        }
+
+        byte[] written() {
+            return Arrays.copyOf(buffer, (int)PrimitiveWriter.totalWritten(writer));
+        }
+
+    }
+
+}
@@ -0,0 +1,264 @@
+package com.ociweb.jfast.stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.junit.Test;
+
+import com.ociweb.jfast.FAST;
+import com.ociweb.jfast.catalog.generator.CatalogGenerator;
+import com.ociweb.jfast.catalog.generator.SequenceGenerator;
+import com.ociweb.jfast.catalog.generator.TemplateGenerator;
+import com.ociweb.jfast.catalog.loader.TemplateCatalogConfig;
+import com.ociweb.jfast.generator.TestEncoder;
+import com.ociweb.jfast.primitive.adapter.FASTInputByteArray;
+import com.ociweb.pronghorn.ring.FieldReferenceOffsetManager;
+import com.ociweb.pronghorn.ring.RingBuffer;
+import com.ociweb.pronghorn.ring.RingReader;
+import com.ociweb.pronghorn.ring.token.OperatorMask;
+import com.ociweb.pronghorn.ring.token.TypeMask;
+
+public class FASTReaderReactorTest {
+
+    private static final int QUOTE = 2;
+    private static final int HALT = 3;
+    private static final int MESSAGES = 20;
+    private static final int HALT_BEFORE = 10;
+    private static final int BOOK = 3;
+    private static final int BOOKS = 6;
+    private static final int BOOK_FIELDS = 30;
+    private static final int LEVEL_FIELDS = 12;
+    private static final int LEVELS = 3;
+
+    private static final Executor SAME_THREAD = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    @Test
+    public void swapKeepsTheDictionariesOfUnchangedTemplates() throws Exception {
+        final byte[] catBytesA = catalog(false);
+        final byte[] catBytesB = catalog(true);
+        //the halt template comes first in B so every dictionary slot of the quote template moves
+        assertEquals(-1, TemplateCatalogConfig.templateStart(HALT, TemplateCatalogConfig.shared(catBytesA)));
+
+        //A has no halt template, so the quotes before it are the same bytes under A or B
+        byte[] encoded = encode(catBytesB);
+
+        final FASTReaderReactor reactor = FAST.inputReactor(new FASTInputByteArray(encoded), catBytesA,
+                                                            RingSizing.buildRingBuffers(TemplateCatalogConfig.shared(catBytesA), 16, null));
+        FASTReaderReactor.prepareCatalog(catBytesB, RingSizing.buildRingBuffers(TemplateCatalogConfig.shared(catBytesB), 16, null),
+                                         SAME_THREAD, reactor).get();
+
+        final List<String> decoded = new ArrayList<String>();
+        FASTListener listener = new FASTListener() {
+            @Override
+            public void fragment(int msgIdx, RingBuffer ring) {
+                byte[] catBytes = 0==FASTReaderReactor.catalogVersion(reactor) ? catBytesA : catBytesB;
+                decoded.add(read(msgIdx, ring, TemplateCatalogConfig.shared(catBytes)));
+            }
+
+            @Override
+            public void fragment() {
+            }
+        };
+        while (FASTReaderReactor.pump(reactor, listener)>=0) {
+        }
+
+        assertEquals(1, FASTReaderReactor.catalogVersion(reactor));
+        assertEquals(expected(), decoded);
+    }
+
+    @Test
+    public void swapToDeeperPMapsGrowsTheReader() throws Exception {
+        final byte[] catBytesA = catalog(false);
+        final byte[] catBytesB = bookCatalog();
+        assertTrue(TemplateCatalogConfig.maxPMapCountInBytes(TemplateCatalogConfig.shared(catBytesB))>
+                   TemplateCatalogConfig.maxPMapCountInBytes(TemplateCatalogConfig.shared(catBytesA)));
+
+        byte[] encoded = encodeBooks(catBytesB);
+
+        //the reader is sized for catalog A, the book template is only in B so the first one starts the swap
+        final FASTReaderReactor reactor = FAST.inputReactor(new FASTInputByteArray(encoded), catBytesA,
+                                                            RingSizing.buildRingBuffers(TemplateCatalogConfig.shared(catBytesA), 16, null));
+        FASTReaderReactor.prepareCatalog(catBytesB, RingSizing.buildRingBuffers(TemplateCatalogConfig.shared(catBytesB), 16, null),
+                                         SAME_THREAD, reactor).get();
+
+        final List<String> decoded = new ArrayList<String>();
+        FASTListener listener = new FASTListener() {
+            @Override
+            public void fragment(int msgIdx, RingBuffer ring) {
+                TemplateCatalogConfig catalog = TemplateCatalogConfig.shared(catBytesB);
+                assertEquals(1, FASTReaderReactor.catalogVersion(reactor));
+                FieldReferenceOffsetManager from = catalog.getFROM();
+                int bookIdx = TemplateCatalogConfig.templateStart(BOOK, catalog);
+                StringBuilder row = new StringBuilder(msgIdx==bookIdx ? "Book" : "Level");
+                int fields = msgIdx==bookIdx ? BOOK_FIELDS : LEVEL_FIELDS;
+                int f = 0;
+                while (f<fields) {
+                    row.append(' ').append(RingReader.readInt(ring, FieldReferenceOffsetManager.lookupFieldLocator((msgIdx==bookIdx ? "B" : "L")+f, msgIdx, from)));
+                    f++;
+                }
+                decoded.add(row.toString());
+            }
+
+            @Override
+            public void fragment() {
+            }
+        };
+        while (FASTReaderReactor.pump(reactor, listener)>=0) {
+        }
+
+        assertEquals(expectedBooks(), decoded);
+    }
+
+    /**
+     * Many copy fields and a sequence of copy fields, so both the pmaps and the nesting are larger than the quote catalog.
+     */
+    private static byte[] bookCatalog() {
+        CatalogGenerator cg = new CatalogGenerator();
+        TemplateGenerator book = cg.addTemplate("Book", BOOK, false, null);
+        int f = 0;
+        while (f<BOOK_FIELDS) {
+            book.addField("B"+f, 300+f, false, TypeMask.IntegerUnsigned, OperatorMask.Field_Copy, null);
+            f++;
+        }
+        SequenceGenerator levels = book.addSequence("Levels", 400, "NoLevels", 401, OperatorMask.Field_None);
+        f = 0;
+        while (f<LEVEL_FIELDS) {
+            levels.addField("L"+f, 500+f, false, TypeMask.IntegerUnsigned, OperatorMask.Field_Copy, null);
+            f++;
+        }
+        return TestEncoder.catBytes(cg);
+    }
+
+    private static int bookValue(int i, int f) {
+        return (i+f)/3; //repeats so the copy bits change from field to field
+    }
+
+    private static byte[] encodeBooks(byte[] catBytes) {
+        TestEncoder encoder = new TestEncoder(catBytes);
+        int i = 0;
+        while (i<BOOKS) {
+            TestEncoder.beginMessage(BOOK, encoder);
+            int f = 0;
+            while (f<BOOK_FIELDS) {
+                TestEncoder.addInt(bookValue(i, f++), encoder);
+            }
+            TestEncoder.addInt(LEVELS, encoder);
+            TestEncoder.publish(encoder);
+            int l = 0;
+            while (l<LEVELS) {
+                f = 0;
+                while (f<LEVEL_FIELDS) {
+                    TestEncoder.addInt(bookValue(i+l, f++), encoder);
+                }
+                TestEncoder.publish(encoder);
+                l++;
+            }
+            i++;
+        }
+        return TestEncoder.encoded(encoder);
+    }
+
+    private static List<String> expectedBooks() {
+        List<String> expected = new ArrayList<String>();
+        int i = 0;
+        while (i<BOOKS) {
+            StringBuilder row = new StringBuilder("Book");
+            int f = 0;
+            while (f<BOOK_FIELDS) {
+                row.append(' ').append(bookValue(i, f++));
+            }
+            expected.add(row.toString());
+            int l = 0;
+            while (l<LEVELS) {
+                row = new StringBuilder("Level");
+                f = 0;
+                while (f<LEVEL_FIELDS) {
+                    row.append(' ').append(bookValue(i+l, f++));
+                }
+                expected.add(row.toString());
+                l++;
+            }
+            i++;
+        }
+        return expected;
+    }
+
+    /**
+     * @param withHalt adds the halt template ahead of the quote template
+     */
+    private static byte[] catalog(boolean withHalt) {
+        CatalogGenerator cg = new CatalogGenerator();
+        if (withHalt) {
+            TemplateGenerator halt = cg.addTemplate("Halt", HALT, false, null);
+            halt.addField("Reason", 200, false, TypeMask.TextASCII, OperatorMask.Field_Copy, null);
+            halt.addField("Count", 201, false, TypeMask.IntegerUnsigned, OperatorMask.Field_Copy, "0");
+        }
+        TemplateGenerator quote = cg.addTemplate("Quote", QUOTE, false, null);
+        quote.addField("Seq", 100, false, TypeMask.IntegerUnsigned, OperatorMask.Field_Increment, "1");
+        quote.addField("Symbol", 101, false, TypeMask.TextASCII, OperatorMask.Field_Copy, null);
+        quote.addField("Px", 102, false, TypeMask.LongSigned, OperatorMask.Field_Delta, "0");
+        quote.addField("Venue", 103, false, TypeMask.TextASCII, OperatorMask.Field_Delta, null);
+        return TestEncoder.catBytes(cg);
+    }
+
+    private static String symbol(int i) {
+        return i<MESSAGES-3 ? "IBM" : "MSFT"; //unchanged across the swap so only the carried copy value decodes it
+    }
+
+    private static byte[] encode(byte[] catBytes) {
+        TestEncoder encoder = new TestEncoder(catBytes);
+        int i = 0;
+        while (i<MESSAGES) {
+            if (HALT_BEFORE==i) {
+                TestEncoder.beginMessage(HALT, encoder);
+                TestEncoder.addText("Auction", encoder);
+                TestEncoder.addInt(1, encoder);
+                TestEncoder.publish(encoder);
+            }
+            TestEncoder.beginMessage(QUOTE, encoder);
+            TestEncoder.addInt(1+i, encoder);
+            TestEncoder.addText(symbol(i), encoder);
+            TestEncoder.addLong(10000L+7*i, encoder);
+            TestEncoder.addText("NYSE-"+(i/3), encoder);
+            TestEncoder.publish(encoder);
+            i++;
+        }
+        return TestEncoder.encoded(encoder);
+    }
+
+    private static List<String> expected() {
+        List<String> expected = new ArrayList<String>();
+        int i = 0;
+        while (i<MESSAGES) {
+            if (HALT_BEFORE==i) {
+                expected.add("Halt Auction 1");
+            }
+            expected.add("Quote "+(1+i)+" "+symbol(i)+" "+(10000L+7*i)+" NYSE-"+(i/3));
+            i++;
+        }
+        return expected;
+    }
+
+    private static String read(int msgIdx, RingBuffer ring, TemplateCatalogConfig catalog) {
+        FieldReferenceOffsetManager from = catalog.getFROM();
+        if (msgIdx==TemplateCatalogConfig.templateStart(HALT, catalog)) {
+            return "Halt "+RingReader.readASCII(ring, FieldReferenceOffsetManager.lookupFieldLocator("Reason", msgIdx, from), new StringBuilder())
+                   +" "+RingReader.readInt(ring, FieldReferenceOffsetManager.lookupFieldLocator("Count", msgIdx, from));
+        }
+        assertEquals(TemplateCatalogConfig.templateStart(QUOTE, catalog), msgIdx);
+        return "Quote "+RingReader.readInt(ring, FieldReferenceOffsetManager.lookupFieldLocator("Seq", msgIdx, from))
+               +" "+RingReader.readASCII(ring, FieldReferenceOffsetManager.lookupFieldLocator("Symbol", msgIdx, from), new StringBuilder())
+               +" "+RingReader.readLong(ring, FieldReferenceOffsetManager.lookupFieldLocator("Px", msgIdx, from))
+               +" "+RingReader.readASCII(ring, FieldReferenceOffsetManager.lookupFieldLocator("Venue", msgIdx, from), new StringBuilder());
+    }
+
+}
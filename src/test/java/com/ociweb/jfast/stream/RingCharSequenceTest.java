@@ -0,0 +1,57 @@
+package com.ociweb.jfast.stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.UnsupportedEncodingException;
+
+import org.junit.Test;
+
+public class RingCharSequenceTest {
+
+    private static final int MASK = 31;
+
+    @Test
+    public void utf8ViewDecodesOnceAndWraps() throws UnsupportedEncodingException {
+        String name = "Soci\u00E9t\u00E9 G\u00E9n\u00E9rale \u20AC";
+        byte[] ring = new byte[MASK+1];
+        int pos = 20; //wraps around the end of the ring
+        int length = write(name, pos, ring);
+        assertFalse(RingText.isASCII(ring, pos, length, MASK));
+
+        RingCharSequence view = new RingCharSequence();
+        view.setUTF8(ring, pos, MASK, length);
+        assertEquals(name.length(), view.length());
+        assertEquals('\u20AC', view.charAt(name.length()-1));
+        assertEquals(name, view.toString());
+
+        char[] chars = new char[length];
+        assertEquals(name.length(), RingText.decodeUTF8(ring, pos, length, MASK, chars, 0));
+        assertEquals(name, new String(chars, 0, name.length()));
+    }
+
+    @Test
+    public void asciiTextIsReadInPlace() throws UnsupportedEncodingException {
+        byte[] ring = new byte[MASK+1];
+        int length = write("IBM", 30, ring);
+        assertTrue(RingText.isASCII(ring, 30, length, MASK));
+
+        RingCharSequence view = new RingCharSequence();
+        view.setUTF8(ring, 30, MASK, length);
+        assertEquals(3, view.length());
+        assertEquals("IBM", view.toString());
+        ring[(30+2)&MASK] = 'X'; //no copy was made
+        assertEquals('X', view.charAt(2));
+    }
+
+    private static int write(String value, int pos, byte[] ring) throws UnsupportedEncodingException {
+        byte[] bytes = value.getBytes("UTF-8");
+        int i = bytes.length;
+        while (--i>=0) {
+            ring[MASK & (pos+i)] = bytes[i];
+        }
+        return bytes.length;
+    }
+
+}
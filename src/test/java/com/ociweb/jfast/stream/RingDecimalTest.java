@@ -0,0 +1,103 @@
+package com.ociweb.jfast.stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.math.BigDecimal;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.ociweb.jfast.error.FASTException;
+
+public class RingDecimalTest {
+
+    @Test
+    public void matchesBigDecimal() {
+        Random random = new Random(42);
+        int i = 100000;
+        while (--i>=0) {
+            long mantissa = random.nextLong()>>random.nextInt(64);
+            int exponent = random.nextInt(40)-20;
+            BigDecimal expected = BigDecimal.valueOf(mantissa, -exponent);
+
+            assertEquals(expected.toPlainString(), RingDecimal.appendASCII(exponent, mantissa, new StringBuilder()).toString());
+            assertEquals(expected.doubleValue(), RingDecimal.toDouble(exponent, mantissa), 0d);
+
+            int target = exponent+random.nextInt(7)-3;
+            if (target>=exponent) {
+                assertEquals(expected.setScale(-target, BigDecimal.ROUND_HALF_UP).unscaledValue().longValue(),
+                             RingDecimal.toScaled(exponent, mantissa, target));
+            }
+        }
+    }
+
+    @Test
+    public void shortestExponentRoundTrips() {
+        assertEquals(-3, RingDecimal.exponent(1.005d, -10));
+        assertEquals(1005L, RingDecimal.mantissa(1.005d, -3));
+        assertEquals(-1, RingDecimal.exponent(0.1d, -10));
+        assertEquals(0, RingDecimal.exponent(42d, -10));
+        assertEquals(-314159L, RingDecimal.mantissa(-3.14159d, -5));
+        assertEquals(123400L, RingDecimal.toScaled(-2, 1234L, -4));
+        assertEquals("0.0000001", RingDecimal.appendASCII(-7, 1, new StringBuilder()).toString());
+        assertEquals("-92233720368547758.08", RingDecimal.appendASCII(-2, Long.MIN_VALUE, new StringBuilder()).toString());
+    }
+
+    @Test
+    public void scalingPastNineteenDigitsRounds() {
+        assertEquals(1L, RingDecimal.toScaled(0, 5000000000000000000L, 19));
+        assertEquals(0L, RingDecimal.toScaled(0, 4999999999999999999L, 19));
+        assertEquals(-1L, RingDecimal.toScaled(0, -5000000000000000000L, 19));
+        assertEquals(1L, RingDecimal.toScaled(0, Long.MAX_VALUE, 19));
+        assertEquals(0L, RingDecimal.toScaled(0, Long.MIN_VALUE, 20));
+    }
+
+    @Test
+    public void exponentsOutsideTheFASTRangeAreRejected() {
+        int[] exponents = new int[] {RingDecimal.MAX_EXPONENT+1, -RingDecimal.MAX_EXPONENT-1, Integer.MIN_VALUE, Integer.MAX_VALUE};
+        int i = exponents.length;
+        while (--i>=0) {
+            assertRejected(exponents[i], 0);
+            assertRejected(exponents[i], 1);
+            assertRejected(exponents[i], Integer.MIN_VALUE);
+            assertRejected(exponents[i], Integer.MAX_VALUE);
+        }
+        assertEquals(1e63d, RingDecimal.toDouble(RingDecimal.MAX_EXPONENT, 1), 0d);
+        assertEquals(1e-63d, RingDecimal.toDouble(-RingDecimal.MAX_EXPONENT, 1), 0d);
+    }
+
+    @Test
+    public void extremeTargetExponentsDoNotOverflowTheShift() {
+        assertEquals(0L, RingDecimal.toScaled(-RingDecimal.MAX_EXPONENT, Long.MAX_VALUE, Integer.MAX_VALUE));
+        assertEquals(0L, RingDecimal.toScaled(RingDecimal.MAX_EXPONENT, 0, Integer.MIN_VALUE));
+        try {
+            RingDecimal.toScaled(RingDecimal.MAX_EXPONENT, 1, Integer.MIN_VALUE);
+            fail("overflow");
+        } catch (FASTException e) {
+            //expected
+        }
+    }
+
+    private static void assertRejected(int exponent, int targetExponent) {
+        try {
+            RingDecimal.toDouble(exponent, 1);
+            fail("toDouble "+exponent);
+        } catch (FASTException e) {
+            //expected
+        }
+        try {
+            RingDecimal.toScaled(exponent, 1, targetExponent);
+            fail("toScaled "+exponent+" to "+targetExponent);
+        } catch (FASTException e) {
+            //expected
+        }
+        try {
+            RingDecimal.appendASCII(exponent, 1, new StringBuilder());
+            fail("appendASCII "+exponent);
+        } catch (FASTException e) {
+            //expected
+        }
+    }
+
+}
@@ -0,0 +1,102 @@
+package com.ociweb.jfast.stream;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import com.ociweb.jfast.catalog.generator.CatalogGenerator;
+import com.ociweb.jfast.catalog.generator.OperatorOptimizer;
+import com.ociweb.jfast.catalog.generator.TemplateGenerator;
+import com.ociweb.jfast.catalog.loader.ClientConfig;
+import com.ociweb.jfast.catalog.loader.TemplateCatalogConfig;
+import com.ociweb.pronghorn.ring.FieldReferenceOffsetManager;
+import com.ociweb.pronghorn.ring.token.OperatorMask;
+import com.ociweb.pronghorn.ring.token.TypeMask;
+import com.ociweb.pronghorn.ring.util.hash.LongHashTable;
+
+public class RingSizingTest {
+
+    private static final int BYTES_LENGTH = 64;
+    private static final int MIN_BITS = 4;
+    private static final int BURST = 256;
+
+    private final TemplateCatalogConfig catalog = new TemplateCatalogConfig(catalog());
+    private final RingSizing sizing = new RingSizing(catalog);
+
+    @Test
+    public void withoutProfileEveryFragmentIsTheLargest() {
+        long largest = Math.max(fragmentSize(2), fragmentSize(3));
+        assertEquals(bits(largest*BURST), RingSizing.primaryBits(BURST, null, sizing));
+        assertEquals(bits(largest), RingSizing.primaryBits(1, null, sizing));
+
+        //one text field of the max length in each fragment of the burst
+        assertEquals(bits(BYTES_LENGTH*BURST), RingSizing.byteBits(BURST, null, sizing));
+        assertEquals(bits(BYTES_LENGTH), RingSizing.byteBits(1, null, sizing));
+    }
+
+    @Test
+    public void emptyProfileIsTheSameAsNone() {
+        TemplateMetrics profile = new TemplateMetrics(catalog);
+        assertEquals(RingSizing.primaryBits(BURST, null, sizing), RingSizing.primaryBits(BURST, profile, sizing));
+        assertEquals(RingSizing.byteBits(BURST, null, sizing), RingSizing.byteBits(BURST, profile, sizing));
+    }
+
+    @Test
+    public void profileOfSmallFragmentsShrinksTheRings() {
+        TemplateMetrics profile = new TemplateMetrics(catalog);
+        record(3, 100, 5, profile);
+
+        long largest = Math.max(fragmentSize(2), fragmentSize(3));
+        assertEquals(Math.max(bits(2*largest), bits(fragmentSize(3)*BURST)), RingSizing.primaryBits(BURST, profile, sizing));
+        //never smaller than the largest text of a single fragment
+        assertEquals(bits(Math.max(BYTES_LENGTH, 5*BURST)), RingSizing.byteBits(BURST, profile, sizing));
+        assertEquals(bits(BYTES_LENGTH), RingSizing.byteBits(1, profile, sizing));
+    }
+
+    @Test
+    public void profileIsWeightedByTemplate() {
+        TemplateMetrics profile = new TemplateMetrics(catalog);
+        record(2, 30, 40, profile);
+        record(3, 90, 3, profile);
+
+        long weighted = (30L*fragmentSize(2)+90L*fragmentSize(3)+119)/120;
+        long largest = Math.max(fragmentSize(2), fragmentSize(3));
+        assertEquals(Math.max(bits(2*largest), bits(weighted*BURST)), RingSizing.primaryBits(BURST, profile, sizing));
+        //encoded bytes of the busiest fragment bound the text, here more than the max text length
+        assertEquals(bits(40*BURST), RingSizing.byteBits(BURST, profile, sizing));
+    }
+
+    private static byte[] catalog() {
+        CatalogGenerator cg = new CatalogGenerator();
+        TemplateGenerator quote = cg.addTemplate("Quote", 2, false, null);
+        quote.addField("Symbol", 100, false, TypeMask.TextASCII, OperatorMask.Field_Copy, null);
+        quote.addField("Bid", 101, false, TypeMask.IntegerUnsigned, OperatorMask.Field_Delta, "0");
+        TemplateGenerator heartbeat = cg.addTemplate("Heartbeat", 3, false, null);
+        heartbeat.addField("Seq", 200, false, TypeMask.IntegerUnsigned, OperatorMask.Field_Increment, "1");
+        return OperatorOptimizer.catBytes(cg, new ClientConfig(MIN_BITS, MIN_BITS, BYTES_LENGTH, 8));
+    }
+
+    private int start(long templateId) {
+        return LongHashTable.getItem(catalog.getTemplateStartIdx(), templateId);
+    }
+
+    private long fragmentSize(long templateId) {
+        FieldReferenceOffsetManager from = catalog.getFROM();
+        return from.fragDataSize[start(templateId)] + from.templateOffset + 1;
+    }
+
+    private void record(long templateId, int fragments, int bytesEach, TemplateMetrics profile) {
+        long pos = 0;
+        int i = fragments;
+        while (--i>=0) {
+            TemplateMetrics.begin(true, pos, profile);
+            pos += bytesEach;
+            TemplateMetrics.end(start(templateId), pos, profile);
+        }
+    }
+
+    private static byte bits(long need) {
+        return (byte)Math.max(MIN_BITS, 64 - Long.numberOfLeadingZeros(Math.max(1, need-1)));
+    }
+
+}
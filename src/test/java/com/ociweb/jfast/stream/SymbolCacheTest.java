@@ -0,0 +1,76 @@
+package com.ociweb.jfast.stream;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.ociweb.jfast.FAST;
+import com.ociweb.jfast.catalog.loader.TemplateCatalogConfig;
+import com.ociweb.jfast.generator.FragmentLayout;
+import com.ociweb.jfast.generator.GeneratorFixture;
+import com.ociweb.jfast.primitive.adapter.FASTInputByteArray;
+import com.ociweb.pronghorn.ring.RingBuffer;
+import com.ociweb.pronghorn.ring.token.TokenBuilder;
+
+public class SymbolCacheTest {
+
+    @Test
+    public void generatedDecoderKeepsTheIdUntilCopyReadsANewValue() {
+        byte[] encoded = GeneratorFixture.encodeWithDynamicWriter();
+        assertInternedOncePerValue(FAST.inputReactorPush(new FASTInputByteArray(encoded), GeneratorFixture.CAT_BYTES));
+    }
+
+    @Test
+    public void interpreterKeepsTheIdUntilCopyReadsANewValue() {
+        byte[] encoded = GeneratorFixture.encodeWithDynamicWriter();
+        TemplateCatalogConfig catalog = TemplateCatalogConfig.shared(GeneratorFixture.CAT_BYTES);
+        assertInternedOncePerValue(FAST.inputReactorDebug(new FASTInputByteArray(encoded), GeneratorFixture.CAT_BYTES,
+                                                          RingSizing.buildRingBuffers(catalog, 16, null)));
+    }
+
+    private static void assertInternedOncePerValue(final FASTReaderReactor reactor) {
+        final FragmentLayout quote = FragmentLayout.build(TemplateCatalogConfig.shared(GeneratorFixture.CAT_BYTES))[0];
+        final int field = FragmentLayout.indexOf("symbol", quote);
+        final int slot = quote.tokens[field] & TokenBuilder.MAX_INSTANCE;
+        final SymbolCache cache = new SymbolCache(reactor, slot, new SymbolTable(4, 16));
+        final List<String> symbols = new ArrayList<String>();
+        final Set<Integer> revisions = new HashSet<Integer>();
+
+        FASTListener listener = new FASTListener() {
+            @Override
+            public void fragment(int msgIdx, RingBuffer rb) {
+                if (quote.cursor==rb.ringWalker.cursor) {
+                    int length = RingBuffer.readRingByteLen(quote.offsets[field], rb.buffer, rb.mask, rb.workingTailPos);
+                    int rawPos = RingBuffer.readValue(quote.offsets[field], rb.buffer, rb.mask, rb.workingTailPos.value);
+                    int id = SymbolCache.symbol(RingBuffer.byteBackingArray(rawPos, rb), RingBuffer.bytePositionGen(rawPos, rb, length),
+                                                length, rb.byteMask, cache);
+                    symbols.add(id+" "+SymbolTable.appendASCII(id, cache.table, new StringBuilder()));
+                    revisions.add(Integer.valueOf(FASTReaderReactor.textRevisions(reactor)[slot]));
+                }
+            }
+
+            @Override
+            public void fragment() {
+            }
+        };
+        while (FASTReaderReactor.pump(reactor, listener)>=0) {
+        }
+
+        List<String> expected = new ArrayList<String>();
+        int i = 0;
+        while (i<GeneratorFixture.MESSAGES) {
+            String symbol = GeneratorFixture.symbol(i++);
+            expected.add(("IBM".equals(symbol) ? 0 : 1)+" "+symbol);
+        }
+        assertEquals(expected, symbols);
+        //copy sent each symbol once, every other quote reused the cached id
+        assertEquals(2, revisions.size());
+        assertEquals(2, SymbolTable.size(cache.table));
+    }
+
+}
@@ -0,0 +1,62 @@
+package com.ociweb.jfast.stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class SymbolTableTest {
+
+    private static final int MASK = 15;
+
+    @Test
+    public void repeatedValuesKeepTheirId() {
+        SymbolTable table = new SymbolTable(4, 8);
+        byte[] ring = new byte[MASK+1];
+
+        int ibm = intern(ring, 0, "IBM", table);
+        int msft = intern(ring, 5, "MSFT", table);
+        assertTrue(ibm!=msft);
+        assertEquals(ibm, intern(ring, 13, "IBM", table)); //wraps around the end of the ring
+        assertEquals(msft, intern(ring, 2, "MSFT", table));
+        assertEquals(2, SymbolTable.size(table));
+        assertEquals("MSFT", SymbolTable.appendASCII(msft, table, new StringBuilder()).toString());
+
+        assertEquals(-1, SymbolTable.intern(ring, 0, -1, MASK, table));
+        assertEquals(-1, intern(ring, 0, "TOOLONGVALUE", table));
+    }
+
+    @Test
+    public void evictionReusesIdsWithNewGeneration() {
+        SymbolTable table = new SymbolTable(2, 8);
+        byte[] ring = new byte[MASK+1];
+
+        int i = 0;
+        while (i<4) {
+            intern(ring, 0, "S"+i++, table);
+        }
+        assertEquals(0, table.evictions);
+
+        int id = intern(ring, 0, "S4", table);
+        assertEquals(1, table.evictions);
+        assertEquals(1, SymbolTable.generation(id, table));
+        assertEquals("S4", SymbolTable.appendASCII(id, table, new StringBuilder()).toString());
+
+        //the values which were not evicted are still found after the removal from the hash slots
+        i = 1;
+        while (i<5) {
+            intern(ring, 0, "S"+i++, table);
+        }
+        assertEquals(1, table.evictions);
+        assertEquals(id, intern(ring, 0, "S4", table));
+    }
+
+    private static int intern(byte[] ring, int pos, String value, SymbolTable table) {
+        int i = value.length();
+        while (--i>=0) {
+            ring[MASK & (pos+i)] = (byte)value.charAt(i);
+        }
+        return SymbolTable.intern(ring, pos, value.length(), MASK, table);
+    }
+
+}
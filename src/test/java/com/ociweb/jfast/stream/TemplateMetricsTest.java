@@ -0,0 +1,118 @@
+package com.ociweb.jfast.stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.ociweb.jfast.catalog.generator.CatalogGenerator;
+import com.ociweb.jfast.catalog.generator.TemplateGenerator;
+import com.ociweb.jfast.catalog.loader.TemplateCatalogConfig;
+import com.ociweb.jfast.generator.DispatchLoader;
+import com.ociweb.jfast.generator.FASTClassLoader;
+import com.ociweb.jfast.generator.TestEncoder;
+import com.ociweb.jfast.primitive.PrimitiveReader;
+import com.ociweb.jfast.primitive.adapter.FASTInputByteArray;
+import com.ociweb.pronghorn.ring.RingBuffer;
+import com.ociweb.pronghorn.ring.RingBuffers;
+import com.ociweb.pronghorn.ring.RingReader;
+import com.ociweb.pronghorn.ring.token.OperatorMask;
+import com.ociweb.pronghorn.ring.token.TypeMask;
+
+public class TemplateMetricsTest {
+
+    private static final int TICK = 2;
+    private static final int STATUS = 3;
+    private static final int MESSAGES = 30;
+
+    private final byte[] catBytes = catalog();
+    private final TemplateCatalogConfig catalog = TemplateCatalogConfig.shared(catBytes);
+    private final long[] expectedMessages = new long[2];
+    private final long[] expectedBytes = new long[2];
+    private final byte[] encoded = encode();
+
+    @Test
+    public void interpreterCountsEachTemplate() {
+        RingBuffers ringBuffers = RingSizing.buildRingBuffers(catalog, 16, null);
+        assertMetrics(decode(DispatchLoader.loadDispatchReaderDebug(catBytes, ringBuffers), ringBuffers));
+    }
+
+    @Test
+    public void generatedDispatchCountsEachTemplate() throws ReflectiveOperationException {
+        RingBuffers ringBuffers = RingSizing.buildRingBuffers(catalog, 16, null);
+        FASTDecoder decoder = DispatchLoader.loadGeneratedReaderDispatch(catBytes, FASTClassLoader.READER, ringBuffers);
+        assertMetrics(decode(decoder, ringBuffers));
+    }
+
+    private void assertMetrics(TemplateMetrics metrics) {
+        assertEquals(2, TemplateMetrics.templateCount(metrics));
+        long totalBytes = 0;
+        int slot = TemplateMetrics.templateCount(metrics);
+        while (--slot>=0) {
+            long templateId = TemplateMetrics.templateId(slot, metrics);
+            assertTrue(TICK==templateId || STATUS==templateId);
+            int t = (int)templateId-TICK;
+            //single fragment messages, each one counted once
+            assertEquals(expectedMessages[t], TemplateMetrics.messageCount(slot, metrics));
+            assertEquals(expectedMessages[t], TemplateMetrics.fragmentCount(slot, metrics));
+            assertEquals(expectedBytes[t], TemplateMetrics.bytes(slot, metrics));
+            totalBytes += TemplateMetrics.bytes(slot, metrics);
+        }
+        //the template id and pmap are charged to the message so every byte of the stream is counted
+        assertEquals(encoded.length, totalBytes);
+    }
+
+    private TemplateMetrics decode(FASTDecoder decoder, RingBuffers ringBuffers) {
+        TemplateMetrics metrics = new TemplateMetrics(catalog);
+        decoder.setTemplateMetrics(metrics);
+        FASTReaderReactor reactor = new FASTReaderReactor(decoder, new PrimitiveReader(4096, new FASTInputByteArray(encoded), decoder.maxPMapCountInBytes));
+        RingBuffer ring = RingBuffers.get(ringBuffers, 0);
+        boolean more = true;
+        while (more) {
+            more = FASTReaderReactor.pump(reactor)>=0;
+            while (RingReader.tryReadFragment(ring)) {
+            }
+        }
+        return metrics;
+    }
+
+    private static byte[] catalog() {
+        CatalogGenerator cg = new CatalogGenerator();
+        TemplateGenerator tick = cg.addTemplate("Tick", TICK, false, null);
+        tick.addField("Seq", 100, false, TypeMask.IntegerUnsigned, OperatorMask.Field_Increment, "1");
+        tick.addField("Px", 101, false, TypeMask.LongSigned, OperatorMask.Field_Delta, "0");
+        TemplateGenerator status = cg.addTemplate("Status", STATUS, false, null);
+        status.addField("Code", 200, false, TypeMask.IntegerUnsigned, OperatorMask.Field_Copy, null);
+        return TestEncoder.catBytes(cg);
+    }
+
+    /**
+     * Two ticks for every status, the bytes of each message are charged to its template.
+     */
+    private byte[] encode() {
+        TestEncoder encoder = new TestEncoder(catBytes);
+        int length = 0;
+        int i = 0;
+        while (i<MESSAGES) {
+            int t;
+            if (0==i%3) {
+                TestEncoder.beginMessage(STATUS, encoder);
+                TestEncoder.addInt(i/6, encoder);
+                t = STATUS-TICK;
+            } else {
+                TestEncoder.beginMessage(TICK, encoder);
+                TestEncoder.addInt(1+i, encoder);
+                TestEncoder.addLong(5000L+(i*37)%11, encoder);
+                t = 0;
+            }
+            TestEncoder.publish(encoder);
+            int written = TestEncoder.encoded(encoder).length;
+            expectedMessages[t]++;
+            expectedBytes[t] += written-length;
+            length = written;
+            i++;
+        }
+        return TestEncoder.encoded(encoder);
+    }
+
+}
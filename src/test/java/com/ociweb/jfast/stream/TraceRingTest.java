@@ -0,0 +1,140 @@
+package com.ociweb.jfast.stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.ociweb.jfast.catalog.generator.CatalogGenerator;
+import com.ociweb.jfast.catalog.generator.TemplateGenerator;
+import com.ociweb.jfast.catalog.loader.TemplateCatalogConfig;
+import com.ociweb.jfast.error.FASTException;
+import com.ociweb.jfast.generator.DispatchLoader;
+import com.ociweb.jfast.generator.FASTClassLoader;
+import com.ociweb.jfast.generator.TestEncoder;
+import com.ociweb.jfast.primitive.PrimitiveReader;
+import com.ociweb.jfast.primitive.adapter.FASTInputByteArray;
+import com.ociweb.pronghorn.ring.RingBuffer;
+import com.ociweb.pronghorn.ring.RingBuffers;
+import com.ociweb.pronghorn.ring.RingReader;
+import com.ociweb.pronghorn.ring.token.OperatorMask;
+import com.ociweb.pronghorn.ring.token.TypeMask;
+
+public class TraceRingTest {
+
+    private static final int TICK = 2;
+    private static final int MESSAGES = 12;
+
+    @Test
+    public void overwriteOldestTest() throws IOException {
+        TraceRing ring = new TraceRing(3);
+
+        int i = 0;
+        while (i<20) {
+            TraceRing.record(100+i, 0x80000000|i, i, i*10L, -i, ring);
+            i++;
+        }
+        assertEquals(20, TraceRing.recordCount(ring));
+
+        ByteArrayOutputStream baost = new ByteArrayOutputStream();
+        TraceRing.write(ring, new DataOutputStream(baost));
+
+        final long[] expected = new long[]{12};
+        int count = TraceRing.read(new DataInputStream(new ByteArrayInputStream(baost.toByteArray())), new TraceRing.TraceVisitor() {
+            @Override
+            public void visit(long absPos, int token, int cursor, long value, long aux) {
+                long j = expected[0]++;
+                assertEquals(100+j, absPos);
+                assertEquals(0x80000000|(int)j, token);
+                assertEquals(j, cursor);
+                assertEquals(j*10L, value);
+                assertEquals(-j, aux);
+            }});
+
+        assertEquals(8, count);
+        assertEquals(20, expected[0]);
+    }
+
+    @Test
+    public void interpreterTraceRendersEachField() throws IOException {
+        byte[] catBytes = catalog();
+        TestEncoder encoder = new TestEncoder(catBytes);
+        int i = 0;
+        while (i<MESSAGES) {
+            TestEncoder.beginMessage(TICK, encoder);
+            TestEncoder.addInt(1+i, encoder);
+            TestEncoder.addInt(10*(i/2), encoder);
+            TestEncoder.publish(encoder);
+            i++;
+        }
+        byte[] encoded = TestEncoder.encoded(encoder);
+
+        TemplateCatalogConfig catalog = TemplateCatalogConfig.shared(catBytes);
+        RingBuffers ringBuffers = RingSizing.buildRingBuffers(catalog, 16, null);
+        FASTDecoder decoder = DispatchLoader.loadDispatchReaderDebug(catBytes, ringBuffers);
+        TraceRing trace = new TraceRing(8);
+        decoder.setTraceRing(trace);
+        FASTReaderReactor reactor = new FASTReaderReactor(decoder, new PrimitiveReader(4096, new FASTInputByteArray(encoded), decoder.maxPMapCountInBytes));
+        RingBuffer ring = RingBuffers.get(ringBuffers, 0);
+        boolean more = true;
+        while (more) {
+            more = FASTReaderReactor.pump(reactor)>=0;
+            while (RingReader.tryReadFragment(ring)) {
+            }
+        }
+
+        ByteArrayOutputStream baost = new ByteArrayOutputStream();
+        TraceRing.write(trace, new DataOutputStream(baost));
+        StringBuilder rendered = new StringBuilder();
+        TraceRender.render(new ByteArrayInputStream(baost.toByteArray()), catalog.fieldNameScript(), rendered);
+
+        //one line for each field named from the catalog, in stream order with the decoded value
+        List<String> fields = new ArrayList<String>();
+        long lastPos = 0;
+        String[] lines = rendered.toString().split("\n");
+        int j = 0;
+        while (j<lines.length) {
+            String line = lines[j++];
+            int name = Math.max(line.indexOf(" Seq <"), line.indexOf(" Qty <"));
+            if (name>=0) {
+                long absPos = Long.parseLong(line.substring(0, line.indexOf(' ')));
+                assertTrue(line, absPos>=lastPos && absPos<=encoded.length);
+                lastPos = absPos;
+                fields.add(line.substring(name+1));
+            }
+        }
+        List<String> expected = new ArrayList<String>();
+        i = 0;
+        while (i<MESSAGES) {
+            expected.add("Seq <"+(1+i)+">");
+            expected.add("Qty <"+(10*(i/2))+">");
+            i++;
+        }
+        assertEquals(expected, fields);
+    }
+
+    @Test(expected=FASTException.class)
+    public void generatedDispatchRejectsTrace() throws ReflectiveOperationException {
+        byte[] catBytes = catalog();
+        RingBuffers ringBuffers = RingSizing.buildRingBuffers(TemplateCatalogConfig.shared(catBytes), 16, null);
+        FASTDecoder decoder = DispatchLoader.loadGeneratedReaderDispatch(catBytes, FASTClassLoader.READER, ringBuffers);
+        decoder.setTraceRing(new TraceRing(8));
+    }
+
+    private static byte[] catalog() {
+        CatalogGenerator cg = new CatalogGenerator();
+        TemplateGenerator tick = cg.addTemplate("Tick", TICK, false, null);
+        tick.addField("Seq", 100, false, TypeMask.IntegerUnsigned, OperatorMask.Field_Increment, "1");
+        tick.addField("Qty", 101, false, TypeMask.IntegerUnsigned, OperatorMask.Field_Copy, null);
+        return TestEncoder.catBytes(cg);
+    }
+
+}
@@ -0,0 +1,64 @@
+package com.ociweb.jfast.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LogLinearHistogramTest {
+
+    @Test
+    public void bucketBoundsTest() {
+        int bits = 3;
+        int count = LogLinearHistogram.bucketCount(bits);
+
+        //every bucket must start just after the previous one ends
+        int i = 1;
+        while (i<count) {
+            assertEquals(LogLinearHistogram.bucketHighValue(i-1, bits)+1, LogLinearHistogram.bucketLowValue(i, bits));
+            i++;
+        }
+        assertEquals(count-1, LogLinearHistogram.bucketIndex(Long.MAX_VALUE, bits));
+        assertEquals(Long.MAX_VALUE, LogLinearHistogram.bucketHighValue(count-1, bits));
+    }
+
+    @Test
+    public void valueIsWithinItsBucketTest() {
+        int bits = 3;
+        long value = 1;
+        while (value>0 && value<Long.MAX_VALUE/3) {
+            int idx = LogLinearHistogram.bucketIndex(value, bits);
+            assertTrue(LogLinearHistogram.bucketLowValue(idx, bits)<=value);
+            assertTrue(LogLinearHistogram.bucketHighValue(idx, bits)>=value);
+            value = (value*3)+1;
+        }
+    }
+
+    @Test
+    public void percentileTest() {
+        LogLinearHistogram hist = new LogLinearHistogram(2, 4);
+
+        int i = 1000;
+        while (--i>=0) {
+            LogLinearHistogram.record(1, 1000+i, hist);
+        }
+        LogLinearHistogram.record(1, 1000000, hist);
+
+        assertEquals(0, LogLinearHistogram.count(0, hist));
+        assertEquals(1001, LogLinearHistogram.count(1, hist));
+        assertEquals(1000000, LogLinearHistogram.max(1, hist));
+
+        long median = LogLinearHistogram.valueAtPercentile(1, 50, hist);
+        assertTrue(median>=1499 && median<1499+(1499>>4));
+        assertEquals(1000000, LogLinearHistogram.valueAtPercentile(1, 100, hist));
+
+        LogLinearHistogram copy = new LogLinearHistogram(2, 4);
+        LogLinearHistogram.copy(hist, copy);
+        assertEquals(median, LogLinearHistogram.valueAtPercentile(1, 50, copy));
+
+        LogLinearHistogram.reset(hist);
+        assertEquals(0, LogLinearHistogram.count(1, hist));
+        assertEquals(1001, LogLinearHistogram.count(1, copy));
+    }
+
+}